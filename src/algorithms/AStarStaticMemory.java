@@ -1,8 +1,9 @@
 package algorithms;
 
 import grid.GridGraph;
-import algorithms.datatypes.Memory;
-import algorithms.priorityqueue.ReusableIndirectHeap;
+import grid.LineOfSightCache;
+import algorithms.datatypes.SearchMemory;
+import algorithms.priorityqueue.OpenList;
 
 
 
@@ -12,10 +13,36 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
     protected boolean repeatedPostSmooth = false;
     protected float heuristicWeight = 1f;
 
-    protected ReusableIndirectHeap pq; 
+    protected OpenList pq; 
+    private LineOfSightCache lineOfSightCache; // while the search runs, if it caches line of sight
 
     protected int finish;
 
+    /**
+     * Queries on grids of at least SPARSE_MIN_GRID_VERTICES vertices use sparse memory (see SearchMemory.initialise)
+     * when a square around the start, with sides of twice the start-goal distance, covers at most
+     * 1/SPARSE_MAX_AREA_FRACTION of the grid, and the search memory does not already hold dense records for
+     * the grid. A dense search is faster once its arrays are allocated; a sparse one saves allocating them.
+     * A sparse search which touches more nodes than the square's area, as when the goal is walled off,
+     * is restarted dense.
+     */
+    public static boolean SPARSE_MEMORY = true;
+    public static int SPARSE_MIN_GRID_VERTICES = 1 << 22;
+    public static int SPARSE_MAX_AREA_FRACTION = 64;
+
+    private static final int SEARCH_NOT_STARTED = 0;
+    private static final int SEARCH_RUNNING = 1;
+    private static final int SEARCH_DONE = 2;
+    private static final int SEARCH_CANCELLED = 3;
+    private int searchPhase = SEARCH_NOT_STARTED;
+    private int bestNode = -1; // the expanded node closest to the goal, while the search runs
+    private int expandedNodes = 0;
+    private float bestNodeDistanceToGoal;
+    private int[][] steppedPath; // kept when a stepped search is done or a search is cancelled, as its memory is given back
+    private float steppedPathLength;
+    private boolean denseOnly = false; // set once a sparse search has gone over its budget
+    private int sparseNodeBudget = -1; // while sparse, the number of nodes it may touch. -1 when dense
+
     
     public AStarStaticMemory(GridGraph graph, int sx, int sy, int ex, int ey) {
         super(graph, graph.sizeX, graph.sizeY, sx, sy, ex, ey);
@@ -41,52 +68,248 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
         return aStar;
     }
     
+    /**
+     * Runs the whole search. Can be cancelled from another thread, after which only getPartialPath is meaningful:
+     * it returns the path to the expanded node closest to the goal, as for a cancelled step.
+     */
+    @Override
+    public final void computePath() {
+        searchPhase = SEARCH_RUNNING;
+        lineOfSightCache = acquireLineOfSightCache();
+        try {
+            if (startSearch()) {
+                int current;
+                while (!isCancelled() && (current = expandNext()) != -1) {
+                    ++expandedNodes;
+                    if (isOverSparseBudget()) {
+                        restartDense();
+                    } else {
+                        updateBestNode(current);
+                    }
+                }
+                if (isCancelled()) {
+                    cancelStepping();
+                    return;
+                }
+                finishSearch();
+            }
+            searchPhase = SEARCH_DONE;
+        } finally {
+            lineOfSightCache = null;
+            releaseLineOfSightCache();
+        }
+    }
+
+    @Override
+    public final boolean isResumable() {
+        return true;
+    }
+
+    @Override
+    public final int expandedNodes() {
+        return expandedNodes;
+    }
+
     @Override
-    public void computePath() {
+    public final SearchStatus step(int maxExpansions) {
+        if (searchPhase == SEARCH_DONE) return SearchStatus.DONE;
+        if (searchPhase == SEARCH_CANCELLED) return SearchStatus.CANCELLED;
+        if (isCancelled()) return cancelStepping();
+        if (searchPhase == SEARCH_NOT_STARTED) {
+            searchPhase = SEARCH_RUNNING;
+            acquireSearchState();
+            lineOfSightCache = acquireLineOfSightCache();
+            if (!startSearch()) return completeStepping();
+        } else {
+            checkMemoryNotReused();
+            resumeSearch();
+        }
+        for (int i=0; i<maxExpansions; ++i) {
+            int current = expandNext();
+            if (current == -1) {
+                finishSearch();
+                return completeStepping();
+            }
+            ++expandedNodes;
+            if (isOverSparseBudget()) {
+                restartDense();
+                continue;
+            }
+            updateBestNode(current);
+            if (isCancelled()) return cancelStepping();
+        }
+        return SearchStatus.IN_PROGRESS;
+    }
+
+    private final void updateBestNode(int current) {
+        float distanceToGoal = distanceToGoal(current);
+        if (bestNode == -1 || distanceToGoal < bestNodeDistanceToGoal) {
+            bestNode = current;
+            bestNodeDistanceToGoal = distanceToGoal;
+        }
+    }
+
+    /**
+     * Keeps the path of the finished search and gives back its memory and open list.
+     */
+    private final SearchStatus completeStepping() {
+        steppedPath = finalPath();
+        steppedPathLength = finalPathLength();
+        searchPhase = SEARCH_DONE;
+        pq = null;
+        lineOfSightCache = null;
+        releaseSearchState();
+        return SearchStatus.DONE;
+    }
+
+    /**
+     * Keeps the partial path of the cancelled search and gives back its memory and open list, if it took them.
+     */
+    private final SearchStatus cancelStepping() {
+        if (searchPhase == SEARCH_RUNNING) {
+            resumeSearch();
+            steppedPath = bestNode == -1 ? new int[0][] : pathTo(bestNode);
+            pq = null;
+            lineOfSightCache = null;
+            releaseSearchState();
+        } else {
+            steppedPath = new int[0][];
+        }
+        steppedPathLength = -1;
+        searchPhase = SEARCH_CANCELLED;
+        return SearchStatus.CANCELLED;
+    }
+
+    /**
+     * Before the search is done, the path to the expanded node closest to the goal. Not post-smoothed.
+     */
+    @Override
+    public int[][] getPartialPath() {
+        if (searchPhase == SEARCH_DONE) return getPath();
+        if (searchPhase == SEARCH_CANCELLED) return steppedPath;
+        if (bestNode == -1) return new int[0][];
+        resumeSearch();
+        return pathTo(bestNode);
+    }
+
+    /**
+     * Called before each step but the first, and before reading a partial path. A search which keeps part of its
+     * state outside its memory, such as the start and goal in a shared visibility graph, restores it here if
+     * another search has changed it since.
+     */
+    protected void resumeSearch() {
+    }
+
+    /**
+     * Sets up the open list and memory, and adds the start.
+     * @return false if the search is already done.
+     */
+    protected boolean startSearch() {
         int totalSize = (graph.sizeX+1) * (graph.sizeY+1);
 
         int start = toOneDimIndex(sx, sy);
         finish = toOneDimIndex(ex, ey);
 
-        pq = new ReusableIndirectHeap(totalSize);
-        this.initialiseMemory(totalSize, Float.POSITIVE_INFINITY, -1, false);
+        boolean sparse = isShortQuery(totalSize);
+        pq = initialiseHeap(totalSize, sparse);
+        if (parentsAreNeighbours()) {
+            initialiseMemoryWithNeighbourParents(totalSize, Float.POSITIVE_INFINITY, -1, false, sparse);
+        } else {
+            this.initialiseMemory(totalSize, Float.POSITIVE_INFINITY, -1, false, sparse);
+        }
         
         initialise(start);
-        
-        float lastDist = -1;
-        while (!pq.isEmpty()) {
-            float dist = pq.getMinValue();
-            
-            int current = pq.popMinIndex();
-            
-            //if (Math.abs(dist - lastDist) > 0.01f) { maybeSaveSearchSnapshot(); lastDist = dist;}
-            maybeSaveSearchSnapshot();
-            
-            if (current == finish || distance(current) == Float.POSITIVE_INFINITY) {
-                maybeSaveSearchSnapshot();
-                break;
-            }
-            setVisited(current, true);
+        return true;
+    }
 
-            int x = toTwoDimX(current);
-            int y = toTwoDimY(current);
+    /**
+     * Whether to keep the memory and open list of this query in hash tables rather than arrays over the grid.
+     * Only an estimate: a search that has to go around obstacles touches more nodes. Sets sparseNodeBudget.
+     */
+    private final boolean isShortQuery(int totalSize) {
+        sparseNodeBudget = -1;
+        if (denseOnly || !SPARSE_MEMORY || totalSize < SPARSE_MIN_GRID_VERTICES) return false;
+        long side = 2L*(Math.abs(ex-sx) + Math.abs(ey-sy)) + 64;
+        if (side*side*SPARSE_MAX_AREA_FRACTION > totalSize) return false;
+        if (memory == null) memory = SearchMemory.ofCurrentThread(); // as initialiseMemory would
+        if (memory.hasDenseRecords(totalSize)) return false;
+        sparseNodeBudget = (int)(side*side);
+        return true;
+    }
 
-            tryRelaxNeighbour(current, x, y, x-1, y-1);
-            tryRelaxNeighbour(current, x, y, x, y-1);
-            tryRelaxNeighbour(current, x, y, x+1, y-1);
-            
-            tryRelaxNeighbour(current, x, y, x-1, y);
-            tryRelaxNeighbour(current, x, y, x+1, y);
-            
-            tryRelaxNeighbour(current, x, y, x-1, y+1);
-            tryRelaxNeighbour(current, x, y, x, y+1);
-            tryRelaxNeighbour(current, x, y, x+1, y+1);
+    private final boolean isOverSparseBudget() {
+        return sparseNodeBudget != -1 && memory.sparseNodes() > sparseNodeBudget;
+    }
 
-            //maybeSaveSearchSnapshot();
+    /**
+     * Starts the search again with dense memory and open list. The nodes touched so far cost at most as much
+     * again as the sparse search did, while a search going on sparse pays a hash lookup at every node.
+     * Only the grid searches go sparse, and their startSearch always returns true.
+     */
+    private final void restartDense() {
+        denseOnly = true;
+        bestNode = -1;
+        startSearch();
+    }
+
+    /**
+     * True if every parent set during the search is a neighbouring vertex, so the memory can store directions.
+     * Subclasses which set parents further away must return false.
+     */
+    protected boolean parentsAreNeighbours() {
+        return !postSmoothingOn;
+    }
+
+    /**
+     * Pops the next node from the open list and expands it.
+     * @return the node expanded, or -1 if the search is over.
+     */
+    protected int expandNext() {
+        if (pq.isEmpty()) return -1;
+        float dist = pq.getMinValue();
+        
+        int current = pq.popMinIndex();
+        
+        //if (Math.abs(dist - lastDist) > 0.01f) { maybeSaveSearchSnapshot(); lastDist = dist;}
+        maybeSaveSearchSnapshot();
+        
+        if (current == finish || distance(current) == Float.POSITIVE_INFINITY) {
+            maybeSaveSearchSnapshot();
+            return -1;
         }
+        setVisited(current, true);
+
+        int x = toTwoDimX(current);
+        int y = toTwoDimY(current);
+
+        tryRelaxNeighbour(current, x, y, x-1, y-1);
+        tryRelaxNeighbour(current, x, y, x, y-1);
+        tryRelaxNeighbour(current, x, y, x+1, y-1);
         
+        tryRelaxNeighbour(current, x, y, x-1, y);
+        tryRelaxNeighbour(current, x, y, x+1, y);
+        
+        tryRelaxNeighbour(current, x, y, x-1, y+1);
+        tryRelaxNeighbour(current, x, y, x, y+1);
+        tryRelaxNeighbour(current, x, y, x+1, y+1);
+
+        //maybeSaveSearchSnapshot();
+        return current;
+    }
+
+    /**
+     * Called once the open list is exhausted or the goal is reached.
+     */
+    protected void finishSearch() {
         maybePostSmooth();
     }
+
+    /**
+     * Used to pick the node the partial path leads to.
+     */
+    protected float distanceToGoal(int node) {
+        return graph.distance(toTwoDimX(node), toTwoDimY(node), ex, ey);
+    }
     
     protected void tryRelaxNeighbour(int current, int currentX, int currentY, int x, int y) {
         if (!graph.isValidCoordinate(x, y))
@@ -100,7 +323,7 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
         
         if (relax(current, destination, weight(currentX, currentY, x, y))) {
             // If relaxation is done.
-            pq.decreaseKey(destination, distance(destination) + heuristic(x,y));
+            pq.decreaseKey(destination, distance(destination) + heuristic(x,y), distance(destination));
         }
     }
 
@@ -130,13 +353,13 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
     
     protected final void initialise(int s) {
         pq.decreaseKey(s, 0f);
-        Memory.setDistance(s, 0f);
+        memory.setDistance(s, 0f);
     }
     
     
-    private int pathLength() {
+    private int pathLength(int node) {
         int length = 0;
-        int current = finish;
+        int current = node;
         while (current != -1) {
             current = parent(current);
             length++;
@@ -149,6 +372,7 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
         int y1 = toTwoDimY(node1);
         int x2 = toTwoDimX(node2);
         int y2 = toTwoDimY(node2);
+        if (lineOfSightCache != null) return lineOfSightCache.lineOfSight(x1, y1, x2, y2);
         return graph.lineOfSight(x1, y1, x2, y2);
     }
 
@@ -203,10 +427,26 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
     }
     
 
-    public int[][] getPath() {
-        int length = pathLength();
+    @Override
+    public final int[][] getPath() {
+        if (steppedPath != null) return steppedPath;
+        return finalPath();
+    }
+
+    /**
+     * @return the path found, read from the memory.
+     */
+    protected int[][] finalPath() {
+        return pathTo(finish);
+    }
+
+    /**
+     * @return the path from the start to node, following the parents.
+     */
+    protected int[][] pathTo(int node) {
+        int length = pathLength(node);
         int[][] path = new int[length][];
-        int current = finish;
+        int current = node;
         
         int index = length-1;
         while (current != -1) {
@@ -224,7 +464,13 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
         return path;
     }
 
-    public float getPathLength() {
+    @Override
+    public final float getPathLength() {
+        if (steppedPath != null) return steppedPathLength;
+        return finalPathLength();
+    }
+
+    private final float finalPathLength() {
         int current = finish;
         if (current == -1) return -1;
         
@@ -255,26 +501,26 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
 
     
     protected final int parent(int index) {
-        return Memory.parent(index);
+        return memory.parent(index);
     }
     
     protected final void setParent(int index, int value) {
-        Memory.setParent(index, value);
+        memory.setParent(index, value);
     }
     
     protected final float distance(int index) {
-        return Memory.distance(index);
+        return memory.distance(index);
     }
     
     protected final void setDistance(int index, float value) {
-        Memory.setDistance(index, value);
+        memory.setDistance(index, value);
     }
     
     protected final boolean visited(int index) {
-        return Memory.visited(index);
+        return memory.visited(index);
     }
     
     protected final void setVisited(int index, boolean value) {
-        Memory.setVisited(index, value);
+        memory.setVisited(index, value);
     }
 }
\ No newline at end of file
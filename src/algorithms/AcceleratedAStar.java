@@ -1,6 +1,7 @@
 package algorithms;
 
 import grid.GridGraph;
+import grid.RunLengthIndex;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -9,7 +10,7 @@ import algorithms.priorityqueue.IndirectHeap;
 
 public class AcceleratedAStar extends AStar {
     private List<Integer> closed;
-    private int[][] maxRanges;
+    private RunLengthIndex runLengths;
     
     public AcceleratedAStar(GridGraph graph, int sx, int sy, int ex, int ey) {
         super(graph, sx, sy, ex, ey);
@@ -25,7 +26,7 @@ public class AcceleratedAStar extends AStar {
         
         distance = new Float[totalSize];
         parent = new int[totalSize];
-        maxRanges = graph.computeMaxDownLeftRanges(); // O(size of gridGraph) computation. See actual method.
+        runLengths = graph.runLengthIndex(); // O(size of gridGraph) computation the first time. Reused until the grid changes.
         
         initialise(start);
         visited = new boolean[totalSize];
@@ -147,27 +148,8 @@ public class AcceleratedAStar extends AStar {
      * </pre>
      */
     private int detectMaxSquare(int x, int y) {
-        // This is the newer, O(n) method.
-        int lower = 0;
-        int upper = getMaxSize(x,y);
-        int newUpper;
-        int i = x-y+sizeY;
-        int j = Math.min(x, y);
-        if (upper <= lower) return 0;
-
-        while (true) {
-            newUpper = checkUpperBoundNew(i,j,lower);
-            if (newUpper < upper) upper = newUpper;
-            if (upper <= lower) break;
-
-            newUpper = checkUpperBoundNew(i,j,-1-lower);
-            if (newUpper < upper) upper = newUpper;
-            if (upper <= lower) break;
-            
-            lower++;
-            if (upper <= lower) break;
-        }
-        return lower;
+        // O(1) lookup. The square is also limited by the distance to the goal.
+        return Math.min(runLengths.maxSquare(x, y), getMaxSize(x, y));
     }
     
     private int detectMaxSquareOld(int x, int y) {
@@ -180,23 +162,6 @@ public class AcceleratedAStar extends AStar {
         return size-1;
     }
     
-    /**
-     * <pre>
-     *          _______  This function returns the upper bound detected by
-     *         |   |k=1| the a leftward and downward search.
-     *         |___|___| k is the number of steps moved in the up-right direction.
-     *         |k=0|   | k = 0 the the square directly top-right of grid point (x,y).
-     *  _______.___|___|
-     * |   |-1 |(x,y)    
-     * |___|___|  point of concern
-     * |-2 |   |
-     * |___|___|
-     * </pre>
-     */
-    private int checkUpperBoundNew(int i, int j, int k) {
-        return maxRanges[i][j + k] - k;
-    }
-    
     /**
      * Compares the tile with the end point to set an upper bound on the size.
      */
@@ -1,5 +1,6 @@
 package algorithms;
 
+import grid.GridChangeJournal;
 import grid.GridGraph;
 
 import java.util.ArrayList;
@@ -21,11 +22,14 @@ public class Anya extends PathFindingAlgorithm {
 
     private static int[][] rightDownExtents;
     private static int[][] leftDownExtents;
+    private static GridGraph extentsGraph; // the grid the extents were computed for, at extentsVersion
+    private static long extentsVersion;
     
     public static void initialiseUpExtents(GridGraph graph) {
         // Don't reinitialise if graph is the same size as the last time.
         if (rightDownExtents != null && graph.sizeY+2 == rightDownExtents.length && graph.sizeX+1 == rightDownExtents[0].length) return;
 
+        extentsGraph = null;
         rightDownExtents = new int[graph.sizeY+2][];
         leftDownExtents = new int[graph.sizeY+2][];
         for (int y=0;y<graph.sizeY+2;++y) {
@@ -171,28 +175,52 @@ public class Anya extends PathFindingAlgorithm {
     }
     
     
+    /**
+     * The extents only depend on the grid, so they are kept between searches.
+     * They are recomputed when the grid changes, only for the changed rows if the grid's journal still has them.
+     */
     private void computeExtents() {
-        // graph.isBlocked(x,y) is the same as graph.bottomLeftOfBlockedTile(x,y)
+        if (extentsGraph == graph) {
+            if (extentsVersion == graph.version()) return;
+            GridChangeJournal journal = graph.changeJournal();
+            if (journal.covers(extentsVersion)) {
+                // Extents row y is computed from tile row y-1.
+                journal.forEachSince(extentsVersion, (minX, minY, maxX, maxY) -> {
+                    for (int y=Math.max(minY+1, 0);y<=Math.min(maxY+1, sizeY+1);++y) {
+                        computeExtents(y);
+                    }
+                });
+                extentsVersion = graph.version();
+                return;
+            }
+        }
         Anya.initialiseUpExtents(graph);
         
         for (int y=0;y<sizeY+2;++y) {
-            boolean lastIsBlocked = true;
-            int lastX = -1;
-            for (int x=0;x<=sizeX;++x) {
-                leftDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
+            computeExtents(y);
+        }
+        extentsGraph = graph;
+        extentsVersion = graph.version();
+    }
+    
+    private void computeExtents(int y) {
+        // graph.isBlocked(x,y) is the same as graph.bottomLeftOfBlockedTile(x,y)
+        boolean lastIsBlocked = true;
+        int lastX = -1;
+        for (int x=0;x<=sizeX;++x) {
+            leftDownExtents[y][x] = lastX; 
+            if (graph.isBlocked(x, y-1) != lastIsBlocked) {
+                lastX = x;
+                lastIsBlocked = !lastIsBlocked;
             }
-            lastIsBlocked = true;
-            lastX = sizeX+1;
-            for (int x=sizeX;x>=0;--x) {
-                rightDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x-1, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
+        }
+        lastIsBlocked = true;
+        lastX = sizeX+1;
+        for (int x=sizeX;x>=0;--x) {
+            rightDownExtents[y][x] = lastX; 
+            if (graph.isBlocked(x-1, y-1) != lastIsBlocked) {
+                lastX = x;
+                lastIsBlocked = !lastIsBlocked;
             }
         }
     }
@@ -893,6 +921,7 @@ public class Anya extends PathFindingAlgorithm {
     public static void clearMemory() {
         leftDownExtents = null;
         rightDownExtents = null;
+        extentsGraph = null;
         System.gc();
     }
 
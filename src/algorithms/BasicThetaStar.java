@@ -21,6 +21,21 @@ public class BasicThetaStar extends AStarStaticMemory {
         return bts;
     }
 
+    /**
+     * Looks up line of sight checks in a LineOfSightCache: the one given with useLineOfSightCache, or else one
+     * from the pool, whose entries last while the searches on the grid reuse it. See its toString() for the hit rate.
+     */
+    public static BasicThetaStar cachedLineOfSight(GridGraph graph, int sx, int sy, int ex, int ey) {
+        BasicThetaStar algo = new BasicThetaStar(graph, sx, sy, ex, ey);
+        algo.cachesLineOfSight = true;
+        return algo;
+    }
+
+    @Override
+    protected boolean parentsAreNeighbours() {
+        return false;
+    }
+
     @Override
     protected void tryRelaxNeighbour(int current, int currentX, int currentY, int x, int y) {
         if (!graph.isValidCoordinate(x, y))
@@ -36,7 +51,7 @@ public class BasicThetaStar extends AStarStaticMemory {
         
         if (relax(current, destination, 0)) {
             // If relaxation is done.
-            pq.decreaseKey(destination, distance(destination) + heuristic(x,y));
+            pq.decreaseKey(destination, distance(destination) + heuristic(x,y), distance(destination));
         }
     }
 
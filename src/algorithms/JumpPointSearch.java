@@ -1,11 +1,12 @@
 package algorithms;
 import grid.GridGraph;
-import algorithms.priorityqueue.ReusableIndirectHeap;
+import grid.RunLengthIndex;
 
 public final class JumpPointSearch extends AStarStaticMemory {
     private final int[] neighboursdX;
     private final int[] neighboursdY;
     private int neighbourCount;
+    private RunLengthIndex runLengths;
 
     public JumpPointSearch(GridGraph graph, int sx, int sy, int ex, int ey) {
         super(graph, sx, sy, ex, ey);
@@ -28,189 +29,99 @@ public final class JumpPointSearch extends AStarStaticMemory {
     }
 
     @Override
-    public final void computePath() {
+    protected final boolean parentsAreNeighbours() {
+        return false;
+    }
+
+    @Override
+    protected final boolean startSearch() {
         neighbourCount = 0;
-        
-        int totalSize = (graph.sizeX+1) * (graph.sizeY+1);
+        runLengths = graph.runLengthIndex();
+        return super.startSearch();
+    }
 
-        int start = graph.toOneDimIndex(sx, sy);
-        finish = graph.toOneDimIndex(ex, ey);
-        
-        pq = new ReusableIndirectHeap(totalSize);
-        this.initialiseMemory(totalSize, Float.POSITIVE_INFINITY, -1, false);
-        
-        initialise(start);
-        
-        while (!pq.isEmpty()) {
-            int current = pq.popMinIndex();
-            if (current == finish || distance(current) == Float.POSITIVE_INFINITY) {
-                maybeSaveSearchSnapshot();
-                break;
-            }
-            setVisited(current, true);
+    @Override
+    protected final int expandNext() {
+        if (pq.isEmpty()) return -1;
+        int current = pq.popMinIndex();
+        if (current == finish || distance(current) == Float.POSITIVE_INFINITY) {
+            maybeSaveSearchSnapshot();
+            return -1;
+        }
+        setVisited(current, true);
 
-            int x = graph.toTwoDimX(current);
-            int y = graph.toTwoDimY(current);
-            
-            computeNeighbours(current, x, y); // stores neighbours in attribute.
+        int x = graph.toTwoDimX(current);
+        int y = graph.toTwoDimY(current);
+        
+        computeNeighbours(current, x, y); // stores neighbours in attribute.
 
-            for (int i=0;i<neighbourCount;++i) {
-                int dx = neighboursdX[i];
-                int dy = neighboursdY[i];
+        for (int i=0;i<neighbourCount;++i) {
+            int dx = neighboursdX[i];
+            int dy = neighboursdY[i];
 
-                int successor = jump(x, y, dx, dy);
-                if (successor != -1) {
-                    tryRelax(current, x, y, successor);
-                }
+            int successor = jump(x, y, dx, dy);
+            if (successor != -1) {
+                tryRelax(current, x, y, successor);
             }
-            
-            maybeSaveSearchSnapshot();
         }
-
-        maybePostSmooth();
+        
+        maybeSaveSearchSnapshot();
+        return current;
     }
     
+    /**
+     * Jumps are O(1) lookups in the run length index of the grid, plus a check for the goal.
+     */
     private final int jump(int x, int y, int dx, int dy) {
-        if (dx < 0) {
-            if (dy < 0) {
-                return jumpDL(x,y);
-            } else if (dy > 0) {
-                return jumpUL(x,y);
-            } else {
-                return jumpL(x,y);
-            }
-        } else if (dx > 0) {
-            if (dy < 0) {
-                return jumpDR(x,y);
-            } else if (dy > 0) {
-                return jumpUR(x,y);
-            } else {
-                return jumpR(x,y);
-            }
+        int run = runLengths.jumpRun(x, y, dx, dy);
+        if (dx == 0 || dy == 0) {
+            return jumpStraight(x, y, dx, dy, run);
         } else {
-            if (dy < 0) {
-                return jumpD(x,y);
-            } else {
-                return jumpU(x,y);
-            }
-        }
-        
-    }
-    
-    private final int jumpDL(int x, int y) {
-        while(true) {
-            x -= 1;
-            y -= 1;
-            if (graph.isBlocked(x, y)) return -1;
-            if (x == ex && y == ey) return graph.toOneDimIndex(x,y);
-            // diagonal cannot be forced on vertices.
-            if (jumpL(x,y) != -1) return graph.toOneDimIndex(x,y);
-            if (jumpD(x,y) != -1) return graph.toOneDimIndex(x,y);
-        }
-    }
-    
-    private final int jumpDR(int x, int y) {
-        while(true) {
-            x += 1;
-            y -= 1;
-            if (graph.isBlocked(x-1, y)) return -1;
-            if (x == ex && y == ey) return graph.toOneDimIndex(x,y);
-            // diagonal cannot be forced on vertices.
-            if (jumpD(x,y) != -1) return graph.toOneDimIndex(x,y);
-            if (jumpR(x,y) != -1) return graph.toOneDimIndex(x,y);
-        }
-    }
-    
-    private final int jumpUL(int x, int y) {
-        while(true) {
-            x -= 1;
-            y += 1;
-            if (graph.isBlocked(x, y-1)) return -1;
-            if (x == ex && y == ey) return graph.toOneDimIndex(x,y);
-            // diagonal cannot be forced on vertices.
-            if (jumpL(x,y) != -1) return graph.toOneDimIndex(x,y);
-            if (jumpU(x,y) != -1) return graph.toOneDimIndex(x,y);
-        }
-    }
-    
-    private final int jumpUR(int x, int y) {
-        while(true) {
-            x += 1;
-            y += 1;
-            if (graph.isBlocked(x-1, y-1)) return -1;
-            if (x == ex && y == ey) return graph.toOneDimIndex(x,y);
-            // diagonal cannot be forced on vertices.
-            if (jumpU(x,y) != -1) return graph.toOneDimIndex(x,y);
-            if (jumpR(x,y) != -1) return graph.toOneDimIndex(x,y);
+            return jumpDiagonal(x, y, dx, dy, run);
         }
     }
     
-    private final int jumpL(int x, int y) {
-        while(true) {
-            x -= 1;
-            if (graph.isBlocked(x, y)) {
-                if (graph.isBlocked(x, y-1)) {
-                    return -1;
-                } else {
-                    if (!graph.isBlocked(x-1, y)) return graph.toOneDimIndex(x,y);
-                }
-            }
-            if (graph.isBlocked(x, y-1)) {
-                if (!graph.isBlocked(x-1, y-1)) return graph.toOneDimIndex(x,y);
-            }
-            if (x == ex && y == ey) return graph.toOneDimIndex(x,y);
+    private final int jumpStraight(int x, int y, int dx, int dy, int run) {
+        boolean goalOnLine = (dy == 0) ? (ey == y) : (ex == x);
+        int goalSteps = (ex-x)*dx + (ey-y)*dy;
+        if (goalOnLine && 0 < goalSteps && goalSteps < Math.abs(run)) {
+            return graph.toOneDimIndex(ex, ey);
         }
+        if (run < 0) return -1;
+        return graph.toOneDimIndex(x + dx*run, y + dy*run);
     }
     
-    private final int jumpR(int x, int y) {
-        while(true) {
-            x += 1;
-            if (graph.isBlocked(x-1, y)) {
-                if (graph.isBlocked(x-1, y-1)) {
-                    return -1;
-                } else {
-                    if (!graph.isBlocked(x, y)) return graph.toOneDimIndex(x,y);
-                }
-            }
-            if (graph.isBlocked(x-1, y-1)) {
-                if (!graph.isBlocked(x, y-1)) return graph.toOneDimIndex(x,y);
-            }
-            if (x == ex && y == ey) return graph.toOneDimIndex(x,y);
+    /**
+     * A diagonal jump stops at a vertex where a straight jump finds a jump point or the goal.
+     * The run only accounts for the jump points, so the goal is checked for separately.
+     */
+    private final int jumpDiagonal(int x, int y, int dx, int dy, int run) {
+        int reachable = run > 0 ? run : -run-1;
+        int stop = run > 0 ? run : Integer.MAX_VALUE;
+        int goalStepsX = (ex-x)*dx;
+        int goalStepsY = (ey-y)*dy;
+
+        // The goal is on the diagonal.
+        if (goalStepsX == goalStepsY && 0 < goalStepsX && goalStepsX <= reachable) {
+            stop = Math.min(stop, goalStepsX);
         }
-    }
-    
-    private final int jumpD(int x, int y) {
-        while(true) {
-            y -= 1;
-            if (graph.isBlocked(x, y)) {
-                if (graph.isBlocked(x-1, y)) {
-                    return -1;
-                } else {
-                    if (!graph.isBlocked(x, y-1)) return graph.toOneDimIndex(x,y);
-                }
+        // A horizontal jump from the goal's row reaches the goal.
+        if (0 < goalStepsY && goalStepsY < goalStepsX && goalStepsY <= reachable && goalStepsY < stop) {
+            int rowX = x + dx*goalStepsY;
+            if (goalStepsX - goalStepsY < Math.abs(runLengths.jumpRun(rowX, ey, dx, 0))) {
+                stop = goalStepsY;
             }
-            if (graph.isBlocked(x-1, y)) {
-                if (!graph.isBlocked(x-1, y-1)) return graph.toOneDimIndex(x,y);
-            }
-            if (x == ex && y == ey) return graph.toOneDimIndex(x,y);
         }
-    }
-    
-    private final int jumpU(int x, int y) {
-        while(true) {
-            y += 1;
-            if (graph.isBlocked(x, y-1)) {
-                if (graph.isBlocked(x-1, y-1)) {
-                    return -1;
-                } else {
-                    if (!graph.isBlocked(x, y)) return graph.toOneDimIndex(x,y);
-                }
-            }
-            if (graph.isBlocked(x-1, y-1)) {
-                if (!graph.isBlocked(x-1, y)) return graph.toOneDimIndex(x,y);
+        // A vertical jump from the goal's column reaches the goal.
+        if (0 < goalStepsX && goalStepsX < goalStepsY && goalStepsX <= reachable && goalStepsX < stop) {
+            int columnY = y + dy*goalStepsX;
+            if (goalStepsY - goalStepsX < Math.abs(runLengths.jumpRun(ex, columnY, 0, dy))) {
+                stop = goalStepsX;
             }
-            if (x == ex && y == ey) return graph.toOneDimIndex(x,y);
         }
+
+        if (stop == Integer.MAX_VALUE) return -1;
+        return graph.toOneDimIndex(x + dx*stop, y + dy*stop);
     }
 
     private final void computeNeighbours(int currentIndex, int cx, int cy) {
@@ -354,7 +265,7 @@ public final class JumpPointSearch extends AStarStaticMemory {
         
         if (relax(current, destination, graph.octileDistance(currX, currY, destX, destY))) {
             // If relaxation is done.
-            pq.decreaseKey(destination, distance(destination) + graph.octileDistance(destX, destY, ex, ey));
+            pq.decreaseKey(destination, distance(destination) + graph.octileDistance(destX, destY, ex, ey), distance(destination));
         }
     }
 }
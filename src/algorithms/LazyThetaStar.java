@@ -1,7 +1,6 @@
 package algorithms;
 
 import grid.GridGraph;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 
 public class LazyThetaStar extends BasicThetaStar {
 
@@ -9,54 +8,45 @@ public class LazyThetaStar extends BasicThetaStar {
         super(graph, sx, sy, ex, ey);
     }
 
-    @Override
-    public void computePath() {
-        int totalSize = (graph.sizeX+1) * (graph.sizeY+1);
-
-        int start = toOneDimIndex(sx, sy);
-        finish = toOneDimIndex(ex, ey);
+    public static LazyThetaStar cachedLineOfSight(GridGraph graph, int sx, int sy, int ex, int ey) {
+        LazyThetaStar algo = new LazyThetaStar(graph, sx, sy, ex, ey);
+        algo.cachesLineOfSight = true;
+        return algo;
+    }
 
-        pq = new ReusableIndirectHeap(totalSize);
-        this.initialiseMemory(totalSize, Float.POSITIVE_INFINITY, -1, false);
-        
-        initialise(start);
+    @Override
+    protected int expandNext() {
+        if (pq.isEmpty()) return -1;
+        int current = pq.popMinIndex();
+        int x = toTwoDimX(current);
+        int y = toTwoDimY(current);
         
-        while (!pq.isEmpty()) {
-            int current = pq.popMinIndex();
-            int x = toTwoDimX(current);
-            int y = toTwoDimY(current);
-            
-            int parentIndex = parent(current);
-            if (parentIndex != -1) {
-                int parX = toTwoDimX(parentIndex);
-                int parY = toTwoDimY(parentIndex);
-
-                if (!graph.lineOfSight(x,y,parX,parY)) {
-                    findPath1Parent(current, x, y);
-                }
+        int parentIndex = parent(current);
+        if (parentIndex != -1) {
+            if (!lineOfSight(current, parentIndex)) {
+                findPath1Parent(current, x, y);
             }
+        }
 
-            if (current == finish || distance(current) == Float.POSITIVE_INFINITY) {
-                maybeSaveSearchSnapshot();
-                break;
-            }
-            setVisited(current, true);
-
-            tryRelaxNeighbour(current, x, y, x-1, y-1);
-            tryRelaxNeighbour(current, x, y, x, y-1);
-            tryRelaxNeighbour(current, x, y, x+1, y-1);
+        if (current == finish || distance(current) == Float.POSITIVE_INFINITY) {
+            maybeSaveSearchSnapshot();
+            return -1;
+        }
+        setVisited(current, true);
 
-            tryRelaxNeighbour(current, x, y, x-1, y);
-            tryRelaxNeighbour(current, x, y, x+1, y);
+        tryRelaxNeighbour(current, x, y, x-1, y-1);
+        tryRelaxNeighbour(current, x, y, x, y-1);
+        tryRelaxNeighbour(current, x, y, x+1, y-1);
 
-            tryRelaxNeighbour(current, x, y, x-1, y+1);
-            tryRelaxNeighbour(current, x, y, x, y+1);
-            tryRelaxNeighbour(current, x, y, x+1, y+1);
+        tryRelaxNeighbour(current, x, y, x-1, y);
+        tryRelaxNeighbour(current, x, y, x+1, y);
 
-            maybeSaveSearchSnapshot();
-        }
+        tryRelaxNeighbour(current, x, y, x-1, y+1);
+        tryRelaxNeighbour(current, x, y, x, y+1);
+        tryRelaxNeighbour(current, x, y, x+1, y+1);
 
-        maybePostSmooth();
+        maybeSaveSearchSnapshot();
+        return current;
     }
 
     private void findPath1Parent(int current, int x, int y) {
@@ -1,6 +1,7 @@
 package algorithms;
 
 import grid.GridGraph;
+import grid.LineOfSightCache;
 
 import java.awt.Color;
 import java.util.ArrayList;
@@ -8,15 +9,33 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import algorithms.datatypes.Memory;
+import algorithms.datatypes.SearchMemory;
 import algorithms.datatypes.SnapshotItem;
+import algorithms.priorityqueue.OpenList;
+import algorithms.priorityqueue.OpenListType;
+import algorithms.priorityqueue.ReusableIndirectHeap;
+import algorithms.priorityqueue.TieBreaking;
 
 /**
  * ABSTRACT<br>
  * Template for all Path Finding Algorithms used.<br>
  */
 public abstract class PathFindingAlgorithm {
+
+    /**
+     * The state of a search run with step.
+     */
+    public enum SearchStatus {
+        /** step can be called again to continue the search. */
+        IN_PROGRESS,
+        /** The search is complete. getPath returns its result. */
+        DONE,
+        /** cancel was called. Only getPartialPath is meaningful. */
+        CANCELLED,
+    }
+
     private static final int SNAPSHOT_INTERVAL = 0;
+    private static final int EXPANSIONS_PER_DEADLINE_CHECK = 64;
     private int snapshotCountdown = 0;
     
     private ArrayList<List<SnapshotItem>> snapshotList;
@@ -36,9 +55,28 @@ public abstract class PathFindingAlgorithm {
     
     private boolean recordingMode;
     private boolean usingStaticMemory = false;
+    protected SearchMemory memory;
+    private OpenList openList;
+    private OpenListType openListType = OpenListType.BINARY_HEAP;
+    private TieBreaking tieBreaking = TieBreaking.NONE;
+    private volatile boolean cancelled;
+    private boolean completedByStep;
+    // Set while a stepped search holds a memory or open list it acquired itself. See acquireSearchState.
+    private boolean ownsMemory;
+    private boolean ownsOpenList;
+    protected boolean cachesLineOfSight = false; // set by the factories of the searches which opt into a LineOfSightCache
+    private LineOfSightCache lineOfSightCache;
+    private boolean ownsLineOfSightCache;
 
+    /**
+     * @throws IllegalArgumentException if the grid has more vertices than int indices can number
+     *         (see GridGraph.hasIntIndices). The searches size their memory and open lists by vertex index.
+     */
     public PathFindingAlgorithm(GridGraph graph, int sizeX, int sizeY,
             int sx, int sy, int ex, int ey) {
+        if (!graph.hasIntIndices()) {
+            throw new IllegalArgumentException("Grid too large to search: " + graph.nVertices() + " vertices do not fit in int indices");
+        }
         this.graph = graph;
         this.sizeX = sizeX;
         this.sizeXplusOne = sizeX+1;
@@ -50,9 +88,171 @@ public abstract class PathFindingAlgorithm {
         snapshotList = new ArrayList<>();
     }
     
+    /**
+     * Makes this algorithm search in the given memory instead of the memory of the calling thread.
+     * Call before computePath. Only affects algorithms that use SearchMemory.
+     */
+    public final void useMemory(SearchMemory memory) {
+        this.memory = memory;
+    }
+    
+    /**
+     * Makes this algorithm use the given open list instead of the one of the calling thread.
+     * Call before computePath. Only affects algorithms that use initialiseHeap.
+     */
+    public final void useOpenList(OpenList openList) {
+        this.openList = openList;
+    }
+    
+    /**
+     * Makes this algorithm look up line of sight checks in the given cache instead of one from LineOfSightCache.acquire.
+     * Call before computePath. Only affects algorithms created to cache line of sight (see cachesLineOfSight).
+     * Like a memory, a cache must only be used by one search at a time.
+     */
+    public final void useLineOfSightCache(LineOfSightCache lineOfSightCache) {
+        this.lineOfSightCache = lineOfSightCache;
+    }
+    
+    /**
+     * @return true if the algorithm looks up its line of sight checks in a LineOfSightCache.
+     */
+    public final boolean cachesLineOfSight() {
+        return cachesLineOfSight;
+    }
+    
+    /**
+     * Makes this algorithm use an open list of the given type, BINARY_HEAP by default.
+     * Call before computePath. Ignored if an open list is given with useOpenList.
+     */
+    public final void useOpenListType(OpenListType openListType) {
+        this.openListType = openListType;
+    }
+    
+    public final OpenListType openListType() {
+        return openListType;
+    }
+    
+    /**
+     * Makes this algorithm order nodes with equal f-values in its open list as given, NONE by default.
+     * Call before computePath. Only ReusableIndirectHeap, the BINARY_HEAP open list, takes it into account.
+     */
+    public final void useTieBreaking(TieBreaking tieBreaking) {
+        this.tieBreaking = tieBreaking;
+    }
+    
+    public final TieBreaking tieBreaking() {
+        return tieBreaking;
+    }
+    
+    /**
+     * @return an empty open list for indices 0..memorySize-1.
+     */
+    protected final OpenList initialiseHeap(int memorySize) {
+        return initialiseHeap(memorySize, false);
+    }
+    
+    /**
+     * @param sparse if true, the open list only takes memory for the indices added to it.
+     */
+    protected final OpenList initialiseHeap(int memorySize, boolean sparse) {
+        OpenList heap = openList;
+        if (heap == null) heap = openListType.ofCurrentThread(memorySize, sparse);
+        else heap.initialise(memorySize, sparse);
+        if (heap instanceof ReusableIndirectHeap) ((ReusableIndirectHeap)heap).setTieBreaking(tieBreaking);
+        return heap;
+    }
+    
+    /**
+     * @return the line of sight cache for this search, bound to its grid: the one given with useLineOfSightCache,
+     *         or else one from LineOfSightCache.acquire. null if the search does not cache line of sight.
+     *         Give it back with releaseLineOfSightCache when the search stops running.
+     */
+    protected final LineOfSightCache acquireLineOfSightCache() {
+        if (!cachesLineOfSight) return null;
+        if (lineOfSightCache == null) {
+            lineOfSightCache = LineOfSightCache.acquire();
+            ownsLineOfSightCache = true;
+        }
+        lineOfSightCache.bind(graph);
+        return lineOfSightCache;
+    }
+
+    /**
+     * Gives back the cache taken by acquireLineOfSightCache, if it came from the pool.
+     */
+    protected final void releaseLineOfSightCache() {
+        if (ownsLineOfSightCache) {
+            LineOfSightCache.release(lineOfSightCache);
+            lineOfSightCache = null;
+            ownsLineOfSightCache = false;
+        }
+    }
+
+    /**
+     * Gives this search a memory and open list of its own, from SearchMemory.acquire and OpenListType.acquire,
+     * unless it was given ones with useMemory and useOpenList. Called by searches run with step before they start,
+     * so that several of them can be stepped in turn on one thread. Give them back with releaseSearchState.
+     */
+    protected final void acquireSearchState() {
+        if (memory == null) {
+            memory = SearchMemory.acquire();
+            ownsMemory = true;
+        }
+        if (openList == null) {
+            openList = openListType.acquire();
+            ownsOpenList = true;
+        }
+    }
+
+    /**
+     * Gives back the memory and open list taken by acquireSearchState, and the line of sight cache.
+     * The search must not read its memory afterwards.
+     */
+    protected final void releaseSearchState() {
+        releaseLineOfSightCache();
+        if (ownsMemory) {
+            SearchMemory.release(memory);
+            memory = null;
+            ownsMemory = false;
+        }
+        if (ownsOpenList) {
+            openListType.release(openList);
+            openList = null;
+            ownsOpenList = false;
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if another search has initialised the memory of this one since it started,
+     *         which happens when two searches stepped in turn are given the same memory with useMemory.
+     */
+    protected final void checkMemoryNotReused() {
+        if (memory == null || memory.currentTicket() != ticketNumber) {
+            throw new IllegalStateException("The search memory has been released or reused by another search");
+        }
+    }
+
     protected void initialiseMemory(int size, float defaultDistance, int defaultParent, boolean defaultVisited) {
+        initialiseMemory(size, defaultDistance, defaultParent, defaultVisited, false);
+    }
+    
+    /**
+     * @param sparse if true, the memory only takes space for the nodes written to. See SearchMemory.initialise.
+     */
+    protected final void initialiseMemory(int size, float defaultDistance, int defaultParent, boolean defaultVisited, boolean sparse) {
         usingStaticMemory = true;
-        ticketNumber = Memory.initialise(size, defaultDistance, defaultParent, defaultVisited);
+        if (memory == null) memory = SearchMemory.ofCurrentThread();
+        ticketNumber = memory.initialise(size, defaultDistance, defaultParent, defaultVisited, sparse);
+    }
+
+    /**
+     * Like initialiseMemory, for grid searches whose parents are always neighbouring vertices (or defaultParent).
+     * Stores the parents as directions, which saves a third of the memory.
+     */
+    protected final void initialiseMemoryWithNeighbourParents(int size, float defaultDistance, int defaultParent, boolean defaultVisited, boolean sparse) {
+        usingStaticMemory = true;
+        if (memory == null) memory = SearchMemory.ofCurrentThread();
+        ticketNumber = memory.initialiseWithNeighbourParents(size, sizeXplusOne, defaultDistance, defaultParent, defaultVisited, sparse);
     }
     
     /**
@@ -85,6 +285,66 @@ public abstract class PathFindingAlgorithm {
      * @return retrieve the path computed by the algorithm
      */
     public abstract int[][] getPath();
+
+    /**
+     * @return true if step runs the search a bit at a time. Otherwise, the first step runs all of it.
+     */
+    public boolean isResumable() {
+        return false;
+    }
+
+    /**
+     * @return the number of nodes the search has expanded so far, or -1 if the algorithm does not count them.
+     */
+    public int expandedNodes() {
+        return -1;
+    }
+
+    /**
+     * Continues the search for at most maxExpansions more node expansions. Starts it on the first call.
+     * Use either step or computePath, not both.
+     * <br>
+     * A resumable search takes its own memory and open list when it starts, unless it was given ones, and gives
+     * them back once DONE or CANCELLED, so searches can be stepped in turn. Their paths stay readable afterwards.
+     */
+    public SearchStatus step(int maxExpansions) {
+        if (cancelled) return SearchStatus.CANCELLED;
+        if (!completedByStep) {
+            computePath();
+            completedByStep = true;
+        }
+        return SearchStatus.DONE;
+    }
+
+    /**
+     * Steps the search until it is done, cancelled, or System.nanoTime() reaches deadlineNanos.
+     * The deadline is checked every few expansions, so it can be overrun by a few expansions.
+     */
+    public final SearchStatus stepUntil(long deadlineNanos) {
+        SearchStatus status;
+        do {
+            status = step(EXPANSIONS_PER_DEADLINE_CHECK);
+        } while (status == SearchStatus.IN_PROGRESS && System.nanoTime() - deadlineNanos < 0);
+        return status;
+    }
+
+    /**
+     * Stops the search at its next expansion. Can be called from another thread.
+     */
+    public final void cancel() {
+        cancelled = true;
+    }
+
+    public final boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the best path found so far, from the start towards the goal. Once the search is done, the same as getPath.
+     */
+    public int[][] getPartialPath() {
+        return getPath();
+    }
     
     /**
      * @return directly get path length without computing path.
@@ -112,7 +372,7 @@ public abstract class PathFindingAlgorithm {
     
     protected final void maybeSaveSearchSnapshot() {
         if (recordingMode) {
-            if (usingStaticMemory && ticketNumber != Memory.currentTicket())
+            if (usingStaticMemory && ticketNumber != memory.currentTicket())
                 throw new UnsupportedOperationException("Ticket does not match!");
             
             saveSearchSnapshot();
@@ -147,21 +407,24 @@ public abstract class PathFindingAlgorithm {
     }
     
     private int getParent(int index) {
-        if (usingStaticMemory) return Memory.parent(index);
+        if (usingStaticMemory) return memory.parent(index);
         else return parent[index];
     }
     
     private void setParent(int index, int value) {
-        if (usingStaticMemory) Memory.setParent(index, value);
+        if (usingStaticMemory) memory.setParent(index, value);
         else parent[index] = value;
     }
     
     protected int getSize() {
-        if (usingStaticMemory) return Memory.size();
+        if (usingStaticMemory) return memory.size();
         else return parent.length;
     }
     
     protected List<SnapshotItem> computeSearchSnapshot() {
+        if (usingStaticMemory && memory == null) {
+            throw new IllegalStateException("The search memory has been released");
+        }
         List<SnapshotItem> list = new ArrayList<>();
         int current = goalParentIndex();
         Set<Integer> finalPathSet = null;
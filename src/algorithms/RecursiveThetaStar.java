@@ -8,6 +8,12 @@ public class RecursiveThetaStar extends BasicThetaStar {
         super(graph, sx, sy, ex, ey);
     }
 
+    public static RecursiveThetaStar cachedLineOfSight(GridGraph graph, int sx, int sy, int ex, int ey) {
+        RecursiveThetaStar algo = new RecursiveThetaStar(graph, sx, sy, ex, ey);
+        algo.cachesLineOfSight = true;
+        return algo;
+    }
+
     @Override
     protected boolean relax(int u, int v, float weightUV) {
         // return true iff relaxation is done.
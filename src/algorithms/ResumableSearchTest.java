@@ -0,0 +1,238 @@
+package algorithms;
+
+import static org.junit.Assert.*;
+import grid.GridGraph;
+
+import java.util.Random;
+
+import main.AlgoFunction;
+import main.graphgeneration.DefaultGenerator;
+import main.utility.Utility;
+
+import org.junit.Test;
+
+import algorithms.PathFindingAlgorithm.SearchStatus;
+import algorithms.datatypes.SearchMemory;
+import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithm;
+import algorithms.sparsevgs.SparseVisibilityGraphAlgorithm;
+import algorithms.sparsevgs.VisibilityGraphAlgorithmOptimised;
+import algorithms.strictthetastar.StrictThetaStar;
+
+public class ResumableSearchTest {
+
+    private static final AlgoFunction[] algorithms = {
+        AStarStaticMemory::new,
+        JumpPointSearch::new,
+        BasicThetaStar::new,
+        BasicThetaStar::cachedLineOfSight,
+        LazyThetaStar::new,
+        StrictThetaStar::new,
+        VisibilityGraphAlgorithmOptimised::graphReuse,
+        SparseVisibilityGraphAlgorithm::graphReuse,
+        EdgeNLevelSparseVisibilityGraphAlgorithm::graphReuse,
+    };
+
+    private static final GridGraph graph = DefaultGenerator.generateSeededGraphOnly(8123, 60, 50, 7);
+    private static final int[] longQuery = longQuery();
+
+    @Test
+    public void steppingGivesTheSamePathAsComputePath() {
+        Random random = new Random(1);
+        for (AlgoFunction algo : algorithms) {
+            for (int i=0; i<20; ++i) {
+                int[] query = randomQuery(random);
+                PathFindingAlgorithm stepped = newSearch(algo, query);
+                int nSteps = 0;
+                while (stepped.step(10) == SearchStatus.IN_PROGRESS) ++nSteps;
+                assertTrue(nSteps < 100000);
+                assertEquals(SearchStatus.DONE, stepped.step(10));
+                assertEquals(computePathLength(algo, query), pathLength(stepped.getPath()), 0.0001);
+                assertArrayEquals(stepped.getPath(), stepped.getPartialPath());
+            }
+        }
+    }
+
+    @Test
+    public void interleavedSearchesDoNotShareState() {
+        Random random = new Random(2);
+        for (AlgoFunction algo : algorithms) {
+            for (int i=0; i<20; ++i) {
+                int[] query1 = randomQuery(random);
+                int[] query2 = randomQuery(random);
+                PathFindingAlgorithm search1 = newSearch(algo, query1);
+                PathFindingAlgorithm search2 = newSearch(algo, query2);
+                SearchStatus status1 = SearchStatus.IN_PROGRESS;
+                SearchStatus status2 = SearchStatus.IN_PROGRESS;
+                while (status1 == SearchStatus.IN_PROGRESS || status2 == SearchStatus.IN_PROGRESS) {
+                    status1 = search1.step(10);
+                    search2.getPartialPath();
+                    status2 = search2.step(10);
+                    search1.getPartialPath();
+                }
+                assertEquals(computePathLength(algo, query1), pathLength(search1.getPath()), 0.0001);
+                assertEquals(computePathLength(algo, query2), pathLength(search2.getPath()), 0.0001);
+            }
+        }
+    }
+
+    @Test
+    public void stepUntilStopsAtTheDeadline() {
+        int[] query = longQuery;
+        PathFindingAlgorithm search = newSearch(AStarStaticMemory::dijkstra, query);
+        assertEquals(SearchStatus.IN_PROGRESS, search.stepUntil(System.nanoTime() - 1));
+        int expanded = search.expandedNodes();
+        assertTrue(expanded > 0);
+
+        assertEquals(SearchStatus.DONE, search.stepUntil(System.nanoTime() + 60_000_000_000L));
+        assertTrue(search.expandedNodes() > expanded);
+        assertEquals(computePathLength(AStarStaticMemory::dijkstra, query), pathLength(search.getPath()), 0.0001);
+    }
+
+    @Test
+    public void partialPathLeadsFromTheStart() {
+        int[] query = longQuery;
+        for (AlgoFunction algo : algorithms) {
+            PathFindingAlgorithm search = newSearch(algo, query);
+            assertEquals(0, search.getPartialPath().length);
+            if (search.step(5) == SearchStatus.DONE) continue;
+            int[][] partialPath = search.getPartialPath();
+            assertTrue(partialPath.length > 0);
+            assertArrayEquals(new int[]{query[0], query[1]}, partialPath[0]);
+        }
+    }
+
+    @Test
+    public void cancelledSearchKeepsItsPartialPath() {
+        int[] query = longQuery;
+        for (AlgoFunction algo : algorithms) {
+            PathFindingAlgorithm search = newSearch(algo, query);
+            if (search.step(5) == SearchStatus.DONE) continue;
+            int[][] partialPath = search.getPartialPath();
+            search.cancel();
+            assertTrue(search.isCancelled());
+            assertEquals(SearchStatus.CANCELLED, search.step(5));
+            assertEquals(SearchStatus.CANCELLED, search.stepUntil(Long.MAX_VALUE));
+
+            // Another search may now use the memory the cancelled one gave back.
+            PathFindingAlgorithm other = newSearch(algo, randomQuery(new Random(3)));
+            while (other.step(100) == SearchStatus.IN_PROGRESS);
+            assertArrayEquals(partialPath, search.getPartialPath());
+        }
+
+        PathFindingAlgorithm notStarted = newSearch(AStarStaticMemory::new, query);
+        notStarted.cancel();
+        assertEquals(SearchStatus.CANCELLED, notStarted.step(5));
+        assertEquals(0, notStarted.getPartialPath().length);
+    }
+
+    @Test
+    public void cancelledComputePathKeepsItsPartialPath() {
+        int[] query = longQuery;
+        // Cancels itself after 20 expansions, as another thread would.
+        AStarStaticMemory search = new AStarStaticMemory(graph, query[0], query[1], query[2], query[3]) {
+            @Override
+            protected float distanceToGoal(int node) {
+                if (expandedNodes() == 20) cancel();
+                return super.distanceToGoal(node);
+            }
+        };
+        search.computePath();
+        assertEquals(20, search.expandedNodes());
+        assertEquals(SearchStatus.CANCELLED, search.step(5));
+
+        PathFindingAlgorithm stepped = newSearch(AStarStaticMemory::new, query);
+        assertEquals(SearchStatus.IN_PROGRESS, stepped.step(20));
+        assertTrue(search.getPartialPath().length > 1);
+        assertArrayEquals(stepped.getPartialPath(), search.getPartialPath());
+    }
+
+    @Test
+    public void givenMemoryReusedByAnotherSearchIsDetected() {
+        SearchMemory memory = new SearchMemory();
+        PathFindingAlgorithm search1 = newSearch(AStarStaticMemory::new, longQuery);
+        PathFindingAlgorithm search2 = newSearch(AStarStaticMemory::new, longQuery);
+        search1.useMemory(memory);
+        search2.useMemory(memory);
+        assertEquals(SearchStatus.IN_PROGRESS, search1.step(5));
+        assertEquals(SearchStatus.IN_PROGRESS, search2.step(5));
+        try {
+            search1.step(5);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void sparseSearchOverItsBudgetRestartsDense() {
+        int minGridVertices = AStarStaticMemory.SPARSE_MIN_GRID_VERTICES;
+        int maxAreaFraction = AStarStaticMemory.SPARSE_MAX_AREA_FRACTION;
+        AStarStaticMemory.SPARSE_MIN_GRID_VERTICES = 0;
+        AStarStaticMemory.SPARSE_MAX_AREA_FRACTION = 1;
+        try {
+            // The goal (150, 150) is walled off, so a search for it expands the whole grid.
+            GridGraph walled = new GridGraph(300, 300);
+            walled.setBlocked(149, 149, true);
+            walled.setBlocked(149, 150, true);
+            walled.setBlocked(150, 149, true);
+            walled.setBlocked(150, 150, true);
+
+            SearchMemory memory = new SearchMemory();
+            PathFindingAlgorithm reachable = new AStarStaticMemory(walled, 140, 140, 145, 160);
+            reachable.useMemory(memory);
+            reachable.computePath();
+            assertTrue(memory.isSparse());
+            assertEquals(15 + 5*Math.sqrt(2), pathLength(walled, reachable.getPath()), 0.0001);
+
+            memory = new SearchMemory();
+            PathFindingAlgorithm unreachable = new AStarStaticMemory(walled, 140, 140, 150, 150);
+            unreachable.useMemory(memory);
+            unreachable.computePath();
+            assertFalse(memory.isSparse());
+            assertEquals(0, pathLength(walled, unreachable.getPath()), 0);
+
+            memory = new SearchMemory();
+            PathFindingAlgorithm stepped = new AStarStaticMemory(walled, 140, 140, 150, 150);
+            stepped.useMemory(memory);
+            while (stepped.step(1000) == SearchStatus.IN_PROGRESS);
+            assertFalse(memory.isSparse());
+            assertEquals(0, pathLength(walled, stepped.getPath()), 0);
+        } finally {
+            AStarStaticMemory.SPARSE_MIN_GRID_VERTICES = minGridVertices;
+            AStarStaticMemory.SPARSE_MAX_AREA_FRACTION = maxAreaFraction;
+        }
+    }
+
+    private static PathFindingAlgorithm newSearch(AlgoFunction algo, int[] query) {
+        return algo.getAlgo(graph, query[0], query[1], query[2], query[3]);
+    }
+
+    private static double computePathLength(AlgoFunction algo, int[] query) {
+        PathFindingAlgorithm search = newSearch(algo, query);
+        search.computePath();
+        return pathLength(search.getPath());
+    }
+
+    private static double pathLength(int[][] path) {
+        return pathLength(graph, path);
+    }
+
+    private static double pathLength(GridGraph graph, int[][] path) {
+        return Utility.computePathLength(graph, path);
+    }
+
+    /**
+     * @return a query with a path of length at least 50, which takes more than a few steps.
+     */
+    private static int[] longQuery() {
+        Random random = new Random(4);
+        while (true) {
+            int[] query = randomQuery(random);
+            if (computePathLength(AStarStaticMemory::new, query) >= 50) return query;
+        }
+    }
+
+    private static int[] randomQuery(Random random) {
+        return new int[]{random.nextInt(graph.sizeX+1), random.nextInt(graph.sizeY+1),
+                random.nextInt(graph.sizeX+1), random.nextInt(graph.sizeY+1)};
+    }
+}
@@ -3,10 +3,13 @@ package algorithms.anya16;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import java.awt.geom.Point2D;
 
+import grid.GridChangeJournal;
 import grid.GridGraph;
+import algorithms.datatypes.PreprocessedGraphCache;
 import algorithms.datatypes.SnapshotItem;
 import algorithms.PathFindingAlgorithm;
 
@@ -15,28 +18,78 @@ public class Anya16 extends PathFindingAlgorithm {
     private static final int RES = 10000;
     public ArrayList<SnapshotItem> currSnapshot = new ArrayList<>();
     
-    private static AnyaSearch anya = null;
-    private static GridGraph storedGraph = null;
-
-    private Path<AnyaNode> pathStartNode = null;
+    /**
+     * The BitpackedGrid of one GridGraph, and the idle searches over it. Cached per GridGraph in
+     * PreprocessedGraphCache.shared(). The grid is shared by all searches on the GridGraph, and never
+     * written once built: a changed GridGraph gets a new entry over an updated copy, so queries in flight
+     * keep searching the grid they started on.
+     */
+    private static final class GridSearches {
+        private final BitpackedGrid grid;
+        private final long estimatedBytes;
+        private final ConcurrentLinkedQueue<AnyaSearch> idle = new ConcurrentLinkedQueue<>();
+
+        private GridSearches(GridGraph graph) throws Exception {
+            grid = new BitpackedGrid(graph);
+            // Four bit arrays of (sizeY+4) rows of ((sizeX>>5)+1) ints each.
+            estimatedBytes = (long)(graph.sizeY+4) * ((graph.sizeX>>5)+1) * 16;
+        }
 
-    private static void initialise(GridGraph graph) {
-        if (graph == storedGraph) return;
-        try {
-            BitpackedGrid grid = new BitpackedGrid(graph);
-            Anya16.anya = new AnyaSearch(new AnyaExpansionPolicy(grid));
-            Anya16.storedGraph = graph;
-            
-        } catch (Exception e) {
-            e.printStackTrace();
+        private GridSearches(GridSearches previous) {
+            grid = new BitpackedGrid(previous.grid);
+            estimatedBytes = previous.estimatedBytes;
         }
+    }
 
-        anya.isRecording = false;
+    private final GridSearches searches;
+    private final AnyaSearch anya;
+    private double pathCost;
+    private boolean released; // anya is back in the pool, and may be in use by another Anya16
+    private Path<AnyaNode> pathStartNode = null;
+
+    private static GridSearches searchesFor(GridGraph graph) {
+        return PreprocessedGraphCache.shared().get(GridSearches.class, graph, 0, (searches, storedVersion) -> {
+            if (searches != null && storedVersion == graph.version()) return searches;
+
+            GridChangeJournal journal = graph.changeJournal();
+            if (searches != null && journal.covers(storedVersion)) {
+                // Copy over the changed cells. The grid updates the flags of the surrounding points itself.
+                // Searches still running on the old grid may be reading it, so the changes go into a copy.
+                GridSearches updated = new GridSearches(searches);
+                BitpackedGrid grid = updated.grid;
+                journal.forEachSince(storedVersion, (minX, minY, maxX, maxY) -> {
+                    for (int y=minY; y<=maxY; ++y) {
+                        for (int x=minX; x<=maxX; ++x) {
+                            grid.set_cell_is_traversable(x, y, !graph.isBlocked(x, y));
+                        }
+                    }
+                });
+                return updated;
+            }
+            try {
+                return new GridSearches(graph);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, searches -> searches.estimatedBytes);
     }
 
+    /**
+     * Takes an idle search over the grid, or creates one. It is returned to the pool once computePath is done,
+     * so construct an Anya16 only to run it.
+     */
     public Anya16(GridGraph graph, int sx, int sy, int ex, int ey) {
         super(graph, graph.sizeX, graph.sizeY, sx, sy, ex, ey);
-        initialise(graph);
+        searches = searchesFor(graph);
+        AnyaSearch search = searches.idle.poll();
+        if (search == null) {
+            try {
+                search = new AnyaSearch(new AnyaExpansionPolicy(searches.grid));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        anya = search;
 
         anya.snapshotExpand = (a) -> snapshotExpand(a);
         anya.snapshotInsert = (a) -> snapshotInsert(a);
@@ -58,7 +111,14 @@ public class Anya16 extends PathFindingAlgorithm {
      */
     public void computePath() {
         pathStartNode = anya.search(anya.mb_start_, anya.mb_target_);
+        pathCost = anya.mb_cost_;
         //pathLength = anya.mb_cost_;
+        
+        anya.snapshotExpand = null;
+        anya.snapshotInsert = null;
+        anya.isRecording = false;
+        released = true;
+        searches.idle.offer(anya);
     }
 
     /**
@@ -90,19 +150,19 @@ public class Anya16 extends PathFindingAlgorithm {
      * Has to run fast, unlike getPath.
      */
     public float getPathLength() {
-        return (float)anya.mb_cost_;
+        return (float)pathCost;
     }
 
     @Override
     public void startRecording() {
         super.startRecording();
-        anya.isRecording = true;
+        if (!released) anya.isRecording = true;
     }
     
     @Override
     public void stopRecording() {
         super.stopRecording();
-        anya.isRecording = false;
+        if (!released) anya.isRecording = false;
     }
     
     
@@ -142,8 +202,7 @@ public class Anya16 extends PathFindingAlgorithm {
     }
 
     public static void clearMemory() {
-        anya = null;
-        storedGraph = null;
+        PreprocessedGraphCache.shared().removeAll(GridSearches.class);
         System.gc();
     }
 }
\ No newline at end of file
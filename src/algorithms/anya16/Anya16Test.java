@@ -0,0 +1,83 @@
+package algorithms.anya16;
+
+import static org.junit.Assert.*;
+import grid.GridGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import main.graphgeneration.DefaultGenerator;
+import main.utility.Utility;
+
+import org.junit.Test;
+
+import algorithms.datatypes.PreprocessedGraphCache;
+
+public class Anya16Test {
+
+    @Test
+    public void concurrentQueriesOnTwoMapsFindTheSamePathsAsOneThread() throws Exception {
+        GridGraph[] graphs = {
+            DefaultGenerator.generateSeededGraphOnly(41, 60, 45, 10),
+            DefaultGenerator.generateSeededGraphOnly(42, 80, 30, 15),
+        };
+        Random random = new Random(5);
+        int[][] queries = new int[500][];
+        double[] expected = new double[queries.length];
+        for (int i=0; i<queries.length; ++i) {
+            // Alternate between the maps, so the searches of both are in use at once.
+            GridGraph graph = graphs[i%2];
+            queries[i] = new int[]{random.nextInt(graph.sizeX+1), random.nextInt(graph.sizeY+1),
+                    random.nextInt(graph.sizeX+1), random.nextInt(graph.sizeY+1)};
+            expected[i] = pathLength(graph, queries[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Double>> results = new ArrayList<>();
+            for (int i=0; i<queries.length; ++i) {
+                GridGraph graph = graphs[i%2];
+                int[] query = queries[i];
+                results.add(executor.submit(() -> pathLength(graph, query)));
+            }
+            for (int i=0; i<queries.length; ++i) {
+                assertEquals(expected[i], results.get(i).get(30, TimeUnit.SECONDS), 0.0001);
+            }
+        } finally {
+            executor.shutdownNow();
+            for (GridGraph graph : graphs) {
+                PreprocessedGraphCache.shared().remove(graph);
+            }
+        }
+    }
+
+    @Test
+    public void queryInFlightKeepsTheGridItStartedOn() {
+        GridGraph graph = new GridGraph(40, 30);
+        try {
+            Anya16 before = new Anya16(graph, 0, 15, 40, 15);
+
+            // A wall across the map, seen by the next query, which updates the cached grid.
+            graph.fillBlocked(20, 0, 20, graph.sizeY-1, true);
+            Anya16 after = new Anya16(graph, 0, 15, 40, 15);
+            after.computePath();
+            assertEquals(0, after.getPath().length);
+
+            before.computePath();
+            assertEquals(40, Utility.computePathLength(graph, before.getPath()), 0.0001);
+        } finally {
+            PreprocessedGraphCache.shared().remove(graph);
+        }
+    }
+
+    private static double pathLength(GridGraph graph, int[] query) {
+        Anya16 algo = new Anya16(graph, query[0], query[1], query[2], query[3]);
+        algo.computePath();
+        return Utility.computePathLength(graph, algo.getPath());
+    }
+}
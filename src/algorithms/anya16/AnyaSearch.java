@@ -1,10 +1,10 @@
 package algorithms.anya16;
 
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.function.Consumer;
 
-import algorithms.jgrapht.FibonacciHeap;
-import algorithms.jgrapht.FibonacciHeapNode;
+import algorithms.priorityqueue.IndirectFibonacciHeap;
 
 import java.awt.geom.Point2D;
 
@@ -16,7 +16,7 @@ import java.awt.geom.Point2D;
 
 public class AnyaSearch implements MBRunnable {
 
-	private static int search_id_counter = 0;
+	private int search_id_counter = 0;
 	private AnyaExpansionPolicy expander;
 	private Heuristic<AnyaNode> heuristic;
 //	private Object[] pool;
@@ -31,7 +31,10 @@ public class AnyaSearch implements MBRunnable {
 	public int insertions;
 	public int generated;
 	public int heap_ops;
-	FibonacciHeap<AnyaNode> open;
+	IndirectFibonacciHeap open;
+	// the nodes inserted into open this search, by heap index
+	private SearchNode[] open_nodes = new SearchNode[1024];
+	private int n_open_nodes;
 	
 	// these can be set apriori; only used in conjunction with the
 	// run method.
@@ -44,8 +47,14 @@ public class AnyaSearch implements MBRunnable {
 		
 	// This class holds various bits of data needed to 
 	// drive the search
-    class SearchNode extends FibonacciHeapNode<AnyaNode>
+    class SearchNode
     {
+    	private final AnyaNode data;
+
+    	// f-value, and g-value to break ties, as inserted into open
+    	private double key;
+    	private double secondaryKey;
+
     	// parent node
     	private SearchNode parent;
 
@@ -57,7 +66,7 @@ public class AnyaSearch implements MBRunnable {
                 
         SearchNode(AnyaNode vertex) 
         { 
-        	super(vertex);
+        	data = vertex;
         	search_id = -1;
         }
         
@@ -66,7 +75,23 @@ public class AnyaSearch implements MBRunnable {
         	parent = null;
         	search_id = search_id_counter;
         	closed = false;
-        	super.reset();
+        	key = 0;
+        	secondaryKey = 0;
+        }
+
+        public final AnyaNode getData()
+        {
+        	return data;
+        }
+
+        public final double getKey()
+        {
+        	return key;
+        }
+
+        public final double getSecondaryKey()
+        {
+        	return secondaryKey;
         }
                 
         public String toString()
@@ -80,7 +105,7 @@ public class AnyaSearch implements MBRunnable {
 //		this.pool = new Object[search_space_size];
 //		this.roots = new double[search_space_size];
 		this.roots_ = new Hashtable<Integer, SearchNode>(65535);
-		this.open = new FibonacciHeap<AnyaNode>();
+		this.open = new IndirectFibonacciHeap();
 		this.heuristic = expander.heuristic();
 		this.expander = expander;
 	}
@@ -92,7 +117,9 @@ public class AnyaSearch implements MBRunnable {
 		insertions = 0;
 		generated = 0;
 		heap_ops = 0;
-		open.clear();
+		// heap indices are handed out in order, so only the ones used take memory
+		open.initialise(Integer.MAX_VALUE, true);
+		n_open_nodes = 0;
 		roots_.clear();
 	}
 	
@@ -145,11 +172,11 @@ public class AnyaSearch implements MBRunnable {
 
 		SearchNode startNode = generate(start);
 		startNode.reset();
-		open.insert(startNode, heuristic.getValue(start, target), 0);
+		insert(startNode, heuristic.getValue(start, target), 0);
 		
 		while(!open.isEmpty())
 		{
-			SearchNode current = (SearchNode)open.removeMin();
+			SearchNode current = open_nodes[open.popMinIndex()];
 			//if(verbose) { System.out.println("expanding (f="+current.getKey()+") "+current.toString()); }
 			if (isRecording) snapshotExpand.accept(current.getData());
 
@@ -212,7 +239,7 @@ public class AnyaSearch implements MBRunnable {
 					neighbour.parent = current;
 
 			
-					open.insert(neighbour, 
+					insert(neighbour, 
 							new_g_value +
 							heuristic.getValue(neighbour.getData(), target),
 							new_g_value);
@@ -243,6 +270,19 @@ public class AnyaSearch implements MBRunnable {
 
 	}
 	
+	private void insert(SearchNode node, double key, double secondaryKey)
+	{
+		node.key = key;
+		node.secondaryKey = secondaryKey;
+		if(n_open_nodes == open_nodes.length)
+		{
+			open_nodes = Arrays.copyOf(open_nodes, 2*n_open_nodes);
+		}
+		open_nodes[n_open_nodes] = node;
+		open.decreaseKey(n_open_nodes, key, secondaryKey);
+		n_open_nodes++;
+	}
+	
 	private SearchNode 
 	generate(AnyaNode v)
 	{
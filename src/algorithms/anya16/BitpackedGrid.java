@@ -1,5 +1,6 @@
 package algorithms.anya16;
 
+import grid.CornerIndex;
 import grid.GridGraph;
 
 import java.io.BufferedReader;
@@ -70,6 +71,24 @@ public class BitpackedGrid
         this.load(gridGraph);
     }
 	
+	// @param other: the grid to copy. Later changes to either 
+	//				 grid are not seen by the other.
+	public BitpackedGrid(BitpackedGrid other)
+	{
+		this.map_height_original_ = other.map_height_original_;
+		this.map_width_original_ = other.map_width_original_;
+		this.map_width_in_words_ = other.map_width_in_words_;
+		this.map_width_ = other.map_width_;
+		this.map_height_ = other.map_height_;
+		this.map_size_ = other.map_size_;
+		this.map_cells_ = other.map_cells_.clone();
+		this.visible_ = other.visible_.clone();
+		this.corner_ = other.corner_.clone();
+		this.double_corner_ = other.double_corner_.clone();
+		this.smallest_step = other.smallest_step;
+		this.smallest_step_div2 = other.smallest_step_div2;
+	}
+	
 	// @param width: the horizontal size of the lattice, as 
 	// 				 measured in square cells
 	// @param height: the vertical size of the lattice, as 
@@ -685,13 +704,38 @@ public class BitpackedGrid
         int width = gridGraph.sizeX;
 
         this.init(width, height);
+        // Same result as calling set_cell_is_traversable on every cell, without
+        // re-deriving the point flags four times per cell. A point is visible iff
+        // one of its four cells is traversable, and the corners are exactly the
+        // outer corners of the GridGraph.
         for (int y = 0; y < height; y++)
         {
             for (int x = 0 ; x < width; x++)
             {
-                this.set_cell_is_traversable(x, y, !gridGraph.isBlocked(x, y));
+                if (gridGraph.isBlocked(x, y)) continue;
+                set_bit_value(x, y, true, map_cells_);
+                set_point_is_visible(x, y, true);
+                set_point_is_visible(x+1, y, true);
+                set_point_is_visible(x, y+1, true);
+                set_point_is_visible(x+1, y+1, true);
             }
         }
+
+        CornerIndex corners = gridGraph.cornerIndex();
+        for (int i = 0; i < corners.nCorners(); i++)
+        {
+            int px = corners.getX(i);
+            int py = corners.getY(i);
+            boolean cellNW = get_cell_is_traversable(px-1, py-1);
+            boolean cellNE = get_cell_is_traversable(px, py-1);
+            boolean cellSW = get_cell_is_traversable(px-1, py);
+            boolean cellSE = get_cell_is_traversable(px, py);
+            
+            set_point_is_corner(px, py, true);
+            set_point_is_double_corner(px, py,
+                    ((!cellNW & !cellSE) & cellSW & cellNE) ^
+                    ((!cellSW & !cellNE) & cellNW & cellSE));
+        }
     }
 
 
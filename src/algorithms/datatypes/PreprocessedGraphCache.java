@@ -0,0 +1,264 @@
+package algorithms.datatypes;
+
+import grid.GridGraph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the preprocessed structures (visibility graphs, bitpacked grids...) of several grids at once, so that
+ * queries alternating between maps do not rebuild them on every switch.
+ * <br>
+ * An entry is identified by the kind of structure, the grid (by identity) and one build parameter, such as the
+ * level limit of an ENLSVG. It remembers the grid version it was built for. When the grid has changed since,
+ * the loader is given the old structure and its version, to repair it or build a new one.
+ * <br>
+ * Each entry has an estimated size in bytes. When the total exceeds the budget, the least recently used entries
+ * are evicted. The entry being returned is never evicted, even if it alone exceeds the budget.
+ * <br>
+ * Thread-safe. Each entry has its own lock, which a loader runs under, so a build only blocks the lookups of the
+ * same entry, which then find it built. Only the LRU order, the budget and the statistics are kept under the
+ * cache's lock, which is never held while loading.
+ */
+public final class PreprocessedGraphCache {
+
+    /**
+     * Builds the structure for the grid at its current version, or brings the stored one up to date.
+     */
+    public interface Loader<T> {
+        /**
+         * @param stored the cached structure, or null if there is none.
+         * @param storedVersion the grid version stored is up to date with. Meaningless if stored is null.
+         * @return the structure to cache and return. May be stored itself.
+         */
+        T load(T stored, long storedVersion);
+    }
+
+    /**
+     * Estimates the memory used by a structure. Structures which are built lazily, after being returned, can
+     * weigh 0 until then. They are weighed again on the next lookup.
+     */
+    public interface Weigher<T> {
+        long estimatedBytes(T value);
+    }
+
+    public static final long DEFAULT_BUDGET_BYTES = 256L << 20;
+
+    private static final PreprocessedGraphCache shared = new PreprocessedGraphCache(DEFAULT_BUDGET_BYTES);
+
+    private static final class Key {
+        final Class<?> kind;
+        final GridGraph graph;
+        final int parameter;
+
+        Key(Class<?> kind, GridGraph graph, int parameter) {
+            this.kind = kind;
+            this.graph = graph;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key)o;
+            return kind == other.kind && graph == other.graph && parameter == other.parameter;
+        }
+
+        @Override
+        public int hashCode() {
+            return (kind.hashCode()*31 + System.identityHashCode(graph))*31 + parameter;
+        }
+    }
+
+    // value and version are guarded by the entry's lock. bytes is written under the cache's lock.
+    private static final class Entry {
+        Object value; // null until first loaded
+        long version;
+        volatile long bytes;
+        volatile boolean isRemoved; // set once evicted or removed. A lookup which finds it looks up again.
+    }
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final LinkedHashMap<Key, Entry> lruOrder = new LinkedHashMap<>(16, 0.75f, true); // loaded entries, in access order
+    private long budgetBytes;
+    private long totalBytes;
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+
+    public PreprocessedGraphCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return the cache used by the algorithms' stored graphs.
+     */
+    public static final PreprocessedGraphCache shared() {
+        return shared;
+    }
+
+    /**
+     * @param kind the class of the structure. Entries of different kinds never match.
+     * @param parameter a build parameter, or 0 if there is none.
+     * @return the structure returned by the loader, or the cached one if the loader returned it again.
+     */
+    @SuppressWarnings("unchecked")
+    public final <T> T get(Class<T> kind, GridGraph graph, int parameter, Loader<T> loader, Weigher<? super T> weigher) {
+        Key key = new Key(kind, graph, parameter);
+        while (true) {
+            Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+            T value;
+            boolean isMiss, isStale;
+            long bytes = -1; // -1: not weighed again
+            synchronized (entry) {
+                if (entry.isRemoved) continue;
+                isMiss = entry.value == null;
+                isStale = !isMiss && entry.version != graph.version();
+                boolean isLoaded = false;
+                try {
+                    value = loader.load(isMiss ? null : (T)entry.value, entry.version);
+                    isLoaded = true;
+                } finally {
+                    // A failed first load must not leave an entry, which would keep the grid alive.
+                    if (!isLoaded && isMiss) {
+                        entry.isRemoved = true;
+                        entries.remove(key, entry);
+                    }
+                }
+                // Not reweighed otherwise, as graphs repurposed for a new query share the arrays of the old one.
+                if (isMiss || isStale || entry.bytes == 0) bytes = weigher.estimatedBytes(value);
+                entry.value = value;
+                entry.version = graph.version();
+            }
+            record(key, entry, isMiss, isStale, bytes);
+            return value;
+        }
+    }
+
+    private final synchronized void record(Key key, Entry entry, boolean isMiss, boolean isStale, long bytes) {
+        if (isMiss) misses++;
+        else if (isStale) invalidations++;
+        else hits++;
+        // An entry removed while it was being loaded is returned, but no longer cached.
+        if (entry.isRemoved) return;
+        if (bytes != -1) {
+            totalBytes += bytes - entry.bytes;
+            entry.bytes = bytes;
+        }
+        lruOrder.put(key, entry);
+        evictToBudget(key);
+    }
+
+    private final void evictToBudget(Key keep) {
+        Iterator<Map.Entry<Key, Entry>> iterator = lruOrder.entrySet().iterator();
+        while (totalBytes > budgetBytes && iterator.hasNext()) {
+            Map.Entry<Key, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) continue;
+            iterator.remove();
+            discard(eldest.getKey(), eldest.getValue());
+            evictions++;
+        }
+    }
+
+    // Must hold the cache's lock, and have removed the entry from lruOrder.
+    private final void discard(Key key, Entry entry) {
+        entry.isRemoved = true;
+        entries.remove(key, entry);
+        totalBytes -= entry.bytes;
+    }
+
+    /**
+     * Discards the structures of every kind built for the grid, e.g. when a map is unloaded.
+     */
+    public final synchronized void remove(GridGraph graph) {
+        lruOrder.entrySet().removeIf(e -> {
+            if (e.getKey().graph != graph) return false;
+            discard(e.getKey(), e.getValue());
+            return true;
+        });
+    }
+
+    /**
+     * Discards the structures of one kind, for all grids.
+     */
+    public final synchronized void removeAll(Class<?> kind) {
+        lruOrder.entrySet().removeIf(e -> {
+            if (e.getKey().kind != kind) return false;
+            discard(e.getKey(), e.getValue());
+            return true;
+        });
+    }
+
+    public final synchronized void clear() {
+        lruOrder.entrySet().removeIf(e -> {
+            discard(e.getKey(), e.getValue());
+            return true;
+        });
+    }
+
+    /**
+     * Evicts least recently used entries until the total is within the new budget.
+     */
+    public final synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evictToBudget(null);
+    }
+
+    public final synchronized long budgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * @return the sum of the estimated sizes of the cached structures.
+     */
+    public final synchronized long memoryBytes() {
+        return totalBytes;
+    }
+
+    public final synchronized int size() {
+        return lruOrder.size();
+    }
+
+    /**
+     * A lookup which found the structure up to date with the grid.
+     */
+    public final synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * A lookup which found no structure, and built one.
+     */
+    public final synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * A lookup which found the structure, but the grid had changed since it was built.
+     */
+    public final synchronized long invalidations() {
+        return invalidations;
+    }
+
+    public final synchronized long evictions() {
+        return evictions;
+    }
+
+    public final synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        invalidations = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PreprocessedGraphCache[" + lruOrder.size() + " entries, " + (totalBytes >> 10) + "KB of "
+                + (budgetBytes >> 10) + "KB] hits=" + hits + " misses=" + misses
+                + " invalidations=" + invalidations + " evictions=" + evictions;
+    }
+}
@@ -0,0 +1,206 @@
+package algorithms.datatypes;
+
+import static org.junit.Assert.*;
+import grid.GridGraph;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PreprocessedGraphCacheTest {
+
+    // A preprocessed structure of a given size, which records how it was loaded.
+    private static final class Fake {
+        long bytes;
+        int loads = 1;
+        long loadedFromVersion = -1;
+
+        Fake(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static Fake get(PreprocessedGraphCache cache, GridGraph graph, long bytes) {
+        return cache.get(Fake.class, graph, 0, (stored, storedVersion) -> {
+            if (stored == null) return new Fake(bytes);
+            stored.loads++;
+            stored.loadedFromVersion = storedVersion;
+            return stored;
+        }, fake -> fake.bytes);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntriesToStayInBudget() {
+        PreprocessedGraphCache cache = new PreprocessedGraphCache(100);
+        GridGraph graph1 = new GridGraph(4, 4);
+        GridGraph graph2 = new GridGraph(4, 4);
+        GridGraph graph3 = new GridGraph(4, 4);
+
+        Fake fake1 = get(cache, graph1, 40);
+        Fake fake2 = get(cache, graph2, 40);
+        assertSame(fake1, get(cache, graph1, 40));
+        assertEquals(80, cache.memoryBytes());
+
+        get(cache, graph3, 40); // graph2's entry is now the least recently used
+        assertEquals(2, cache.size());
+        assertEquals(80, cache.memoryBytes());
+        assertEquals(1, cache.evictions());
+        assertSame(fake1, get(cache, graph1, 40));
+        assertNotSame(fake2, get(cache, graph2, 40));
+        assertEquals(2, cache.evictions()); // graph3's entry made way for it
+
+        cache.setBudgetBytes(50);
+        assertEquals(1, cache.size());
+        assertEquals(40, cache.memoryBytes());
+        assertEquals(3, cache.evictions());
+    }
+
+    @Test
+    public void returnedEntryIsNeverEvicted() {
+        PreprocessedGraphCache cache = new PreprocessedGraphCache(100);
+        GridGraph small = new GridGraph(4, 4);
+        GridGraph large = new GridGraph(4, 4);
+
+        get(cache, small, 30);
+        Fake fake = get(cache, large, 500);
+        assertEquals(1, cache.size());
+        assertEquals(500, cache.memoryBytes());
+        assertEquals(1, cache.evictions());
+
+        // Over budget on its own, but kept while it is being used.
+        assertSame(fake, get(cache, large, 500));
+        assertEquals(2, fake.loads);
+        assertEquals(1, cache.evictions());
+
+        get(cache, small, 30);
+        assertEquals(1, cache.size());
+        assertEquals(30, cache.memoryBytes());
+        assertEquals(2, cache.evictions());
+    }
+
+    @Test
+    public void entriesWeighingNothingAreWeighedAgain() {
+        PreprocessedGraphCache cache = new PreprocessedGraphCache(100);
+        GridGraph lazy = new GridGraph(4, 4);
+        GridGraph other = new GridGraph(4, 4);
+
+        // Built lazily, after being returned: weighs 0 until the next lookup.
+        Fake fake = get(cache, lazy, 0);
+        assertEquals(0, cache.memoryBytes());
+        fake.bytes = 70;
+        get(cache, other, 20);
+        assertEquals(20, cache.memoryBytes());
+
+        assertSame(fake, get(cache, lazy, 0));
+        assertEquals(90, cache.memoryBytes());
+
+        // Not weighed again once it weighs something, unless the grid changes.
+        fake.bytes = 1000;
+        assertSame(fake, get(cache, lazy, 0));
+        assertEquals(90, cache.memoryBytes());
+        assertEquals(0, cache.evictions());
+
+        lazy.setBlocked(1, 1, true);
+        assertSame(fake, get(cache, lazy, 0));
+        assertEquals(1000, cache.memoryBytes());
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    public void countsHitsMissesAndInvalidations() {
+        PreprocessedGraphCache cache = new PreprocessedGraphCache(1000);
+        GridGraph graph = new GridGraph(4, 4);
+        GridGraph other = new GridGraph(4, 4);
+
+        Fake fake = get(cache, graph, 10);
+        get(cache, other, 10);
+        get(cache, graph, 10);
+        assertEquals(2, cache.misses());
+        assertEquals(1, cache.hits());
+        assertEquals(0, cache.invalidations());
+
+        long builtVersion = graph.version();
+        graph.setBlocked(2, 2, true);
+        assertSame(fake, get(cache, graph, 10));
+        assertEquals(builtVersion, fake.loadedFromVersion);
+        assertEquals(1, cache.invalidations());
+        assertSame(fake, get(cache, graph, 10));
+        assertEquals(2, cache.hits());
+
+        // Other kinds and parameters are separate entries.
+        cache.get(String.class, graph, 0, (stored, storedVersion) -> "", s -> 5);
+        cache.get(Fake.class, graph, 1, (stored, storedVersion) -> new Fake(5), f -> f.bytes);
+        assertEquals(4, cache.misses());
+        assertEquals(4, cache.size());
+        assertEquals(30, cache.memoryBytes());
+
+        cache.removeAll(String.class);
+        assertEquals(25, cache.memoryBytes());
+        cache.remove(graph);
+        assertEquals(1, cache.size());
+        assertEquals(10, cache.memoryBytes());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.hits() + cache.misses() + cache.invalidations() + cache.evictions());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.memoryBytes());
+    }
+
+    @Test
+    public void buildDoesNotBlockLookupsOfOtherEntries() throws Exception {
+        PreprocessedGraphCache cache = new PreprocessedGraphCache(1000);
+        GridGraph slowGraph = new GridGraph(4, 4);
+        GridGraph warmGraph = new GridGraph(4, 4);
+        Fake warm = get(cache, warmGraph, 10);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger builds = new AtomicInteger();
+        PreprocessedGraphCache.Loader<Fake> slowLoader = (stored, storedVersion) -> {
+            if (stored != null) return stored;
+            builds.incrementAndGet();
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return new Fake(10);
+        };
+        CompletableFuture<Fake> slow1 = CompletableFuture.supplyAsync(() -> cache.get(Fake.class, slowGraph, 0, slowLoader, f -> f.bytes));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Fake> slow2 = CompletableFuture.supplyAsync(() -> cache.get(Fake.class, slowGraph, 0, slowLoader, f -> f.bytes));
+
+        // While the build runs, other entries are found and built, and the statistics can be read.
+        assertSame(warm, CompletableFuture.supplyAsync(() -> get(cache, warmGraph, 10)).get(10, TimeUnit.SECONDS));
+        CompletableFuture.supplyAsync(() -> get(cache, new GridGraph(4, 4), 10)).get(10, TimeUnit.SECONDS);
+        assertEquals(1, cache.hits());
+        assertFalse(slow1.isDone());
+
+        // The second lookup of the entry being built waits for it, and finds it built.
+        finish.countDown();
+        assertSame(slow1.get(10, TimeUnit.SECONDS), slow2.get(10, TimeUnit.SECONDS));
+        assertEquals(1, builds.get());
+        assertEquals(3, cache.size());
+        assertEquals(30, cache.memoryBytes());
+    }
+
+    @Test
+    public void failedBuildLeavesNoEntry() {
+        PreprocessedGraphCache cache = new PreprocessedGraphCache(1000);
+        GridGraph graph = new GridGraph(4, 4);
+        try {
+            cache.get(Fake.class, graph, 0, (stored, storedVersion) -> {
+                throw new IllegalStateException();
+            }, f -> f.bytes);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        assertEquals(0, cache.size());
+        assertEquals(1, get(cache, graph, 10).loads);
+    }
+}
@@ -0,0 +1,311 @@
+package algorithms.datatypes;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Distance, parent and visited values for the nodes of one search.
+ * initialise() resets every node to the default values in O(1) by issuing a new ticket.
+ * A node whose ticket is not the current one has the default values.
+ * <br>
+ * The values of a node are kept next to each other, so reading or relaxing a node touches one cache line.
+ * A memory initialised sparse keeps them for the nodes written to only, found through a SparseIndexMap.
+ * <br>
+ * A SearchMemory must only be used by one search at a time. Searches which have not been given one
+ * (see PathFindingAlgorithm.useMemory) use the memory of the calling thread, so searches in different threads
+ * never share memory. Thread pools which hand out memory explicitly can reuse it through acquire and release.
+ */
+public final class SearchMemory {
+    // Each node has one record of consecutive ints in records: its state word, the bits of its distance, and,
+    // unless parents are stored as directions, its parent.
+    // State word: bits 5-31 are the ticket, bits 1-4 the parent direction, and bit 0 is visited.
+    private static final int VISITED_BIT = 1;
+    private static final int DIRECTION_SHIFT = 1;
+    private static final int DIRECTION_MASK = 0xF << DIRECTION_SHIFT;
+    private static final int TICKET_SHIFT = 5;
+    private static final int TICKET_MASK = -1 << TICKET_SHIFT;
+    private static final int MAX_TICKET = -1 >>> TICKET_SHIFT;
+
+    private static final int FULL_STRIDE = 3;
+    private static final int DIRECTION_STRIDE = 2;
+
+    private static final int SPARSE_INITIAL_NODES = 1024;
+
+    private int[] records; // one of the arrays below, depending on the last initialise
+    private int stride;
+    // Records indexed by node, one array per layout, each for the number of nodes it was allocated for.
+    // The layouts are kept apart so that switching between them does not clear O(size) records.
+    private int[] fullRecords;
+    private int fullNodes;
+    private int[] directionRecords;
+    private int directionNodes;
+    // Records indexed by the node's slot in sparseSlots, when sparse.
+    private int[] sparseRecords;
+    private SparseIndexMap sparseSlots;
+    private boolean sparse;
+    // For direction-coded parents: parentOffsets[d] is the offset from a node to its parent in direction d.
+    // Direction 0 is the default parent.
+    private final int[] parentOffsets = new int[10];
+    private int rowWidth;
+
+    private float defaultDistance = 0;
+    private int defaultParent = -1;
+    private boolean defaultVisited = false;
+
+    private int ticketNumber = 0;
+    private int ticketBits = 0;
+
+    private int size = 0;
+
+    private static final ThreadLocal<SearchMemory> threadMemory = ThreadLocal.withInitial(SearchMemory::new);
+    private static final ConcurrentLinkedQueue<SearchMemory> pool = new ConcurrentLinkedQueue<>();
+
+    public SearchMemory() {
+    }
+
+    /**
+     * @return the memory used by searches in the calling thread that have not been given one.
+     */
+    public static final SearchMemory ofCurrentThread() {
+        return threadMemory.get();
+    }
+
+    /**
+     * @return a memory from the pool, or a new one if the pool is empty. Give it back with release.
+     */
+    public static final SearchMemory acquire() {
+        SearchMemory memory = pool.poll();
+        return memory != null ? memory : new SearchMemory();
+    }
+
+    /**
+     * Returns a memory to the pool. It must not be used afterwards.
+     */
+    public static final void release(SearchMemory memory) {
+        pool.offer(memory);
+    }
+
+    public final int initialise(int size, float defaultDistance, int defaultParent, boolean defaultVisited) {
+        return initialise(size, defaultDistance, defaultParent, defaultVisited, false);
+    }
+
+    /**
+     * @param sparse if true, only the nodes which are written to take memory, in a hash table. Slower per access,
+     *        but a search which touches a few nodes out of a large size does not allocate or clear O(size) arrays.
+     */
+    public final int initialise(int size, float defaultDistance, int defaultParent, boolean defaultVisited, boolean sparse) {
+        this.rowWidth = 0;
+        return initialise(size, FULL_STRIDE, defaultDistance, defaultParent, defaultVisited, sparse);
+    }
+
+    /**
+     * Like initialise, for searches on a grid whose nodes are numbered row by row, rowWidth nodes per row,
+     * and where the parent of a node is always one of its 8 neighbours or defaultParent.
+     * The parents are then stored as directions, which takes 8 bytes per node instead of 12.
+     * setParent throws an IllegalArgumentException for any other parent.
+     */
+    public final int initialiseWithNeighbourParents(int size, int rowWidth, float defaultDistance, int defaultParent, boolean defaultVisited, boolean sparse) {
+        if (rowWidth < 3) {
+            // Too narrow for the offsets to tell the directions apart.
+            return initialise(size, defaultDistance, defaultParent, defaultVisited, sparse);
+        }
+        if (this.rowWidth != rowWidth) {
+            this.rowWidth = rowWidth;
+            for (int d=1; d<10; ++d) {
+                parentOffsets[d] = ((d-1)/3 - 1)*rowWidth + (d-1)%3 - 1;
+            }
+        }
+        return initialise(size, DIRECTION_STRIDE, defaultDistance, defaultParent, defaultVisited, sparse);
+    }
+
+    private final int initialise(int size, int stride, float defaultDistance, int defaultParent, boolean defaultVisited, boolean sparse) {
+        if (!sparse && (long)size*stride > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many nodes for one SearchMemory: " + size);
+        }
+        this.defaultDistance = defaultDistance;
+        this.defaultParent = defaultParent;
+        this.defaultVisited = defaultVisited;
+
+        if (ticketNumber == MAX_TICKET) {
+            // The old tickets would come round again. Only the dense records keep them from one search to the next.
+            fullRecords = null;
+            directionRecords = null;
+            ticketNumber = 0;
+        }
+        ticketNumber++;
+        ticketBits = ticketNumber << TICKET_SHIFT;
+
+        if (sparse) {
+            if (sparseSlots == null) {
+                sparseSlots = new SparseIndexMap(SPARSE_INITIAL_NODES);
+                sparseRecords = new int[SPARSE_INITIAL_NODES*FULL_STRIDE];
+            } else {
+                sparseSlots.clear();
+            }
+            records = sparseRecords;
+        } else if (stride == FULL_STRIDE) {
+            if (fullRecords == null || fullNodes != size) {
+                fullRecords = new int[size*stride];
+                fullNodes = size;
+            }
+            records = fullRecords;
+        } else {
+            if (directionRecords == null || directionNodes != size) {
+                directionRecords = new int[size*stride];
+                directionNodes = size;
+            }
+            records = directionRecords;
+        }
+        this.size = size;
+        this.stride = stride;
+        this.sparse = sparse;
+
+        return ticketNumber;
+    }
+
+    public final int currentTicket() {
+        return ticketNumber;
+    }
+
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the memory holds dense records for size nodes in either layout, so that initialising it
+     *         dense in that layout takes O(1).
+     */
+    public final boolean hasDenseRecords(int size) {
+        return (fullRecords != null && fullNodes == size) || (directionRecords != null && directionNodes == size);
+    }
+
+    /**
+     * @return the number of nodes written to since the last initialise, if it was sparse. 0 if it was dense.
+     */
+    public final int sparseNodes() {
+        return sparse ? sparseSlots.size() : 0;
+    }
+
+    /**
+     * @return true if the memory was last initialised sparse.
+     */
+    public final boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * @return the offset of the node's record in records, or -1 if it has none (sparse only).
+     */
+    private final int recordOf(int index) {
+        if (!sparse) return index*stride;
+        int slot = sparseSlots.get(index);
+        return slot == -1 ? -1 : slot*stride;
+    }
+
+    /**
+     * @return the offset of the node's record in records, giving it one if it has none.
+     */
+    private final int writableRecordOf(int index) {
+        if (!sparse) return index*stride;
+        int nSlots = sparseSlots.size();
+        int slot = sparseSlots.getOrAdd(index);
+        int record = slot*stride;
+        if (slot == nSlots) {
+            if (record+stride > records.length) {
+                sparseRecords = records = Arrays.copyOf(records, 2*records.length);
+            }
+            // May hold another node's record, of another layout.
+            records[record] = 0;
+        }
+        return record;
+    }
+
+    public final float distance(int index) {
+        int record = recordOf(index);
+        if (record == -1 || (records[record] & TICKET_MASK) != ticketBits) return defaultDistance;
+        return Float.intBitsToFloat(records[record+1]);
+    }
+
+    public final int parent(int index) {
+        int record = recordOf(index);
+        if (record == -1) return defaultParent;
+        int state = records[record];
+        if ((state & TICKET_MASK) != ticketBits) return defaultParent;
+        if (stride == FULL_STRIDE) return records[record+2];
+        int direction = (state & DIRECTION_MASK) >>> DIRECTION_SHIFT;
+        return direction == 0 ? defaultParent : index + parentOffsets[direction];
+    }
+
+    public final boolean visited(int index) {
+        int record = recordOf(index);
+        if (record == -1) return defaultVisited;
+        int state = records[record];
+        if ((state & TICKET_MASK) != ticketBits) return defaultVisited;
+        return (state & VISITED_BIT) != 0;
+    }
+
+    public final void setDistance(int index, float value) {
+        int record = writableRecordOf(index);
+        if ((records[record] & TICKET_MASK) != ticketBits) resetRecord(record);
+        records[record+1] = Float.floatToRawIntBits(value);
+    }
+
+    public final void setParent(int index, int value) {
+        int record = writableRecordOf(index);
+        if ((records[record] & TICKET_MASK) != ticketBits) resetRecord(record);
+        if (stride == FULL_STRIDE) {
+            records[record+2] = value;
+        } else {
+            records[record] = (records[record] & ~DIRECTION_MASK) | (directionOf(index, value) << DIRECTION_SHIFT);
+        }
+    }
+
+    public final void setVisited(int index, boolean value) {
+        int record = writableRecordOf(index);
+        if ((records[record] & TICKET_MASK) != ticketBits) resetRecord(record);
+        if (value) records[record] |= VISITED_BIT;
+        else records[record] &= ~VISITED_BIT;
+    }
+
+    /**
+     * Sets the record to the default values, for the current ticket.
+     */
+    private final void resetRecord(int record) {
+        records[record] = ticketBits | (defaultVisited ? VISITED_BIT : 0);
+        records[record+1] = Float.floatToRawIntBits(defaultDistance);
+        if (stride == FULL_STRIDE) records[record+2] = defaultParent;
+    }
+
+    private final int directionOf(int index, int parent) {
+        if (parent == defaultParent) return 0;
+        // parent - index = dy*rowWidth + dx, with dx and dy in -1..1.
+        int offset = parent - index + rowWidth + 1;
+        if (offset >= 0) {
+            int dy = offset / rowWidth;
+            int dx = offset - dy*rowWidth;
+            if (dy <= 2 && dx <= 2 && (dx != 1 || dy != 1)) return dy*3 + dx + 1;
+        }
+        throw new IllegalArgumentException("Parent " + parent + " is not a neighbour of " + index);
+    }
+
+    /**
+     * Frees the arrays of this memory. It can still be used, and reallocates them on the next initialise.
+     */
+    public final void free() {
+        records = null;
+        fullRecords = null;
+        directionRecords = null;
+        sparseRecords = null;
+        sparseSlots = null;
+        size = 0;
+    }
+
+    /**
+     * Empties the pool and frees the memory of the calling thread.
+     */
+    public static void clearMemory() {
+        pool.clear();
+        threadMemory.get().free();
+        System.gc();
+    }
+}
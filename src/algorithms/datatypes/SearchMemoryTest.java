@@ -0,0 +1,125 @@
+package algorithms.datatypes;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SearchMemoryTest {
+
+    private static final int ROW_WIDTH = 1000;
+    private static final int SIZE = ROW_WIDTH*1000;
+    private static final int[] neighbourOffsets = {
+        -ROW_WIDTH-1, -ROW_WIDTH, -ROW_WIDTH+1, -1, 1, ROW_WIDTH-1, ROW_WIDTH, ROW_WIDTH+1,
+    };
+
+    @Test
+    public void sparseMemoryKeepsWhatIsWritten() {
+        SearchMemory memory = new SearchMemory();
+        Random random = new Random(1);
+        for (int search=0; search<30; ++search) {
+            // Grows the sparse records well past their initial 1024 nodes, then reuses them for small searches.
+            testSearch(memory, random, search%3 != 2, search%2 == 0, search%4 < 2 ? 5000 : 20);
+        }
+    }
+
+    @Test
+    public void sparseNodesCountsTheNodesWrittenTo() {
+        SearchMemory memory = new SearchMemory();
+        memory.initialise(SIZE, Float.POSITIVE_INFINITY, -1, false, true);
+        assertTrue(memory.isSparse());
+        assertEquals(0, memory.sparseNodes());
+        memory.distance(5);
+        assertEquals(0, memory.sparseNodes());
+        memory.setDistance(5, 1f);
+        memory.setVisited(5, true);
+        memory.setParent(9, 5);
+        assertEquals(2, memory.sparseNodes());
+
+        memory.initialise(SIZE, Float.POSITIVE_INFINITY, -1, false, true);
+        assertEquals(0, memory.sparseNodes());
+        assertEquals(Float.POSITIVE_INFINITY, memory.distance(5), 0);
+        assertFalse(memory.hasDenseRecords(SIZE));
+
+        memory.initialise(SIZE, Float.POSITIVE_INFINITY, -1, false, false);
+        assertEquals(0, memory.sparseNodes());
+        assertTrue(memory.hasDenseRecords(SIZE));
+        assertFalse(memory.hasDenseRecords(SIZE+1));
+    }
+
+    @Test
+    public void switchingDenseLayoutsKeepsTheDefaults() {
+        SearchMemory memory = new SearchMemory();
+        for (int round=0; round<3; ++round) {
+            // Parents which read as state words of the next ticket, were the layouts to share records.
+            int ticket = memory.initialise(SIZE, Float.POSITIVE_INFINITY, -1, false, false);
+            for (int i=0; i<SIZE; i+=7) {
+                memory.setParent(i, (ticket+1) << 5);
+            }
+            memory.initialiseWithNeighbourParents(SIZE, ROW_WIDTH, Float.POSITIVE_INFINITY, -1, false, false);
+            for (int i=0; i<SIZE; ++i) {
+                assertEquals(Float.POSITIVE_INFINITY, memory.distance(i), 0);
+                assertEquals(-1, memory.parent(i));
+                assertFalse(memory.visited(i));
+            }
+            memory.setDistance(ROW_WIDTH+1, 2f);
+            memory.setParent(ROW_WIDTH+1, 0);
+        }
+    }
+
+    /**
+     * Writes random values to the nodes of one search, and checks them against plain arrays.
+     */
+    private static void testSearch(SearchMemory memory, Random random, boolean sparse, boolean neighbourParents, int nNodes) {
+        if (neighbourParents) {
+            memory.initialiseWithNeighbourParents(SIZE, ROW_WIDTH, Float.POSITIVE_INFINITY, -1, false, sparse);
+        } else {
+            memory.initialise(SIZE, Float.POSITIVE_INFINITY, -1, false, sparse);
+        }
+        assertEquals(sparse, memory.isSparse());
+
+        int[] nodes = new int[nNodes];
+        float[] distances = new float[nNodes];
+        int[] parents = new int[nNodes];
+        boolean[] visited = new boolean[nNodes];
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        Arrays.fill(parents, -1);
+        HashSet<Integer> distinct = new HashSet<>();
+        for (int i=0; i<nNodes; ++i) {
+            // Distinct, and away from the edges so that every neighbour offset is a neighbour.
+            do {
+                nodes[i] = (1 + random.nextInt(ROW_WIDTH-2))*ROW_WIDTH + 1 + random.nextInt(ROW_WIDTH-2);
+            } while (!distinct.add(nodes[i]));
+        }
+        for (int write=0; write<3*nNodes; ++write) {
+            int i = random.nextInt(nNodes);
+            int node = nodes[i];
+            switch (random.nextInt(3)) {
+                case 0:
+                    distances[i] = random.nextFloat();
+                    memory.setDistance(node, distances[i]);
+                    break;
+                case 1:
+                    parents[i] = neighbourParents ? node + neighbourOffsets[random.nextInt(8)] : random.nextInt(SIZE);
+                    memory.setParent(node, parents[i]);
+                    break;
+                default:
+                    visited[i] = random.nextBoolean();
+                    memory.setVisited(node, visited[i]);
+                    break;
+            }
+        }
+        for (int i=0; i<nNodes; ++i) {
+            assertEquals(distances[i], memory.distance(nodes[i]), 0);
+            assertEquals(parents[i], memory.parent(nodes[i]));
+            assertEquals(visited[i], memory.visited(nodes[i]));
+        }
+        // Nodes which were not written to have the default values.
+        assertEquals(Float.POSITIVE_INFINITY, memory.distance(0), 0);
+        assertEquals(-1, memory.parent(0));
+        assertFalse(memory.visited(0));
+    }
+}
@@ -0,0 +1,104 @@
+package algorithms.datatypes;
+
+import java.util.Arrays;
+
+/**
+ * Numbers the distinct non-negative ints it is given 0, 1, 2... in order of first appearance, so that values for
+ * a few indices out of a large range can be kept in small arrays indexed by their number (their slot).
+ * <br>
+ * Open addressing with linear probing. clear() takes time proportional to the number of indices numbered,
+ * not to the capacity, so the map can be reused by searches of very different sizes.
+ */
+public final class SparseIndexMap {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] slots;
+    private int[] positions; // positions[slot]: where the index numbered slot is in keys.
+    private int mask;
+    private int size;
+
+    public SparseIndexMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < 2*expectedSize) capacity *= 2;
+        allocate(capacity);
+    }
+
+    private final void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        slots = new int[capacity];
+        positions = new int[capacity/2 + 1];
+        mask = capacity-1;
+    }
+
+    private static final int hash(int index) {
+        int h = index * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the slot of the index, or -1 if it has none.
+     */
+    public final int get(int index) {
+        int position = hash(index) & mask;
+        while (true) {
+            int key = keys[position];
+            if (key == index) return slots[position];
+            if (key == EMPTY) return -1;
+            position = (position+1) & mask;
+        }
+    }
+
+    /**
+     * @return the slot of the index. If it has none, it is given the next one, which is size()-1 afterwards.
+     */
+    public final int getOrAdd(int index) {
+        int position = hash(index) & mask;
+        while (true) {
+            int key = keys[position];
+            if (key == index) return slots[position];
+            if (key == EMPTY) break;
+            position = (position+1) & mask;
+        }
+        int slot = size++;
+        keys[position] = index;
+        slots[position] = slot;
+        positions[slot] = position;
+        if (2*size > keys.length) rehash();
+        return slot;
+    }
+
+    private final void rehash() {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        allocate(2*oldKeys.length);
+        for (int i=0; i<oldKeys.length; ++i) {
+            if (oldKeys[i] == EMPTY) continue;
+            int position = hash(oldKeys[i]) & mask;
+            while (keys[position] != EMPTY) {
+                position = (position+1) & mask;
+            }
+            keys[position] = oldKeys[i];
+            slots[position] = oldSlots[i];
+            positions[oldSlots[i]] = position;
+        }
+    }
+
+    /**
+     * @return the number of indices with a slot. They have slots 0..size()-1.
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Forgets all indices. Runtime: O(size()).
+     */
+    public final void clear() {
+        for (int slot=0; slot<size; ++slot) {
+            keys[positions[slot]] = EMPTY;
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,67 @@
+package algorithms.datatypes;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SparseIndexMapTest {
+
+    @Test
+    public void numbersIndicesInOrderOfFirstAppearance() {
+        SparseIndexMap map = new SparseIndexMap(4);
+        assertEquals(-1, map.get(7));
+        assertEquals(0, map.getOrAdd(7));
+        assertEquals(1, map.getOrAdd(0));
+        assertEquals(0, map.getOrAdd(7));
+        assertEquals(2, map.getOrAdd(Integer.MAX_VALUE));
+        assertEquals(3, map.size());
+        assertEquals(1, map.get(0));
+        assertEquals(-1, map.get(8));
+    }
+
+    @Test
+    public void keepsSlotsWhenItRehashes() {
+        // Starts at 16 entries, so 20000 indices make it rehash 11 times.
+        SparseIndexMap map = new SparseIndexMap(1);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i=0; i<20000; ++i) {
+            int index = random.nextInt(1 << 24);
+            Integer slot = expected.get(index);
+            if (slot == null) {
+                slot = expected.size();
+                expected.put(index, slot);
+            }
+            assertEquals(slot.intValue(), map.getOrAdd(index));
+        }
+        assertEquals(expected.size(), map.size());
+        for (Integer index : expected.keySet()) {
+            assertEquals(expected.get(index).intValue(), map.get(index));
+        }
+    }
+
+    @Test
+    public void clearForgetsEveryIndex() {
+        SparseIndexMap map = new SparseIndexMap(16);
+        Random random = new Random(2);
+        for (int round=0; round<20; ++round) {
+            // Alternates small and large rounds, so that some clears follow a rehash.
+            int n = round%2 == 0 ? 10 : 5000;
+            int[] indices = new int[n];
+            for (int i=0; i<n; ++i) {
+                indices[i] = random.nextInt(1 << 20);
+                map.getOrAdd(indices[i]);
+            }
+            map.clear();
+            assertEquals(0, map.size());
+            for (int index : indices) {
+                assertEquals(-1, map.get(index));
+            }
+            assertEquals(0, map.getOrAdd(indices[n-1]));
+            map.clear();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package algorithms.priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * Bucket queue (Dial's algorithm) over non-negative float keys. Key k goes into bucket floor(k / bucketWidth),
+ * and buckets are taken in order, so adding and finding the next bucket are O(1) amortised when the keys
+ * popped grow in small steps, as the f-values of grid searches do.
+ * <br>
+ * Exact: the bucket being popped is ordered by a small binary heap, so keys are popped in order, in
+ * O(log b) for a bucket of b entries. Approximate: the bucket is popped last in, first out, in O(1). Every key
+ * popped is then still less than the smallest key in the queue plus the bucket width, which bounds how far the
+ * search strays from the best-first order. A smaller width trades speed for closeness to it.
+ * <br>
+ * The buckets between the lowest and highest key form a circular array, which doubles when the keys spread
+ * further. decreaseKey adds a new entry and leaves the old one behind, to be dropped when reached.
+ * Keys below the bucket being popped, as in Theta* where f-values may decrease, move it back.
+ */
+public final class BucketQueue implements OpenList {
+    private static final int NONE = Integer.MIN_VALUE;
+    private static final int INITIAL_BUCKETS = 64;
+
+    private final float inverseWidth;
+    private final boolean exact;
+    private final IndexSlots slots = new IndexSlots();
+
+    // By slot. An entry is live if its slot is in the queue and its version is the slot's version.
+    private float[] keys = new float[0];
+    private int[] versions = new int[0];
+    private boolean[] inHeap = new boolean[0];
+    private int[] slotIndices = new int[0];
+
+    // Bucket b is at position b & mask. The buckets from lowBucket to highBucket fit in the array.
+    private int[][] bucketSlots = new int[INITIAL_BUCKETS][];
+    private int[][] bucketVersions = new int[INITIAL_BUCKETS][];
+    private int[] bucketSizes = new int[INITIAL_BUCKETS];
+    private int mask = INITIAL_BUCKETS - 1;
+    private int lowBucket;
+    private int highBucket;
+    private int queueSize;
+
+    // Exact only: the entries of loadedBucket, taken out of it into a binary heap ordered by key.
+    private int loadedBucket = NONE;
+    private int[] heapSlots = new int[IndexSlots.SPARSE_INITIAL_CAPACITY];
+    private int[] heapVersions = new int[IndexSlots.SPARSE_INITIAL_CAPACITY];
+    private float[] heapKeys = new float[IndexSlots.SPARSE_INITIAL_CAPACITY];
+    private int heapSize;
+
+    /**
+     * @param bucketWidth the range of keys each bucket holds.
+     * @param exact if true, keys are popped in order. If false, in order of bucket only.
+     */
+    public BucketQueue(float bucketWidth, boolean exact) {
+        if (!(bucketWidth > 0)) throw new IllegalArgumentException("Bucket width must be positive: " + bucketWidth);
+        this.inverseWidth = 1 / bucketWidth;
+        this.exact = exact;
+    }
+
+    public final float bucketWidth() {
+        return 1 / inverseWidth;
+    }
+
+    public final boolean isExact() {
+        return exact;
+    }
+
+    @Override
+    public final void initialise(int memorySize, boolean sparse) {
+        slots.initialise(memorySize, sparse);
+        int capacity = slots.capacityFor(keys.length);
+        if (keys.length != capacity) {
+            keys = new float[capacity];
+            versions = new int[capacity];
+            inHeap = new boolean[capacity];
+            slotIndices = new int[capacity];
+        }
+        Arrays.fill(bucketSizes, 0);
+        loadedBucket = NONE;
+        heapSize = 0;
+        queueSize = 0;
+    }
+
+    private final int bucketOf(float key) {
+        return (int)(key * inverseWidth);
+    }
+
+    private final boolean isStale(int slot, int version) {
+        return !inHeap[slot] || versions[slot] != version;
+    }
+
+    @Override
+    public final void decreaseKey(int index, float key) {
+        int slot = slots.slotOf(index);
+        if (slot == -1) {
+            slot = slots.add(index);
+            if (slot == keys.length) {
+                keys = Arrays.copyOf(keys, 2*slot);
+                versions = Arrays.copyOf(versions, 2*slot);
+                inHeap = Arrays.copyOf(inHeap, 2*slot);
+                slotIndices = Arrays.copyOf(slotIndices, 2*slot);
+            }
+            slotIndices[slot] = index;
+            inHeap[slot] = false;
+        } else if (inHeap[slot] && keys[slot] == key) {
+            return;
+        }
+
+        int bucket = bucketOf(key);
+        if (!inHeap[slot]) {
+            inHeap[slot] = true;
+            if (queueSize == 0) {
+                // Whatever is left in the buckets is stale.
+                lowBucket = bucket;
+                highBucket = bucket;
+                loadedBucket = NONE;
+                heapSize = 0;
+            }
+            ++queueSize;
+        }
+        int version = ++versions[slot];
+        keys[slot] = key;
+
+        if (bucket < lowBucket) {
+            if (loadedBucket != NONE) unload();
+            if (highBucket - bucket > mask) grow(bucket, highBucket);
+            lowBucket = bucket;
+        } else if (bucket > highBucket) {
+            if (bucket - lowBucket > mask) grow(lowBucket, bucket);
+            highBucket = bucket;
+        }
+
+        if (bucket == loadedBucket) heapPush(slot, version, key);
+        else addEntry(bucket & mask, slot, version);
+    }
+
+    private final void addEntry(int position, int slot, int version) {
+        int[] slotsP = bucketSlots[position];
+        int size = bucketSizes[position];
+        if (slotsP == null) {
+            bucketSlots[position] = new int[4];
+            bucketVersions[position] = new int[4];
+        } else if (size == slotsP.length) {
+            bucketSlots[position] = Arrays.copyOf(slotsP, 2*size);
+            bucketVersions[position] = Arrays.copyOf(bucketVersions[position], 2*size);
+        }
+        bucketSlots[position][size] = slot;
+        bucketVersions[position][size] = version;
+        bucketSizes[position] = size+1;
+    }
+
+    /**
+     * Makes the circular array large enough for the buckets from low to high, moving the live entries.
+     */
+    private final void grow(int low, int high) {
+        int nBuckets = mask + 1;
+        while (high - low >= nBuckets) nBuckets *= 2;
+
+        int[][] oldSlots = bucketSlots;
+        int[][] oldVersions = bucketVersions;
+        int[] oldSizes = bucketSizes;
+        bucketSlots = new int[nBuckets][];
+        bucketVersions = new int[nBuckets][];
+        bucketSizes = new int[nBuckets];
+        mask = nBuckets - 1;
+
+        for (int i=0; i<oldSizes.length; ++i) {
+            for (int j=0; j<oldSizes[i]; ++j) {
+                int slot = oldSlots[i][j];
+                int version = oldVersions[i][j];
+                if (isStale(slot, version)) continue;
+                addEntry(bucketOf(keys[slot]) & mask, slot, version);
+            }
+        }
+    }
+
+    /**
+     * Moves on to the next entry to pop. The queue must not be empty.
+     */
+    private final void settle() {
+        while (true) {
+            int position = lowBucket & mask;
+            if (exact) {
+                if (loadedBucket != lowBucket) load(position);
+                while (heapSize > 0 && isStale(heapSlots[0], heapVersions[0])) heapPop();
+                if (heapSize > 0) return;
+                loadedBucket = NONE;
+            } else {
+                int[] slotsP = bucketSlots[position];
+                int[] versionsP = bucketVersions[position];
+                int size = bucketSizes[position];
+                while (size > 0 && isStale(slotsP[size-1], versionsP[size-1])) --size;
+                bucketSizes[position] = size;
+                if (size > 0) return;
+            }
+            ++lowBucket;
+        }
+    }
+
+    @Override
+    public final float getMinValue() {
+        if (queueSize == 0) return Float.POSITIVE_INFINITY;
+        settle();
+        if (exact) return heapKeys[0];
+        int position = lowBucket & mask;
+        return keys[bucketSlots[position][bucketSizes[position]-1]];
+    }
+
+    /**
+     * Pops an index with the smallest key if exact. Otherwise, one with a key less than the smallest key
+     * plus the bucket width, last in first out within its bucket.
+     */
+    @Override
+    public final int popMinIndex() {
+        if (queueSize == 0) throw new NullPointerException("Indirect Heap is empty!");
+        settle();
+        int slot;
+        if (exact) {
+            slot = heapSlots[0];
+            heapPop();
+        } else {
+            int position = lowBucket & mask;
+            slot = bucketSlots[position][--bucketSizes[position]];
+        }
+        inHeap[slot] = false;
+        --queueSize;
+        return slotIndices[slot];
+    }
+
+    @Override
+    public final int size() {
+        return queueSize;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return queueSize == 0;
+    }
+
+
+    // Exact mode: the heap of the bucket being popped.
+
+    /**
+     * Moves the live entries of the bucket at the position into the heap, which must be empty.
+     */
+    private final void load(int position) {
+        int[] slotsP = bucketSlots[position];
+        int[] versionsP = bucketVersions[position];
+        int size = bucketSizes[position];
+        bucketSizes[position] = 0;
+        loadedBucket = lowBucket;
+        heapSize = 0;
+
+        for (int i=0; i<size; ++i) {
+            int slot = slotsP[i];
+            if (isStale(slot, versionsP[i])) continue;
+            ensureHeapCapacity();
+            heapSlots[heapSize] = slot;
+            heapVersions[heapSize] = versionsP[i];
+            heapKeys[heapSize] = keys[slot];
+            ++heapSize;
+        }
+        for (int i=heapSize/2-1; i>=0; --i) {
+            siftDown(i, heapSlots[i], heapVersions[i], heapKeys[i]);
+        }
+    }
+
+    /**
+     * Puts the heap back into its bucket, when a smaller key comes in.
+     */
+    private final void unload() {
+        int position = loadedBucket & mask;
+        for (int i=0; i<heapSize; ++i) {
+            addEntry(position, heapSlots[i], heapVersions[i]);
+        }
+        heapSize = 0;
+        loadedBucket = NONE;
+    }
+
+    private final void ensureHeapCapacity() {
+        if (heapSize == heapSlots.length) {
+            heapSlots = Arrays.copyOf(heapSlots, 2*heapSize);
+            heapVersions = Arrays.copyOf(heapVersions, 2*heapSize);
+            heapKeys = Arrays.copyOf(heapKeys, 2*heapSize);
+        }
+    }
+
+    private final void heapPush(int slot, int version, float key) {
+        ensureHeapCapacity();
+        int position = heapSize++;
+        while (position > 0) {
+            int parent = (position-1) / 2;
+            if (heapKeys[parent] <= key) break;
+            heapSlots[position] = heapSlots[parent];
+            heapVersions[position] = heapVersions[parent];
+            heapKeys[position] = heapKeys[parent];
+            position = parent;
+        }
+        heapSlots[position] = slot;
+        heapVersions[position] = version;
+        heapKeys[position] = key;
+    }
+
+    private final void heapPop() {
+        --heapSize;
+        if (heapSize > 0) {
+            siftDown(0, heapSlots[heapSize], heapVersions[heapSize], heapKeys[heapSize]);
+        }
+    }
+
+    /**
+     * Moves the hole at position down until the key fits, then puts the entry there.
+     */
+    private final void siftDown(int position, int slot, int version, float key) {
+        while (true) {
+            int child = 2*position + 1;
+            if (child >= heapSize) break;
+            if (child+1 < heapSize && heapKeys[child+1] < heapKeys[child]) ++child;
+            if (heapKeys[child] >= key) break;
+            heapSlots[position] = heapSlots[child];
+            heapVersions[position] = heapVersions[child];
+            heapKeys[position] = heapKeys[child];
+            position = child;
+        }
+        heapSlots[position] = slot;
+        heapVersions[position] = version;
+        heapKeys[position] = key;
+    }
+}
@@ -0,0 +1,142 @@
+package algorithms.priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * Indirect d-ary heap. O(log_d n) decreaseKey and O(d log_d n) popMinIndex.
+ * <br>
+ * Shallower than a binary heap, and the d children of a node are next to each other in memory, which makes it
+ * faster for searches that decrease keys more often than they pop, such as searches with many successors.
+ */
+public final class DAryIndirectHeap implements OpenList {
+    private static final int NOT_IN_HEAP = -1;
+
+    private final int arity;
+    private final IndexSlots slots = new IndexSlots();
+
+    // By slot.
+    private int[] positions = new int[0]; // position in the heap arrays, or NOT_IN_HEAP once popped
+    private int[] slotIndices = new int[0];
+
+    // By heap position.
+    private int[] heapSlots = new int[IndexSlots.SPARSE_INITIAL_CAPACITY];
+    private float[] heapKeys = new float[IndexSlots.SPARSE_INITIAL_CAPACITY];
+    private int heapSize;
+
+    /**
+     * @param arity the number of children of each node, at least 2.
+     */
+    public DAryIndirectHeap(int arity) {
+        if (arity < 2) throw new IllegalArgumentException("Arity must be at least 2: " + arity);
+        this.arity = arity;
+    }
+
+    @Override
+    public final void initialise(int memorySize, boolean sparse) {
+        slots.initialise(memorySize, sparse);
+        int capacity = slots.capacityFor(positions.length);
+        if (positions.length != capacity) {
+            positions = new int[capacity];
+            slotIndices = new int[capacity];
+        }
+        heapSize = 0;
+    }
+
+    @Override
+    public final void decreaseKey(int index, float key) {
+        int slot = slots.slotOf(index);
+        if (slot == -1) {
+            slot = slots.add(index);
+            if (slot == positions.length) {
+                positions = Arrays.copyOf(positions, 2*slot);
+                slotIndices = Arrays.copyOf(slotIndices, 2*slot);
+            }
+            slotIndices[slot] = index;
+            positions[slot] = NOT_IN_HEAP;
+        }
+
+        int position = positions[slot];
+        if (position == NOT_IN_HEAP) {
+            if (heapSize == heapSlots.length) {
+                heapSlots = Arrays.copyOf(heapSlots, 2*heapSize);
+                heapKeys = Arrays.copyOf(heapKeys, 2*heapSize);
+            }
+            position = heapSize++;
+        }
+        siftUp(position, slot, key);
+    }
+
+    /**
+     * Moves the hole at position up until the key fits, then puts the slot there.
+     */
+    private final void siftUp(int position, int slot, float key) {
+        while (position > 0) {
+            int parent = (position-1) / arity;
+            if (heapKeys[parent] <= key) break;
+            heapSlots[position] = heapSlots[parent];
+            heapKeys[position] = heapKeys[parent];
+            positions[heapSlots[position]] = position;
+            position = parent;
+        }
+        heapSlots[position] = slot;
+        heapKeys[position] = key;
+        positions[slot] = position;
+    }
+
+    /**
+     * Moves the hole at position down until the key fits, then puts the slot there.
+     */
+    private final void siftDown(int position, int slot, float key) {
+        while (true) {
+            int firstChild = position*arity + 1;
+            if (firstChild >= heapSize) break;
+            int lastChild = Math.min(firstChild + arity, heapSize);
+
+            int minChild = firstChild;
+            float minKey = heapKeys[firstChild];
+            for (int child=firstChild+1; child<lastChild; ++child) {
+                if (heapKeys[child] < minKey) {
+                    minChild = child;
+                    minKey = heapKeys[child];
+                }
+            }
+            if (minKey >= key) break;
+
+            heapSlots[position] = heapSlots[minChild];
+            heapKeys[position] = minKey;
+            positions[heapSlots[position]] = position;
+            position = minChild;
+        }
+        heapSlots[position] = slot;
+        heapKeys[position] = key;
+        positions[slot] = position;
+    }
+
+    @Override
+    public final float getMinValue() {
+        return heapSize == 0 ? Float.POSITIVE_INFINITY : heapKeys[0];
+    }
+
+    @Override
+    public final int popMinIndex() {
+        if (heapSize == 0) throw new NullPointerException("Indirect Heap is empty!");
+        int minSlot = heapSlots[0];
+        positions[minSlot] = NOT_IN_HEAP;
+
+        --heapSize;
+        if (heapSize > 0) {
+            siftDown(0, heapSlots[heapSize], heapKeys[heapSize]);
+        }
+        return slotIndices[minSlot];
+    }
+
+    @Override
+    public final int size() {
+        return heapSize;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return heapSize == 0;
+    }
+}
@@ -5,20 +5,26 @@ import java.util.Arrays;
 
 /**
  * Indirect binary heap. Used for O(lgn) deleteMin and O(lgn) decreaseKey.
+ * Entries with equal keys are ordered as set with setTieBreaking.
  */
 public class FastVariableSizeIndirectHeap {
     
     private float[] keyList;
+    private int[] tieList;
     private int[] inList;
     private int[] outList;
     private int heapSize;
     private int nextIndex;
+
+    private TieBreaking tieBreaking = TieBreaking.NONE;
+    private int stamp; // keys set so far, for MOST_RECENT
     
     /**
      * Runtime: O(1)
      */
     public FastVariableSizeIndirectHeap(int capacity) {
         keyList = new float[capacity];
+        tieList = new int[capacity];
         inList = new int[capacity];
         outList = new int[capacity];
         
@@ -30,6 +36,13 @@ public class FastVariableSizeIndirectHeap {
         this(11);
     }
 
+    /**
+     * Sets how entries with equal keys are ordered. Call while the heap is empty.
+     */
+    public void setTieBreaking(TieBreaking tieBreaking) {
+        this.tieBreaking = tieBreaking;
+    }
+
     /**
      * Runtime: O(n)
      */
@@ -47,6 +60,7 @@ public class FastVariableSizeIndirectHeap {
     public void reserve(int capacity) {
         if (keyList.length < capacity) {
             keyList = Arrays.copyOf(keyList, capacity);
+            tieList = Arrays.copyOf(tieList, capacity);
             inList = Arrays.copyOf(inList, capacity);
             outList = Arrays.copyOf(outList, capacity);
         }
@@ -56,10 +70,19 @@ public class FastVariableSizeIndirectHeap {
      * Returns the handle to the value.
      */
     public int insert(float value) {
+        return insert(value, 0);
+    }
+
+    /**
+     * Returns the handle to the value.
+     * @param secondaryKey orders equal values, as set with setTieBreaking.
+     */
+    public int insert(float value, float secondaryKey) {
         if (nextIndex >= keyList.length) {
             int newLength = keyList.length*2;
             // Too small.
             keyList = Arrays.copyOf(keyList, newLength);
+            tieList = Arrays.copyOf(tieList, newLength);
             inList = Arrays.copyOf(inList, newLength);
             outList = Arrays.copyOf(outList, newLength);
         }
@@ -68,6 +91,7 @@ public class FastVariableSizeIndirectHeap {
         int outIndex = nextIndex;
         
         keyList[heapSize] = value;
+        tieList[heapSize] = tieBreaking.tieKey(secondaryKey, ++stamp);
         inList[nextIndex] = heapSize;
         outList[heapSize] = nextIndex;
         heapSize++;
@@ -78,12 +102,21 @@ public class FastVariableSizeIndirectHeap {
         return outIndex;
     }
     
+    /**
+     * @return true if the entry at heap position a comes before the one at b.
+     */
+    private boolean lessThan(int a, int b) {
+        if (tieBreaking == TieBreaking.NONE) return keyList[a] < keyList[b];
+        if (!TieBreaking.keysTie(keyList[a], keyList[b])) return keyList[a] < keyList[b];
+        return tieList[a] < tieList[b];
+    }
+    
     private void bubbleUp(int index) {
         if (index == 0) // Reached root
             return;
         
         int parent = (index-1)/2;
-        if (keyList[index] < keyList[parent]) {
+        if (lessThan(index, parent)) {
             // If meets the conditions to bubble up,
             swapData(index,parent);
             bubbleUp(parent);
@@ -112,6 +145,9 @@ public class FastVariableSizeIndirectHeap {
         float temp = keyList[i1];
         keyList[i1] = keyList[i2];
         keyList[i2] = temp;
+        int tempTie = tieList[i1];
+        tieList[i1] = tieList[i2];
+        tieList[i2] = tempTie;
     }
     
     /**
@@ -142,7 +178,7 @@ public class FastVariableSizeIndirectHeap {
         if (index2 >= heapSize)
             return index1;
         
-        return keyList[index1] < keyList[index2] ? index1 : index2;
+        return lessThan(index1, index2) ? index1 : index2;
     }
     
     private void bubbleDown(int index) {
@@ -152,7 +188,7 @@ public class FastVariableSizeIndirectHeap {
         int smallerChild = smallerNode(leftChild, rightChild);
         if (smallerChild == -1) return;
         
-        if (keyList[index] > keyList[smallerChild]) {
+        if (lessThan(smallerChild, index)) {
             // If meets the conditions to bubble down,
             swapData(index,smallerChild);
             bubbleDown(smallerChild);
@@ -163,12 +199,21 @@ public class FastVariableSizeIndirectHeap {
      * Runtime: O(lgn)
      */
     public void decreaseKey(int outIndex, float newKey) {
+        decreaseKey(outIndex, newKey, 0);
+    }
+
+    /**
+     * Runtime: O(lgn)
+     * @param secondaryKey orders equal keys, as set with setTieBreaking.
+     */
+    public void decreaseKey(int outIndex, float newKey, float secondaryKey) {
         // Assume newKey < old key
         //System.out.println(keyList);
         //System.out.println(inList);
         //System.out.println(outList);
         int inIndex = inList[outIndex];
         keyList[inIndex] = newKey;
+        tieList[inIndex] = tieBreaking.tieKey(secondaryKey, ++stamp);
         bubbleUp(inIndex);
     }
     
@@ -209,6 +254,7 @@ public class FastVariableSizeIndirectHeap {
         int t = outList[lastIndex];
         
         keyList[0] = keyList[lastIndex];
+        tieList[0] = tieList[lastIndex];
         inList[s] =-1;
         inList[t] = 0;
         outList[0] = outList[lastIndex];
@@ -0,0 +1,68 @@
+package algorithms.priorityqueue;
+
+import algorithms.datatypes.SparseIndexMap;
+
+import java.util.Arrays;
+
+/**
+ * The indices added to an open list since it was last initialised, each with a slot in the list's per-index arrays.
+ * <br>
+ * Dense: the slot of an index is the index itself, and tickets tell which indices were added, so that
+ * initialise() is O(1). Sparse: slots 0, 1, 2... are handed out by a SparseIndexMap, so the arrays only need
+ * as many entries as there are indices added.
+ */
+final class IndexSlots {
+    static final int SPARSE_INITIAL_CAPACITY = 1024;
+
+    private int[] ticketCheck;
+    private int ticketNumber = 0;
+    private SparseIndexMap sparseSlots;
+    private boolean sparse;
+    private int memorySize;
+
+    final void initialise(int memorySize, boolean sparse) {
+        this.memorySize = memorySize;
+        this.sparse = sparse;
+        if (sparse) {
+            if (sparseSlots == null) sparseSlots = new SparseIndexMap(SPARSE_INITIAL_CAPACITY);
+            else sparseSlots.clear();
+        } else if (ticketCheck == null || ticketCheck.length != memorySize) {
+            ticketCheck = new int[memorySize];
+            ticketNumber = 1;
+        } else if (ticketNumber == -1) {
+            Arrays.fill(ticketCheck, 0);
+            ticketNumber = 1;
+        } else {
+            ticketNumber++;
+        }
+    }
+
+    /**
+     * @return the length the per-slot arrays should have after initialise: the memory size when dense,
+     *         or the current length (at least SPARSE_INITIAL_CAPACITY) when sparse, as they grow on demand.
+     */
+    final int capacityFor(int currentLength) {
+        if (!sparse) return memorySize;
+        return Math.max(currentLength, SPARSE_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return the slot of the index, or -1 if it has not been added since initialise.
+     */
+    final int slotOf(int index) {
+        if (!sparse) return ticketCheck[index] == ticketNumber ? index : -1;
+        return sparseSlots.get(index);
+    }
+
+    /**
+     * Gives a slot to an index which has none. When sparse, it may be one past the end of the per-slot arrays.
+     * @return the slot.
+     */
+    final int add(int index) {
+        if (!sparse) {
+            ticketCheck[index] = ticketNumber;
+            return index;
+        }
+        return sparseSlots.getOrAdd(index);
+    }
+}
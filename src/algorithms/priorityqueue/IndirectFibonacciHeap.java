@@ -0,0 +1,335 @@
+package algorithms.priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * Indirect Fibonacci heap. O(1) insertion and amortised O(1) decreaseKey, O(log n) amortised popMinIndex.
+ * <br>
+ * The trees are stored in arrays: each node links to its parent, one of its children, and its left and right
+ * siblings in a circular list. The roots form such a list too, entered through the minimum.
+ * Nothing is allocated per operation.
+ * <br>
+ * Keys are doubles with a secondary key to break ties. Both are rounded to 5 decimal places, and on equal keys
+ * the larger secondary key comes first. This, and the order in which the links are updated, follow the jgrapht
+ * Fibonacci heap this class replaced, so that searches pop nodes with equal keys in the same order as before.
+ */
+public final class IndirectFibonacciHeap implements OpenList {
+    private static final int NONE = -1;
+    private static final double BIG_ONE = 100000;
+
+    private final IndexSlots slots = new IndexSlots();
+
+    // By slot.
+    private double[] keys = new double[0];
+    private double[] secondaryKeys = new double[0];
+    private int[] parent = new int[0];
+    private int[] child = new int[0];
+    private int[] left = new int[0];
+    private int[] right = new int[0];
+    private int[] degree = new int[0];
+    private boolean[] mark = new boolean[0];
+    private boolean[] inHeap = new boolean[0];
+    private int[] slotIndices = new int[0];
+
+    private int minNode = NONE;
+    private int heapSize;
+    private final int[] rootsByDegree = new int[64]; // scratch space for consolidate. Degrees are below log_phi(n).
+
+    public IndirectFibonacciHeap() {
+        Arrays.fill(rootsByDegree, NONE);
+    }
+
+    @Override
+    public final void initialise(int memorySize, boolean sparse) {
+        slots.initialise(memorySize, sparse);
+        int capacity = slots.capacityFor(keys.length);
+        if (keys.length != capacity) allocate(capacity);
+        minNode = NONE;
+        heapSize = 0;
+    }
+
+    private final void allocate(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        secondaryKeys = Arrays.copyOf(secondaryKeys, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        child = Arrays.copyOf(child, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        degree = Arrays.copyOf(degree, capacity);
+        mark = Arrays.copyOf(mark, capacity);
+        inHeap = Arrays.copyOf(inHeap, capacity);
+        slotIndices = Arrays.copyOf(slotIndices, capacity);
+    }
+
+    private static final long round(double key) {
+        return (long)(key * BIG_ONE + 0.5);
+    }
+
+    /**
+     * Smaller rounded key first. On equal rounded keys, larger rounded secondary key first.
+     */
+    private final boolean lessThan(int a, int b) {
+        long keyA = round(keys[a]);
+        long keyB = round(keys[b]);
+        if (keyA != keyB) return keyA < keyB;
+        return round(secondaryKeys[a]) > round(secondaryKeys[b]);
+    }
+
+    /**
+     * Same as decreaseKey(index, key, 0).
+     */
+    @Override
+    public final void decreaseKey(int index, float key) {
+        decreaseKey(index, key, 0);
+    }
+
+    /**
+     * Same as decreaseKey(index, key, secondaryKey) with doubles. The larger secondary key comes first.
+     */
+    @Override
+    public final void decreaseKey(int index, float key, float secondaryKey) {
+        decreaseKey(index, (double)key, (double)secondaryKey);
+    }
+
+    /**
+     * Adds the index with the given keys, or lowers its key if it is already in the heap.
+     * A larger key is taken too, by removing the index and adding it again in O(log n) amortised time.
+     */
+    public final void decreaseKey(int index, double key, double secondaryKey) {
+        int slot = slots.slotOf(index);
+        if (slot == -1) {
+            slot = slots.add(index);
+            if (slot == keys.length) allocate(2*slot);
+            slotIndices[slot] = index;
+            inHeap[slot] = false;
+        }
+
+        if (!inHeap[slot]) {
+            insert(slot, key, secondaryKey);
+            return;
+        }
+        if (round(key) > round(keys[slot])) {
+            remove(slot);
+            insert(slot, key, secondaryKey);
+            return;
+        }
+        keys[slot] = key;
+        secondaryKeys[slot] = secondaryKey;
+
+        int p = parent[slot];
+        if (p != NONE && lessThan(slot, p)) {
+            cut(slot, p);
+            cascadingCut(p);
+        }
+        if (lessThan(slot, minNode)) minNode = slot;
+    }
+
+    private final void insert(int slot, double key, double secondaryKey) {
+        keys[slot] = key;
+        secondaryKeys[slot] = secondaryKey;
+        parent[slot] = NONE;
+        child[slot] = NONE;
+        degree[slot] = 0;
+        mark[slot] = false;
+        inHeap[slot] = true;
+
+        if (minNode == NONE) {
+            left[slot] = slot;
+            right[slot] = slot;
+            minNode = slot;
+        } else {
+            addToRootList(slot);
+            if (lessThan(slot, minNode)) minNode = slot;
+        }
+        ++heapSize;
+    }
+
+    /**
+     * Puts the node to the right of the minimum. There must be a minimum.
+     */
+    private final void addToRootList(int node) {
+        int next = right[minNode];
+        left[node] = minNode;
+        right[node] = next;
+        right[minNode] = node;
+        left[next] = node;
+    }
+
+    private final void unlink(int node) {
+        right[left[node]] = right[node];
+        left[right[node]] = left[node];
+    }
+
+    /**
+     * Moves node from the children of p to the root list.
+     */
+    private final void cut(int node, int p) {
+        unlink(node);
+        --degree[p];
+        if (child[p] == node) child[p] = right[node];
+        if (degree[p] == 0) child[p] = NONE;
+
+        addToRootList(node);
+        parent[node] = NONE;
+        mark[node] = false;
+    }
+
+    /**
+     * Marks node if it has lost its first child, or else cuts it, and carries on with its parent.
+     */
+    private final void cascadingCut(int node) {
+        int p = parent[node];
+        while (p != NONE) {
+            if (!mark[node]) {
+                mark[node] = true;
+                return;
+            }
+            cut(node, p);
+            node = p;
+            p = parent[node];
+        }
+    }
+
+    /**
+     * Makes root y a child of root x.
+     */
+    private final void link(int y, int x) {
+        unlink(y);
+        parent[y] = x;
+        int first = child[x];
+        if (first == NONE) {
+            child[x] = y;
+            left[y] = y;
+            right[y] = y;
+        } else {
+            int next = right[first];
+            left[y] = first;
+            right[y] = next;
+            right[first] = y;
+            left[next] = y;
+        }
+        ++degree[x];
+        mark[y] = false;
+    }
+
+    /**
+     * Links roots of equal degree until all roots have different degrees, then finds the new minimum.
+     * minNode must be some root, to start from.
+     */
+    private final void consolidate() {
+        int nRoots = 1;
+        for (int x = right[minNode]; x != minNode; x = right[x]) ++nRoots;
+
+        int maxDegree = 0;
+        int x = minNode;
+        while (nRoots > 0) {
+            int d = degree[x];
+            int next = right[x];
+            while (rootsByDegree[d] != NONE) {
+                int y = rootsByDegree[d];
+                if (lessThan(y, x)) {
+                    int temp = y;
+                    y = x;
+                    x = temp;
+                }
+                link(y, x);
+                rootsByDegree[d] = NONE;
+                ++d;
+            }
+            rootsByDegree[d] = x;
+            if (d > maxDegree) maxDegree = d;
+            x = next;
+            --nRoots;
+        }
+
+        // Rebuild the root list in order of degree, clearing the scratch space.
+        minNode = NONE;
+        for (int d=0; d<=maxDegree; ++d) {
+            int y = rootsByDegree[d];
+            if (y == NONE) continue;
+            rootsByDegree[d] = NONE;
+            if (minNode == NONE) {
+                minNode = y;
+            } else {
+                unlink(y);
+                addToRootList(y);
+                if (lessThan(y, minNode)) minNode = y;
+            }
+        }
+    }
+
+    @Override
+    public final float getMinValue() {
+        return minNode == NONE ? Float.POSITIVE_INFINITY : (float)keys[minNode];
+    }
+
+    @Override
+    public final int popMinIndex() {
+        if (minNode == NONE) throw new NullPointerException("Indirect Heap is empty!");
+        int z = minNode;
+        removeMin();
+        return slotIndices[z];
+    }
+
+    /**
+     * Removes a node in the heap, by making it the minimum first.
+     */
+    private final void remove(int node) {
+        int p = parent[node];
+        if (p != NONE) {
+            cut(node, p);
+            cascadingCut(p);
+        }
+        minNode = node;
+        removeMin();
+    }
+
+    private final void removeMin() {
+        int z = minNode;
+
+        int x = child[z];
+        for (int nChildren = degree[z]; nChildren > 0; --nChildren) {
+            int next = right[x];
+            unlink(x);
+            addToRootList(x);
+            parent[x] = NONE;
+            x = next;
+        }
+        child[z] = NONE;
+        degree[z] = 0;
+
+        unlink(z);
+        if (right[z] == z) {
+            minNode = NONE;
+        } else {
+            minNode = right[z];
+            consolidate();
+        }
+        inHeap[z] = false;
+        --heapSize;
+    }
+
+    /**
+     * @return the key of an index in the heap, or popped from it since it was initialised.
+     */
+    public final double getKey(int index) {
+        return keys[slots.slotOf(index)];
+    }
+
+    /**
+     * @return the secondary key of an index in the heap, or popped from it since it was initialised.
+     */
+    public final double getSecondaryKey(int index) {
+        return secondaryKeys[slots.slotOf(index)];
+    }
+
+    @Override
+    public final int size() {
+        return heapSize;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return minNode == NONE;
+    }
+}
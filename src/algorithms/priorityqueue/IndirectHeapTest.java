@@ -84,6 +84,35 @@ public class IndirectHeapTest {
         assertEquals(0, pq.size());
     }
     
+    @Test
+    public void tieBreaking() {
+        // Keys 3, 2, 2, 2, 1, 2 with secondary keys 0..5, and the order each rule pops them in.
+        // Two of the 2s are off in the last few bits, as sums of edge lengths are, and still tie.
+        float[] keys = {3, 2.0002f, 2, 1.9998f, 1, 2};
+        float[] secondaryKeys = {0, 4, 1, 5, 2, 3};
+        TieBreaking[] rules = {TieBreaking.LARGER_G, TieBreaking.MOST_RECENT, TieBreaking.SECONDARY_KEY};
+        int[][] expected = {
+            {4, 3, 1, 5, 2, 0},
+            {4, 5, 3, 2, 1, 0},
+            {4, 2, 5, 1, 3, 0},
+        };
+
+        for (int r=0; r<rules.length; ++r) {
+            ReusableIndirectHeap heap = new ReusableIndirectHeap(10);
+            heap.setTieBreaking(rules[r]);
+            FastVariableSizeIndirectHeap variableHeap = new FastVariableSizeIndirectHeap(2);
+            variableHeap.setTieBreaking(rules[r]);
+            for (int i=0; i<keys.length; ++i) {
+                heap.decreaseKey(i, keys[i], secondaryKeys[i]);
+                assertEquals(i, variableHeap.insert(keys[i], secondaryKeys[i]));
+            }
+            for (int i=0; i<keys.length; ++i) {
+                assertEquals(rules[r].toString(), expected[r][i], heap.popMinIndex());
+                assertEquals(rules[r].toString(), expected[r][i], variableHeap.popMinIndex());
+            }
+        }
+    }
+    
     public static void assertFloatEquals(float expected, float actual) {
         assertTrue(Math.abs(expected-actual) < 0.001f);
     }
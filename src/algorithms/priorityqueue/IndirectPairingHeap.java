@@ -0,0 +1,149 @@
+package algorithms.priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * Indirect pairing heap. O(1) decreaseKey and insertion, O(log n) amortised popMinIndex.
+ * <br>
+ * The heap is a tree stored in arrays: each node links to its first child, its next sibling, and its previous
+ * sibling (or its parent, for a first child). Decreasing a key cuts the node's subtree off and melds it with the root.
+ */
+public final class IndirectPairingHeap implements OpenList {
+    private static final int NONE = -1;
+
+    private final IndexSlots slots = new IndexSlots();
+
+    // By slot.
+    private float[] keys = new float[0];
+    private int[] child = new int[0];
+    private int[] sibling = new int[0];
+    private int[] previous = new int[0]; // previous sibling, or parent if first child
+    private boolean[] inHeap = new boolean[0];
+    private int[] slotIndices = new int[0];
+
+    private int root = NONE;
+    private int heapSize;
+    private int[] pairs = new int[64]; // scratch space for popMinIndex
+
+    @Override
+    public final void initialise(int memorySize, boolean sparse) {
+        slots.initialise(memorySize, sparse);
+        int capacity = slots.capacityFor(keys.length);
+        if (keys.length != capacity) allocate(capacity);
+        root = NONE;
+        heapSize = 0;
+    }
+
+    private final void allocate(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        child = Arrays.copyOf(child, capacity);
+        sibling = Arrays.copyOf(sibling, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        inHeap = Arrays.copyOf(inHeap, capacity);
+        slotIndices = Arrays.copyOf(slotIndices, capacity);
+    }
+
+    @Override
+    public final void decreaseKey(int index, float key) {
+        int slot = slots.slotOf(index);
+        if (slot == -1) {
+            slot = slots.add(index);
+            if (slot == keys.length) allocate(2*slot);
+            slotIndices[slot] = index;
+            inHeap[slot] = false;
+        }
+
+        keys[slot] = key;
+        if (!inHeap[slot]) {
+            inHeap[slot] = true;
+            child[slot] = NONE;
+            sibling[slot] = NONE;
+            previous[slot] = NONE;
+            root = meld(root, slot);
+            ++heapSize;
+        } else if (slot != root) {
+            cut(slot);
+            root = meld(root, slot);
+        }
+    }
+
+    /**
+     * Detaches the subtree of node from its parent and siblings.
+     */
+    private final void cut(int node) {
+        int prev = previous[node];
+        int next = sibling[node];
+        if (child[prev] == node) child[prev] = next;
+        else sibling[prev] = next;
+        if (next != NONE) previous[next] = prev;
+        sibling[node] = NONE;
+        previous[node] = NONE;
+    }
+
+    /**
+     * Melds two detached trees.
+     * @return the root of the result. On equal keys, the first tree's root.
+     */
+    private final int meld(int a, int b) {
+        if (a == NONE) return b;
+        if (b == NONE) return a;
+        if (keys[b] < keys[a]) {
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+        int first = child[a];
+        sibling[b] = first;
+        if (first != NONE) previous[first] = b;
+        previous[b] = a;
+        child[a] = b;
+        return a;
+    }
+
+    @Override
+    public final float getMinValue() {
+        return root == NONE ? Float.POSITIVE_INFINITY : keys[root];
+    }
+
+    @Override
+    public final int popMinIndex() {
+        if (root == NONE) throw new NullPointerException("Indirect Heap is empty!");
+        int min = root;
+        inHeap[min] = false;
+        --heapSize;
+
+        // Two-pass pairing: meld the children in pairs from left to right, then the pairs from right to left.
+        int nPairs = 0;
+        int current = child[min];
+        while (current != NONE) {
+            int first = current;
+            int second = sibling[first];
+            current = second == NONE ? NONE : sibling[second];
+            sibling[first] = NONE;
+            previous[first] = NONE;
+            if (second != NONE) {
+                sibling[second] = NONE;
+                previous[second] = NONE;
+            }
+            if (nPairs == pairs.length) pairs = Arrays.copyOf(pairs, 2*nPairs);
+            pairs[nPairs++] = meld(first, second);
+        }
+        int newRoot = NONE;
+        while (nPairs > 0) {
+            newRoot = meld(pairs[--nPairs], newRoot);
+        }
+        child[min] = NONE;
+        root = newRoot;
+        return slotIndices[min];
+    }
+
+    @Override
+    public final int size() {
+        return heapSize;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return root == NONE;
+    }
+}
@@ -0,0 +1,46 @@
+package algorithms.priorityqueue;
+
+/**
+ * The open list of a search over integer indices 0..memorySize-1, ordered by a float key.
+ * <br>
+ * Implementations are reusable: initialise() empties the list for the next search without reallocating,
+ * unless the memory size changes. See OpenListType for the implementations and how to pick one.
+ */
+public interface OpenList {
+
+    /**
+     * Empties the list, for indices 0..memorySize-1.
+     * @param sparse if true, the list only takes memory for the indices added to it.
+     */
+    public void initialise(int memorySize, boolean sparse);
+
+    /**
+     * Adds the index with the given key, or lowers its key if it is already in the list.
+     * The new key must not be larger than its current key.
+     * Indices popped since initialise may be added again, except to ReusableIndirectHeap.
+     */
+    public void decreaseKey(int index, float key);
+
+    /**
+     * Same as decreaseKey(index, key), with a secondary key for open lists that break ties between equal keys.
+     * See TieBreaking. The others ignore it.
+     */
+    public default void decreaseKey(int index, float key, float secondaryKey) {
+        decreaseKey(index, key);
+    }
+
+    /**
+     * @return the smallest key in the list, or Float.POSITIVE_INFINITY if it is empty.
+     */
+    public float getMinValue();
+
+    /**
+     * Removes the index with the smallest key. The order of indices with equal keys depends on the implementation.
+     * @return the index removed.
+     */
+    public int popMinIndex();
+
+    public int size();
+
+    public boolean isEmpty();
+}
@@ -0,0 +1,150 @@
+package algorithms.priorityqueue;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OpenListTest {
+
+    @Test
+    public void popsInKeyOrder() {
+        for (OpenListType type : OpenListType.values()) {
+            OpenList openList = type.newOpenList();
+            Random random = new Random(1);
+            for (int search=0; search<50; ++search) {
+                testSearch(type, openList, random, search%2 == 0, false);
+            }
+        }
+    }
+
+    @Test
+    public void popsInKeyOrderWhenKeysDecrease() {
+        // Non-monotone keys, as in Theta*. The radix heap handles them separately.
+        for (OpenListType type : OpenListType.values()) {
+            OpenList openList = type.newOpenList();
+            Random random = new Random(2);
+            for (int search=0; search<50; ++search) {
+                testSearch(type, openList, random, search%2 == 1, true);
+            }
+        }
+    }
+
+    @Test
+    public void indexAddedAgainIsPoppedOnce() {
+        // Lazy open lists leave an entry behind for the key 5. It must not come back when 5 is used again.
+        for (OpenListType type : OpenListType.values()) {
+            if (type == OpenListType.BINARY_HEAP) continue; // does not take popped indices back
+            OpenList openList = type.newOpenList();
+            openList.initialise(10, false);
+            openList.decreaseKey(7, 5);
+            openList.decreaseKey(7, 3);
+            assertEquals(type.toString(), 7, openList.popMinIndex());
+            openList.decreaseKey(7, 5);
+            openList.decreaseKey(2, 9);
+            assertEquals(type.toString(), 7, openList.popMinIndex());
+            assertEquals(type.toString(), 2, openList.popMinIndex());
+            assertTrue(type.toString(), openList.isEmpty());
+        }
+    }
+
+    @Test
+    public void fibonacciHeapBreaksTiesBySecondaryKey() {
+        IndirectFibonacciHeap heap = new IndirectFibonacciHeap();
+        heap.initialise(10, false);
+        heap.decreaseKey(0, 5, 1);
+        heap.decreaseKey(1, 5, 3);
+        heap.decreaseKey(2, 5, 2);
+        heap.decreaseKey(3, 4, 0);
+        heap.decreaseKey(4, 2, 0);
+        heap.decreaseKey(4, 6, 0); // a larger key moves the index back
+        heap.decreaseKey(3, 5, 4);
+
+        int[] expected = {3, 1, 2, 0, 4};
+        for (int index : expected) {
+            assertEquals(index, heap.popMinIndex());
+        }
+        assertTrue(heap.isEmpty());
+        assertEquals(6, heap.getKey(4), 0);
+        assertEquals(4, heap.getSecondaryKey(3), 0);
+    }
+
+    @Test
+    public void sparseHeapGrowsPastItsInitialSize() {
+        ReusableIndirectHeap heap = new ReusableIndirectHeap(16);
+        Random random = new Random(3);
+        for (int search=0; search<6; ++search) {
+            // The sparse arrays start at 1024 indices. Small searches after large ones reuse the grown arrays.
+            int n = search%2 == 0 ? 5000 : 50;
+            heap.initialise(1 << 20, search != 3); // one dense search in between
+            if (search >= 2) heap.setTieBreaking(TieBreaking.SECONDARY_KEY);
+            HashMap<Integer, Float> keys = new HashMap<>();
+            for (int i=0; i<3*n; ++i) {
+                int index = random.nextInt(1 << 20);
+                Float oldKey = keys.get(index);
+                float key = oldKey == null ? random.nextInt(100000) : Math.max(0, oldKey - random.nextInt(50));
+                keys.put(index, key);
+                heap.decreaseKey(index, key, random.nextInt(10));
+            }
+            assertEquals(keys.size(), heap.size());
+            float lastKey = 0;
+            while (!heap.isEmpty()) {
+                int index = heap.popMinIndex();
+                float key = keys.remove(index);
+                assertTrue(lastKey <= key);
+                lastKey = key;
+            }
+            assertTrue(keys.isEmpty());
+        }
+    }
+
+    private static void testSearch(OpenListType type, OpenList openList, Random random, boolean sparse, boolean anyKeys) {
+        // Approximate open lists may pop any key below the smallest plus the tolerance.
+        float tolerance = type.popsInKeyOrder() ? 0 : ((BucketQueue)openList).bucketWidth();
+        int memorySize = 200 + random.nextInt(800);
+        openList.initialise(memorySize, sparse);
+        float[] keys = new float[memorySize];
+        Arrays.fill(keys, Float.POSITIVE_INFINITY);
+        boolean[] popped = new boolean[memorySize];
+        int size = 0;
+        float lastPopped = 0;
+
+        for (int i=0; i<3000; ++i) {
+            if (size > 0 && random.nextInt(3) == 0) {
+                float min = Float.POSITIVE_INFINITY;
+                for (int j=0; j<memorySize; ++j) {
+                    if (!popped[j]) min = Math.min(min, keys[j]);
+                }
+                float minValue = openList.getMinValue();
+                int index = openList.popMinIndex();
+                assertFalse(type.toString(), popped[index]);
+                assertEquals(type.toString(), minValue, keys[index], 0);
+                if (tolerance == 0) {
+                    assertEquals(type.toString(), min, keys[index], 0);
+                } else {
+                    assertTrue(type.toString(), min <= keys[index] && keys[index] < min + tolerance);
+                }
+                popped[index] = true;
+                lastPopped = keys[index];
+                --size;
+            } else {
+                int index = random.nextInt(memorySize);
+                if (popped[index]) continue;
+                float key;
+                if (keys[index] == Float.POSITIVE_INFINITY) {
+                    key = (anyKeys ? 0 : lastPopped) + random.nextInt(1000);
+                    ++size;
+                } else {
+                    key = Math.max(anyKeys ? 0 : lastPopped, keys[index] - random.nextInt(50));
+                }
+                keys[index] = key;
+                openList.decreaseKey(index, key);
+            }
+            assertEquals(type.toString(), size, openList.size());
+            assertEquals(type.toString(), size == 0, openList.isEmpty());
+        }
+    }
+}
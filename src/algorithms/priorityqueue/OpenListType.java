@@ -0,0 +1,97 @@
+package algorithms.priorityqueue;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The open list implementations a search can be given. See PathFindingAlgorithm.useOpenListType,
+ * or AlgoFunction.withOpenList to pick one for all the searches of an AlgoFunction.
+ */
+public enum OpenListType {
+    /** ReusableIndirectHeap. The default. */
+    BINARY_HEAP,
+    /** DAryIndirectHeap with 4 children per node. */
+    FOUR_ARY_HEAP,
+    /** DAryIndirectHeap with 8 children per node. */
+    EIGHT_ARY_HEAP,
+    /** IndirectPairingHeap. */
+    PAIRING_HEAP,
+    /** RadixHeap. Best when the keys popped never decrease, as in A* with a consistent heuristic. */
+    RADIX_HEAP,
+    /** IndirectFibonacciHeap. Keys are compared rounded to 5 decimal places. */
+    FIBONACCI_HEAP,
+    /** Exact BucketQueue with buckets of width 1, about the cost of a grid edge. */
+    BUCKET_QUEUE,
+    /**
+     * Approximate BucketQueue with buckets of width 1/8. Keys are popped out of order by less than that,
+     * for searches where a slightly longer path is worth fewer heap operations.
+     */
+    APPROXIMATE_BUCKET_QUEUE;
+
+    private static final OpenListType[] types = values();
+    private static final ThreadLocal<OpenList[]> threadOpenLists = ThreadLocal.withInitial(() -> new OpenList[types.length]);
+
+    private final ConcurrentLinkedQueue<OpenList> pool = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @return a new open list of this type. Initialise it before use.
+     */
+    public final OpenList newOpenList() {
+        switch (this) {
+            case BINARY_HEAP: return new ReusableIndirectHeap(0);
+            case FOUR_ARY_HEAP: return new DAryIndirectHeap(4);
+            case EIGHT_ARY_HEAP: return new DAryIndirectHeap(8);
+            case PAIRING_HEAP: return new IndirectPairingHeap();
+            case RADIX_HEAP: return new RadixHeap();
+            case FIBONACCI_HEAP: return new IndirectFibonacciHeap();
+            case BUCKET_QUEUE: return new BucketQueue(1f, true);
+            case APPROXIMATE_BUCKET_QUEUE: return new BucketQueue(1/8f, false);
+        }
+        throw new UnsupportedOperationException("Unknown open list type: " + this);
+    }
+
+    /**
+     * @return an open list of this type from the pool, or a new one if the pool is empty. Give it back with release.
+     */
+    public final OpenList acquire() {
+        OpenList openList = pool.poll();
+        return openList != null ? openList : newOpenList();
+    }
+
+    /**
+     * Returns an open list of this type, taken with acquire, to the pool. It must not be used afterwards.
+     */
+    public final void release(OpenList openList) {
+        pool.offer(openList);
+    }
+
+    /**
+     * @return false if keys may be popped out of order, as with APPROXIMATE_BUCKET_QUEUE.
+     */
+    public final boolean popsInKeyOrder() {
+        return this != APPROXIMATE_BUCKET_QUEUE;
+    }
+
+    /**
+     * @return the calling thread's open list of this type, emptied, for indices 0..memorySize-1.
+     */
+    public final OpenList ofCurrentThread(int memorySize, boolean sparse) {
+        if (this == BINARY_HEAP) return ReusableIndirectHeap.ofCurrentThread(memorySize, sparse);
+        OpenList[] openLists = threadOpenLists.get();
+        OpenList openList = openLists[ordinal()];
+        if (openList == null) {
+            openList = newOpenList();
+            openLists[ordinal()] = openList;
+        }
+        openList.initialise(memorySize, sparse);
+        return openList;
+    }
+
+    /**
+     * Empties the pools and drops the calling thread's open lists of every type but BINARY_HEAP,
+     * which ReusableIndirectHeap.clearMemory drops.
+     */
+    public static void clearMemory() {
+        for (OpenListType type : types) type.pool.clear();
+        threadOpenLists.remove();
+    }
+}
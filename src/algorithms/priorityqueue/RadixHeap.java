@@ -0,0 +1,212 @@
+package algorithms.priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * Monotone radix heap over non-negative float keys. O(1) decreaseKey, and popMinIndex amortised O(1) per bit
+ * of the keys, as long as no key added is smaller than the last key popped.
+ * <br>
+ * The bits of non-negative floats order like the floats. An entry is kept in the bucket of the highest bit in which
+ * its key differs from the last minimum, so a bucket only needs sorting when all lower ones are empty, and then
+ * only spills into lower buckets. decreaseKey adds a new entry and leaves the old one behind, to be dropped
+ * when reached. Entries carry the version of their slot, so one left behind never comes back to life when its
+ * index is added again with the same key.
+ * <br>
+ * Keys smaller than the last minimum, as in Theta* where f-values may decrease, are still popped in order,
+ * by scanning the lowest bucket. Searches doing that a lot are better off with another heap.
+ */
+public final class RadixHeap implements OpenList {
+    private static final int N_BUCKETS = 33;
+
+    private final IndexSlots slots = new IndexSlots();
+
+    // By slot.
+    private float[] keys = new float[0];
+    private int[] versions = new int[0];
+    private boolean[] inHeap = new boolean[0];
+    private int[] slotIndices = new int[0];
+
+    // Bucket 0 holds the entries with keys at most lastBits, bucket i the ones whose highest bit differing
+    // from lastBits is bit i-1.
+    private final int[][] bucketSlots = new int[N_BUCKETS][];
+    private final int[][] bucketKeyBits = new int[N_BUCKETS][];
+    private final int[][] bucketVersions = new int[N_BUCKETS][];
+    private final int[] bucketSizes = new int[N_BUCKETS];
+    private int lastBits;
+    private int entriesBelowLast; // at least the number of live entries of bucket 0 with keys below lastBits
+    private int heapSize;
+
+    public RadixHeap() {
+        for (int i=0; i<N_BUCKETS; ++i) {
+            bucketSlots[i] = new int[16];
+            bucketKeyBits[i] = new int[16];
+            bucketVersions[i] = new int[16];
+        }
+    }
+
+    @Override
+    public final void initialise(int memorySize, boolean sparse) {
+        slots.initialise(memorySize, sparse);
+        int capacity = slots.capacityFor(keys.length);
+        if (keys.length != capacity) {
+            keys = new float[capacity];
+            versions = new int[capacity];
+            inHeap = new boolean[capacity];
+            slotIndices = new int[capacity];
+        }
+        Arrays.fill(bucketSizes, 0);
+        lastBits = 0;
+        entriesBelowLast = 0;
+        heapSize = 0;
+    }
+
+    private final int bucketOf(int keyBits) {
+        if (keyBits <= lastBits) return 0;
+        return 32 - Integer.numberOfLeadingZeros(keyBits ^ lastBits);
+    }
+
+    private final void addEntry(int bucket, int slot, int keyBits, int version) {
+        int size = bucketSizes[bucket];
+        if (size == bucketSlots[bucket].length) {
+            bucketSlots[bucket] = Arrays.copyOf(bucketSlots[bucket], 2*size);
+            bucketKeyBits[bucket] = Arrays.copyOf(bucketKeyBits[bucket], 2*size);
+            bucketVersions[bucket] = Arrays.copyOf(bucketVersions[bucket], 2*size);
+        }
+        bucketSlots[bucket][size] = slot;
+        bucketKeyBits[bucket][size] = keyBits;
+        bucketVersions[bucket][size] = version;
+        bucketSizes[bucket] = size+1;
+    }
+
+    private final boolean isStale(int slot, int version) {
+        return !inHeap[slot] || versions[slot] != version;
+    }
+
+    @Override
+    public final void decreaseKey(int index, float key) {
+        int slot = slots.slotOf(index);
+        if (slot == -1) {
+            slot = slots.add(index);
+            if (slot == keys.length) {
+                keys = Arrays.copyOf(keys, 2*slot);
+                versions = Arrays.copyOf(versions, 2*slot);
+                inHeap = Arrays.copyOf(inHeap, 2*slot);
+                slotIndices = Arrays.copyOf(slotIndices, 2*slot);
+            }
+            slotIndices[slot] = index;
+            inHeap[slot] = false;
+        }
+        if (!inHeap[slot]) {
+            inHeap[slot] = true;
+            ++heapSize;
+        }
+        keys[slot] = key;
+        int version = ++versions[slot];
+
+        int keyBits = Float.floatToRawIntBits(key);
+        if (keyBits < lastBits) ++entriesBelowLast;
+        addEntry(bucketOf(keyBits), slot, keyBits, version);
+    }
+
+    /**
+     * @return the position in bucket 0 of an entry with the smallest key. The heap must not be empty.
+     */
+    private final int minEntry() {
+        while (true) {
+            int[] slots0 = bucketSlots[0];
+            int[] keyBits0 = bucketKeyBits[0];
+            int[] versions0 = bucketVersions[0];
+            int size = bucketSizes[0];
+            if (entriesBelowLast == 0) {
+                // All live entries of bucket 0 have the smallest key.
+                while (size > 0 && isStale(slots0[size-1], versions0[size-1])) --size;
+                bucketSizes[0] = size;
+                if (size > 0) return size-1;
+            } else {
+                // Drop the stale entries while looking for the smallest key.
+                int nLive = 0;
+                int minPosition = -1;
+                int minBits = 0;
+                entriesBelowLast = 0;
+                for (int i=0; i<size; ++i) {
+                    int slot = slots0[i];
+                    int bits = keyBits0[i];
+                    int version = versions0[i];
+                    if (isStale(slot, version)) continue;
+                    slots0[nLive] = slot;
+                    keyBits0[nLive] = bits;
+                    versions0[nLive] = version;
+                    if (bits < lastBits) ++entriesBelowLast;
+                    if (minPosition == -1 || bits < minBits) {
+                        minPosition = nLive;
+                        minBits = bits;
+                    }
+                    ++nLive;
+                }
+                bucketSizes[0] = nLive;
+                if (nLive > 0) return minPosition;
+            }
+            redistribute();
+        }
+    }
+
+    /**
+     * Bucket 0 is empty. Makes the smallest key of the first non-empty bucket the new minimum,
+     * and moves the bucket's live entries down.
+     */
+    private final void redistribute() {
+        int bucket = 1;
+        while (bucketSizes[bucket] == 0) ++bucket;
+
+        int[] slotsB = bucketSlots[bucket];
+        int[] keyBitsB = bucketKeyBits[bucket];
+        int[] versionsB = bucketVersions[bucket];
+        int size = bucketSizes[bucket];
+        bucketSizes[bucket] = 0;
+
+        int minBits = Integer.MAX_VALUE;
+        for (int i=0; i<size; ++i) {
+            if (!isStale(slotsB[i], versionsB[i]) && keyBitsB[i] < minBits) minBits = keyBitsB[i];
+        }
+        if (minBits == Integer.MAX_VALUE) return; // all stale
+        lastBits = minBits;
+        for (int i=0; i<size; ++i) {
+            if (isStale(slotsB[i], versionsB[i])) continue;
+            addEntry(bucketOf(keyBitsB[i]), slotsB[i], keyBitsB[i], versionsB[i]);
+        }
+    }
+
+    @Override
+    public final float getMinValue() {
+        if (heapSize == 0) return Float.POSITIVE_INFINITY;
+        int position = minEntry(); // may reallocate bucket 0
+        return Float.intBitsToFloat(bucketKeyBits[0][position]);
+    }
+
+    @Override
+    public final int popMinIndex() {
+        if (heapSize == 0) throw new NullPointerException("Indirect Heap is empty!");
+        int position = minEntry();
+        int slot = bucketSlots[0][position];
+        if (bucketKeyBits[0][position] < lastBits) --entriesBelowLast;
+
+        int last = --bucketSizes[0];
+        bucketSlots[0][position] = bucketSlots[0][last];
+        bucketKeyBits[0][position] = bucketKeyBits[0][last];
+        bucketVersions[0][position] = bucketVersions[0][last];
+
+        inHeap[slot] = false;
+        --heapSize;
+        return slotIndices[slot];
+    }
+
+    @Override
+    public final int size() {
+        return heapSize;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return heapSize == 0;
+    }
+}
@@ -1,125 +1,295 @@
 package algorithms.priorityqueue;
 
+import algorithms.datatypes.SparseIndexMap;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Indirect binary heap. Used for O(lgn) deleteMin and O(lgn) decreaseKey.
+ * <br>
+ * The arrays are allocated once per memory size and reused: initialise() empties the heap in O(1) by issuing
+ * a new ticket. Each thread has its own heap (ofCurrentThread), and pooled heaps can be handed to workers with
+ * acquire and release. A heap must only be used by one search at a time.
+ * <br>
+ * A heap initialised sparse keeps its entries in small arrays indexed through a SparseIndexMap instead,
+ * for searches which only touch a few of a large number of indices. The arrays of both kinds are kept
+ * once allocated, so a thread alternating between the two does not reallocate either.
+ * <br>
+ * Entries with equal keys, to within TieBreaking.KEY_RESOLUTION, are ordered as set with setTieBreaking,
+ * by an int tie key kept next to each key.
  */
-public class ReusableIndirectHeap {
+public class ReusableIndirectHeap implements OpenList {
+
+    private static final int SPARSE_INITIAL_SIZE = 1024;
 
-    private static float[] keyList;
-    private static int[] inList;
-    private static int[] outList;
+    // The arrays in use: indexed by index, or by slot in sparseSlots when sparse.
+    private float[] keyList;
+    private int[] inList;
+    private int[] outList;
+    private int[] tieList; // null until tie-breaking is first used
     private int heapSize;
-        
-    private static float defaultKey = Float.POSITIVE_INFINITY;
 
-    private static int[] ticketCheck;
-    private static int ticketNumber = 0;
-    
-    public static final class Context {
-        private float[] keyList;
-        private int[] inList;
-        private int[] outList;
-        private int[] ticketCheck;
-        private int ticketNumber;
+    private TieBreaking tieBreaking = TieBreaking.NONE;
+    private int stamp; // keys set since initialise, for MOST_RECENT
         
-        public Context(){};
+    private float defaultKey = Float.POSITIVE_INFINITY;
+
+    private int[] ticketCheck;
+    private int ticketNumber = 0;
+    private int memorySize;
+
+    private float[] denseKeyList;
+    private int[] denseInList;
+    private int[] denseOutList;
+    private int[] denseTicketCheck;
+    private int[] denseTieList;
+
+    private SparseIndexMap sparseSlots; // null when dense
+    private float[] sparseKeyList;
+    private int[] sparseInList;
+    private int[] sparseOutList;
+    private int[] sparseTicketCheck;
+    private int[] sparseTieList;
+
+    private static final ThreadLocal<ReusableIndirectHeap> threadHeap = new ThreadLocal<>();
+    // Idle heaps, by memory size.
+    private static final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<ReusableIndirectHeap>> pool = new ConcurrentHashMap<>();
+
+    /**
+     * Runtime: O(memorySize). The heap is empty.
+     */
+    public ReusableIndirectHeap(int memorySize) {
+        initialise(memorySize, Float.POSITIVE_INFINITY);
     }
-    
-    public static final void loadContext(Context context) {
-        ReusableIndirectHeap.keyList = context.keyList;
-        ReusableIndirectHeap.inList = context.inList;
-        ReusableIndirectHeap.outList = context.outList;
-        ReusableIndirectHeap.ticketCheck = context.ticketCheck;
-        ReusableIndirectHeap.ticketNumber = context.ticketNumber;
+
+    private ReusableIndirectHeap() {
     }
-    
-    public static final void saveContext(Context context) {
-        context.keyList = ReusableIndirectHeap.keyList;
-        context.inList = ReusableIndirectHeap.inList;
-        context.outList = ReusableIndirectHeap.outList;
-        context.ticketCheck = ReusableIndirectHeap.ticketCheck;
-        context.ticketNumber = ReusableIndirectHeap.ticketNumber;
+
+    /**
+     * Runtime: O(1) unless the memory size differs from the last search in this thread.
+     * @return the calling thread's heap, emptied, for indices 0..memorySize-1.
+     */
+    public static final ReusableIndirectHeap ofCurrentThread(int memorySize) {
+        return ofCurrentThread(memorySize, false);
     }
 
-    public static void initialise(int size, float defaultKey) {
-        ReusableIndirectHeap.defaultKey = defaultKey;
-        
-        if (ticketCheck == null || ticketCheck.length != size) {
-            //System.out.println("REINITIALISE HEAP " + size);
-            keyList = new float[size];
-            inList = new int[size];
-            outList = new int[size];
-            ticketCheck = new int[size];
-            ticketNumber = 1;
-        } else if (ticketNumber == -1) {
-            ticketCheck = new int[size];
-            ticketNumber = 1;
+    /**
+     * @param sparse see initialise.
+     */
+    public static final ReusableIndirectHeap ofCurrentThread(int memorySize, boolean sparse) {
+        ReusableIndirectHeap heap = threadHeap.get();
+        if (heap == null) {
+            heap = new ReusableIndirectHeap();
+            threadHeap.set(heap);
+        }
+        heap.initialise(memorySize, Float.POSITIVE_INFINITY, sparse);
+        return heap;
+    }
+
+    /**
+     * @return an empty heap for indices 0..memorySize-1, from the pool if one of that size is idle.
+     *         Give it back with release.
+     */
+    public static final ReusableIndirectHeap acquire(int memorySize) {
+        return acquire(memorySize, false);
+    }
+
+    /**
+     * @param sparse see initialise.
+     */
+    public static final ReusableIndirectHeap acquire(int memorySize, boolean sparse) {
+        ConcurrentLinkedQueue<ReusableIndirectHeap> idle = pool.get(memorySize);
+        ReusableIndirectHeap heap = idle == null ? null : idle.poll();
+        if (heap == null) heap = new ReusableIndirectHeap();
+        heap.initialise(memorySize, Float.POSITIVE_INFINITY, sparse);
+        return heap;
+    }
+
+    /**
+     * Returns a heap to the pool. It must not be used afterwards.
+     */
+    public static final void release(ReusableIndirectHeap heap) {
+        pool.computeIfAbsent(heap.memorySize, size -> new ConcurrentLinkedQueue<>()).offer(heap);
+    }
+
+    /**
+     * Allocates heaps in advance, so that the first count concurrent searches over memorySize indices
+     * (e.g. (sizeX+1)*(sizeY+1) for the grid searches) do not have to.
+     */
+    public static final void preallocate(int memorySize, int count) {
+        for (int i=0; i<count; ++i) {
+            release(new ReusableIndirectHeap(memorySize));
+        }
+    }
+
+    /**
+     * Empties the heap. Runtime: O(1), or O(size) if size differs from the current memory size.
+     */
+    public final void initialise(int size, float defaultKey) {
+        initialise(size, defaultKey, false);
+    }
+
+    @Override
+    public final void initialise(int memorySize, boolean sparse) {
+        initialise(memorySize, Float.POSITIVE_INFINITY, sparse);
+    }
+
+    /**
+     * Empties the heap, and turns tie-breaking off.
+     * @param sparse if true, the heap only takes memory for the indices it is given. Runtime: O(1) amortised,
+     *        plus the number of indices the last sparse search touched.
+     */
+    public final void initialise(int size, float defaultKey, boolean sparse) {
+        this.defaultKey = defaultKey;
+        this.memorySize = size;
+        heapSize = 0;
+        tieBreaking = TieBreaking.NONE;
+        stamp = 0;
+
+        if (ticketNumber == -1) {
+            // Wrapped around: the old tickets would come round again.
+            denseTicketCheck = null;
+            if (sparseTicketCheck != null) Arrays.fill(sparseTicketCheck, 0);
+            ticketNumber = 0;
+        }
+        ticketNumber++;
+
+        if (sparse) {
+            if (sparseSlots == null) {
+                sparseSlots = new SparseIndexMap(SPARSE_INITIAL_SIZE);
+                sparseKeyList = new float[SPARSE_INITIAL_SIZE];
+                sparseInList = new int[SPARSE_INITIAL_SIZE];
+                sparseOutList = new int[SPARSE_INITIAL_SIZE];
+                sparseTicketCheck = new int[SPARSE_INITIAL_SIZE];
+            } else {
+                sparseSlots.clear();
+            }
+            keyList = sparseKeyList;
+            inList = sparseInList;
+            outList = sparseOutList;
+            ticketCheck = sparseTicketCheck;
+            tieList = sparseTieList;
         } else {
-            ticketNumber++;
+            sparseSlots = null;
+            if (denseTicketCheck == null || denseTicketCheck.length != size) {
+                //System.out.println("REINITIALISE HEAP " + size);
+                denseKeyList = new float[size];
+                denseInList = new int[size];
+                denseOutList = new int[size];
+                denseTicketCheck = new int[size];
+                denseTieList = null;
+            }
+            keyList = denseKeyList;
+            inList = denseInList;
+            outList = denseOutList;
+            ticketCheck = denseTicketCheck;
+            tieList = denseTieList;
         }
     }
-    
-    public static final float getKey(int index) {
-        return ticketCheck[index] == ticketNumber ? keyList[index] : defaultKey;
+
+    /**
+     * @return the position of the index in the arrays, or -1 if it has none (sparse only).
+     */
+    private final int slotOf(int index) {
+        return sparseSlots == null ? index : sparseSlots.get(index);
+    }
+
+    /**
+     * @return the position of the index in the arrays, giving it one if it has none.
+     */
+    private final int writableSlotOf(int index) {
+        if (sparseSlots == null) return index;
+        int slot = sparseSlots.getOrAdd(index);
+        if (slot == ticketCheck.length) {
+            // Stale slots hold older tickets, and so do the new ones (0).
+            int capacity = 2*slot;
+            sparseKeyList = keyList = Arrays.copyOf(keyList, capacity);
+            sparseInList = inList = Arrays.copyOf(inList, capacity);
+            sparseOutList = outList = Arrays.copyOf(outList, capacity);
+            sparseTicketCheck = ticketCheck = Arrays.copyOf(ticketCheck, capacity);
+            if (tieList != null) sparseTieList = tieList = Arrays.copyOf(tieList, capacity);
+        }
+        return slot;
+    }
+
+    /**
+     * Sets how entries with equal keys are ordered, until the next initialise. Call while the heap is empty.
+     */
+    public final void setTieBreaking(TieBreaking tieBreaking) {
+        this.tieBreaking = tieBreaking;
+        if (tieBreaking == TieBreaking.NONE || (tieList != null && tieList.length == keyList.length)) return;
+        tieList = new int[keyList.length];
+        if (sparseSlots == null) denseTieList = tieList;
+        else sparseTieList = tieList;
+    }
+
+    public final TieBreaking tieBreaking() {
+        return tieBreaking;
     }
     
-    public static final int getIn(int index) {
-        return ticketCheck[index] == ticketNumber ? inList[index] : index;
+    private final float getKey(int index) {
+        int slot = slotOf(index);
+        return slot != -1 && ticketCheck[slot] == ticketNumber ? keyList[slot] : defaultKey;
     }
     
-    public static final int getOut(int index) {
-        return ticketCheck[index] == ticketNumber ? outList[index] : index;
+    private final int getIn(int index) {
+        int slot = slotOf(index);
+        return slot != -1 && ticketCheck[slot] == ticketNumber ? inList[slot] : index;
     }
     
-    public static final void setKey(int index, float value) {
-        if (ticketCheck[index] != ticketNumber) {
-            keyList[index] = value;
-            inList[index] = index;
-            outList[index] = index;
-            ticketCheck[index] = ticketNumber;
-        } else {
-            keyList[index] = value;
-        }
+    private final int getOut(int index) {
+        int slot = slotOf(index);
+        return slot != -1 && ticketCheck[slot] == ticketNumber ? outList[slot] : index;
     }
     
-    public static final void setIn(int index, int value) {
-        if (ticketCheck[index] != ticketNumber) {
-            keyList[index] = defaultKey;
-            inList[index] = value;
-            outList[index] = index;
-            ticketCheck[index] = ticketNumber;
+    private final void setKey(int index, float value) {
+        int slot = writableSlotOf(index);
+        if (ticketCheck[slot] != ticketNumber) {
+            keyList[slot] = value;
+            inList[slot] = index;
+            outList[slot] = index;
+            ticketCheck[slot] = ticketNumber;
         } else {
-            inList[index] = value;
+            keyList[slot] = value;
         }
     }
     
-    public static final void setOut(int index, int value) {
-        if (ticketCheck[index] != ticketNumber) {
-            keyList[index] = defaultKey;
-            inList[index] = index;
-            outList[index] = value;
-            ticketCheck[index] = ticketNumber;
-        } else {
-            outList[index] = value;
-        }
+    private final int getTie(int index) {
+        int slot = slotOf(index);
+        return slot != -1 && ticketCheck[slot] == ticketNumber ? tieList[slot] : 0;
     }
 
-    
     /**
-     * Runtime: O(1)
+     * The key of the index must have been set since initialise.
      */
-    public ReusableIndirectHeap(int size) {
-        initialise(size, Float.POSITIVE_INFINITY);
-        heapSize = 0;
+    private final void setTie(int index, int value) {
+        tieList[slotOf(index)] = value;
     }
     
-    /**
-     * Runtime: O(1)
-     */
-    public ReusableIndirectHeap(int size, int memorySize) {
-        initialise(memorySize, Float.POSITIVE_INFINITY);
-        heapSize = 0;
+    private final void setIn(int index, int value) {
+        int slot = writableSlotOf(index);
+        if (ticketCheck[slot] != ticketNumber) {
+            keyList[slot] = defaultKey;
+            inList[slot] = value;
+            outList[slot] = index;
+            ticketCheck[slot] = ticketNumber;
+        } else {
+            inList[slot] = value;
+        }
+    }
+    
+    private final void setOut(int index, int value) {
+        int slot = writableSlotOf(index);
+        if (ticketCheck[slot] != ticketNumber) {
+            keyList[slot] = defaultKey;
+            inList[slot] = index;
+            outList[slot] = value;
+            ticketCheck[slot] = ticketNumber;
+        } else {
+            outList[slot] = value;
+        }
     }
 
     /**
@@ -132,9 +302,20 @@ public class ReusableIndirectHeap {
     }*/
     
     
+    /**
+     * @return true if the entry at heap position a comes before the one at b.
+     */
+    private final boolean lessThan(int a, int b) {
+        float keyA = getKey(a);
+        float keyB = getKey(b);
+        if (tieBreaking == TieBreaking.NONE) return keyA < keyB;
+        if (!TieBreaking.keysTie(keyA, keyB)) return keyA < keyB;
+        return getTie(a) < getTie(b);
+    }
+    
     private final void bubbleUp(int index) {
         int parent = (index-1) / 2;
-        while (index > 0 && getKey(index) < getKey(parent)) {
+        while (index > 0 && lessThan(index, parent)) {
             // If meets the conditions to bubble up,
             swapData(index, parent);
             index = parent;
@@ -164,6 +345,14 @@ public class ReusableIndirectHeap {
         float temp = getKey(i1);
         setKey(i1,getKey(i2));
         setKey(i2,temp);
+        if (tieBreaking != TieBreaking.NONE) {
+            // Both keys were just set, so both slots are in use.
+            int slot1 = slotOf(i1);
+            int slot2 = slotOf(i2);
+            int tempTie = tieList[slot1];
+            tieList[slot1] = tieList[slot2];
+            tieList[slot2] = tempTie;
+        }
     }
     
     /**
@@ -194,7 +383,7 @@ public class ReusableIndirectHeap {
         if (index2 >= heapSize)
             return index1;
         
-        return getKey(index1) < getKey(index2) ? index1 : index2;
+        return lessThan(index1, index2) ? index1 : index2;
     }
     
     private final void bubbleDown(int index) {
@@ -202,7 +391,7 @@ public class ReusableIndirectHeap {
         int rightChild = 2*index+2;
         int smallerChild = smallerNode(leftChild, rightChild);
         
-        while (smallerChild != -1 && getKey(index) > getKey(smallerChild)) {
+        while (smallerChild != -1 && lessThan(smallerChild, index)) {
             // If meets the conditions to bubble down,
             swapData(index,smallerChild);
             
@@ -217,7 +406,17 @@ public class ReusableIndirectHeap {
     /**
      * Runtime: O(lgn)
      */
+    @Override
     public final void decreaseKey(int outIndex, float newKey) {
+        decreaseKey(outIndex, newKey, 0);
+    }
+
+    /**
+     * Runtime: O(lgn)
+     * @param secondaryKey orders equal keys, as set with setTieBreaking.
+     */
+    @Override
+    public final void decreaseKey(int outIndex, float newKey, float secondaryKey) {
         // Assume newKey < old key
         int inIndex = getIn(outIndex);
 
@@ -230,10 +429,12 @@ public class ReusableIndirectHeap {
             ++heapSize;
         }
         setKey(inIndex,newKey);
+        if (tieBreaking != TieBreaking.NONE) setTie(inIndex, tieBreaking.tieKey(secondaryKey, ++stamp));
         
         bubbleUp(inIndex);
     }
     
+    @Override
     public final float getMinValue() {
         return getKey(0);
     }
@@ -242,6 +443,7 @@ public class ReusableIndirectHeap {
      * Runtime: O(lgn)
      * @return index of min element
      */
+    @Override
     public final int popMinIndex() {
         if (heapSize == 0)
             throw new NullPointerException("Indirect Heap is empty!");
@@ -271,7 +473,7 @@ public class ReusableIndirectHeap {
 
     public String arrayToString() {
         StringBuilder sb = new StringBuilder();
-        for (int i=0; i<ticketCheck.length; i++) {
+        for (int i=0; i<memorySize; i++) {
             if (i == heapSize) sb.append("* ");
             sb.append("[");
             sb.append(getOut(i));
@@ -297,19 +499,22 @@ public class ReusableIndirectHeap {
     }
     */
     
+    @Override
     public final int size() {
         return heapSize;
     }
     
+    @Override
     public final boolean isEmpty() {
         return heapSize <= 0;
     }
 
+    /**
+     * Empties the pool and drops the calling thread's heap.
+     */
     public static void clearMemory() {
-        keyList = null;
-        inList = null;
-        outList = null;
-        ticketCheck = null;
+        pool.clear();
+        threadHeap.remove();
         System.gc();
     }
 }
\ No newline at end of file
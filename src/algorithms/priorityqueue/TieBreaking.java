@@ -0,0 +1,56 @@
+package algorithms.priorityqueue;
+
+/**
+ * How ReusableIndirectHeap and FastVariableSizeIndirectHeap order entries with equal keys.
+ * <br>
+ * On open maps, many nodes share the smallest f-value. Preferring the ones with larger g, or the ones added
+ * last, pushes the search along towards the goal instead of filling the whole plateau.
+ * <br>
+ * Apart from NONE, keys within 1/KEY_RESOLUTION of each other are taken as equal.
+ */
+public enum TieBreaking {
+    /** Equal keys are popped in whatever order the heap leaves them. The secondary key is ignored. */
+    NONE,
+    /** The larger secondary key first. Searches pass the g-value. */
+    LARGER_G,
+    /** The entry added or decreased last first. The secondary key is ignored. */
+    MOST_RECENT,
+    /** The smaller secondary key first. */
+    SECONDARY_KEY;
+
+    /**
+     * @param stamp the number of keys set in the heap so far, counting this one.
+     * @return an int ordering entries with equal keys, smallest first.
+     */
+    final int tieKey(float secondaryKey, int stamp) {
+        switch (this) {
+            case LARGER_G: return sortableBits(-secondaryKey);
+            case MOST_RECENT: return -stamp;
+            case SECONDARY_KEY: return sortableBits(secondaryKey);
+            default: return 0;
+        }
+    }
+
+    /**
+     * Keys are compared in steps of 1/KEY_RESOLUTION when breaking ties, as sums of edge lengths that are equal
+     * seldom come out as the same float.
+     */
+    static final float KEY_RESOLUTION = 1024;
+
+    /**
+     * @return true if the keys tie.
+     */
+    static final boolean keysTie(float keyA, float keyB) {
+        float difference = keyA - keyB;
+        if (difference >= 2/KEY_RESOLUTION || difference <= -2/KEY_RESOLUTION) return false;
+        return Math.round(keyA * KEY_RESOLUTION) == Math.round(keyB * KEY_RESOLUTION);
+    }
+
+    /**
+     * @return an int which orders like the float.
+     */
+    private static final int sortableBits(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        return bits ^ ((bits >> 31) & Integer.MAX_VALUE);
+    }
+}
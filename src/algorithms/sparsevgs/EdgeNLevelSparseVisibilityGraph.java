@@ -1,20 +1,29 @@
 package algorithms.sparsevgs;
 
+import grid.CornerIndex;
 import grid.GridGraph;
 
 import java.util.Arrays;
-import algorithms.datatypes.Memory;
+import java.util.stream.IntStream;
+
+import algorithms.datatypes.PreprocessedGraphCache;
+import algorithms.datatypes.SearchMemory;
 
 public class EdgeNLevelSparseVisibilityGraph {
 
     public static int LEVEL_W = Integer.MAX_VALUE;
 
-    private static EdgeNLevelSparseVisibilityGraph storedVisibilityGraph;
-    private static GridGraph storedGridGraph;
-    private static int storedLevelLimit;
+    /**
+     * If true, graphs with at least PARALLEL_MIN_NODES nodes scan for edges and count taut neighbours in parallel.
+     * The graph built is identical to the sequential build.
+     */
+    public static boolean PARALLEL_CONSTRUCTION = true;
+    private static final int PARALLEL_MIN_NODES = 4096;
+    private static final int PARALLEL_CHUNK_NODES = 512;
     
     private final GridGraph graph;
     private LineOfSightScannerDouble losScanner;
+    private SuccessorCollector collector; // for losScanner
     private final int sizeXPlusOne;
     private final int sizeYPlusOne;
 
@@ -30,12 +39,24 @@ public class EdgeNLevelSparseVisibilityGraph {
 
     private int startOriginalSize;
     private int endOriginalSize;
+    private int startAndEndStamp; // the number of times a start and goal were added
 
     private int[] queue;
     private int queueSize;
 
+    private final SearchMemory memory = new SearchMemory(); // scratch space for pruneParallelSkipEdges and addStartAndEnd
+
     private int originalNEdges;
 
+    // Bounding box of the tiles read by the line of sight scan of each node. Used by repairRegion.
+    private int[] scannedMinXs;
+    private int[] scannedMaxXs;
+    private int[] scannedMinYs;
+    private int[] scannedMaxYs;
+
+    // Initial neighbour counts used by computeAllEdgeLevelsFast. Kept so that repairRegion can reuse them.
+    private int[][] tautNeighbourCountss;
+
     public int levelLimit;
     
     // Nodes: Indexed by node Index.
@@ -79,22 +100,39 @@ public class EdgeNLevelSparseVisibilityGraph {
         this.saveSnapshot = saveSnapshot;
     }
 
+    /**
+     * Reuses the graph cached in PreprocessedGraphCache.shared() for the same grid and level limit.
+     * If tiles have been changed since, it is repaired with repairRegion, or rebuilt if the changes are no longer
+     * all recorded in the grid's change journal.
+     */
     public static final EdgeNLevelSparseVisibilityGraph initialiseNew(GridGraph graph, int levelLimit) {
-        if (EdgeNLevelSparseVisibilityGraph.storedGridGraph == graph && levelLimit == storedLevelLimit) {
-            storedVisibilityGraph.restoreOriginalGraph();
-            return storedVisibilityGraph;
-        }
-        long _st = System.nanoTime();
-        
-        EdgeNLevelSparseVisibilityGraph.storedGridGraph = graph;
-        EdgeNLevelSparseVisibilityGraph vGraph = EdgeNLevelSparseVisibilityGraph.storedVisibilityGraph = new EdgeNLevelSparseVisibilityGraph(graph);
-        EdgeNLevelSparseVisibilityGraph.storedLevelLimit = levelLimit;
-        vGraph.levelLimit = levelLimit;
-        vGraph.constructGraph();
-        
-        long _ed = System.nanoTime();
-        System.out.println("Construction Time: " + (_ed-_st)/1000000.);
-        return vGraph;
+        return PreprocessedGraphCache.shared().get(EdgeNLevelSparseVisibilityGraph.class, graph, levelLimit, (stored, storedVersion) -> {
+            if (stored != null) {
+                if (storedVersion == graph.version()) {
+                    stored.restoreOriginalGraph();
+                    return stored;
+                }
+                if (graph.changeJournal().covers(storedVersion)) {
+                    int[] bounds = graph.changeJournal().boundsSince(storedVersion);
+                    stored.repairRegion(bounds[0], bounds[1], bounds[2], bounds[3]);
+                    return stored;
+                }
+            }
+            long _st = System.nanoTime();
+
+            EdgeNLevelSparseVisibilityGraph vGraph = new EdgeNLevelSparseVisibilityGraph(graph);
+            vGraph.levelLimit = levelLimit;
+            vGraph.constructGraph();
+
+            long _ed = System.nanoTime();
+            System.out.println("Construction Time: " + (_ed-_st)/1000000.);
+            return vGraph;
+        }, EdgeNLevelSparseVisibilityGraph::estimatedBytes);
+    }
+
+    // Per node: its position, edge lists and skip edges. Per edge: its level, weight and an entry in the lists of both ends.
+    private final long estimatedBytes() {
+        return (long)maxSize*160 + (long)edgeLevels.length*64 + (long)sizeXPlusOne*sizeYPlusOne*4;
     }
     
 
@@ -118,6 +156,17 @@ public class EdgeNLevelSparseVisibilityGraph {
         
         // Now xPositions and yPositions should be correctly initialised.
         //  We then initialise the rest of the node data.
+        initialiseNodeData();
+
+        // Initialise SVG Edges + edgeWeights
+        edgeWeights = new float[11];
+        nEdges = 0;
+        addAllEdges();
+
+        labelEdgesAndSetupSkipEdges();
+   }
+
+    private final void initialiseNodeData() {
         originalSize = nNodes;
         maxSize = nNodes + 2;
         xPositions = Arrays.copyOf(xPositions, maxSize);
@@ -135,13 +184,14 @@ public class EdgeNLevelSparseVisibilityGraph {
             outgoingEdgeOppositeIndexess[i] = new int[11];
             outgoingEdgeIsMarkeds[i] = new boolean[11];
         }
+        scannedMinXs = new int[maxSize];
+        scannedMaxXs = new int[maxSize];
+        scannedMinYs = new int[maxSize];
+        scannedMaxYs = new int[maxSize];
+        tautNeighbourCountss = new int[maxSize][];
+    }
 
-        // Initialise SVG Edges + edgeWeights
-        edgeWeights = new float[11];
-        nEdges = 0;
-        addAllEdges();
-
-        
+    private final void labelEdgesAndSetupSkipEdges() {
         // Now all the edges, indexes and weights should be correctly initialise.
         //  Now we initialise the rest of the edge data.
         originalNEdges = nEdges;
@@ -182,18 +232,13 @@ public class EdgeNLevelSparseVisibilityGraph {
         setupSkipEdges();
         
         pruneParallelSkipEdges();
-   }
+    }
 
     private final void addNodes() {
-        nodeIndex = new int[sizeYPlusOne*sizeXPlusOne];
-        for (int y=0; y<sizeYPlusOne; y++) {
-            for (int x=0; x<sizeXPlusOne; x++) {
-                if (graph.isOuterCorner(x, y)) {
-                    nodeIndex[y*sizeXPlusOne + x] = assignNode(x, y);
-                } else {
-                    nodeIndex[y*sizeXPlusOne + x] = -1;
-                }
-            }
+        CornerIndex corners = graph.cornerIndex();
+        nodeIndex = corners.toFlatNodeIndex();
+        for (int i=0; i<corners.nCorners(); ++i) {
+            assignNode(corners.getX(i), corners.getY(i));
         }
     }
 
@@ -211,25 +256,80 @@ public class EdgeNLevelSparseVisibilityGraph {
     }
 
 
+    private final boolean isParallel() {
+        return PARALLEL_CONSTRUCTION && nNodes >= PARALLEL_MIN_NODES;
+    }
+
+    private final IntStream nodeChunks() {
+        IntStream chunks = IntStream.range(0, (nNodes + PARALLEL_CHUNK_NODES - 1) / PARALLEL_CHUNK_NODES);
+        return isParallel() ? chunks.parallel() : chunks;
+    }
+
     private final void addAllEdges() {
-        int fromX, fromY, toX, toY;
+        if (!isParallel()) {
+            for (int i=0;i<nNodes;++i) {
+                addEdgesToScannedSuccessors(i);
+            }
+            return;
+        }
+
+        // The scans run in parallel, one scanner per chunk of nodes. The edges are then added in node order,
+        // so that the edge indexes are the same as in the sequential build.
+        int[][] successorss = new int[nNodes][];
+        nodeChunks().forEach(chunk -> {
+            LineOfSightScannerDouble scanner = new LineOfSightScannerDouble(graph);
+            SuccessorCollector collector = new SuccessorCollector();
+            int end = Math.min((chunk+1)*PARALLEL_CHUNK_NODES, nNodes);
+            for (int i=chunk*PARALLEL_CHUNK_NODES;i<end;++i) {
+                successorss[i] = scanSuccessors(scanner, collector, i);
+            }
+        });
         for (int i=0;i<nNodes;++i) {
-            fromX = xPositions[i];
-            fromY = yPositions[i];
-            
-            losScanner.computeAllVisibleTwoWayTautSuccessors(fromX, fromY);
-            int nSuccessors = losScanner.nSuccessors;
-            for (int succ=0;succ<nSuccessors;++succ) {
-                toX = losScanner.successorsX[succ];
-                toY = losScanner.successorsY[succ];
-                int j = nodeIndex[toY*sizeXPlusOne + toX];
+            addEdgesTo(i, successorss[i]);
+            successorss[i] = null;
+        }
+    }
 
-                // We add both ways at the same time. So we use this to avoid duplicates
-                if (i >= j) continue;
+    private final void addEdgesToScannedSuccessors(int i) {
+        if (collector == null) collector = new SuccessorCollector();
+        addEdgesTo(i, scanSuccessors(losScanner, collector, i));
+    }
 
-                float weight = graph.distance(fromX, fromY, toX, toY);
-                addEdge(i, j, weight);
-            }
+    // Returns the nodes j > i visible from node i, in the order the scanner finds them.
+    private final int[] scanSuccessors(LineOfSightScannerDouble scanner, SuccessorCollector collector, int i) {
+        collector.from = i;
+        collector.nSuccessors = 0;
+        scanner.computeAllVisibleTwoWayTautSuccessors(xPositions[i], yPositions[i], collector);
+        scannedMinXs[i] = scanner.scannedMinX;
+        scannedMaxXs[i] = scanner.scannedMaxX;
+        scannedMinYs[i] = scanner.scannedMinY;
+        scannedMaxYs[i] = scanner.scannedMaxY;
+        return Arrays.copyOf(collector.successors, collector.nSuccessors);
+    }
+
+    // Keeps the nodes j > from of a scan, without going through the scanner's coordinate arrays.
+    private final class SuccessorCollector implements LineOfSightScanner.SuccessorVisitor {
+        private int from;
+        private int[] successors = new int[11];
+        private int nSuccessors;
+
+        @Override
+        public final void visit(int x, int y) {
+            int j = nodeIndex[y*sizeXPlusOne + x];
+
+            // We add both ways at the same time. So we use this to avoid duplicates
+            if (from >= j) return;
+            if (nSuccessors >= successors.length) successors = Arrays.copyOf(successors, successors.length*2);
+            successors[nSuccessors++] = j;
+        }
+    }
+
+    private final void addEdgesTo(int i, int[] successors) {
+        int fromX = xPositions[i];
+        int fromY = yPositions[i];
+        for (int j : successors) {
+            float weight = graph.distance(fromX, fromY, xPositions[j], yPositions[j]);
+            addEdge(i, j, weight);
         }
     }
     
@@ -341,35 +441,23 @@ public class EdgeNLevelSparseVisibilityGraph {
          */
 
 
+        nodeChunks().forEach(chunk -> {
+            int end = Math.min((chunk+1)*PARALLEL_CHUNK_NODES, nNodes);
+            for (int vi=chunk*PARALLEL_CHUNK_NODES; vi<end; ++vi) {
+                if (tautNeighbourCountss[vi] == null) {
+                    tautNeighbourCountss[vi] = computeTautNeighbourCounts(vi);
+                }
+            }
+        });
+
+        // The levels are assigned one level at a time, in order, as the result depends on the order of the queue.
         int[][] nNeighbours = new int[nNodes][];
         for (int vi=0; vi<nNodes; ++vi) {
-            int currX = xPositions[vi];
-            int currY = yPositions[vi];
+            int[] currNodeNNeighbours = tautNeighbourCountss[vi].clone();
 
             int nOutgoingEdges = nOutgoingEdgess[vi];
-            int[] outgoingEdges = outgoingEdgess[vi];
-            
-            int[] currNodeNNeighbours = new int[nOutgoingEdges];
             for (int ei=0; ei<nOutgoingEdges; ++ei) {
-                // For each directed edge
-                int ni = outgoingEdges[ei];
-                int nextX = xPositions[ni];
-                int nextY = yPositions[ni];
-
-                // Count taut outgoing edges
-                int count = 0;
-
-                int nNextOutgoingEdges = nOutgoingEdgess[vi];
-                int[] nextOutgoingEdges = outgoingEdgess[vi];
-                for (int j=0; j<nNextOutgoingEdges; ++j) {
-                    int di = nextOutgoingEdges[j];
-                    if (graph.isTaut(nextX, nextY, currX, currY, xPositions[di], yPositions[di])) {
-                        ++count;
-                    }
-                }
-
-                currNodeNNeighbours[ei] = count;
-                if (count == 0) {
+                if (currNodeNNeighbours[ei] == 0) {
                     currentLevelEdgeNodes[nextLevelEnd] = vi;
                     currentLevelEdgeIndexes[nextLevelEnd] = ei;
                     ++nextLevelEnd;
@@ -442,6 +530,34 @@ public class EdgeNLevelSparseVisibilityGraph {
         }
     }
 
+    // For each outgoing edge of vi, counts the edges of vi that can be reached tautly by travelling along it backwards.
+    private final int[] computeTautNeighbourCounts(int vi) {
+        int currX = xPositions[vi];
+        int currY = yPositions[vi];
+
+        int nOutgoingEdges = nOutgoingEdgess[vi];
+        int[] outgoingEdges = outgoingEdgess[vi];
+
+        int[] counts = new int[nOutgoingEdges];
+        for (int ei=0; ei<nOutgoingEdges; ++ei) {
+            // For each directed edge
+            int ni = outgoingEdges[ei];
+            int nextX = xPositions[ni];
+            int nextY = yPositions[ni];
+
+            // Count taut outgoing edges
+            int count = 0;
+            for (int j=0; j<nOutgoingEdges; ++j) {
+                int di = outgoingEdges[j];
+                if (graph.isTaut(nextX, nextY, currX, currY, xPositions[di], yPositions[di])) {
+                    ++count;
+                }
+            }
+            counts[ei] = count;
+        }
+        return counts;
+    }
+
     // Checks whether there is a taut exist in the graph, considering only unmarked edges.
     // Note: unmarked edges are edges whose level >= currentLevel.
     private final boolean hasTautExit(int vFrom, int vTo, int currentLevel) {
@@ -594,14 +710,14 @@ public class EdgeNLevelSparseVisibilityGraph {
      *  Then we can prune e2 from the skip graph.
      *   '-> Note: this also prevents some bookkeeping bugs in the original version.
      *   
-     * Uses Memory.
+     * Uses memory.
      */
     private final void pruneParallelSkipEdges() {
         // TODO: IF THERE ARE MULTIPLE EDGES WITH THE SAME EDGE WEIGHT, WE ARBITRARILY PICK THE FIRST EDGE TO KEEP
         //       THE ORDERING MAY BE DIFFERENT FROM BOTH SIDES OF THE EDGE, WHICH CAN LEAD TO A NONSYMMETRIC GRAPH
         //       However, no issues have cropped up yet. Perhaps the ordering happens to be the same for both sides,
         //         due to how the graph is constructed. This is not good to rely upon, however.
-        Memory.initialise(maxSize, Float.POSITIVE_INFINITY, -1, false);
+        memory.initialise(maxSize, Float.POSITIVE_INFINITY, -1, false);
         
         int maxDegree = 0;
         for (int i=0;i<nNodes;++i) {
@@ -623,14 +739,14 @@ public class EdgeNLevelSparseVisibilityGraph {
                 int dest = sEdges[j];
                 float weight = sWeights[j];
                 
-                int p = Memory.parent(dest);
+                int p = memory.parent(dest);
                 int index = -1;
                 
                 if (p == -1) {
                     index = nUsed;
                     ++nUsed;
                     
-                    Memory.setParent(dest, index);
+                    memory.setParent(dest, index);
                     neighbourIndexes[index] = dest;
                     
                     lowestCostEdgeIndex[index] = j;
@@ -675,7 +791,7 @@ public class EdgeNLevelSparseVisibilityGraph {
             
             // Cleanup
             for (int j=0;j<nUsed;++j) {
-                Memory.setParent(neighbourIndexes[j], -1); 
+                memory.setParent(neighbourIndexes[j], -1); 
             }
         }
     }
@@ -709,6 +825,156 @@ public class EdgeNLevelSparseVisibilityGraph {
     /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
 
 
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///    REPAIR PHASE - START     ///
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+
+    /**
+     * Updates the graph after the tiles in the rectangle [minX, maxX] x [minY, maxY] (inclusive) have been
+     * blocked or unblocked in the grid graph.
+     * Only the nodes whose line of sight scan read a changed tile are rescanned. The edges of the other nodes
+     * are carried over, after which the edge levels and skip-edges are relabelled without any further scans.
+     * The resulting graph is identical to one constructed from scratch.
+     */
+    public final void repairRegion(int minX, int minY, int maxX, int maxY) {
+        restoreOriginalGraph();
+        minX = Math.max(minX, 0);
+        minY = Math.max(minY, 0);
+        maxX = Math.min(maxX, graph.sizeX-1);
+        maxY = Math.min(maxY, graph.sizeY-1);
+        if (minX > maxX || minY > maxY) return;
+
+        // Only the vertices touching a changed tile can become or stop being outer corners.
+        int[] addedVertices = new int[11];
+        int nAdded = 0;
+        for (int y=minY; y<=maxY+1; ++y) {
+            for (int x=minX; x<=maxX+1; ++x) {
+                int v = y*sizeXPlusOne + x;
+                boolean isCorner = graph.isOuterCorner(x, y);
+                if (isCorner && nodeIndex[v] == -1) {
+                    if (nAdded >= addedVertices.length) {
+                        addedVertices = Arrays.copyOf(addedVertices, addedVertices.length*2);
+                    }
+                    addedVertices[nAdded] = v;
+                    ++nAdded;
+                } else if (!isCorner) {
+                    nodeIndex[v] = -1;
+                }
+            }
+        }
+
+        int oldNNodes = nNodes;
+        int[] oldXPositions = xPositions;
+        int[] oldYPositions = yPositions;
+        int[] oldNOutgoingEdgess = nOutgoingEdgess;
+        int[][] oldOutgoingEdgess = outgoingEdgess;
+        int[] oldScannedMinXs = scannedMinXs;
+        int[] oldScannedMaxXs = scannedMaxXs;
+        int[] oldScannedMinYs = scannedMinYs;
+        int[] oldScannedMaxYs = scannedMaxYs;
+        int[][] oldTautNeighbourCountss = tautNeighbourCountss;
+
+        // Renumber the nodes, keeping them in the same row-major order as addNodes.
+        // newToOld is -1 for the added nodes.
+        int[] oldToNew = new int[oldNNodes];
+        int[] newToOld = new int[oldNNodes + nAdded];
+        boolean[] rescan = new boolean[oldNNodes + nAdded];
+        xPositions = new int[Math.max(oldNNodes + nAdded, 11)];
+        yPositions = new int[Math.max(oldNNodes + nAdded, 11)];
+        nNodes = 0;
+        int nextAdded = 0;
+        for (int i=0;i<oldNNodes;++i) {
+            int x = oldXPositions[i];
+            int y = oldYPositions[i];
+            int v = y*sizeXPlusOne + x;
+            while (nextAdded < nAdded && addedVertices[nextAdded] < v) {
+                int av = addedVertices[nextAdded];
+                newToOld[nNodes] = -1;
+                rescan[nNodes] = true;
+                nodeIndex[av] = assignNode(av % sizeXPlusOne, av / sizeXPlusOne);
+                ++nextAdded;
+            }
+            if (nodeIndex[v] == -1) {
+                oldToNew[i] = -1;
+                continue;
+            }
+
+            newToOld[nNodes] = i;
+            rescan[nNodes] = oldScannedMinXs[i] <= maxX && minX <= oldScannedMaxXs[i] &&
+                             oldScannedMinYs[i] <= maxY && minY <= oldScannedMaxYs[i];
+            oldToNew[i] = nodeIndex[v] = assignNode(x, y);
+        }
+        while (nextAdded < nAdded) {
+            int av = addedVertices[nextAdded];
+            newToOld[nNodes] = -1;
+            rescan[nNodes] = true;
+            nodeIndex[av] = assignNode(av % sizeXPlusOne, av / sizeXPlusOne);
+            ++nextAdded;
+        }
+
+        initialiseNodeData();
+        edgeWeights = new float[Math.max(originalNEdges, 11)];
+        nEdges = 0;
+
+        // Same order of edge insertion as addAllEdges.
+        for (int i=0;i<nNodes;++i) {
+            if (rescan[i]) {
+                addEdgesToScannedSuccessors(i);
+                continue;
+            }
+            int oldIndex = newToOld[i];
+
+            scannedMinXs[i] = oldScannedMinXs[oldIndex];
+            scannedMaxXs[i] = oldScannedMaxXs[oldIndex];
+            scannedMinYs[i] = oldScannedMinYs[oldIndex];
+            scannedMaxYs[i] = oldScannedMaxYs[oldIndex];
+
+            // The edges to higher-indexed nodes were added by this node, in the order they were scanned.
+            int fromX = xPositions[i];
+            int fromY = yPositions[i];
+            int nOldOutgoingEdges = oldNOutgoingEdgess[oldIndex];
+            int[] oldOutgoingEdges = oldOutgoingEdgess[oldIndex];
+            for (int k=0;k<nOldOutgoingEdges;++k) {
+                int oldJ = oldOutgoingEdges[k];
+                if (oldIndex >= oldJ) continue;
+
+                int j = oldToNew[oldJ];
+                float weight = graph.distance(fromX, fromY, xPositions[j], yPositions[j]);
+                addEdge(i, j, weight);
+            }
+        }
+
+        // The neighbour counts of a node only need to be recomputed if its list of neighbours
+        // or the tiles around it have changed.
+        for (int i=0;i<nNodes;++i) {
+            int oldIndex = newToOld[i];
+            if (oldIndex == -1) continue;
+            int x = xPositions[i];
+            int y = yPositions[i];
+            if (minX <= x && x <= maxX+1 && minY <= y && y <= maxY+1) continue;
+
+            int nOutgoingEdges = nOutgoingEdgess[i];
+            if (nOutgoingEdges != oldNOutgoingEdgess[oldIndex]) continue;
+            int[] outgoingEdges = outgoingEdgess[i];
+            int[] oldOutgoingEdges = oldOutgoingEdgess[oldIndex];
+            boolean isUnchanged = true;
+            for (int k=0;k<nOutgoingEdges;++k) {
+                if (outgoingEdges[k] != oldToNew[oldOutgoingEdges[k]]) {
+                    isUnchanged = false;
+                    break;
+                }
+            }
+            if (isUnchanged) tautNeighbourCountss[i] = oldTautNeighbourCountss[oldIndex];
+        }
+
+        labelEdgesAndSetupSkipEdges();
+    }
+
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///     REPAIR PHASE - END      ///
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+
+
     /// \\\ /// \\\ /// \\\ /// \\\ ///
     ///  REPURPOSING PHASE - START  ///
     /// \\\ /// \\\ /// \\\ /// \\\ ///
@@ -729,9 +995,26 @@ public class EdgeNLevelSparseVisibilityGraph {
         endIndex = -1;
     }
 
+    /**
+     * Increases each time a start and goal are added.
+     */
+    public final int startAndEndStamp() {
+        return startAndEndStamp;
+    }
+
+    /**
+     * Replaces the start and goal of the graph by these. Lets a search stepped in turn with others on the same graph
+     * go on: adding the same start and goal again gives them the same node and edge indices.
+     */
+    public final void readdStartAndEnd(int sx, int sy, int ex, int ey) {
+        restoreOriginalGraph();
+        addStartAndEnd(sx, sy, ex, ey);
+    }
+
     // Assumption: No edge between start and end.
-    // Uses Memory
+    // Uses memory
     public final void addStartAndEnd(int sx, int sy, int ex, int ey) {
+        ++startAndEndStamp;
         // START:
         if (nodeIndex[sy*sizeXPlusOne + sx] == -1) {
             startIndex = nNodes;
@@ -766,14 +1049,14 @@ public class EdgeNLevelSparseVisibilityGraph {
         markEdgesFrom(endIndex, true);
     }
 
-    // Uses Memory
+    // Uses memory
     private final int addTempEdgesToVisibleNeighbours(int index, int x, int y) {
-        Memory.initialise(maxSize, Float.POSITIVE_INFINITY, -1, false);
+        memory.initialise(maxSize, Float.POSITIVE_INFINITY, -1, false);
         {
             int nOutgoingEdges = nOutgoingEdgess[index];
             int[] outgoingEdges = outgoingEdgess[index];
             for (int i=0;i<nOutgoingEdges;++i) {
-                Memory.setVisited(outgoingEdges[i], true);
+                memory.setVisited(outgoingEdges[i], true);
             }
         }
 
@@ -784,7 +1067,7 @@ public class EdgeNLevelSparseVisibilityGraph {
             int toX = losScanner.successorsX[i];
             int toY = losScanner.successorsY[i];
             int targetIndex = nodeIndex[toY*sizeXPlusOne + toX];
-            if (Memory.visited(targetIndex)) continue;
+            if (memory.visited(targetIndex)) continue;
 
             float weight = graph.distance(x, y, toX, toY);
             addTemporaryEdge(index, targetIndex, weight);
@@ -974,8 +1257,7 @@ public class EdgeNLevelSparseVisibilityGraph {
     }
     
     public static void clearMemory() {
-        storedVisibilityGraph = null;
-        storedGridGraph = null;
+        PreprocessedGraphCache.shared().removeAll(EdgeNLevelSparseVisibilityGraph.class);
         System.gc();
     }
     
@@ -6,15 +6,14 @@ import java.util.List;
 import java.util.TreeMap;
 
 import algorithms.AStarStaticMemory;
-import algorithms.datatypes.Memory;
 import algorithms.datatypes.SnapshotItem;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 import grid.GridGraph;
 import main.AlgoFunction;
 
 
 public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory {
     private EdgeNLevelSparseVisibilityGraph visibilityGraph;
+    private int startAndEndStamp; // of the visibility graph, once the start and goal of this search are added
     private boolean reuseGraph = false;
     private int levelLimit = Integer.MAX_VALUE;
     
@@ -42,88 +41,108 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
     }
     
     @Override
-    public void computePath() {
+    protected boolean startSearch() {
         setupVisibilityGraph();
 
-        int size = visibilityGraph.size();
         int memorySize = visibilityGraph.maxSize();
-        pq = new ReusableIndirectHeap(size, memorySize);
+        pq = initialiseHeap(memorySize);
         this.initialiseMemory(memorySize, Float.POSITIVE_INFINITY, -1, false);
         
         initialise(visibilityGraph.startNode());
-        int finish = visibilityGraph.endNode();
-
+        
         if (graph.lineOfSight(sx, sy, ex, ey)) {
             // There is a direct path from (sx, sy) to (ex, ey).
             if (sx != ex || sy != ey) {
-                setParent(finish, visibilityGraph.startNode());
+                setParent(visibilityGraph.endNode(), visibilityGraph.startNode());
             }
-            return;
+            return false;
         }
+        return true;
+    }
 
-        while (!pq.isEmpty()) {
-            int current = pq.popMinIndex();
-            setVisited(current, true);
-            resolveSkipEdgeNextNode(current);
-            
-            if (current == finish) {
-                break;
-            }
-            
-            int[] outgoingEdges = visibilityGraph.outgoingEdgess[current];
-            int[] outgoingEdgeIndexes = visibilityGraph.outgoingEdgeIndexess[current];
+    @Override
+    protected int expandNext() {
+        if (pq.isEmpty()) return -1;
+        int finish = visibilityGraph.endNode();
+        int current = pq.popMinIndex();
+        setVisited(current, true);
+        resolveSkipEdgeNextNode(current);
+        
+        if (current == finish) {
+            return -1;
+        }
+        
+        int[] outgoingEdges = visibilityGraph.outgoingEdgess[current];
+        int[] outgoingEdgeIndexes = visibilityGraph.outgoingEdgeIndexess[current];
 
-            // Scan through marked edges to neighbours
-            int nMarkedEdges = visibilityGraph.nMarkedEdgess[current];
-            int[] outgoingMarkedEdgeIndexes = visibilityGraph.outgoingMarkedEdgeIndexess[current];
-            
-            for (int i=0;i<nMarkedEdges;++i) {
-                int index = outgoingMarkedEdgeIndexes[i];
-                int dest = outgoingEdges[index];
-                int edgeIndex = outgoingEdgeIndexes[index];
-                float weight = visibilityGraph.edgeWeights[edgeIndex];
-                if (!Memory.visited(dest) && relax(current, dest, weight)) {
-                    int destX = visibilityGraph.xPositions[dest];
-                    int destY = visibilityGraph.yPositions[dest];
-                    
-                    pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));;
-                }
+        // Scan through marked edges to neighbours
+        int nMarkedEdges = visibilityGraph.nMarkedEdgess[current];
+        int[] outgoingMarkedEdgeIndexes = visibilityGraph.outgoingMarkedEdgeIndexess[current];
+        
+        for (int i=0;i<nMarkedEdges;++i) {
+            int index = outgoingMarkedEdgeIndexes[i];
+            int dest = outgoingEdges[index];
+            int edgeIndex = outgoingEdgeIndexes[index];
+            float weight = visibilityGraph.edgeWeights[edgeIndex];
+            if (!memory.visited(dest) && relax(current, dest, weight)) {
+                int destX = visibilityGraph.xPositions[dest];
+                int destY = visibilityGraph.yPositions[dest];
+                
+                pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));;
             }
+        }
 
-            // Scan through skip edges to neighbours
-            int nSkipEdges = visibilityGraph.nSkipEdgess[current];
-            int[] outgoingSkipEdges = visibilityGraph.outgoingSkipEdgess[current];
-            float[] outgoingSkipEdgeWeights = visibilityGraph.outgoingSkipEdgeWeightss[current];
-            int[] outgoingSkipEdgeNextNodes = visibilityGraph.outgoingSkipEdgeNextNodess[current];
+        // Scan through skip edges to neighbours
+        int nSkipEdges = visibilityGraph.nSkipEdgess[current];
+        int[] outgoingSkipEdges = visibilityGraph.outgoingSkipEdgess[current];
+        float[] outgoingSkipEdgeWeights = visibilityGraph.outgoingSkipEdgeWeightss[current];
+        int[] outgoingSkipEdgeNextNodes = visibilityGraph.outgoingSkipEdgeNextNodess[current];
+        
+        for (int i=0;i<nSkipEdges;++i) {
+            int dest = outgoingSkipEdges[i];
+            int nextNode = outgoingSkipEdgeNextNodes[i];
+            float edgeWeight = outgoingSkipEdgeWeights[i];
             
-            for (int i=0;i<nSkipEdges;++i) {
-                int dest = outgoingSkipEdges[i];
-                int nextNode = outgoingSkipEdgeNextNodes[i];
-                float edgeWeight = outgoingSkipEdgeWeights[i];
-                
-                if (!Memory.visited(dest) && relaxViaSkipEdge(current, dest, nextNode, edgeWeight)) {
-                    int destX = visibilityGraph.xPositions[dest];
-                    int destY = visibilityGraph.yPositions[dest];
-                    pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));
-                }
+            if (!memory.visited(dest) && relaxViaSkipEdge(current, dest, nextNode, edgeWeight)) {
+                int destX = visibilityGraph.xPositions[dest];
+                int destY = visibilityGraph.yPositions[dest];
+                pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));
             }
+        }
 
-            if (visibilityGraph.hasEdgeToGoal[current]) {
-                int currX = visibilityGraph.xPositions[current];
-                int currY = visibilityGraph.yPositions[current];
-                
-                float weight = graph.distance(currX, currY, ex, ey);
-                if (relax(current, finish, weight)) {
-                    pq.decreaseKey(finish, distance(finish));
-                }
-            }
+        if (visibilityGraph.hasEdgeToGoal[current]) {
+            int currX = visibilityGraph.xPositions[current];
+            int currY = visibilityGraph.yPositions[current];
             
-            maybeSaveSearchSnapshot();
+            float weight = graph.distance(currX, currY, ex, ey);
+            if (relax(current, finish, weight)) {
+                pq.decreaseKey(finish, distance(finish));
+            }
         }
+        
+        maybeSaveSearchSnapshot();
+        return current;
+    }
 
+    @Override
+    protected void finishSearch() {
         resolveFinalPath();
     }
 
+    @Override
+    protected float distanceToGoal(int node) {
+        return graph.distance(visibilityGraph.xPositions[node], visibilityGraph.yPositions[node], ex, ey);
+    }
+
+    @Override
+    protected void resumeSearch() {
+        if (visibilityGraph.startAndEndStamp() != startAndEndStamp) {
+            // Another search has put its start and goal in the shared graph since the last step.
+            visibilityGraph.readdStartAndEnd(sx, sy, ex, ey);
+            startAndEndStamp = visibilityGraph.startAndEndStamp();
+        }
+    }
+
     protected void setupVisibilityGraph() {
         if (reuseGraph) {
             visibilityGraph = EdgeNLevelSparseVisibilityGraph.initialiseNew(graph, levelLimit);
@@ -141,6 +160,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
         } else {
             visibilityGraph.addStartAndEnd(sx, sy, ex, ey);
         }
+        startAndEndStamp = visibilityGraph.startAndEndStamp();
     }
 
     protected final boolean relax(int u, int v, float weightUV) {
@@ -215,7 +235,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
     }
     
     private final void resolveSkipEdgeNextNode(int v) {
-        int parent = Memory.parent(v);
+        int parent = memory.parent(v);
         if (parent >= -1) return;
         parent -= Integer.MIN_VALUE;
         int nSkipEdges = visibilityGraph.nSkipEdgess[v];
@@ -223,7 +243,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
 
         for (int i=0;i<nSkipEdges;++i) {
             if (outgoingSkipEdges[i] == parent) {
-                Memory.setParent(v, visibilityGraph.outgoingSkipEdgeNextNodess[v][i] + Integer.MIN_VALUE);
+                memory.setParent(v, visibilityGraph.outgoingSkipEdgeNextNodess[v][i] + Integer.MIN_VALUE);
                 return;
             }
         }
@@ -242,11 +262,11 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
         while (current != -1) {
             if (current < -1) {
                 current -= Integer.MIN_VALUE;
-                Memory.setParent(previous, current);
+                memory.setParent(previous, current);
                 
                 if (visibilityGraph.nSkipEdgess[current] != 0) {
                     previous = current;
-                    current = Memory.parent(current);
+                    current = memory.parent(current);
                     continue;
                 }
                 
@@ -260,18 +280,63 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
                     if (outgoingEdges[i] == previous) continue;
                     
                     int next = outgoingEdges[i];
-                    Memory.setParent(current, next + Integer.MIN_VALUE);
+                    memory.setParent(current, next + Integer.MIN_VALUE);
                     done = true;
                     break;
                 }
                 if (!done) throw new UnsupportedOperationException("SS");
             }
             previous = current;
-            current = Memory.parent(current);
+            current = memory.parent(current);
         }
     }
     
 
+    /**
+     * Used for partial paths, before resolveFinalPath. Follows the same chains of level-W edges as resolveFinalPath,
+     * but without rewriting the parents, so that the search can go on.
+     */
+    @Override
+    protected int[][] pathTo(int node) {
+        int[] edgeLevels = visibilityGraph.edgeLevels;
+        ArrayList<int[]> points = new ArrayList<>();
+        int current = node;
+        int previous = -1;
+        while (current != -1) {
+            if (current < -1) {
+                current -= Integer.MIN_VALUE;
+                if (visibilityGraph.nSkipEdgess[current] == 0) {
+                    int nOutgoingEdges = visibilityGraph.nOutgoingEdgess[current];
+                    int[] outgoingEdges = visibilityGraph.outgoingEdgess[current];
+                    int[] outgoingEdgeIndexes = visibilityGraph.outgoingEdgeIndexess[current];
+
+                    int next = -1;
+                    for (int i=0;i<nOutgoingEdges;++i) {
+                        if (edgeLevels[outgoingEdgeIndexes[i]] != EdgeNLevelSparseVisibilityGraph.LEVEL_W) continue;
+                        if (outgoingEdges[i] == previous) continue;
+                        next = outgoingEdges[i];
+                        break;
+                    }
+                    if (next == -1) throw new UnsupportedOperationException("SS");
+
+                    points.add(new int[]{visibilityGraph.xPositions[current], visibilityGraph.yPositions[current]});
+                    previous = current;
+                    current = next + Integer.MIN_VALUE;
+                    continue;
+                }
+            }
+            points.add(new int[]{visibilityGraph.xPositions[current], visibilityGraph.yPositions[current]});
+            previous = current;
+            current = parent(current);
+        }
+
+        int[][] path = new int[points.size()][];
+        for (int i=0;i<path.length;++i) {
+            path[i] = points.get(path.length-1-i);
+        }
+        return path;
+    }
+
     private int pathLength() {
         int length = 0;
         int current = visibilityGraph.endNode();
@@ -283,7 +348,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
     }
 
     @Override
-    public int[][] getPath() {
+    protected int[][] finalPath() {
         int length = pathLength();
         int[][] path = new int[length][];
         int current = visibilityGraph.endNode();
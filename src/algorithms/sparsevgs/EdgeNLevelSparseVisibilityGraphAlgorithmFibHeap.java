@@ -6,23 +6,20 @@ import java.util.List;
 import java.util.TreeMap;
 
 import algorithms.PathFindingAlgorithm;
-import algorithms.datatypes.Memory;
 import algorithms.datatypes.SnapshotItem;
+import algorithms.priorityqueue.IndirectFibonacciHeap;
+import algorithms.priorityqueue.OpenListType;
 import algorithms.priorityqueue.ReusableIndirectHeap;
 import grid.GridGraph;
 import main.AlgoFunction;
 
-import algorithms.jgrapht.FibonacciHeap;
-import algorithms.jgrapht.FibonacciHeapNode;
-
 
 public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFindingAlgorithm {
     private EdgeNLevelSparseVisibilityGraph visibilityGraph;
     private boolean reuseGraph = false;
     private int levelLimit = Integer.MAX_VALUE;
 
-    private static FibonacciHeapNode<Integer>[] nodeRefs;
-    private FibonacciHeap<Integer> pq = new FibonacciHeap<>();
+    private IndirectFibonacciHeap pq;
     
     private EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap(GridGraph graph, int sx, int sy, int ex, int ey) {
         super(graph, graph.sizeX, graph.sizeY, sx, sy, ex, ey);
@@ -48,7 +45,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
     }
 
     private final void initialise(int s) {
-        decreaseKey(s, 0f, true);
+        pq.decreaseKey(s, 0f);
         setDistance(s, 0f);
     }
     
@@ -58,7 +55,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
 
         int size = visibilityGraph.size();
         int memorySize = visibilityGraph.maxSize();
-        pq.clear();
+        pq = (IndirectFibonacciHeap)OpenListType.FIBONACCI_HEAP.ofCurrentThread(memorySize, false);
         this.initialiseMemory(memorySize, Float.POSITIVE_INFINITY, -1, false);
         
         initialise(visibilityGraph.startNode());
@@ -74,9 +71,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
 
         while (!pq.isEmpty()) {
 
-            //int current = pq.popMinIndex();
-            FibonacciHeapNode<Integer> currNode = pq.removeMin();
-            int current = currNode.getData();
+            int current = pq.popMinIndex();
             
             setVisited(current, true);
             resolveSkipEdgeNextNode(current);
@@ -97,13 +92,12 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
                 int dest = outgoingEdges[index];
                 int edgeIndex = outgoingEdgeIndexes[index];
                 float weight = visibilityGraph.edgeWeights[edgeIndex];
-                boolean isNewItem = distance(dest) == Float.POSITIVE_INFINITY;
 
-                if (!Memory.visited(dest) && relax(current, dest, weight)) {
+                if (!memory.visited(dest) && relax(current, dest, weight)) {
                     int destX = visibilityGraph.xPositions[dest];
                     int destY = visibilityGraph.yPositions[dest];
                     
-                    decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey), isNewItem);
+                    pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));
                 }
             }
 
@@ -117,23 +111,21 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
                 int dest = outgoingSkipEdges[i];
                 int nextNode = outgoingSkipEdgeNextNodes[i];
                 float edgeWeight = outgoingSkipEdgeWeights[i];
-                boolean isNewItem = distance(dest) == Float.POSITIVE_INFINITY;
                 
-                if (!Memory.visited(dest) && relaxViaSkipEdge(current, dest, nextNode, edgeWeight)) {
+                if (!memory.visited(dest) && relaxViaSkipEdge(current, dest, nextNode, edgeWeight)) {
                     int destX = visibilityGraph.xPositions[dest];
                     int destY = visibilityGraph.yPositions[dest];
-                    decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey), isNewItem);
+                    pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));
                 }
             }
 
             if (visibilityGraph.hasEdgeToGoal[current]) {
                 int currX = visibilityGraph.xPositions[current];
                 int currY = visibilityGraph.yPositions[current];
-                boolean isNewItem = distance(finish) == Float.POSITIVE_INFINITY;
                 
                 float weight = graph.distance(currX, currY, ex, ey);
                 if (relax(current, finish, weight)) {
-                    decreaseKey(finish, distance(finish), isNewItem);
+                    pq.decreaseKey(finish, distance(finish));
                 }
             }
             
@@ -143,15 +135,6 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
         resolveFinalPath();
     }
 
-    private final void decreaseKey(int index, float newCost, boolean isNewItem) {
-        if (isNewItem) {
-            nodeRefs[index] = new FibonacciHeapNode<>(index);
-            pq.insert(nodeRefs[index], newCost);
-        } else {
-            pq.decreaseKey(nodeRefs[index], newCost);
-        }
-    }
-
     protected void setupVisibilityGraph() {
         if (reuseGraph) {
             visibilityGraph = EdgeNLevelSparseVisibilityGraph.initialiseNew(graph, levelLimit);
@@ -169,10 +152,6 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
         } else {
             visibilityGraph.addStartAndEnd(sx, sy, ex, ey);
         }
-
-        if (nodeRefs == null || visibilityGraph.maxSize() != nodeRefs.length) {
-            nodeRefs = (FibonacciHeapNode<Integer>[])new FibonacciHeapNode[visibilityGraph.maxSize()];
-        }
     }
 
     protected final boolean relax(int u, int v, float weightUV) {
@@ -247,7 +226,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
     }
     
     private final void resolveSkipEdgeNextNode(int v) {
-        int parent = Memory.parent(v);
+        int parent = memory.parent(v);
         if (parent >= -1) return;
         parent -= Integer.MIN_VALUE;
         int nSkipEdges = visibilityGraph.nSkipEdgess[v];
@@ -255,7 +234,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
 
         for (int i=0;i<nSkipEdges;++i) {
             if (outgoingSkipEdges[i] == parent) {
-                Memory.setParent(v, visibilityGraph.outgoingSkipEdgeNextNodess[v][i] + Integer.MIN_VALUE);
+                memory.setParent(v, visibilityGraph.outgoingSkipEdgeNextNodess[v][i] + Integer.MIN_VALUE);
                 return;
             }
         }
@@ -274,11 +253,11 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
         while (current != -1) {
             if (current < -1) {
                 current -= Integer.MIN_VALUE;
-                Memory.setParent(previous, current);
+                memory.setParent(previous, current);
                 
                 if (visibilityGraph.nSkipEdgess[current] != 0) {
                     previous = current;
-                    current = Memory.parent(current);
+                    current = memory.parent(current);
                     continue;
                 }
                 
@@ -292,14 +271,14 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
                     if (outgoingEdges[i] == previous) continue;
                     
                     int next = outgoingEdges[i];
-                    Memory.setParent(current, next + Integer.MIN_VALUE);
+                    memory.setParent(current, next + Integer.MIN_VALUE);
                     done = true;
                     break;
                 }
                 if (!done) throw new UnsupportedOperationException("SS");
             }
             previous = current;
-            current = Memory.parent(current);
+            current = memory.parent(current);
         }
     }
     
@@ -563,31 +542,26 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap extends PathFinding
     };
 
     private final int parent(int index) {
-        return Memory.parent(index);
+        return memory.parent(index);
     }
     
     private final void setParent(int index, int value) {
-        Memory.setParent(index, value);
+        memory.setParent(index, value);
     }
     
     private final float distance(int index) {
-        return Memory.distance(index);
+        return memory.distance(index);
     }
     
     private final void setDistance(int index, float value) {
-        Memory.setDistance(index, value);
+        memory.setDistance(index, value);
     }
     
     private final boolean visited(int index) {
-        return Memory.visited(index);
+        return memory.visited(index);
     }
     
     private final void setVisited(int index, boolean value) {
-        Memory.setVisited(index, value);
-    }
-    
-    public static void clearMemory() {
-        nodeRefs = null;
-        System.gc();
+        memory.setVisited(index, value);
     }
 }
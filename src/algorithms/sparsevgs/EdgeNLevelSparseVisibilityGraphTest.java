@@ -0,0 +1,142 @@
+package algorithms.sparsevgs;
+
+import static org.junit.Assert.*;
+import grid.GridGraph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import main.graphgeneration.DefaultGenerator;
+
+import org.junit.Test;
+
+import algorithms.datatypes.PreprocessedGraphCache;
+
+public class EdgeNLevelSparseVisibilityGraphTest {
+
+    @Test
+    public void repairedGraphEqualsANewOne() {
+        testRepair(Integer.MAX_VALUE, 1);
+        testRepair(2, 2);
+    }
+
+    @Test
+    public void parallelConstructionEqualsSequential() {
+        // Large enough to have PARALLEL_MIN_NODES nodes, so the parallel path runs.
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(7, 300, 300, 12);
+        boolean parallel = EdgeNLevelSparseVisibilityGraph.PARALLEL_CONSTRUCTION;
+        try {
+            EdgeNLevelSparseVisibilityGraph.PARALLEL_CONSTRUCTION = false;
+            EdgeNLevelSparseVisibilityGraph sequential = buildUncached(graph);
+            EdgeNLevelSparseVisibilityGraph.PARALLEL_CONSTRUCTION = true;
+            EdgeNLevelSparseVisibilityGraph concurrent = buildUncached(graph);
+
+            assertTrue(sequential.size() >= 4096);
+            assertIdenticalGraph(sequential, concurrent);
+        } finally {
+            EdgeNLevelSparseVisibilityGraph.PARALLEL_CONSTRUCTION = parallel;
+        }
+    }
+
+    private static EdgeNLevelSparseVisibilityGraph buildUncached(GridGraph graph) {
+        GridGraph copy = graph.editableCopy();
+        EdgeNLevelSparseVisibilityGraph built = EdgeNLevelSparseVisibilityGraph.initialiseNew(copy, Integer.MAX_VALUE);
+        PreprocessedGraphCache.shared().remove(copy);
+        return built;
+    }
+
+    /**
+     * Unlike assertSameGraph, also requires the same edge numbering and the same bits in every weight.
+     */
+    private static void assertIdenticalGraph(EdgeNLevelSparseVisibilityGraph expected, EdgeNLevelSparseVisibilityGraph actual) {
+        int nNodes = expected.size();
+        int nEdges = expected.nEdges;
+        assertEquals(nNodes, actual.size());
+        assertEquals(nEdges, actual.nEdges);
+        assertArrayEquals(prefix(expected.xPositions, nNodes), prefix(actual.xPositions, nNodes));
+        assertArrayEquals(prefix(expected.yPositions, nNodes), prefix(actual.yPositions, nNodes));
+        assertArrayEquals(prefix(expected.nOutgoingEdgess, nNodes), prefix(actual.nOutgoingEdgess, nNodes));
+        assertArrayEquals(prefix(expected.nSkipEdgess, nNodes), prefix(actual.nSkipEdgess, nNodes));
+        assertArrayEquals(prefix(expected.edgeLevels, nEdges), prefix(actual.edgeLevels, nEdges));
+        assertArrayEquals(bits(expected.edgeWeights, nEdges), bits(actual.edgeWeights, nEdges));
+
+        for (int i=0; i<nNodes; ++i) {
+            int nOutgoingEdges = expected.nOutgoingEdgess[i];
+            assertArrayEquals(prefix(expected.outgoingEdgess[i], nOutgoingEdges), prefix(actual.outgoingEdgess[i], nOutgoingEdges));
+            assertArrayEquals(prefix(expected.outgoingEdgeIndexess[i], nOutgoingEdges), prefix(actual.outgoingEdgeIndexess[i], nOutgoingEdges));
+
+            int nSkipEdges = expected.nSkipEdgess[i];
+            assertArrayEquals(prefix(expected.outgoingSkipEdgess[i], nSkipEdges), prefix(actual.outgoingSkipEdgess[i], nSkipEdges));
+            assertArrayEquals(prefix(expected.outgoingSkipEdgeNextNodess[i], nSkipEdges), prefix(actual.outgoingSkipEdgeNextNodess[i], nSkipEdges));
+            assertArrayEquals(bits(expected.outgoingSkipEdgeWeightss[i], nSkipEdges), bits(actual.outgoingSkipEdgeWeightss[i], nSkipEdges));
+        }
+    }
+
+    private static int[] prefix(int[] values, int length) {
+        return length == 0 ? new int[0] : Arrays.copyOf(values, length);
+    }
+
+    private static int[] bits(float[] values, int length) {
+        int[] bits = new int[length];
+        for (int i=0; i<length; ++i) {
+            bits[i] = Float.floatToRawIntBits(values[i]);
+        }
+        return bits;
+    }
+
+    private static void testRepair(int levelLimit, int seed) {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(seed, 60, 45, 10);
+        Random random = new Random(seed);
+        EdgeNLevelSparseVisibilityGraph repaired = EdgeNLevelSparseVisibilityGraph.initialiseNew(graph, levelLimit);
+        try {
+            for (int edit=0; edit<40; ++edit) {
+                int minX = random.nextInt(graph.sizeX);
+                int minY = random.nextInt(graph.sizeY);
+                int maxX = Math.min(minX + random.nextInt(6), graph.sizeX-1);
+                int maxY = Math.min(minY + random.nextInt(6), graph.sizeY-1);
+                graph.fillBlocked(minX, minY, maxX, maxY, random.nextBoolean());
+
+                if (edit%2 == 0) {
+                    repaired.repairRegion(minX, minY, maxX, maxY);
+                } else {
+                    // Repaired through the cache, from the grid's change journal.
+                    assertSame(repaired, EdgeNLevelSparseVisibilityGraph.initialiseNew(graph, levelLimit));
+                }
+
+                GridGraph copy = graph.editableCopy();
+                EdgeNLevelSparseVisibilityGraph built = EdgeNLevelSparseVisibilityGraph.initialiseNew(copy, levelLimit);
+                PreprocessedGraphCache.shared().remove(copy);
+                assertSameGraph(built, repaired);
+            }
+        } finally {
+            PreprocessedGraphCache.shared().remove(graph);
+        }
+    }
+
+    private static void assertSameGraph(EdgeNLevelSparseVisibilityGraph expected, EdgeNLevelSparseVisibilityGraph actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.nEdges, actual.nEdges);
+        for (int i=0; i<expected.size(); ++i) {
+            assertEquals(expected.xPositions[i], actual.xPositions[i]);
+            assertEquals(expected.yPositions[i], actual.yPositions[i]);
+
+            int nOutgoingEdges = expected.nOutgoingEdgess[i];
+            assertEquals(nOutgoingEdges, actual.nOutgoingEdgess[i]);
+            for (int k=0; k<nOutgoingEdges; ++k) {
+                assertEquals(expected.outgoingEdgess[i][k], actual.outgoingEdgess[i][k]);
+                int expectedEdge = expected.outgoingEdgeIndexess[i][k];
+                int actualEdge = actual.outgoingEdgeIndexess[i][k];
+                assertEquals(expected.edgeLevels[expectedEdge], actual.edgeLevels[actualEdge]);
+                assertEquals(expected.edgeWeights[expectedEdge], actual.edgeWeights[actualEdge], 0);
+            }
+
+            int nSkipEdges = expected.nSkipEdgess[i];
+            assertEquals(nSkipEdges, actual.nSkipEdgess[i]);
+            for (int k=0; k<nSkipEdges; ++k) {
+                assertEquals(expected.outgoingSkipEdgess[i][k], actual.outgoingSkipEdgess[i][k]);
+                assertEquals(expected.outgoingSkipEdgeNextNodess[i][k], actual.outgoingSkipEdgeNextNodess[i][k]);
+                assertEquals(expected.outgoingSkipEdgeWeightss[i][k], actual.outgoingSkipEdgeWeightss[i][k], 0);
+            }
+        }
+    }
+}
@@ -11,57 +11,58 @@ import algorithms.anya.Fraction;
 import algorithms.datatypes.SnapshotItem;
 
 /**
- * Singleton. Do not make multiple simultaneous copies of this class or use in parallel code.
+ * Each scanner owns its interval stack and successor list, so it must only be used by one thread at a time.
+ * Scanners on the same grid share its extents (see ScanExtents), so any number of them can scan in parallel,
+ * as long as the grid is not changed meanwhile. The snapshots are for debugging only and are not thread-safe.
  */
 public final class LineOfSightScanner {
+
+    /**
+     * Receives the successors of a scan, in the order they are found.
+     */
+    public interface SuccessorVisitor {
+        void visit(int x, int y);
+    }
+
     public static ArrayList<List<SnapshotItem>> snapshotList = new ArrayList<>();
     private static ArrayList<SnapshotItem> snapshots = new ArrayList<>();
-    private static int snapshot_sx;
-    private static int snapshot_sy;
+    private int snapshot_sx;
+    private int snapshot_sy;
     
     private final GridGraph graph;
     private final int sizeX;
     private final int sizeY;
     
-    private static int[][] rightDownExtents;
-    private static int[][] leftDownExtents;
-    private static LOSInterval[] intervalStack;
-    private static int intervalStackSize;
+    private final ScanExtents extents;
+    private final int[][] rightDownExtents;
+    private final int[][] leftDownExtents;
+    private LOSInterval[] intervalStack;
+    private int intervalStackSize;
     
-    public static int[] successorsX;
-    public static int[] successorsY;
-    public static int nSuccessors;
-
-    private static void initialiseExtents(GridGraph graph) {
-        // Don't reinitialise if graph is the same size as the last time.
-        if (rightDownExtents != null && graph.sizeY+2 == rightDownExtents.length && graph.sizeX+1 == rightDownExtents[0].length) return;
-
-        rightDownExtents = new int[graph.sizeY+2][];
-        leftDownExtents = new int[graph.sizeY+2][];
-        for (int y=0;y<graph.sizeY+2;++y) {
-            rightDownExtents[y] = new int[graph.sizeX+1];
-            leftDownExtents[y] = new int[graph.sizeX+1];
-        }
-    }
-    
-    private static void initialiseStack() {
+    public int[] successorsX;
+    public int[] successorsY;
+    public int nSuccessors;
+    // If not null, receives the successors of the current scan instead of successorsX and successorsY.
+    private SuccessorVisitor visitor;
+
+    private void initialiseStack() {
         if (intervalStack != null) return;
         intervalStack = new LOSInterval[11];
         intervalStackSize = 0;
     }
     
-    private static void initialiseSuccessorList() {
+    private void initialiseSuccessorList() {
         if (successorsX != null) return;
         successorsX = new int[11];
         successorsY = new int[11];
         nSuccessors = 0;
     }
     
-    private static final void clearSuccessors() {
+    private final void clearSuccessors() {
         nSuccessors = 0;
     }
     
-    private static final void stackPush(LOSInterval interval) {
+    private final void stackPush(LOSInterval interval) {
         if (intervalStackSize >= intervalStack.length) {
             intervalStack = Arrays.copyOf(intervalStack, intervalStack.length*2);
         }
@@ -71,7 +72,7 @@ public final class LineOfSightScanner {
         //addToSnapshot(interval); // Uncomment for debugging.
     }
     
-    private static final void addToSnapshot(LOSInterval interval) {
+    private final void addToSnapshot(LOSInterval interval) {
         snapshots.add(SnapshotItem.generate(new Integer[]{interval.y, interval.xL.n, interval.xL.d, interval.xR.n, interval.xR.d, snapshot_sx, snapshot_sy}, Color.GREEN));
         snapshotList.add(new ArrayList<SnapshotItem>(snapshots));
     }
@@ -81,18 +82,22 @@ public final class LineOfSightScanner {
         snapshots.clear();
     }
     
-    private static final LOSInterval stackPop() {
+    private final LOSInterval stackPop() {
         LOSInterval temp = intervalStack[intervalStackSize-1];
         --intervalStackSize;
         intervalStack[intervalStackSize] = null;
         return temp;
     }
     
-    private static final void clearStack() {
+    private final void clearStack() {
         intervalStackSize = 0;
     }
     
-    private static final void addSuccessor(int x, int y) {
+    private final void addSuccessor(int x, int y) {
+        if (visitor != null) {
+            visitor.visit(x, y);
+            return;
+        }
         if (nSuccessors >= successorsX.length) {
             successorsX = Arrays.copyOf(successorsX, successorsX.length*2);
             successorsY = Arrays.copyOf(successorsY, successorsY.length*2);
@@ -103,76 +108,90 @@ public final class LineOfSightScanner {
     }
     
     public LineOfSightScanner(GridGraph gridGraph) {
-        initialiseExtents(gridGraph);
         initialiseSuccessorList();
         initialiseStack();
         
         graph = gridGraph;
         sizeX = graph.sizeX;
         sizeY = graph.sizeY;
-        computeExtents();
-    }
-    
-    private void computeExtents() {
-        // graph.isBlocked(x,y) is the same as graph.bottomLeftOfBlockedTile(x,y)
-        LineOfSightScanner.initialiseExtents(graph);
-        
-        for (int y=0;y<sizeY+2;++y) {
-            boolean lastIsBlocked = true;
-            int lastX = -1;
-            for (int x=0;x<=sizeX;++x) {
-                leftDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
-            }
-            lastIsBlocked = true;
-            lastX = sizeX+1;
-            for (int x=sizeX;x>=0;--x) {
-                rightDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x-1, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
-            }
-        }
+        extents = ScanExtents.forGraph(graph);
+        rightDownExtents = extents.rightDownExtents;
+        leftDownExtents = extents.leftDownExtents;
     }
     
     /**
      * Stores results in successorsX, successorsY and nSuccessors. 
      */
     public final void computeAllVisibleSuccessors(int sx, int sy) {
-        snapshot_sx=sx;snapshot_sy=sy;
-        clearSuccessors();
-        clearStack();
+        computeAllVisibleSuccessors(sx, sy, null);
+    }
 
-        generateStartingStates(sx, sy);
-        exploreStatesNonTaut(sx, sy);
+    /**
+     * Passes each successor to visitor instead of storing it. nSuccessors stays 0.
+     */
+    public final void computeAllVisibleSuccessors(int sx, int sy, SuccessorVisitor visitor) {
+        this.visitor = visitor;
+        try {
+            snapshot_sx=sx;snapshot_sy=sy;
+            extents.refresh(graph);
+            clearSuccessors();
+            clearStack();
+
+            generateStartingStates(sx, sy);
+            exploreStatesNonTaut(sx, sy);
+        } finally {
+            this.visitor = null;
+        }
     }
 
     /**
      * Stores results in successorsX, successorsY and nSuccessors. 
      */
     public final void computeAllVisibleTautSuccessors(int sx, int sy) {
-        snapshot_sx=sx;snapshot_sy=sy;
-        clearSuccessors();
-        clearStack();
+        computeAllVisibleTautSuccessors(sx, sy, null);
+    }
 
-        generateStartingStates(sx, sy);
-        exploreStates(sx, sy);
+    /**
+     * Passes each successor to visitor instead of storing it. nSuccessors stays 0.
+     */
+    public final void computeAllVisibleTautSuccessors(int sx, int sy, SuccessorVisitor visitor) {
+        this.visitor = visitor;
+        try {
+            snapshot_sx=sx;snapshot_sy=sy;
+            extents.refresh(graph);
+            clearSuccessors();
+            clearStack();
+
+            generateStartingStates(sx, sy);
+            exploreStates(sx, sy);
+        } finally {
+            this.visitor = null;
+        }
     }
 
     /**
      * Stores results in successorsX, successorsY and nSuccessors. 
      */
     public final void computeAllVisibleTwoWayTautSuccessors(int sx, int sy) {
-        snapshot_sx=sx;snapshot_sy=sy;
-        clearSuccessors();
-        clearStack();
+        computeAllVisibleTwoWayTautSuccessors(sx, sy, null);
+    }
 
-        generateTwoWayTautStartingStates(sx, sy);
-        exploreStates(sx, sy);
+    /**
+     * Passes each successor to visitor instead of storing it. nSuccessors stays 0.
+     */
+    public final void computeAllVisibleTwoWayTautSuccessors(int sx, int sy, SuccessorVisitor visitor) {
+        this.visitor = visitor;
+        try {
+            snapshot_sx=sx;snapshot_sy=sy;
+            extents.refresh(graph);
+            clearSuccessors();
+            clearStack();
+
+            generateTwoWayTautStartingStates(sx, sy);
+            exploreStates(sx, sy);
+        } finally {
+            this.visitor = null;
+        }
     }
     
     /**
@@ -180,12 +199,25 @@ public final class LineOfSightScanner {
      * We are moving in direction dx, dy
      */
     public final void computeAllVisibleIncrementalTautSuccessors(int sx, int sy, int dx, int dy) {
-        snapshot_sx=sx;snapshot_sy=sy;
-        clearSuccessors();
-        clearStack();
+        computeAllVisibleIncrementalTautSuccessors(sx, sy, dx, dy, null);
+    }
 
-        generateIncrementalTautStartingStates(sx, sy, dx, dy);
-        exploreStates(sx, sy);
+    /**
+     * Passes each successor to visitor instead of storing it. nSuccessors stays 0.
+     */
+    public final void computeAllVisibleIncrementalTautSuccessors(int sx, int sy, int dx, int dy, SuccessorVisitor visitor) {
+        this.visitor = visitor;
+        try {
+            snapshot_sx=sx;snapshot_sy=sy;
+            extents.refresh(graph);
+            clearSuccessors();
+            clearStack();
+
+            generateIncrementalTautStartingStates(sx, sy, dx, dy);
+            exploreStates(sx, sy);
+        } finally {
+            this.visitor = null;
+        }
     }
 
 
@@ -1124,11 +1156,7 @@ public final class LineOfSightScanner {
     public static void clearMemory() {
         snapshotList.clear();
         snapshots.clear();
-        rightDownExtents = null;
-        leftDownExtents = null;
-        intervalStack = null;
-        successorsX = null;
-        successorsY = null;
+        ScanExtents.clearMemory();
         System.gc();
     }
     
@@ -10,28 +10,38 @@ import java.util.List;
 import algorithms.datatypes.SnapshotItem;
 
 /**
- * Singleton. Do not make multiple simultaneous copies of this class or use in parallel code.
+ * The same as LineOfSightScanner, with doubles instead of Fractions.
+ * One scanner per thread. Scanners on the same grid share its extents and can scan in parallel.
  */
 public final class LineOfSightScannerDouble {
     private static double EPSILON = 0.0000001;
 
     public static ArrayList<List<SnapshotItem>> snapshotList = new ArrayList<>();
     private static ArrayList<SnapshotItem> snapshots = new ArrayList<>();
-    private static int snapshot_sx;
-    private static int snapshot_sy;
+    private int snapshot_sx;
+    private int snapshot_sy;
     
     private final GridGraph graph;
     private final int sizeX;
     private final int sizeY;
     
-    private static int[][] rightDownExtents;
-    private static int[][] leftDownExtents;
-    private static LOSIntervalDouble[] intervalStack;
-    private static int intervalStackSize;
+    private final ScanExtents extents;
+    private final int[][] rightDownExtents;
+    private final int[][] leftDownExtents;
+    private LOSIntervalDouble[] intervalStack;
+    private int intervalStackSize;
     
-    public static int[] successorsX;
-    public static int[] successorsY;
-    public static int nSuccessors;
+    public int[] successorsX;
+    public int[] successorsY;
+    public int nSuccessors;
+    // If not null, receives the successors of the current scan instead of successorsX and successorsY.
+    private LineOfSightScanner.SuccessorVisitor visitor;
+
+    // Bounding box of the tiles read by the last scan. The scan result can only change if one of these tiles changes.
+    public int scannedMinX;
+    public int scannedMaxX;
+    public int scannedMinY;
+    public int scannedMaxY;
 
     // Double API    
     private final double toDouble(int n) {return (double)n;}
@@ -58,36 +68,35 @@ public final class LineOfSightScannerDouble {
         return (int)(n + 0.5);
     }
 
-    private static void initialiseExtents(GridGraph graph) {
-        // Don't reinitialise if graph is the same size as the last time.
-        if (rightDownExtents != null && graph.sizeY+2 == rightDownExtents.length && graph.sizeX+1 == rightDownExtents[0].length) return;
-
-        rightDownExtents = new int[graph.sizeY+2][];
-        leftDownExtents = new int[graph.sizeY+2][];
-        for (int y=0;y<graph.sizeY+2;++y) {
-            rightDownExtents[y] = new int[graph.sizeX+1];
-            leftDownExtents[y] = new int[graph.sizeX+1];
-        }
-    }
-    
-    private static void initialiseStack() {
+    private void initialiseStack() {
         if (intervalStack != null) return;
         intervalStack = new LOSIntervalDouble[11];
         intervalStackSize = 0;
     }
     
-    private static void initialiseSuccessorList() {
+    private void initialiseSuccessorList() {
         if (successorsX != null) return;
         successorsX = new int[11];
         successorsY = new int[11];
         nSuccessors = 0;
     }
     
-    private static final void clearSuccessors() {
+    private final void clearSuccessors() {
         nSuccessors = 0;
+        scannedMinX = Integer.MAX_VALUE;
+        scannedMaxX = Integer.MIN_VALUE;
+        scannedMinY = Integer.MAX_VALUE;
+        scannedMaxY = Integer.MIN_VALUE;
+    }
+
+    private final void markScanned(int minX, int minY, int maxX, int maxY) {
+        if (minX < scannedMinX) scannedMinX = minX;
+        if (maxX > scannedMaxX) scannedMaxX = maxX;
+        if (minY < scannedMinY) scannedMinY = minY;
+        if (maxY > scannedMaxY) scannedMaxY = maxY;
     }
     
-    private static final void stackPush(LOSIntervalDouble interval) {
+    private final void stackPush(LOSIntervalDouble interval) {
         if (intervalStackSize >= intervalStack.length) {
             intervalStack = Arrays.copyOf(intervalStack, intervalStack.length*2);
         }
@@ -97,7 +106,7 @@ public final class LineOfSightScannerDouble {
         //addToSnapshot(interval); // Uncomment for debugging.
     }
     
-    private static final void addToSnapshot(LOSIntervalDouble interval) {
+    private final void addToSnapshot(LOSIntervalDouble interval) {
         final int RES = 100000;
         int xLn = (int)(interval.xL*RES);
         int xRn = (int)(interval.xR*RES);
@@ -111,18 +120,22 @@ public final class LineOfSightScannerDouble {
         snapshots.clear();
     }
     
-    private static final LOSIntervalDouble stackPop() {
+    private final LOSIntervalDouble stackPop() {
         LOSIntervalDouble temp = intervalStack[intervalStackSize-1];
         --intervalStackSize;
         intervalStack[intervalStackSize] = null;
         return temp;
     }
     
-    private static final void clearStack() {
+    private final void clearStack() {
         intervalStackSize = 0;
     }
     
-    private static final void addSuccessor(int x, int y) {
+    private final void addSuccessor(int x, int y) {
+        if (visitor != null) {
+            visitor.visit(x, y);
+            return;
+        }
         if (nSuccessors >= successorsX.length) {
             successorsX = Arrays.copyOf(successorsX, successorsX.length*2);
             successorsY = Arrays.copyOf(successorsY, successorsY.length*2);
@@ -133,76 +146,90 @@ public final class LineOfSightScannerDouble {
     }
     
     public LineOfSightScannerDouble(GridGraph gridGraph) {
-        initialiseExtents(gridGraph);
         initialiseSuccessorList();
         initialiseStack();
         
         graph = gridGraph;
         sizeX = graph.sizeX;
         sizeY = graph.sizeY;
-        computeExtents();
-    }
-    
-    private void computeExtents() {
-        // graph.isBlocked(x,y) is the same as graph.bottomLeftOfBlockedTile(x,y)
-        LineOfSightScannerDouble.initialiseExtents(graph);
-        
-        for (int y=0;y<sizeY+2;++y) {
-            boolean lastIsBlocked = true;
-            int lastX = -1;
-            for (int x=0;x<=sizeX;++x) {
-                leftDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
-            }
-            lastIsBlocked = true;
-            lastX = sizeX+1;
-            for (int x=sizeX;x>=0;--x) {
-                rightDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x-1, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
-            }
-        }
+        extents = ScanExtents.forGraph(graph);
+        rightDownExtents = extents.rightDownExtents;
+        leftDownExtents = extents.leftDownExtents;
     }
     
     /**
      * Stores results in successorsX, successorsY and nSuccessors. 
      */
     public final void computeAllVisibleSuccessors(int sx, int sy) {
-        snapshot_sx=sx;snapshot_sy=sy;
-        clearSuccessors();
-        clearStack();
+        computeAllVisibleSuccessors(sx, sy, null);
+    }
 
-        generateStartingStates(sx, sy);
-        exploreStatesNonTaut(sx, sy);
+    /**
+     * Passes each successor to visitor instead of storing it. nSuccessors stays 0.
+     */
+    public final void computeAllVisibleSuccessors(int sx, int sy, LineOfSightScanner.SuccessorVisitor visitor) {
+        this.visitor = visitor;
+        try {
+            snapshot_sx=sx;snapshot_sy=sy;
+            extents.refresh(graph);
+            clearSuccessors();
+            clearStack();
+
+            generateStartingStates(sx, sy);
+            exploreStatesNonTaut(sx, sy);
+        } finally {
+            this.visitor = null;
+        }
     }
 
     /**
      * Stores results in successorsX, successorsY and nSuccessors. 
      */
     public final void computeAllVisibleTautSuccessors(int sx, int sy) {
-        snapshot_sx=sx;snapshot_sy=sy;
-        clearSuccessors();
-        clearStack();
+        computeAllVisibleTautSuccessors(sx, sy, null);
+    }
 
-        generateStartingStates(sx, sy);
-        exploreStates(sx, sy);
+    /**
+     * Passes each successor to visitor instead of storing it. nSuccessors stays 0.
+     */
+    public final void computeAllVisibleTautSuccessors(int sx, int sy, LineOfSightScanner.SuccessorVisitor visitor) {
+        this.visitor = visitor;
+        try {
+            snapshot_sx=sx;snapshot_sy=sy;
+            extents.refresh(graph);
+            clearSuccessors();
+            clearStack();
+
+            generateStartingStates(sx, sy);
+            exploreStates(sx, sy);
+        } finally {
+            this.visitor = null;
+        }
     }
 
     /**
      * Stores results in successorsX, successorsY and nSuccessors. 
      */
     public final void computeAllVisibleTwoWayTautSuccessors(int sx, int sy) {
-        snapshot_sx=sx;snapshot_sy=sy;
-        clearSuccessors();
-        clearStack();
+        computeAllVisibleTwoWayTautSuccessors(sx, sy, null);
+    }
 
-        generateTwoWayTautStartingStates(sx, sy);
-        exploreStates(sx, sy);
+    /**
+     * Passes each successor to visitor instead of storing it. nSuccessors stays 0.
+     */
+    public final void computeAllVisibleTwoWayTautSuccessors(int sx, int sy, LineOfSightScanner.SuccessorVisitor visitor) {
+        this.visitor = visitor;
+        try {
+            snapshot_sx=sx;snapshot_sy=sy;
+            extents.refresh(graph);
+            clearSuccessors();
+            clearStack();
+
+            generateTwoWayTautStartingStates(sx, sy);
+            exploreStates(sx, sy);
+        } finally {
+            this.visitor = null;
+        }
     }
     
     /**
@@ -210,12 +237,25 @@ public final class LineOfSightScannerDouble {
      * We are moving in direction dx, dy
      */
     public final void computeAllVisibleIncrementalTautSuccessors(int sx, int sy, int dx, int dy) {
-        snapshot_sx=sx;snapshot_sy=sy;
-        clearSuccessors();
-        clearStack();
+        computeAllVisibleIncrementalTautSuccessors(sx, sy, dx, dy, null);
+    }
 
-        generateIncrementalTautStartingStates(sx, sy, dx, dy);
-        exploreStates(sx, sy);
+    /**
+     * Passes each successor to visitor instead of storing it. nSuccessors stays 0.
+     */
+    public final void computeAllVisibleIncrementalTautSuccessors(int sx, int sy, int dx, int dy, LineOfSightScanner.SuccessorVisitor visitor) {
+        this.visitor = visitor;
+        try {
+            snapshot_sx=sx;snapshot_sy=sy;
+            extents.refresh(graph);
+            clearSuccessors();
+            clearStack();
+
+            generateIncrementalTautStartingStates(sx, sy, dx, dy);
+            exploreStates(sx, sy);
+        } finally {
+            this.visitor = null;
+        }
     }
 
 
@@ -234,6 +274,7 @@ public final class LineOfSightScannerDouble {
      * dx < 0, dy > 0 : BL TR
      */
     private final void generateIncrementalTautStartingStates(int sx, int sy, int dx, int dy) {
+        markScanned(sx-1, sy-1, sx, sy);
         boolean rightwardsSearch = false;
         boolean leftwardsSearch = false;
         
@@ -544,13 +585,17 @@ public final class LineOfSightScannerDouble {
         if (leftwardsSearch) {
             // Direct Search Left
             // Assumption: Not blocked towards left.
-            addSuccessor(leftAnyExtent(sx, sy),sy); 
+            int x = leftAnyExtent(sx, sy);
+            markScanned(x-1, sy-1, sx, sy);
+            addSuccessor(x,sy);
         }
         
         if (rightwardsSearch) {
             // Direct Search Right
             // Assumption: Not blocked towards right.
-            addSuccessor(rightAnyExtent(sx, sy),sy);
+            int x = rightAnyExtent(sx, sy);
+            markScanned(sx-1, sy-1, x, sy);
+            addSuccessor(x,sy);
         }
         
         
@@ -566,6 +611,7 @@ public final class LineOfSightScannerDouble {
      *    :         :      XXX|         |XXX   XXX|         |XXX
      */
     private final void generateTwoWayTautStartingStates(int sx, int sy) {
+        markScanned(sx-1, sy-1, sx, sy);
         boolean bottomLeftOfBlocked = graph.bottomLeftOfBlockedTile(sx, sy);
         boolean bottomRightOfBlocked = graph.bottomRightOfBlockedTile(sx, sy);
         boolean topLeftOfBlocked = graph.topLeftOfBlockedTile(sx, sy);
@@ -607,6 +653,7 @@ public final class LineOfSightScannerDouble {
         if (!topRightOfBlocked || !bottomRightOfBlocked) {
             int x = leftAnyExtent(sx, sy);
             int y = sy;
+            markScanned(x-1, y-1, sx, y);
             if (!(graph.topRightOfBlockedTile(x, y) && graph.bottomRightOfBlockedTile(x, y))) {
                 addSuccessor(x,y);
             }
@@ -616,6 +663,7 @@ public final class LineOfSightScannerDouble {
         if (!topLeftOfBlocked || !bottomLeftOfBlocked) {
             int x = rightAnyExtent(sx, sy);
             int y = sy;
+            markScanned(sx-1, y-1, x, y);
             if (!(graph.topLeftOfBlockedTile(x, y) && graph.bottomLeftOfBlockedTile(x, y))) {
                 addSuccessor(x,y);
             }
@@ -623,6 +671,7 @@ public final class LineOfSightScannerDouble {
     }
 
     private final void generateStartingStates(int sx, int sy) {
+        markScanned(sx-1, sy-1, sx, sy);
         boolean bottomLeftOfBlocked = graph.bottomLeftOfBlockedTile(sx, sy);
         boolean bottomRightOfBlocked = graph.bottomRightOfBlockedTile(sx, sy);
         boolean topLeftOfBlocked = graph.topLeftOfBlockedTile(sx, sy);
@@ -674,6 +723,7 @@ public final class LineOfSightScannerDouble {
         if (!topRightOfBlocked || !bottomRightOfBlocked) {
             int x = leftAnyExtent(sx, sy);
             int y = sy;
+            markScanned(x-1, y-1, sx, y);
             if (!(graph.topRightOfBlockedTile(x, y) && graph.bottomRightOfBlockedTile(x, y))) {
                 addSuccessor(x,y);
             }
@@ -683,6 +733,7 @@ public final class LineOfSightScannerDouble {
         if (!topLeftOfBlocked || !bottomLeftOfBlocked) {
             int x = rightAnyExtent(sx, sy);
             int y = sy;
+            markScanned(sx-1, y-1, x, y);
             if (!(graph.topLeftOfBlockedTile(x, y) && graph.bottomLeftOfBlockedTile(x, y))) {
                 addSuccessor(x,y);
             }
@@ -784,6 +835,9 @@ public final class LineOfSightScannerDouble {
                     rightInclusive = true;
                 }
 
+                // The extents are read up to the projections.
+                markScanned(floor(Math.min(currState.xL, leftProjection))-2, currState.y-1, ceil(Math.max(currState.xR, rightProjection))+1, currState.y);
+
                 // Call Generate
                 if (leftInclusive && rightInclusive) {
                     if (isLessThanOrEqual(leftProjection, rightProjection)) {
@@ -880,6 +934,9 @@ public final class LineOfSightScannerDouble {
                     rightInclusive = true;
                 }
 
+                // The extents are read up to the projections.
+                markScanned(floor(Math.min(currState.xL, leftProjection))-2, currState.y-1, ceil(Math.max(currState.xR, rightProjection))+1, currState.y);
+
                 // Call Generate
                 if (leftInclusive && rightInclusive) {
                     if (isLessThanOrEqual(leftProjection, rightProjection)) {
@@ -974,6 +1031,9 @@ public final class LineOfSightScannerDouble {
                     rightInclusive = true;
                 }
 
+                // The extents are read up to the projections.
+                markScanned(floor(Math.min(currState.xL, leftProjection))-2, currState.y-1, ceil(Math.max(currState.xR, rightProjection))+1, currState.y);
+
                 // Call Generate
                 if (leftInclusive && rightInclusive) {
                     if (isLessThanOrEqual(leftProjection, rightProjection)) {
@@ -1053,6 +1113,9 @@ public final class LineOfSightScannerDouble {
                     rightInclusive = true;
                 }
 
+                // The extents are read up to the projections.
+                markScanned(floor(Math.min(currState.xL, leftProjection))-2, currState.y-1, ceil(Math.max(currState.xR, rightProjection))+1, currState.y);
+
                 // Call Generate
                 if (leftInclusive && rightInclusive) {
                     if (isLessThanOrEqual(leftProjection, rightProjection)) {
@@ -1117,6 +1180,8 @@ public final class LineOfSightScannerDouble {
     private final void generateAndSplitIntervals(int checkY, int newY, int sx, int sy, double leftBound, double rightBound, boolean leftInclusive, boolean rightInclusive) {
         double left = leftBound;
         int leftFloor = floor(left);
+        // Covers the tiles read here, and the tiles read when the generated intervals are explored.
+        markScanned(leftFloor-2, newY-1, ceil(rightBound)+1, newY);
 
         // Up: !bottomRightOfBlockedTile && bottomLeftOfBlockedTile
         if (leftInclusive && isWholeNumber(left) && !graph.isBlocked(leftFloor-1, checkY-1) && graph.isBlocked(leftFloor, checkY-1)) {
@@ -1154,11 +1219,7 @@ public final class LineOfSightScannerDouble {
     public static void clearMemory() {
         snapshotList.clear();
         snapshots.clear();
-        rightDownExtents = null;
-        leftDownExtents = null;
-        intervalStack = null;
-        successorsX = null;
-        successorsY = null;
+        ScanExtents.clearMemory();
         System.gc();
     }
     
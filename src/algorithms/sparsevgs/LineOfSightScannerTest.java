@@ -0,0 +1,98 @@
+package algorithms.sparsevgs;
+
+import static org.junit.Assert.*;
+import grid.GridGraph;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import main.graphgeneration.DefaultGenerator;
+
+import org.junit.Test;
+
+public class LineOfSightScannerTest {
+
+    private static final GridGraph graph = DefaultGenerator.generateSeededGraphOnly(515, 40, 30, 12);
+
+    private interface Scan {
+        void run(int sx, int sy, LineOfSightScanner.SuccessorVisitor visitor);
+    }
+
+    @Test
+    public void visitorGetsTheSuccessorsInArrayOrder() {
+        LineOfSightScanner scanner = new LineOfSightScanner(graph);
+        Random random = new Random(1);
+        for (int i=0; i<300; ++i) {
+            // The taut scans start from outer corners, as in the visibility graphs.
+            int x, y;
+            do {
+                x = random.nextInt(graph.sizeX+1);
+                y = random.nextInt(graph.sizeY+1);
+            } while (!graph.isOuterCorner(x, y));
+            assertSameSuccessors(scanner::computeAllVisibleSuccessors, scanner::computeAllVisibleSuccessors, x, y,
+                    () -> toList(scanner.successorsX, scanner.successorsY, scanner.nSuccessors));
+            assertSameSuccessors(scanner::computeAllVisibleTautSuccessors, scanner::computeAllVisibleTautSuccessors, x, y,
+                    () -> toList(scanner.successorsX, scanner.successorsY, scanner.nSuccessors));
+            assertSameSuccessors(scanner::computeAllVisibleTwoWayTautSuccessors, scanner::computeAllVisibleTwoWayTautSuccessors, x, y,
+                    () -> toList(scanner.successorsX, scanner.successorsY, scanner.nSuccessors));
+
+            // Moving on from a successor, in the direction it was reached.
+            scanner.computeAllVisibleTautSuccessors(x, y);
+            if (scanner.nSuccessors == 0) continue;
+            int next = random.nextInt(scanner.nSuccessors);
+            int nx = scanner.successorsX[next];
+            int ny = scanner.successorsY[next];
+            int dx = nx - x;
+            int dy = ny - y;
+            assertSameSuccessors((sx, sy) -> scanner.computeAllVisibleIncrementalTautSuccessors(sx, sy, dx, dy),
+                    (sx, sy, visitor) -> scanner.computeAllVisibleIncrementalTautSuccessors(sx, sy, dx, dy, visitor), nx, ny,
+                    () -> toList(scanner.successorsX, scanner.successorsY, scanner.nSuccessors));
+        }
+    }
+
+    @Test
+    public void doubleScannerVisitorGetsTheSuccessorsInArrayOrder() {
+        LineOfSightScannerDouble scanner = new LineOfSightScannerDouble(graph);
+        Random random = new Random(2);
+        for (int i=0; i<300; ++i) {
+            // The taut scans start from outer corners, as in the visibility graphs.
+            int x, y;
+            do {
+                x = random.nextInt(graph.sizeX+1);
+                y = random.nextInt(graph.sizeY+1);
+            } while (!graph.isOuterCorner(x, y));
+            assertSameSuccessors(scanner::computeAllVisibleSuccessors, scanner::computeAllVisibleSuccessors, x, y,
+                    () -> toList(scanner.successorsX, scanner.successorsY, scanner.nSuccessors));
+            assertSameSuccessors(scanner::computeAllVisibleTautSuccessors, scanner::computeAllVisibleTautSuccessors, x, y,
+                    () -> toList(scanner.successorsX, scanner.successorsY, scanner.nSuccessors));
+            assertSameSuccessors(scanner::computeAllVisibleTwoWayTautSuccessors, scanner::computeAllVisibleTwoWayTautSuccessors, x, y,
+                    () -> toList(scanner.successorsX, scanner.successorsY, scanner.nSuccessors));
+        }
+    }
+
+    private interface ArrayScan {
+        void run(int sx, int sy);
+    }
+
+    private interface Successors {
+        ArrayList<String> get();
+    }
+
+    private static void assertSameSuccessors(ArrayScan arrayScan, Scan visitorScan, int x, int y, Successors arrayOutput) {
+        arrayScan.run(x, y);
+        ArrayList<String> expected = arrayOutput.get();
+
+        ArrayList<String> visited = new ArrayList<>();
+        visitorScan.run(x, y, (sx, sy) -> visited.add(sx + "," + sy));
+        assertEquals(expected, visited);
+        assertEquals(0, arrayOutput.get().size()); // nSuccessors stays 0
+    }
+
+    private static ArrayList<String> toList(int[] xs, int[] ys, int n) {
+        ArrayList<String> list = new ArrayList<>();
+        for (int i=0; i<n; ++i) {
+            list.add(xs[i] + "," + ys[i]);
+        }
+        return list;
+    }
+}
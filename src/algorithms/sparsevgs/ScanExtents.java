@@ -0,0 +1,101 @@
+package algorithms.sparsevgs;
+
+import grid.GridChangeJournal;
+import grid.GridGraph;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The down extents of a grid, shared by all LineOfSightScanners and LineOfSightScannerDoubles on it.
+ * leftDownExtents[y][x] (rightDownExtents[y][x]) is the x-coordinate where the run of blocked or unblocked tiles
+ * in tile row y-1 to the left (right) of vertex x begins.
+ * <br>
+ * Scans only read the tables. refresh() brings them up to date after the grid has been changed, recomputing just
+ * the changed rows when the grid's change journal still has them. It is safe to call from several scanners at once,
+ * but not while the grid is being changed.
+ */
+final class ScanExtents {
+    private static final Map<GridGraph, ScanExtents> tables = Collections.synchronizedMap(new WeakHashMap<>());
+
+    final int[][] leftDownExtents;
+    final int[][] rightDownExtents;
+    // No reference to the grid: it is the key of the weak map.
+    private final int sizeX;
+    private final int sizeY;
+    private volatile long version;
+
+    private ScanExtents(GridGraph graph) {
+        sizeX = graph.sizeX;
+        sizeY = graph.sizeY;
+        leftDownExtents = new int[sizeY+2][sizeX+1];
+        rightDownExtents = new int[sizeY+2][sizeX+1];
+        for (int y=0;y<sizeY+2;++y) {
+            computeRow(graph, y);
+        }
+        version = graph.version();
+    }
+
+    /**
+     * @return the extents of the grid, computing them if no scanner has been created on it yet.
+     */
+    static ScanExtents forGraph(GridGraph graph) {
+        synchronized (tables) {
+            ScanExtents extents = tables.get(graph);
+            if (extents == null) {
+                extents = new ScanExtents(graph);
+                tables.put(graph, extents);
+            }
+            return extents;
+        }
+    }
+
+    final void refresh(GridGraph graph) {
+        if (version == graph.version()) return;
+        synchronized (this) {
+            if (version == graph.version()) return;
+            GridChangeJournal journal = graph.changeJournal();
+            if (journal.covers(version)) {
+                journal.forEachSince(version, (minX, minY, maxX, maxY) -> {
+                    // Extents row y is computed from tile row y-1.
+                    int yEnd = Math.min(maxY+1, sizeY+1);
+                    for (int y=Math.max(minY+1, 0);y<=yEnd;++y) {
+                        computeRow(graph, y);
+                    }
+                });
+            } else {
+                for (int y=0;y<sizeY+2;++y) {
+                    computeRow(graph, y);
+                }
+            }
+            version = graph.version();
+        }
+    }
+
+    private final void computeRow(GridGraph graph, int y) {
+        // graph.isBlocked(x,y) is the same as graph.bottomLeftOfBlockedTile(x,y)
+        boolean lastIsBlocked = true;
+        int lastX = -1;
+        for (int x=0;x<=sizeX;++x) {
+            leftDownExtents[y][x] = lastX;
+            if (graph.isBlocked(x, y-1) != lastIsBlocked) {
+                lastX = x;
+                lastIsBlocked = !lastIsBlocked;
+            }
+        }
+        lastIsBlocked = true;
+        lastX = sizeX+1;
+        for (int x=sizeX;x>=0;--x) {
+            rightDownExtents[y][x] = lastX;
+            if (graph.isBlocked(x-1, y-1) != lastIsBlocked) {
+                lastX = x;
+                lastIsBlocked = !lastIsBlocked;
+            }
+        }
+    }
+
+    static void clearMemory() {
+        tables.clear();
+    }
+}
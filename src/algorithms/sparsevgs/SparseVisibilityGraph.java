@@ -1,14 +1,14 @@
 package algorithms.sparsevgs;
 
+import grid.CornerIndex;
 import grid.GridGraph;
 
 import java.util.Arrays;
 
+import algorithms.datatypes.PreprocessedGraphCache;
+
 public class SparseVisibilityGraph {
 
-    private static SparseVisibilityGraph storedVisibilityGraph;
-    private static GridGraph storedGridGraph;
-    
     private final GridGraph graph;
     private LineOfSightScannerDouble losScanner;
     private final int sizeXPlusOne;
@@ -32,6 +32,17 @@ public class SparseVisibilityGraph {
     private float[] endStoredWeights;
     private int endStoredNumNeighbours;
 
+    // Shared with the graphs repurposed from this one, which share its nodes.
+    private StartAndEndOwner owner = new StartAndEndOwner();
+
+    /**
+     * The graph whose start and goal are in the shared nodes, and the number of times one was added.
+     */
+    private static final class StartAndEndOwner {
+        private SparseVisibilityGraph graph;
+        private int stamp;
+    }
+
     public SparseVisibilityGraph(GridGraph graph) {
         this.graph = graph;
         this.sizeXPlusOne = graph.sizeX+1;
@@ -63,20 +74,46 @@ public class SparseVisibilityGraph {
             System.out.println("Construction Time: " + (_ed-_st)/1000000.);
         }
 
-        restoreOriginalGraph();
+        restoreSharedNodes();
+        addStartAndEnd(sx,sy,ex,ey);
+    }
+
+    /**
+     * Increases each time a start and goal are added to the nodes this graph shares.
+     */
+    public final int startAndEndStamp() {
+        return owner.stamp;
+    }
+
+    /**
+     * Adds the start and goal of this graph's query again, in place of those of another graph sharing its nodes.
+     * Lets a search stepped in turn with others on the same stored graph go on.
+     */
+    public final void readdStartAndEnd(int sx, int sy, int ex, int ey) {
+        restoreSharedNodes();
         addStartAndEnd(sx,sy,ex,ey);
     }
 
+    /**
+     * Takes the start and goal out of the shared nodes, whichever graph sharing them added them.
+     */
+    private final void restoreSharedNodes() {
+        if (owner.graph == this || owner.graph == null) {
+            restoreOriginalGraph();
+            return;
+        }
+        owner.graph.restoreOriginalGraph();
+        // The start and goal of this graph were taken out already. Its stored neighbours are out of date.
+        nNodes = originalSize;
+        startIndex = -1;
+        endIndex = -1;
+    }
+
     private final void addNodes() {
-        nodeIndex = new int[sizeYPlusOne*sizeXPlusOne];
-        for (int y=0; y<sizeYPlusOne; y++) {
-            for (int x=0; x<sizeXPlusOne; x++) {
-                if (graph.isOuterCorner(x, y)) {
-                    nodeIndex[y*sizeXPlusOne + x] = assignNode(x, y);
-                } else {
-                    nodeIndex[y*sizeXPlusOne + x] = -1;
-                }
-            }
+        CornerIndex corners = graph.cornerIndex();
+        nodeIndex = corners.toFlatNodeIndex();
+        for (int i=0; i<corners.nCorners(); ++i) {
+            assignNode(corners.getX(i), corners.getY(i));
         }
     }
 
@@ -127,6 +164,8 @@ public class SparseVisibilityGraph {
     }
 
     public final void addStartAndEnd(int sx, int sy, int ex, int ey) {
+        owner.graph = this;
+        ++owner.stamp;
         
         // START:
         if (nodeIndex[sy*sizeXPlusOne + sx] == -1) {
@@ -268,6 +307,7 @@ public class SparseVisibilityGraph {
         newGraph.originalSize = oldGraph.originalSize;
         newGraph.maxSize = oldGraph.maxSize;
         newGraph.losScanner = oldGraph.losScanner;
+        newGraph.owner = oldGraph.owner;
 
         newGraph.startStoredNeighbours = oldGraph.startStoredNeighbours;
         newGraph.startStoredWeights = oldGraph.startStoredWeights;
@@ -279,19 +319,20 @@ public class SparseVisibilityGraph {
         return newGraph;
     }
     
+    /**
+     * The graph is cached per grid in PreprocessedGraphCache.shared(), and rebuilt when the grid has changed.
+     */
     public static final SparseVisibilityGraph getStoredGraph(GridGraph graph) {
-        SparseVisibilityGraph visibilityGraph = null;
-        if (storedGridGraph != graph || storedVisibilityGraph == null) {
-            //("Get new graph");
-            visibilityGraph = new SparseVisibilityGraph(graph);
-            storedVisibilityGraph = visibilityGraph;
-            storedGridGraph = graph;
-        } else {
-            //("Reuse graph");
-            visibilityGraph = repurpose(storedVisibilityGraph);
-            storedVisibilityGraph = visibilityGraph;
-        }
-        return visibilityGraph;
+        return PreprocessedGraphCache.shared().get(SparseVisibilityGraph.class, graph, 0, (stored, storedVersion) -> {
+            if (stored == null || storedVersion != graph.version()) return new SparseVisibilityGraph(graph);
+            return repurpose(stored);
+        }, SparseVisibilityGraph::estimatedBytes);
+    }
+
+    // 0 until initialised.
+    private final long estimatedBytes() {
+        if (nodes == null) return 0;
+        return (long)maxSize*96 + (long)computeSumDegrees()*12 + (long)(graph.sizeX+1)*(graph.sizeY+1)*4;
     }
 
     private final void printAllEdges() {
@@ -305,8 +346,7 @@ public class SparseVisibilityGraph {
     }
 
     public static void clearMemory() {
-        storedVisibilityGraph = null;
-        storedGridGraph = null;
+        PreprocessedGraphCache.shared().removeAll(SparseVisibilityGraph.class);
         System.gc();
     }
     
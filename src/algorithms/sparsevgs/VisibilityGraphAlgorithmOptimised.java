@@ -9,11 +9,11 @@ import java.util.List;
 import main.utility.TimeCounter;
 import algorithms.AStarStaticMemory;
 import algorithms.datatypes.SnapshotItem;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 
 
 public class VisibilityGraphAlgorithmOptimised extends AStarStaticMemory {
     protected VisibilityGraphOptimised visibilityGraph;
+    private int startAndEndStamp; // of the visibility graph, once the start and goal of this search are added
     protected boolean reuseGraph = false;
     
     private VisibilityGraphAlgorithmOptimised(GridGraph graph, int sx, int sy, int ex, int ey) {
@@ -31,58 +31,75 @@ public class VisibilityGraphAlgorithmOptimised extends AStarStaticMemory {
     }
     
     @Override
-    public void computePath() {
+    protected boolean startSearch() {
         setupVisibilityGraph();
 
-        int size = visibilityGraph.size();
         int memorySize = visibilityGraph.maxSize();
-        pq = new ReusableIndirectHeap(size, memorySize);
+        pq = initialiseHeap(memorySize);
         this.initialiseMemory(memorySize, Float.POSITIVE_INFINITY, -1, false);
         
         initialise(visibilityGraph.startNode());
-        int finish = visibilityGraph.endNode();
-
+        
         if (graph.lineOfSight(sx, sy, ex, ey)) {
             // There is a direct path from (sx, sy) to (ex, ey).
             if (sx != ex || sy != ey) {
-                setParent(finish, visibilityGraph.startNode());
+                setParent(visibilityGraph.endNode(), visibilityGraph.startNode());
             }
-            return;
+            return false;
         }
+        return true;
+    }
 
-        while (!pq.isEmpty()) {
-            int current = pq.popMinIndex();
-            setVisited(current, true);
+    @Override
+    protected int expandNext() {
+        if (pq.isEmpty()) return -1;
+        int finish = visibilityGraph.endNode();
+        int current = pq.popMinIndex();
+        setVisited(current, true);
 TimeCounter.counterA++;
-            if (current == finish) {
-                break;
-            }
-            
-            VGNode node = visibilityGraph.getOutgoingEdges(current);
-            int[] outgoingEdges = node.outgoingEdges;
-            float[] outgoingWeights = node.edgeWeights;
-            int nEdges = node.nEdges;
+        if (current == finish) {
+            return -1;
+        }
+        
+        VGNode node = visibilityGraph.getOutgoingEdges(current);
+        int[] outgoingEdges = node.outgoingEdges;
+        float[] outgoingWeights = node.edgeWeights;
+        int nEdges = node.nEdges;
+        
+        for (int i=0;i<nEdges;++i) {
+            int dest = outgoingEdges[i];
+            float weight = outgoingWeights[i];
             
-            for (int i=0;i<nEdges;++i) {
-                int dest = outgoingEdges[i];
-                float weight = outgoingWeights[i];
+            if (!visited(dest) && relax(current, dest, weight)) {
+                // If relaxation is done.
+                int destX = visibilityGraph.xCoordinateOf(dest);
+                int destY = visibilityGraph.yCoordinateOf(dest);
                 
-                if (!visited(dest) && relax(current, dest, weight)) {
-                    // If relaxation is done.
-                    int destX = visibilityGraph.xCoordinateOf(dest);
-                    int destY = visibilityGraph.yCoordinateOf(dest);
-                    
-                    pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));
-                }
+                pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));
             }
-            if (node.hasEdgeToGoal) {
-                float weight = graph.distance(node.x, node.y, ex, ey);
-                if (relax(current, finish, weight)) {
-                    pq.decreaseKey(finish, distance(finish));
-                }
+        }
+        if (node.hasEdgeToGoal) {
+            float weight = graph.distance(node.x, node.y, ex, ey);
+            if (relax(current, finish, weight)) {
+                pq.decreaseKey(finish, distance(finish));
             }
-            
-            maybeSaveSearchSnapshot();
+        }
+        
+        maybeSaveSearchSnapshot();
+        return current;
+    }
+
+    @Override
+    protected float distanceToGoal(int node) {
+        return graph.distance(visibilityGraph.xCoordinateOf(node), visibilityGraph.yCoordinateOf(node), ex, ey);
+    }
+
+    @Override
+    protected void resumeSearch() {
+        if (visibilityGraph.startAndEndStamp() != startAndEndStamp) {
+            // Another search has put its start and goal in the shared graph since the last step.
+            visibilityGraph.readdStartAndEnd(sx, sy, ex, ey);
+            startAndEndStamp = visibilityGraph.startAndEndStamp();
         }
     }
 
@@ -100,6 +117,7 @@ TimeCounter.counterA++;
         } else {
             visibilityGraph.initialise(sx, sy, ex, ey);
         }
+        startAndEndStamp = visibilityGraph.startAndEndStamp();
     }
 
     protected final boolean relax(int u, int v, float weightUV) {
@@ -125,9 +143,9 @@ TimeCounter.counterA++;
     }
     
 
-    private int pathLength() {
+    private int pathLength(int node) {
         int length = 0;
-        int current = visibilityGraph.endNode();
+        int current = node;
         while (current != -1) {
             current = parent(current);
             length++;
@@ -136,10 +154,15 @@ TimeCounter.counterA++;
     }
 
     @Override
-    public int[][] getPath() {
-        int length = pathLength();
+    protected int[][] finalPath() {
+        return pathTo(visibilityGraph.endNode());
+    }
+
+    @Override
+    protected int[][] pathTo(int node) {
+        int length = pathLength(node);
         int[][] path = new int[length][];
-        int current = visibilityGraph.endNode();
+        int current = node;
         
         int index = length-1;
         while (current != -1) {
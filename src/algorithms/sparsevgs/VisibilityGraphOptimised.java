@@ -1,14 +1,14 @@
 package algorithms.sparsevgs;
 
+import grid.CornerIndex;
 import grid.GridGraph;
 
 import java.util.Arrays;
 
+import algorithms.datatypes.PreprocessedGraphCache;
+
 public class VisibilityGraphOptimised {
 
-    private static VisibilityGraphOptimised storedVisibilityGraph;
-    private static GridGraph storedGridGraph;
-    
     private final GridGraph graph;
     private LineOfSightScanner losScanner;
     private int[][] nodeIndex;
@@ -29,6 +29,17 @@ public class VisibilityGraphOptimised {
     private float[] endStoredWeights;
     private int endStoredNumNeighbours;
 
+    // Shared with the graphs repurposed from this one, which share its nodes.
+    private StartAndEndOwner owner = new StartAndEndOwner();
+
+    /**
+     * The graph whose start and goal are in the shared nodes, and the number of times one was added.
+     */
+    private static final class StartAndEndOwner {
+        private VisibilityGraphOptimised graph;
+        private int stamp;
+    }
+
     public VisibilityGraphOptimised(GridGraph graph) {
         this.graph = graph;
     }
@@ -58,21 +69,46 @@ public class VisibilityGraphOptimised {
             System.out.println("Construction Time: " + (_ed-_st)/1000000.);
         }
 
-        restoreOriginalGraph();
+        restoreSharedNodes();
+        addStartAndEnd(sx,sy,ex,ey);
+    }
+
+    /**
+     * Increases each time a start and goal are added to the nodes this graph shares.
+     */
+    public final int startAndEndStamp() {
+        return owner.stamp;
+    }
+
+    /**
+     * Adds the start and goal of this graph's query again, in place of those of another graph sharing its nodes.
+     * Lets a search stepped in turn with others on the same stored graph go on.
+     */
+    public final void readdStartAndEnd(int sx, int sy, int ex, int ey) {
+        restoreSharedNodes();
         addStartAndEnd(sx,sy,ex,ey);
     }
 
+    /**
+     * Takes the start and goal out of the shared nodes, whichever graph sharing them added them.
+     */
+    private final void restoreSharedNodes() {
+        if (owner.graph == this || owner.graph == null) {
+            restoreOriginalGraph();
+            return;
+        }
+        owner.graph.restoreOriginalGraph();
+        // The start and goal of this graph were taken out already. Its stored neighbours are out of date.
+        nNodes = originalSize;
+        startIndex = -1;
+        endIndex = -1;
+    }
+
     private final void addNodes() {
-        nodeIndex = new int[graph.sizeY+1][];
-        for (int y=0;y<nodeIndex.length;y++) {
-            nodeIndex[y] = new int[graph.sizeX+1];
-            for (int x=0; x<nodeIndex[y].length; x++) {
-                if (graph.isOuterCorner(x, y)) {
-                    nodeIndex[y][x] = assignNode(x, y);
-                } else {
-                    nodeIndex[y][x] = -1;
-                }
-            }
+        CornerIndex corners = graph.cornerIndex();
+        nodeIndex = corners.toNodeIndex();
+        for (int i=0; i<corners.nCorners(); ++i) {
+            assignNode(corners.getX(i), corners.getY(i));
         }
     }
 
@@ -123,6 +159,8 @@ public class VisibilityGraphOptimised {
     }
 
     public final void addStartAndEnd(int sx, int sy, int ex, int ey) {
+        owner.graph = this;
+        ++owner.stamp;
         
         // START:
         if (nodeIndex[sy][sx] == -1) {
@@ -264,6 +302,7 @@ public class VisibilityGraphOptimised {
         newGraph.originalSize = oldGraph.originalSize;
         newGraph.maxSize = oldGraph.maxSize;
         newGraph.losScanner = oldGraph.losScanner;
+        newGraph.owner = oldGraph.owner;
 
         newGraph.startStoredNeighbours = oldGraph.startStoredNeighbours;
         newGraph.startStoredWeights = oldGraph.startStoredWeights;
@@ -275,19 +314,20 @@ public class VisibilityGraphOptimised {
         return newGraph;
     }
     
+    /**
+     * The graph is cached per grid in PreprocessedGraphCache.shared(), and rebuilt when the grid has changed.
+     */
     public static final VisibilityGraphOptimised getStoredGraph(GridGraph graph) {
-        VisibilityGraphOptimised visibilityGraph = null;
-        if (storedGridGraph != graph || storedVisibilityGraph == null) {
-            //("Get new graph");
-            visibilityGraph = new VisibilityGraphOptimised(graph);
-            storedVisibilityGraph = visibilityGraph;
-            storedGridGraph = graph;
-        } else {
-            //("Reuse graph");
-            visibilityGraph = repurpose(storedVisibilityGraph);
-            storedVisibilityGraph = visibilityGraph;
-        }
-        return visibilityGraph;
+        return PreprocessedGraphCache.shared().get(VisibilityGraphOptimised.class, graph, 0, (stored, storedVersion) -> {
+            if (stored == null || storedVersion != graph.version()) return new VisibilityGraphOptimised(graph);
+            return repurpose(stored);
+        }, VisibilityGraphOptimised::estimatedBytes);
+    }
+
+    // 0 until initialised.
+    private final long estimatedBytes() {
+        if (nodes == null) return 0;
+        return (long)maxSize*96 + (long)computeSumDegrees()*12 + (long)(graph.sizeX+1)*(graph.sizeY+1)*4;
     }
 
     private final void printAllEdges() {
@@ -301,8 +341,7 @@ public class VisibilityGraphOptimised {
     }
 
     public static void clearMemory() {
-        storedVisibilityGraph = null;
-        storedGridGraph = null;
+        PreprocessedGraphCache.shared().removeAll(VisibilityGraphOptimised.class);
         System.gc();
     }
     
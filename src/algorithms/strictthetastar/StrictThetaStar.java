@@ -2,7 +2,6 @@ package algorithms.strictthetastar;
 
 import grid.GridGraph;
 import algorithms.BasicThetaStar;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 
 /**
  * An modification of Theta* that I am experimenting with. -Oh
@@ -41,47 +40,41 @@ public class StrictThetaStar extends BasicThetaStar {
         return algo;
     }
 
+    public static StrictThetaStar cachedLineOfSight(GridGraph graph, int sx, int sy, int ex, int ey) {
+        StrictThetaStar algo = new StrictThetaStar(graph, sx, sy, ex, ey);
+        algo.cachesLineOfSight = true;
+        return algo;
+    }
+
     @Override
-    public void computePath() {
-        int totalSize = (graph.sizeX+1) * (graph.sizeY+1);
+    protected int expandNext() {
+        if (pq.isEmpty()) return -1;
+        int current = pq.popMinIndex();
+        tryFixBufferValue(current);
+        
+        if (current == finish || distance(current) == Float.POSITIVE_INFINITY) {
+            maybeSaveSearchSnapshot();
+            return -1;
+        }
+        setVisited(current, true);
 
-        int start = toOneDimIndex(sx, sy);
-        finish = toOneDimIndex(ex, ey);
+        int x = toTwoDimX(current);
+        int y = toTwoDimY(current);
+        
 
-        pq = new ReusableIndirectHeap(totalSize);
-        this.initialiseMemory(totalSize, Float.POSITIVE_INFINITY, -1, false);
+        tryRelaxNeighbour(current, x, y, x-1, y-1);
+        tryRelaxNeighbour(current, x, y, x, y-1);
+        tryRelaxNeighbour(current, x, y, x+1, y-1);
         
-        initialise(start);
+        tryRelaxNeighbour(current, x, y, x-1, y);
+        tryRelaxNeighbour(current, x, y, x+1, y);
         
-        while (!pq.isEmpty()) {
-            int current = pq.popMinIndex();
-            tryFixBufferValue(current);
-            
-            if (current == finish || distance(current) == Float.POSITIVE_INFINITY) {
-                maybeSaveSearchSnapshot();
-                break;
-            }
-            setVisited(current, true);
-
-            int x = toTwoDimX(current);
-            int y = toTwoDimY(current);
-            
-
-            tryRelaxNeighbour(current, x, y, x-1, y-1);
-            tryRelaxNeighbour(current, x, y, x, y-1);
-            tryRelaxNeighbour(current, x, y, x+1, y-1);
-            
-            tryRelaxNeighbour(current, x, y, x-1, y);
-            tryRelaxNeighbour(current, x, y, x+1, y);
-            
-            tryRelaxNeighbour(current, x, y, x-1, y+1);
-            tryRelaxNeighbour(current, x, y, x, y+1);
-            tryRelaxNeighbour(current, x, y, x+1, y+1);
+        tryRelaxNeighbour(current, x, y, x-1, y+1);
+        tryRelaxNeighbour(current, x, y, x, y+1);
+        tryRelaxNeighbour(current, x, y, x+1, y+1);
 
-            maybeSaveSearchSnapshot();
-        }
-        
-        maybePostSmooth();
+        maybeSaveSearchSnapshot();
+        return current;
     }
     
     protected float heuristic(int x, int y) {
@@ -117,7 +110,7 @@ public class StrictThetaStar extends BasicThetaStar {
         
         if (relax(current, destination, weight(currentX, currentY, x, y))) {
             // If relaxation is done.
-            pq.decreaseKey(destination, distance(destination) + heuristic(x,y));
+            pq.decreaseKey(destination, distance(destination) + heuristic(x,y), distance(destination));
         }
     }
     
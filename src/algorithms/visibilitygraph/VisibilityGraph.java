@@ -1,16 +1,15 @@
 package algorithms.visibilitygraph;
 
+import grid.CornerIndex;
 import grid.GridGraph;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 
 import algorithms.datatypes.Point;
+import algorithms.datatypes.PreprocessedGraphCache;
 
 public class VisibilityGraph {
-    private static VisibilityGraph storedVisibilityGraph;
-    private static GridGraph storedGridGraph;
-    
     protected final GridGraph graph;
     protected int[][] nodeIndex;
     protected int startIndex;
@@ -51,16 +50,10 @@ public class VisibilityGraph {
     }
 
     protected void addNodes() {
-        nodeIndex = new int[graph.sizeY+1][];
-        for (int y=0;y<nodeIndex.length;y++) {
-            nodeIndex[y] = new int[graph.sizeX+1];
-            for (int x=0; x<nodeIndex[y].length; x++) {
-                if (isCorner(x, y)) {
-                    nodeIndex[y][x] = assignNode(x, y);
-                } else {
-                    nodeIndex[y][x] = -1;
-                }
-            }
+        CornerIndex corners = graph.cornerIndex();
+        nodeIndex = corners.toNodeIndex();
+        for (int i=0; i<corners.nCorners(); ++i) {
+            assignNode(corners.getX(i), corners.getY(i));
         }
     }
 
@@ -267,24 +260,24 @@ public class VisibilityGraph {
         return newGraph;
     }
     
+    /**
+     * The graph is cached per grid in PreprocessedGraphCache.shared(), and rebuilt when the grid has changed.
+     */
     public static VisibilityGraph getStoredGraph(GridGraph graph, int sx, int sy, int ex, int ey) {
-        VisibilityGraph visibilityGraph = null;
-        if (storedGridGraph != graph || storedVisibilityGraph == null) {
-            //("Get new graph");
-            visibilityGraph = new VisibilityGraph(graph, sx, sy ,ex, ey);
-            storedVisibilityGraph = visibilityGraph;
-            storedGridGraph = graph;
-        } else {
-            //("Reuse graph");
-            visibilityGraph = repurpose(storedVisibilityGraph, sx, sy, ex, ey);
-            storedVisibilityGraph = visibilityGraph;
-        }
-        return visibilityGraph;
+        return PreprocessedGraphCache.shared().get(VisibilityGraph.class, graph, 0, (stored, storedVersion) -> {
+            if (stored == null || storedVersion != graph.version()) return new VisibilityGraph(graph, sx, sy, ex, ey);
+            return repurpose(stored, sx, sy, ex, ey);
+        }, VisibilityGraph::estimatedBytes);
+    }
+
+    // 0 until initialised. Each edge is an Edge object, in both directions.
+    private long estimatedBytes() {
+        if (nodeList == null) return 0;
+        return (long)nodeList.size()*96 + (long)computeSumDegrees()*40 + (long)(graph.sizeX+1)*(graph.sizeY+1)*4;
     }
 
     public static void clearMemory() {
-        storedVisibilityGraph = null;
-        storedGridGraph = null;
+        PreprocessedGraphCache.shared().removeAll(VisibilityGraph.class);
         System.gc();
     }
     
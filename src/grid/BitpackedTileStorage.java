@@ -0,0 +1,53 @@
+package grid;
+
+/**
+ * Heap-backed bitpacked tile storage. One bit per tile, so 8x smaller than BooleanTileStorage.
+ */
+public final class BitpackedTileStorage extends PackedTileStorage {
+
+    private final long[] words;
+
+    public BitpackedTileStorage(int sizeX, int sizeY) {
+        super(sizeX, sizeY);
+        words = new long[wordsPerRow*sizeY];
+    }
+
+    private BitpackedTileStorage(BitpackedTileStorage other) {
+        super(other.sizeX, other.sizeY);
+        words = other.words.clone();
+    }
+
+    @Override
+    protected final long word(int y, int wordIndex) {
+        return words[y*wordsPerRow + wordIndex];
+    }
+
+    @Override
+    public final boolean get(int x, int y) {
+        return ((words[y*wordsPerRow + (x >>> 6)] >>> x) & 1L) != 0;
+    }
+
+    @Override
+    public final void set(int x, int y, boolean value) {
+        int index = y*wordsPerRow + (x >>> 6);
+        if (value) {
+            words[index] |= 1L << x;
+        } else {
+            words[index] &= ~(1L << x);
+        }
+    }
+
+    @Override
+    public final long countBlocked() {
+        long nBlocked = 0;
+        for (int i=0; i<words.length; ++i) {
+            nBlocked += Long.bitCount(words[i]);
+        }
+        return nBlocked;
+    }
+
+    @Override
+    public final TileStorage copy() {
+        return new BitpackedTileStorage(this);
+    }
+}
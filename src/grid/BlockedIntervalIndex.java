@@ -0,0 +1,162 @@
+package grid;
+
+/**
+ * The blocked tiles of a GridGraph as sorted lists of maximal blocked intervals, one list per row and one per column.
+ * Obtain it through GridGraph.blockedIntervalIndex(). It is discarded as soon as a tile of the grid is changed.
+ * <br>
+ * Finding the first blocked tile of a row (or column) within a range is a binary search over the intervals of
+ * that row, so a ray crossing a row does not need to look at each tile it passes through.
+ * <br>
+ * Both directions are stored in the same layout: the intervals of row y are
+ * rowStarts[rowOffsets[y]..rowOffsets[y+1]-1] to rowEnds[...] (inclusive), in increasing order.
+ */
+public final class BlockedIntervalIndex {
+    public static final int NONE_BLOCKED = Integer.MIN_VALUE;
+
+    private final int sizeX;
+    private final int sizeY;
+
+    private final int[] rowOffsets;
+    private final int[] rowStarts;
+    private final int[] rowEnds;
+    private final int[] columnOffsets;
+    private final int[] columnStarts;
+    private final int[] columnEnds;
+
+    BlockedIntervalIndex(GridGraph graph, TileStorage tiles) {
+        this.sizeX = graph.sizeX;
+        this.sizeY = graph.sizeY;
+
+        // Rows are read a word at a time.
+        int wordsPerRow = (sizeX + 63) >>> 6;
+        int nRowIntervals = 0;
+        for (int y=0; y<sizeY; ++y) {
+            long previous = 0;
+            for (int w=0; w<wordsPerRow; ++w) {
+                long word = tiles.rowWord(y, w);
+                // An interval starts wherever a blocked tile follows an unblocked one.
+                nRowIntervals += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+                previous = word;
+            }
+        }
+        rowOffsets = new int[sizeY+1];
+        rowStarts = new int[nRowIntervals];
+        rowEnds = new int[nRowIntervals];
+        int n = 0;
+        for (int y=0; y<sizeY; ++y) {
+            rowOffsets[y] = n;
+            int start = -1;
+            for (int w=0; w<wordsPerRow; ++w) {
+                long word = tiles.rowWord(y, w);
+                int base = w << 6;
+                while (true) {
+                    if (start == -1) {
+                        if (word == 0) break;
+                        int bit = Long.numberOfTrailingZeros(word);
+                        start = base + bit;
+                        word |= (1L << bit) - 1; // look for the next unblocked tile from here
+                    }
+                    long unblocked = ~word;
+                    if (unblocked == 0) break;
+                    int bit = Long.numberOfTrailingZeros(unblocked);
+                    rowStarts[n] = start;
+                    rowEnds[n] = base + bit - 1;
+                    n++;
+                    start = -1;
+                    word &= -1L << bit; // clears the bits below; the bit itself is unblocked
+                }
+            }
+            if (start != -1) {
+                rowStarts[n] = start;
+                rowEnds[n] = sizeX - 1;
+                n++;
+            }
+        }
+        rowOffsets[sizeY] = n;
+
+        // Columns are built row by row too. An interval of column x starts at row y where (x,y) is blocked and
+        // (x,y-1) is not, and ends at row y-1 where (x,y-1) is blocked and (x,y) is not.
+        columnOffsets = new int[sizeX+1];
+        for (int y=0; y<sizeY; ++y) {
+            for (int w=0; w<wordsPerRow; ++w) {
+                long word = tiles.rowWord(y, w);
+                long below = y == 0 ? 0 : tiles.rowWord(y-1, w);
+                for (long starts = word & ~below; starts != 0; starts &= starts-1) {
+                    columnOffsets[(w << 6) + Long.numberOfTrailingZeros(starts) + 1]++;
+                }
+            }
+        }
+        for (int x=0; x<sizeX; ++x) {
+            columnOffsets[x+1] += columnOffsets[x];
+        }
+        columnStarts = new int[columnOffsets[sizeX]];
+        columnEnds = new int[columnOffsets[sizeX]];
+        int[] next = new int[sizeX];
+        System.arraycopy(columnOffsets, 0, next, 0, sizeX);
+        for (int y=0; y<=sizeY; ++y) {
+            for (int w=0; w<wordsPerRow; ++w) {
+                long word = y == sizeY ? 0 : tiles.rowWord(y, w);
+                long below = y == 0 ? 0 : tiles.rowWord(y-1, w);
+                for (long ends = below & ~word; ends != 0; ends &= ends-1) {
+                    columnEnds[next[(w << 6) + Long.numberOfTrailingZeros(ends)]++] = y-1;
+                }
+                for (long starts = word & ~below; starts != 0; starts &= starts-1) {
+                    columnStarts[next[(w << 6) + Long.numberOfTrailingZeros(starts)]] = y;
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans tile row y from column xFrom to xTo (inclusive, in either direction). Tiles outside the grid are blocked.
+     * @return the first blocked column in scan order, or NONE_BLOCKED if there is none.
+     */
+    public final int firstBlockedInRow(int y, int xFrom, int xTo) {
+        if (y < 0 || y >= sizeY) return xFrom;
+        return firstBlocked(rowOffsets, rowStarts, rowEnds, y, sizeX, xFrom, xTo);
+    }
+
+    /**
+     * Scans tile column x from row yFrom to yTo (inclusive, in either direction). Tiles outside the grid are blocked.
+     * @return the first blocked row in scan order, or NONE_BLOCKED if there is none.
+     */
+    public final int firstBlockedInColumn(int x, int yFrom, int yTo) {
+        if (x < 0 || x >= sizeX) return yFrom;
+        return firstBlocked(columnOffsets, columnStarts, columnEnds, x, sizeY, yFrom, yTo);
+    }
+
+    private static final int firstBlocked(int[] offsets, int[] starts, int[] ends, int line, int size, int from, int to) {
+        if (from < 0 || from >= size) return from;
+        int lo = offsets[line];
+        int hi = offsets[line+1];
+        if (from <= to) {
+            int end = Math.min(to, size-1);
+            // first interval with ends[i] >= from
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ends[mid] < from) lo = mid+1;
+                else hi = mid;
+            }
+            if (lo < offsets[line+1] && starts[lo] <= end) return Math.max(starts[lo], from);
+            return end < to ? size : NONE_BLOCKED;
+        } else {
+            int end = Math.max(to, 0);
+            // last interval with starts[i] <= from
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= from) lo = mid+1;
+                else hi = mid;
+            }
+            --lo;
+            if (lo >= offsets[line] && ends[lo] >= end) return Math.min(ends[lo], from);
+            return end > to ? -1 : NONE_BLOCKED;
+        }
+    }
+
+    /**
+     * @return the total number of blocked intervals, over all rows.
+     */
+    public final int nRowIntervals() {
+        return rowStarts.length;
+    }
+}
@@ -0,0 +1,34 @@
+package grid;
+
+/**
+ * The default tile storage. One boolean (one byte) per tile.
+ */
+public final class BooleanTileStorage extends TileStorage {
+
+    private final boolean[] tiles; // Flattened 2D Array
+
+    public BooleanTileStorage(int sizeX, int sizeY) {
+        super(sizeX, sizeY);
+        tiles = new boolean[sizeY*sizeX];
+    }
+
+    private BooleanTileStorage(BooleanTileStorage other) {
+        super(other.sizeX, other.sizeY);
+        tiles = other.tiles.clone();
+    }
+
+    @Override
+    public final boolean get(int x, int y) {
+        return tiles[sizeX*y + x];
+    }
+
+    @Override
+    public final void set(int x, int y, boolean value) {
+        tiles[sizeX*y + x] = value;
+    }
+
+    @Override
+    public final TileStorage copy() {
+        return new BooleanTileStorage(this);
+    }
+}
@@ -0,0 +1,197 @@
+package grid;
+
+import java.util.Arrays;
+
+/**
+ * Bitpacked tile storage for very large, mostly uniform maps, split into chunks of 256x256 tiles.
+ * <br>
+ * A chunk whose tiles are all unblocked or all blocked is not allocated. It refers to one of two
+ * shared read-only chunks instead, and is only copied on the first set() that changes one of its tiles.
+ * fill() and compact() turn uniform chunks back into shared ones.
+ * <br>
+ * Memory use is O(number of chunks + 8KB per mixed chunk), so a 50000x50000 map with a few thousand
+ * mixed chunks fits in a few tens of MB. Use GridGraph.toLongIndex for vertex indices on such maps.
+ */
+public final class ChunkedTileStorage extends PackedTileStorage {
+
+    private static final int CHUNK_SIZE_LOG2 = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SIZE_LOG2;
+    private static final int CHUNK_WORDS_LOG2 = CHUNK_SIZE_LOG2 - 6; // words per chunk row
+    private static final int CHUNK_WORDS = 1 << CHUNK_WORDS_LOG2;
+
+    private static final long[] FREE_CHUNK = new long[CHUNK_SIZE*CHUNK_WORDS];
+    private static final long[] BLOCKED_CHUNK = new long[CHUNK_SIZE*CHUNK_WORDS];
+    static {
+        Arrays.fill(BLOCKED_CHUNK, -1L);
+    }
+
+    private final int nChunksX;
+    private final int nChunksY;
+    private final long[][] chunks;
+    private final long lastWordMask; // valid bits of the last word of each row
+
+    public ChunkedTileStorage(int sizeX, int sizeY) {
+        super(sizeX, sizeY);
+        nChunksX = (sizeX + CHUNK_SIZE - 1) >>> CHUNK_SIZE_LOG2;
+        nChunksY = (sizeY + CHUNK_SIZE - 1) >>> CHUNK_SIZE_LOG2;
+        chunks = new long[Math.multiplyExact(nChunksX, nChunksY)][];
+        Arrays.fill(chunks, FREE_CHUNK);
+        lastWordMask = (sizeX & 63) == 0 ? -1L : ~(-1L << sizeX);
+    }
+
+    private ChunkedTileStorage(ChunkedTileStorage other) {
+        super(other.sizeX, other.sizeY);
+        nChunksX = other.nChunksX;
+        nChunksY = other.nChunksY;
+        lastWordMask = other.lastWordMask;
+        chunks = other.chunks.clone();
+        for (int i=0; i<chunks.length; ++i) {
+            if (!isShared(chunks[i])) chunks[i] = chunks[i].clone();
+        }
+    }
+
+    private static final boolean isShared(long[] chunk) {
+        return chunk == FREE_CHUNK || chunk == BLOCKED_CHUNK;
+    }
+
+    @Override
+    protected final long word(int y, int wordIndex) {
+        long[] chunk = chunks[(y >>> CHUNK_SIZE_LOG2)*nChunksX + (wordIndex >>> CHUNK_WORDS_LOG2)];
+        long word = chunk[((y & (CHUNK_SIZE-1)) << CHUNK_WORDS_LOG2) + (wordIndex & (CHUNK_WORDS-1))];
+        return wordIndex == wordsPerRow-1 ? word & lastWordMask : word;
+    }
+
+    @Override
+    public final boolean get(int x, int y) {
+        long[] chunk = chunks[(y >>> CHUNK_SIZE_LOG2)*nChunksX + (x >>> CHUNK_SIZE_LOG2)];
+        if (chunk == FREE_CHUNK) return false;
+        if (chunk == BLOCKED_CHUNK) return true;
+        long word = chunk[((y & (CHUNK_SIZE-1)) << CHUNK_WORDS_LOG2) + ((x >>> 6) & (CHUNK_WORDS-1))];
+        return ((word >>> x) & 1L) != 0;
+    }
+
+    @Override
+    public final void set(int x, int y, boolean value) {
+        int index = (y >>> CHUNK_SIZE_LOG2)*nChunksX + (x >>> CHUNK_SIZE_LOG2);
+        long[] chunk = chunks[index];
+        if (chunk == (value ? BLOCKED_CHUNK : FREE_CHUNK)) return;
+        if (isShared(chunk)) chunk = chunks[index] = chunk.clone();
+
+        int wordIndex = ((y & (CHUNK_SIZE-1)) << CHUNK_WORDS_LOG2) + ((x >>> 6) & (CHUNK_WORDS-1));
+        if (value) {
+            chunk[wordIndex] |= 1L << x;
+        } else {
+            chunk[wordIndex] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Sets every tile in [minX, maxX] x [minY, maxY] to value.
+     * Chunks covered entirely by the rectangle become shared chunks, and are not allocated.
+     */
+    public final void fill(int minX, int minY, int maxX, int maxY, boolean value) {
+        long[] uniform = value ? BLOCKED_CHUNK : FREE_CHUNK;
+        for (int cy = minY >>> CHUNK_SIZE_LOG2; cy <= maxY >>> CHUNK_SIZE_LOG2; ++cy) {
+            int chunkMinY = cy << CHUNK_SIZE_LOG2;
+            int chunkMaxY = Math.min(chunkMinY + CHUNK_SIZE, sizeY) - 1;
+            for (int cx = minX >>> CHUNK_SIZE_LOG2; cx <= maxX >>> CHUNK_SIZE_LOG2; ++cx) {
+                int chunkMinX = cx << CHUNK_SIZE_LOG2;
+                int chunkMaxX = Math.min(chunkMinX + CHUNK_SIZE, sizeX) - 1;
+                if (minX <= chunkMinX && chunkMaxX <= maxX && minY <= chunkMinY && chunkMaxY <= maxY) {
+                    chunks[cy*nChunksX + cx] = uniform;
+                    continue;
+                }
+                int x1 = Math.max(minX, chunkMinX), x2 = Math.min(maxX, chunkMaxX);
+                int y1 = Math.max(minY, chunkMinY), y2 = Math.min(maxY, chunkMaxY);
+                for (int y=y1; y<=y2; ++y) {
+                    for (int x=x1; x<=x2; ++x) {
+                        set(x, y, value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces every allocated chunk whose tiles are all unblocked or all blocked with a shared chunk.
+     * @return the number of chunks released.
+     */
+    public final int compact() {
+        int nReleased = 0;
+        for (int cy=0; cy<nChunksY; ++cy) {
+            for (int cx=0; cx<nChunksX; ++cx) {
+                long[] chunk = chunks[cy*nChunksX + cx];
+                if (isShared(chunk)) continue;
+                long[] uniform = uniformChunk(cx, cy);
+                if (uniform != null) {
+                    chunks[cy*nChunksX + cx] = uniform;
+                    nReleased++;
+                }
+            }
+        }
+        return nReleased;
+    }
+
+    // Returns the shared chunk equal to chunk (cx,cy), or null if it has both blocked and unblocked tiles.
+    private final long[] uniformChunk(int cx, int cy) {
+        int minY = cy << CHUNK_SIZE_LOG2;
+        int maxY = Math.min(minY + CHUNK_SIZE, sizeY) - 1;
+        int minW = cx << CHUNK_WORDS_LOG2;
+        int maxW = Math.min(minW + CHUNK_WORDS, wordsPerRow) - 1;
+
+        boolean anyBlocked = false;
+        boolean anyUnblocked = false;
+        for (int y=minY; y<=maxY; ++y) {
+            for (int w=minW; w<=maxW; ++w) {
+                long mask = w == wordsPerRow-1 ? lastWordMask : -1L;
+                long word = word(y, w);
+                if (word != 0) anyBlocked = true;
+                if (word != mask) anyUnblocked = true;
+                if (anyBlocked && anyUnblocked) return null;
+            }
+        }
+        return anyBlocked ? BLOCKED_CHUNK : FREE_CHUNK;
+    }
+
+    /**
+     * @return the number of chunks which have their own tile array.
+     */
+    public final int allocatedChunks() {
+        int count = 0;
+        for (long[] chunk : chunks) {
+            if (!isShared(chunk)) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public final long countBlocked() {
+        long nBlocked = 0;
+        for (int cy=0; cy<nChunksY; ++cy) {
+            int minY = cy << CHUNK_SIZE_LOG2;
+            int maxY = Math.min(minY + CHUNK_SIZE, sizeY) - 1;
+            for (int cx=0; cx<nChunksX; ++cx) {
+                long[] chunk = chunks[cy*nChunksX + cx];
+                if (chunk == FREE_CHUNK) continue;
+                int minX = cx << CHUNK_SIZE_LOG2;
+                if (chunk == BLOCKED_CHUNK) {
+                    nBlocked += (long)(Math.min(minX + CHUNK_SIZE, sizeX) - minX) * (maxY - minY + 1);
+                    continue;
+                }
+                int minW = cx << CHUNK_WORDS_LOG2;
+                int maxW = Math.min(minW + CHUNK_WORDS, wordsPerRow) - 1;
+                for (int y=minY; y<=maxY; ++y) {
+                    for (int w=minW; w<=maxW; ++w) {
+                        nBlocked += Long.bitCount(word(y, w));
+                    }
+                }
+            }
+        }
+        return nBlocked;
+    }
+
+    @Override
+    public final TileStorage copy() {
+        return new ChunkedTileStorage(this);
+    }
+}
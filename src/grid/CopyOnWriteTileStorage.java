@@ -0,0 +1,118 @@
+package grid;
+
+import java.util.Arrays;
+
+/**
+ * Bitpacked tile storage split into blocks of 64x64 tiles, which can be shared between versions of a grid.
+ * <br>
+ * snapshot() returns a read-only view that shares every block with this storage.
+ * The first write to a shared block afterwards copies just that block, so a snapshot never changes
+ * and taking one never copies the tiles themselves.
+ * <br>
+ * Read-only snapshots can be read from any number of threads.
+ * An editable storage still has a single writer.
+ */
+public final class CopyOnWriteTileStorage extends PackedTileStorage {
+
+    private static final int BLOCK_ROWS_LOG2 = 6;
+    private static final int BLOCK_ROWS = 1 << BLOCK_ROWS_LOG2;
+    private static final long[] EMPTY_BLOCK = new long[BLOCK_ROWS];
+
+    private final long[][] blocks;
+    // blockEpoch[i] == epoch iff blocks[i] is not shared with any other storage. null iff read-only.
+    private final int[] blockEpoch;
+    private int epoch;
+
+    public CopyOnWriteTileStorage(int sizeX, int sizeY) {
+        super(sizeX, sizeY);
+        int nBlockRows = (sizeY + BLOCK_ROWS - 1) >>> BLOCK_ROWS_LOG2;
+        blocks = new long[nBlockRows*wordsPerRow][];
+        Arrays.fill(blocks, EMPTY_BLOCK);
+        blockEpoch = new int[blocks.length];
+        Arrays.fill(blockEpoch, -1);
+    }
+
+    private CopyOnWriteTileStorage(CopyOnWriteTileStorage source, boolean readOnly) {
+        super(source.sizeX, source.sizeY);
+        blocks = source.blocks.clone();
+        if (readOnly) {
+            blockEpoch = null;
+        } else {
+            blockEpoch = new int[blocks.length];
+            Arrays.fill(blockEpoch, -1);
+        }
+    }
+
+    /**
+     * @return an editable copy-on-write storage with the same tiles as the given storage.
+     */
+    public static CopyOnWriteTileStorage copyOf(TileStorage tiles) {
+        CopyOnWriteTileStorage storage = new CopyOnWriteTileStorage(tiles.sizeX, tiles.sizeY);
+        for (int y=0; y<tiles.sizeY; ++y) {
+            for (int w=0; w<storage.wordsPerRow; ++w) {
+                long word = tiles.rowWord(y, w);
+                if (word != 0) storage.writableBlock(y, w)[y & (BLOCK_ROWS-1)] = word;
+            }
+        }
+        return storage;
+    }
+
+    @Override
+    protected final long word(int y, int wordIndex) {
+        return blocks[(y >>> BLOCK_ROWS_LOG2)*wordsPerRow + wordIndex][y & (BLOCK_ROWS-1)];
+    }
+
+    @Override
+    public final void set(int x, int y, boolean value) {
+        long[] block = writableBlock(y, x >>> 6);
+        if (value) {
+            block[y & (BLOCK_ROWS-1)] |= 1L << x;
+        } else {
+            block[y & (BLOCK_ROWS-1)] &= ~(1L << x);
+        }
+    }
+
+    private final long[] writableBlock(int y, int wordIndex) {
+        if (blockEpoch == null) throw new UnsupportedOperationException("Tile storage is a read-only snapshot.");
+        
+        int index = (y >>> BLOCK_ROWS_LOG2)*wordsPerRow + wordIndex;
+        if (blockEpoch[index] != epoch) {
+            blocks[index] = blocks[index].clone();
+            blockEpoch[index] = epoch;
+        }
+        return blocks[index];
+    }
+
+    /**
+     * Runtime: O(number of blocks). No tiles are copied.
+     * @return a read-only view of the current tiles.
+     */
+    public final CopyOnWriteTileStorage snapshot() {
+        if (blockEpoch == null) return this;
+        epoch++; // From now on, every block is shared with the snapshot.
+        return new CopyOnWriteTileStorage(this, true);
+    }
+
+    /**
+     * Runtime: O(number of blocks). Blocks are copied lazily as either storage is modified.
+     * @return an editable copy of this storage.
+     */
+    @Override
+    public final TileStorage copy() {
+        if (blockEpoch != null) epoch++;
+        return new CopyOnWriteTileStorage(this, false);
+    }
+
+    @Override
+    public final boolean isReadOnly() {
+        return blockEpoch == null;
+    }
+
+    /**
+     * Snapshots are immutable: the storage they were taken from copies the blocks it modifies.
+     */
+    @Override
+    public final boolean isImmutable() {
+        return blockEpoch == null;
+    }
+}
@@ -0,0 +1,118 @@
+package grid;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The outer corners of a GridGraph (see GridGraph.isOuterCorner), numbered 0..nCorners()-1 in row-major order.
+ * This is the order in which the visibility graph builders number their nodes, so corner i becomes node i.
+ * Obtain it through GridGraph.cornerIndex(). It is discarded as soon as a tile of the grid is changed.
+ * <br>
+ * Large grids are scanned in parallel, in stripes of rows.
+ */
+public final class CornerIndex {
+    private static final int STRIPE_ROWS = 256;
+    private static final long PARALLEL_MIN_VERTICES = 1L << 20;
+
+    private final int sizeXplusOne;
+    private final int[] rowOffsets; // the corners of row y are rowOffsets[y]..rowOffsets[y+1]-1
+    private final int[] xs;
+    private final int[] ys;
+
+    CornerIndex(GridGraph graph) {
+        this.sizeXplusOne = graph.sizeXplusOne;
+        int nRows = graph.sizeY+1;
+        int nStripes = (nRows + STRIPE_ROWS - 1) / STRIPE_ROWS;
+        rowOffsets = new int[nRows+1];
+
+        // Pass 1: count the corners of each row.
+        stripes(graph, nStripes).forEach(stripe -> {
+            int wordsPerRow = graph.outerCornerWordsPerRow();
+            int yEnd = Math.min((stripe+1)*STRIPE_ROWS, nRows);
+            for (int y=stripe*STRIPE_ROWS; y<yEnd; ++y) {
+                int count = 0;
+                for (int w=0; w<wordsPerRow; ++w) {
+                    count += Long.bitCount(graph.outerCornerWord(y, w));
+                }
+                rowOffsets[y+1] = count;
+            }
+        });
+        for (int y=0; y<nRows; ++y) {
+            rowOffsets[y+1] += rowOffsets[y];
+        }
+
+        // Pass 2: each stripe writes its own range of the corner list.
+        xs = new int[rowOffsets[nRows]];
+        ys = new int[rowOffsets[nRows]];
+        stripes(graph, nStripes).forEach(stripe -> {
+            int wordsPerRow = graph.outerCornerWordsPerRow();
+            int yEnd = Math.min((stripe+1)*STRIPE_ROWS, nRows);
+            for (int y=stripe*STRIPE_ROWS; y<yEnd; ++y) {
+                int i = rowOffsets[y];
+                for (int w=0; w<wordsPerRow; ++w) {
+                    long corners = graph.outerCornerWord(y, w);
+                    while (corners != 0) {
+                        xs[i] = (w << 6) + Long.numberOfTrailingZeros(corners);
+                        ys[i] = y;
+                        corners &= corners - 1;
+                        ++i;
+                    }
+                }
+            }
+        });
+    }
+
+    private static final IntStream stripes(GridGraph graph, int nStripes) {
+        IntStream stripes = IntStream.range(0, nStripes);
+        return graph.nVertices() >= PARALLEL_MIN_VERTICES ? stripes.parallel() : stripes;
+    }
+
+    public final int nCorners() {
+        return xs.length;
+    }
+
+    public final int getX(int index) {
+        return xs[index];
+    }
+
+    public final int getY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * Runtime: O(log(number of corners in row y)).
+     * @return the index of the corner at (x,y), or -1 if (x,y) is not an outer corner.
+     */
+    public final int indexOf(int x, int y) {
+        if (y < 0 || y+1 >= rowOffsets.length) return -1;
+        int index = Arrays.binarySearch(xs, rowOffsets[y], rowOffsets[y+1], x);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @return a new array mapping each vertex y*sizeXplusOne + x to its corner index, or -1 if it is not a corner.
+     */
+    public final int[] toFlatNodeIndex() {
+        int[] nodeIndex = new int[(rowOffsets.length-1)*sizeXplusOne];
+        Arrays.fill(nodeIndex, -1);
+        for (int i=0; i<xs.length; ++i) {
+            nodeIndex[ys[i]*sizeXplusOne + xs[i]] = i;
+        }
+        return nodeIndex;
+    }
+
+    /**
+     * @return a new array mapping each vertex [y][x] to its corner index, or -1 if it is not a corner.
+     */
+    public final int[][] toNodeIndex() {
+        int[][] nodeIndex = new int[rowOffsets.length-1][];
+        for (int y=0; y<nodeIndex.length; ++y) {
+            nodeIndex[y] = new int[sizeXplusOne];
+            Arrays.fill(nodeIndex[y], -1);
+            for (int i=rowOffsets[y]; i<rowOffsets[y+1]; ++i) {
+                nodeIndex[y][xs[i]] = i;
+            }
+        }
+        return nodeIndex;
+    }
+}
@@ -0,0 +1,114 @@
+package grid;
+
+/**
+ * Records which tiles of a GridGraph have changed, as a version number and a bounded list of dirty rectangles.
+ * Obtain it through GridGraph.changeJournal().
+ * <br>
+ * Every change to the tiles increments the version. A structure computed from the grid can remember the version
+ * it was computed at, and later ask for the rectangles changed since then, to refresh just those parts.
+ * Only the last CAPACITY rectangles are kept. When older changes have been dropped, covers() returns false
+ * and the structure has to be rebuilt from scratch.
+ * <br>
+ * Consecutive changes are merged into the previous rectangle when that does not make it cover any unchanged tile,
+ * e.g. a run of tiles along a row is recorded as one rectangle.
+ */
+public final class GridChangeJournal {
+
+    /**
+     * Receives a rectangle of tiles [minX, maxX] x [minY, maxY], inclusive.
+     */
+    public interface RectangleVisitor {
+        void visit(int minX, int minY, int maxX, int maxY);
+    }
+
+    public static final int CAPACITY = 1024;
+
+    private long version;
+    // Ring buffer of rectangles. Entry i was last extended by the change which produced versions[i].
+    private final long[] versions = new long[CAPACITY];
+    private final int[] minXs = new int[CAPACITY];
+    private final int[] minYs = new int[CAPACITY];
+    private final int[] maxXs = new int[CAPACITY];
+    private final int[] maxYs = new int[CAPACITY];
+    private int first;
+    private int size;
+    // The newest version whose changes are no longer recorded. Changes after this version are all recorded.
+    private long droppedVersion;
+
+    GridChangeJournal() {
+    }
+
+    /**
+     * @return the number of changes so far. A change is one tile set by GridGraph.setBlocked, or one fillBlocked.
+     */
+    public final long version() {
+        return version;
+    }
+
+    final void record(int x, int y) {
+        record(x, y, x, y);
+    }
+
+    final void record(int minX, int minY, int maxX, int maxY) {
+        version++;
+        if (size > 0) {
+            int last = (first + size - 1) % CAPACITY;
+            long oldArea = (long)(maxXs[last]-minXs[last]+1) * (maxYs[last]-minYs[last]+1);
+            long area = (long)(maxX-minX+1) * (maxY-minY+1);
+            int unionMinX = Math.min(minXs[last], minX), unionMaxX = Math.max(maxXs[last], maxX);
+            int unionMinY = Math.min(minYs[last], minY), unionMaxY = Math.max(maxYs[last], maxY);
+            long unionArea = (long)(unionMaxX-unionMinX+1) * (unionMaxY-unionMinY+1);
+            if (unionArea <= oldArea + area) {
+                minXs[last] = unionMinX; maxXs[last] = unionMaxX;
+                minYs[last] = unionMinY; maxYs[last] = unionMaxY;
+                versions[last] = version;
+                return;
+            }
+        }
+        if (size == CAPACITY) {
+            droppedVersion = versions[first];
+            first = (first + 1) % CAPACITY;
+            size--;
+        }
+        int index = (first + size) % CAPACITY;
+        minXs[index] = minX; maxXs[index] = maxX;
+        minYs[index] = minY; maxYs[index] = maxY;
+        versions[index] = version;
+        size++;
+    }
+
+    /**
+     * @return true iff all changes made after sinceVersion are still recorded.
+     */
+    public final boolean covers(long sinceVersion) {
+        return sinceVersion >= droppedVersion && sinceVersion <= version;
+    }
+
+    /**
+     * Visits the rectangles containing every change made after sinceVersion. Requires covers(sinceVersion).
+     * A rectangle may also contain changes made at or before sinceVersion.
+     */
+    public final void forEachSince(long sinceVersion, RectangleVisitor visitor) {
+        for (int i=size-1; i>=0; --i) {
+            int index = (first + i) % CAPACITY;
+            if (versions[index] <= sinceVersion) break;
+            visitor.visit(minXs[index], minYs[index], maxXs[index], maxYs[index]);
+        }
+    }
+
+    /**
+     * Requires covers(sinceVersion).
+     * @return the bounding box {minX, minY, maxX, maxY} of all changes made after sinceVersion, or null if there are none.
+     */
+    public final int[] boundsSince(long sinceVersion) {
+        if (sinceVersion == version) return null;
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        forEachSince(sinceVersion, (minX, minY, maxX, maxY) -> {
+            bounds[0] = Math.min(bounds[0], minX);
+            bounds[1] = Math.min(bounds[1], minY);
+            bounds[2] = Math.max(bounds[2], maxX);
+            bounds[3] = Math.max(bounds[3], maxY);
+        });
+        return bounds;
+    }
+}
@@ -7,7 +7,12 @@ import algorithms.datatypes.Point;
  */
 public class GridGraph {
 
-    private boolean[] tiles; // Flattened 2D Array
+    private final TileStorage tiles;
+    private RunLengthIndex runLengthIndex;
+    private BlockedIntervalIndex blockedIntervalIndex;
+    private CornerIndex cornerIndex;
+    private boolean intervalRayCasting;
+    private final GridChangeJournal changeJournal = new GridChangeJournal();
     public final int sizeX;
     public final int sizeY;
     public final int sizeXplusOne;
@@ -15,32 +20,226 @@ public class GridGraph {
     private static final float SQRT_TWO = (float)Math.sqrt(2);
     private static final double SQRT_TWO_DOUBLE = Math.sqrt(2);
     private static final float SQRT_TWO_MINUS_ONE = (float)(Math.sqrt(2) - 1);
+    private static final int NONE_BLOCKED = Integer.MIN_VALUE;
+    // With interval ray casting on, lines are still walked tile by tile unless they are at least this long
+    // along their major axis, and at least INTERVAL_RAY_MIN_SLOPE times longer along it than along the other.
+    // Each row crossed costs about three tile steps, so nearly diagonal lines are faster tile by tile.
+    private static final int INTERVAL_RAY_MIN_LENGTH = 16;
+    private static final int INTERVAL_RAY_MIN_SLOPE = 8;
     
     public GridGraph(int sizeX, int sizeY) {
-        this.sizeX = sizeX;
-        this.sizeY = sizeY;
+        this(new BooleanTileStorage(sizeX, sizeY));
+    }
+    
+    public GridGraph(TileStorage tiles) {
+        this.sizeX = tiles.sizeX;
+        this.sizeY = tiles.sizeY;
         this.sizeXplusOne = sizeX+1;
         
-        tiles = new boolean[sizeY*sizeX];
+        this.tiles = tiles;
+    }
+    
+    /**
+     * Creates an empty grid backed by a BitpackedTileStorage (one bit per tile).
+     */
+    public static GridGraph bitpacked(int sizeX, int sizeY) {
+        return new GridGraph(new BitpackedTileStorage(sizeX, sizeY));
+    }
+    
+    /**
+     * @return a copy of this grid backed by a BitpackedTileStorage.
+     */
+    public final GridGraph bitpackedCopy() {
+        BitpackedTileStorage packed = new BitpackedTileStorage(sizeX, sizeY);
+        for (int y=0; y<sizeY; ++y) {
+            for (int x=0; x<sizeX; ++x) {
+                if (tiles.get(x, y)) packed.set(x, y, true);
+            }
+        }
+        return new GridGraph(packed);
+    }
+    
+    /**
+     * Creates an empty grid backed by a ChunkedTileStorage, for maps too large to allocate in full.
+     * Tiles are stored in 256x256 chunks, and chunks that are entirely unblocked or blocked are not allocated.
+     * Use fillBlocked to block large areas without allocating them.
+     * The path finding algorithms reject grids with more vertices than hasIntIndices() allows.
+     */
+    public static GridGraph chunked(int sizeX, int sizeY) {
+        return new GridGraph(new ChunkedTileStorage(sizeX, sizeY));
+    }
+    
+    /**
+     * @return the tile storage if this grid was created with chunked(), or null otherwise.
+     */
+    public final ChunkedTileStorage getChunkedTiles() {
+        return tiles instanceof ChunkedTileStorage ? (ChunkedTileStorage)tiles : null;
     }
     
+    /**
+     * Opens a grid file written by writeMappedFile. The tiles stay in the memory-mapped file, off the Java heap.
+     * @param writable if false, setBlocked is not supported. If true, setBlocked writes to the file.
+     *        Either way, writes to the file through other mappings show up in the grid. See MappedTileStorage.
+     */
+    public static GridGraph mapped(String filepath, boolean writable) {
+        return new GridGraph(MappedTileStorage.open(filepath, writable));
+    }
+    
+    /**
+     * Writes the tiles of this grid to a file which can be opened with mapped().
+     */
+    public final void writeMappedFile(String filepath) {
+        MappedTileStorage.writeFile(tiles, filepath);
+    }
+    
+    /**
+     * Creates an empty, editable grid which supports cheap snapshots. See snapshot().
+     */
+    public static GridGraph copyOnWrite(int sizeX, int sizeY) {
+        return new GridGraph(new CopyOnWriteTileStorage(sizeX, sizeY));
+    }
+    
+    /**
+     * Returns an immutable view of the current state of the grid, which can be shared between concurrent searches.
+     * Calling setBlocked on the snapshot throws an UnsupportedOperationException.
+     * <br>
+     * For grids created with copyOnWrite() or editableCopy(), this runs in O(size/4096) and later edits to
+     * this grid copy only the 64x64 tile blocks they touch. For other grids, the tiles are copied once,
+     * including memory-mapped ones, which may be written through another mapping.
+     */
+    public final GridGraph snapshot() {
+        if (tiles.isImmutable()) return this;
+        if (tiles instanceof CopyOnWriteTileStorage) {
+            return new GridGraph(((CopyOnWriteTileStorage)tiles).snapshot());
+        }
+        return new GridGraph(CopyOnWriteTileStorage.copyOf(tiles).snapshot());
+    }
+    
+    /**
+     * Use this to derive a new version of a grid, e.g. edit a snapshot and then take a snapshot of the result.
+     * @return an editable copy of this grid, which shares its tile blocks with this grid until they are modified.
+     */
+    public final GridGraph editableCopy() {
+        if (tiles instanceof CopyOnWriteTileStorage) {
+            return new GridGraph(tiles.copy());
+        }
+        return new GridGraph(CopyOnWriteTileStorage.copyOf(tiles));
+    }
+    
+    /**
+     * @return true iff setBlocked is not supported: the grid is a snapshot, or a read-only memory-mapped grid.
+     */
+    public final boolean isReadOnly() {
+        return tiles.isReadOnly();
+    }
+    
+    /**
+     * Setting a tile to its current value does not count as a change. See changeJournal().
+     */
     public final void setBlocked(int x, int y, boolean value) {
-        tiles[sizeX*y + x] = value;
+        if (tiles.get(x, y) == value && !tiles.isReadOnly()) return;
+        tiles.set(x, y, value);
+        runLengthIndex = null;
+        blockedIntervalIndex = null;
+        cornerIndex = null;
+        changeJournal.record(x, y);
     }
     
     public final void trySetBlocked(int x, int y, boolean value) {
-        if (isValidBlock(x,y))
-            tiles[sizeX*y + x] = value;
+        if (isValidBlock(x,y)) {
+            setBlocked(x, y, value);
+        }
+    }
+    
+    /**
+     * Sets every tile in [minX, maxX] x [minY, maxY] (inclusive), as one change.
+     * On a chunked grid, whole chunks inside the rectangle are shared instead of allocated.
+     */
+    public final void fillBlocked(int minX, int minY, int maxX, int maxY, boolean value) {
+        if (tiles instanceof ChunkedTileStorage) {
+            ((ChunkedTileStorage)tiles).fill(minX, minY, maxX, maxY, value);
+        } else {
+            for (int y=minY; y<=maxY; ++y) {
+                for (int x=minX; x<=maxX; ++x) {
+                    tiles.set(x, y, value);
+                }
+            }
+        }
+        runLengthIndex = null;
+        blockedIntervalIndex = null;
+        cornerIndex = null;
+        changeJournal.record(minX, minY, maxX, maxY);
+    }
+    
+    /**
+     * @return the number of changes made through setBlocked and fillBlocked so far.
+     *         Structures computed from this grid can compare it to detect that they are stale.
+     */
+    public final long version() {
+        return changeJournal.version();
+    }
+    
+    /**
+     * @return the record of which tiles were changed since a given version().
+     */
+    public final GridChangeJournal changeJournal() {
+        return changeJournal;
+    }
+    
+    /**
+     * @return the run length index of the current state of the grid. Built once, and rebuilt after setBlocked.
+     *         Requires hasIntIndices().
+     */
+    public final RunLengthIndex runLengthIndex() {
+        RunLengthIndex index = runLengthIndex;
+        if (index == null) {
+            index = runLengthIndex = new RunLengthIndex(this);
+        }
+        return index;
+    }
+    
+    /**
+     * @return the outer corners of the current state of the grid. Built once, and rebuilt after setBlocked.
+     */
+    public final CornerIndex cornerIndex() {
+        CornerIndex index = cornerIndex;
+        if (index == null) {
+            index = cornerIndex = new CornerIndex(this);
+        }
+        return index;
+    }
+    
+    /**
+     * @return the blocked intervals of the rows and columns of the current state of the grid.
+     *         Built once, and rebuilt after setBlocked.
+     */
+    public final BlockedIntervalIndex blockedIntervalIndex() {
+        BlockedIntervalIndex index = blockedIntervalIndex;
+        if (index == null) {
+            index = blockedIntervalIndex = new BlockedIntervalIndex(this, tiles);
+        }
+        return index;
+    }
+    
+    /**
+     * If enabled, lineOfSight and findFirstBlockedTile cast long, nearly axis-aligned rays through
+     * blockedIntervalIndex(), with one binary search per row (or column) crossed instead of one step per tile.
+     * The results are the same.
+     * Worth it for open maps with long lines of sight. Not worth it while the grid is being edited,
+     * as every edit discards the index.
+     */
+    public final void setIntervalRayCasting(boolean enabled) {
+        intervalRayCasting = enabled;
     }
     
     public final boolean isBlocked(int x, int y) {
         if (x >= sizeX || y >= sizeY) return true;
         if (x < 0 || y < 0) return true;
-        return tiles[sizeX*y + x];
+        return tiles.get(x, y);
     }
     
     public final boolean isBlockedRaw(int x, int y) {
-        return tiles[sizeX*y + x];
+        return tiles.get(x, y);
     }
     
     public final boolean isValidCoordinate(int x, int y) {
@@ -53,6 +252,9 @@ public class GridGraph {
                 x >= 0 && y >= 0);
     }
 
+    /**
+     * Only valid while hasIntIndices(). Use toLongIndex for larger grids.
+     */
     public final int toOneDimIndex(int x, int y) {
         return y*sizeXplusOne + x;
     }
@@ -64,6 +266,35 @@ public class GridGraph {
     public final int toTwoDimY(int index) {
         return index/sizeXplusOne;
     }
+    
+    /**
+     * @return the number of vertices, (sizeX+1)*(sizeY+1).
+     */
+    public final long nVertices() {
+        return (long)sizeXplusOne * (sizeY+1);
+    }
+    
+    /**
+     * @return true iff every vertex index fits in an int, i.e. toOneDimIndex and int-indexed searches can be used.
+     */
+    public final boolean hasIntIndices() {
+        return nVertices() <= Integer.MAX_VALUE;
+    }
+    
+    /**
+     * Same as toOneDimIndex, but valid for grids with more than 2^31 vertices.
+     */
+    public final long toLongIndex(int x, int y) {
+        return (long)y*sizeXplusOne + x;
+    }
+    
+    public final int longIndexToX(long index) {
+        return (int)(index%sizeXplusOne);
+    }
+    
+    public final int longIndexToY(long index) {
+        return (int)(index/sizeXplusOne);
+    }
 
     public final boolean isUnblockedCoordinate(int x, int y) {
         return !topRightOfBlockedTile(x,y) ||
@@ -190,8 +421,21 @@ public class GridGraph {
      * @return true iff there is line-of-sight from (x1,y1) to (x2,y2).
      */
     public final boolean lineOfSight(int x1, int y1, int x2, int y2) {
+        if (y1 == y2) {
+            if (x1 < x2) return firstBlockedColumnAlongGridLine(y1, x1, x2-1) == NONE_BLOCKED;
+            if (x2 < x1) return firstBlockedColumnAlongGridLine(y1, x1-1, x2) == NONE_BLOCKED;
+            return true;
+        }
+        if (x1 == x2) {
+            if (y1 < y2) return firstBlockedRowAlongGridLine(x1, y1, y2-1) == NONE_BLOCKED;
+            else return firstBlockedRowAlongGridLine(x1, y1-1, y2) == NONE_BLOCKED;
+        }
+        
         int dy = y2 - y1;
         int dx = x2 - x1;
+        if (intervalRayCasting && isLongShallowRay(dx, dy, INTERVAL_RAY_MIN_LENGTH)) {
+            return lineOfSightByIntervals(x1, y1, x2, y2);
+        }
 
         int f = 0;
 
@@ -249,6 +493,15 @@ public class GridGraph {
     }
 
     public final Point findFirstBlockedTile(int x1, int y1, int dx, int dy) {
+        if (dy == 0 && dx != 0) {
+            if (dx > 0) return new Point(firstBlockedColumnAlongGridLine(y1, x1, sizeX), -1);
+            else return new Point(firstBlockedColumnAlongGridLine(y1, x1-1, -1), -1);
+        }
+        if (dx == 0 && dy != 0) {
+            if (dy > 0) return new Point(-1, firstBlockedRowAlongGridLine(x1, y1, sizeY));
+            else return new Point(-1, firstBlockedRowAlongGridLine(x1, y1-1, -1));
+        }
+        if (intervalRayCasting && isLongShallowRay(dx, dy, 0)) return findFirstBlockedTileByIntervals(x1, y1, dx, dy);
         
         int f = 0;
 
@@ -306,8 +559,179 @@ public class GridGraph {
     }
     
 
+
+    private static final boolean isLongShallowRay(int dx, int dy, int minLength) {
+        int major = Math.max(Math.abs(dx), Math.abs(dy));
+        int minor = Math.min(Math.abs(dx), Math.abs(dy));
+        return major >= minLength && major >= INTERVAL_RAY_MIN_SLOPE*minor;
+    }
+    
+    /**
+     * Same as lineOfSight for lines which are not axis-aligned: a line is blocked iff it passes through the
+     * interior of a blocked tile. Crosses the tile rows (or columns, for steep lines) one at a time.
+     * Within a row, the line passes through the interiors of the tiles from floor(xEnter) to ceil(xLeave)-1
+     * (swapped if the line goes left), where the line enters and leaves the row at xEnter and xLeave.
+     * These are tracked exactly, as a quotient and a remainder over |dy|.
+     */
+    private final boolean lineOfSightByIntervals(int x1, int y1, int x2, int y2) {
+        BlockedIntervalIndex index = blockedIntervalIndex();
+        if (Math.abs(x2-x1) >= Math.abs(y2-y1)) {
+            if (y2 < y1) {
+                int temp = x1; x1 = x2; x2 = temp;
+                temp = y1; y1 = y2; y2 = temp;
+            }
+            int dx = x2 - x1;
+            int dy = y2 - y1;
+            int step = Math.floorDiv(dx, dy);
+            int stepRem = Math.floorMod(dx, dy);
+            int enter = x1;
+            int enterRem = 0;
+            for (int y=y1; y<y2; ++y) {
+                int leave = enter + step;
+                int leaveRem = enterRem + stepRem;
+                if (leaveRem >= dy) {
+                    leaveRem -= dy;
+                    leave++;
+                }
+                int blocked = dx > 0 ? index.firstBlockedInRow(y, enter, leaveRem > 0 ? leave : leave-1)
+                                     : index.firstBlockedInRow(y, leave, enterRem > 0 ? enter : enter-1);
+                if (blocked != NONE_BLOCKED) return false;
+                enter = leave;
+                enterRem = leaveRem;
+            }
+        } else {
+            if (x2 < x1) {
+                int temp = x1; x1 = x2; x2 = temp;
+                temp = y1; y1 = y2; y2 = temp;
+            }
+            int dx = x2 - x1;
+            int dy = y2 - y1;
+            int step = Math.floorDiv(dy, dx);
+            int stepRem = Math.floorMod(dy, dx);
+            int enter = y1;
+            int enterRem = 0;
+            for (int x=x1; x<x2; ++x) {
+                int leave = enter + step;
+                int leaveRem = enterRem + stepRem;
+                if (leaveRem >= dx) {
+                    leaveRem -= dx;
+                    leave++;
+                }
+                int blocked = dy > 0 ? index.firstBlockedInColumn(x, enter, leaveRem > 0 ? leave : leave-1)
+                                     : index.firstBlockedInColumn(x, leave, enterRem > 0 ? enter : enter-1);
+                if (blocked != NONE_BLOCKED) return false;
+                enter = leave;
+                enterRem = leaveRem;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Same as findFirstBlockedTile for rays which are not axis-aligned. See lineOfSightByIntervals.
+     * Tiles are scanned in the order the ray passes through them, so the first blocked tile found is the same.
+     */
+    private final Point findFirstBlockedTileByIntervals(int x1, int y1, int dx, int dy) {
+        BlockedIntervalIndex index = blockedIntervalIndex();
+        if (Math.abs(dx) >= Math.abs(dy)) {
+            int ady = Math.abs(dy);
+            int step = Math.floorDiv(dx, ady);
+            int stepRem = Math.floorMod(dx, ady);
+            int enter = x1;
+            int enterRem = 0;
+            for (int y = dy > 0 ? y1 : y1-1; ; y += Integer.signum(dy)) {
+                int leave = enter + step;
+                int leaveRem = enterRem + stepRem;
+                if (leaveRem >= ady) {
+                    leaveRem -= ady;
+                    leave++;
+                }
+                int x = dx > 0 ? index.firstBlockedInRow(y, enter, leaveRem > 0 ? leave : leave-1)
+                               : index.firstBlockedInRow(y, enterRem > 0 ? enter : enter-1, leave);
+                if (x != NONE_BLOCKED) return new Point(x, y);
+                enter = leave;
+                enterRem = leaveRem;
+            }
+        } else {
+            int adx = Math.abs(dx);
+            int step = Math.floorDiv(dy, adx);
+            int stepRem = Math.floorMod(dy, adx);
+            int enter = y1;
+            int enterRem = 0;
+            for (int x = dx > 0 ? x1 : x1-1; ; x += Integer.signum(dx)) {
+                int leave = enter + step;
+                int leaveRem = enterRem + stepRem;
+                if (leaveRem >= adx) {
+                    leaveRem -= adx;
+                    leave++;
+                }
+                int y = dy > 0 ? index.firstBlockedInColumn(x, enter, leaveRem > 0 ? leave : leave-1)
+                               : index.firstBlockedInColumn(x, enterRem > 0 ? enter : enter-1, leave);
+                if (y != NONE_BLOCKED) return new Point(x, y);
+                enter = leave;
+                enterRem = leaveRem;
+            }
+        }
+    }
+    
+    /**
+     * Moving along the horizontal grid line y, tile column x is blocked iff tiles (x,y-1) and (x,y) are both blocked.
+     * Scans the columns from xFrom to xTo inclusive, in either direction, a word at a time where the storage allows.
+     * @return the first blocked column, or NONE_BLOCKED if there is none.
+     */
+    private final int firstBlockedColumnAlongGridLine(int y, int xFrom, int xTo) {
+        int rowA = y-1;
+        int rowB = y;
+        boolean validA = rowA >= 0 && rowA < sizeY;
+        boolean validB = rowB >= 0 && rowB < sizeY;
+        if (!validA && !validB) return xFrom;
+        if (!validA) rowA = rowB;
+        if (!validB) rowB = rowA;
+        if (xFrom < 0 || xFrom >= sizeX) return xFrom;
+        
+        if (xFrom <= xTo) {
+            int end = Math.min(xTo, sizeX-1);
+            int x = tiles.findBlockedInRows(rowA, rowB, xFrom, end);
+            if (x != -1) return x;
+            return end < xTo ? end+1 : NONE_BLOCKED;
+        } else {
+            int end = Math.max(xTo, 0);
+            int x = tiles.findBlockedInRows(rowA, rowB, xFrom, end);
+            if (x != -1) return x;
+            return end > xTo ? end-1 : NONE_BLOCKED;
+        }
+    }
+
     /**
-     * Used by Accelerated A* and MazeAnalysis.
+     * Vertical counterpart of firstBlockedColumnAlongGridLine.
+     * Moving along the vertical grid line x, tile row y is blocked iff tiles (x-1,y) and (x,y) are both blocked.
+     * @return the first blocked row, or NONE_BLOCKED if there is none.
+     */
+    private final int firstBlockedRowAlongGridLine(int x, int yFrom, int yTo) {
+        int colA = x-1;
+        int colB = x;
+        boolean validA = colA >= 0 && colA < sizeX;
+        boolean validB = colB >= 0 && colB < sizeX;
+        if (!validA && !validB) return yFrom;
+        if (!validA) colA = colB;
+        if (!validB) colB = colA;
+        if (yFrom < 0 || yFrom >= sizeY) return yFrom;
+        
+        if (yFrom <= yTo) {
+            int end = Math.min(yTo, sizeY-1);
+            int y = tiles.findBlockedInColumns(colA, colB, yFrom, end);
+            if (y != -1) return y;
+            return end < yTo ? end+1 : NONE_BLOCKED;
+        } else {
+            int end = Math.max(yTo, 0);
+            int y = tiles.findBlockedInColumns(colA, colB, yFrom, end);
+            if (y != -1) return y;
+            return end > yTo ? end-1 : NONE_BLOCKED;
+        }
+    }
+
+    /**
+     * Previously used by Accelerated A* and MazeAnalysis, which now use runLengthIndex().maxSquare(x,y).
      * leftRange is the number of blocks you can move left before hitting a blocked tile.
      * downRange is the number of blocks you can move down before hitting a blocked tile.
      * For blocked tiles, leftRange, downRange are both -1.
@@ -389,22 +813,62 @@ public class GridGraph {
      * @return the percentage of blocked tiles as compared to the total grid size.
      */
     public final float getPercentageBlocked() {
-        return (float)getNumBlocked() / (sizeX*sizeY);
+        return (float)tiles.countBlocked() / ((long)sizeX*sizeY);
     }
     
     /**
      * @return the number of blocked tiles in the grid.
+     * @throws IllegalStateException if the count does not fit in an int. Use getNumBlockedLong for huge grids.
      */
     public final int getNumBlocked() {
-        int nBlocked = 0;
-        for (int y=0; y<sizeY; y++) {
-            for (int x=0; x<sizeX; x++) {
-                if (isBlocked(x, y)) {
-                    nBlocked++;
-                }
-            }
+        long nBlocked = tiles.countBlocked();
+        if (nBlocked > Integer.MAX_VALUE) {
+            throw new IllegalStateException(nBlocked + " blocked tiles do not fit in an int, use getNumBlockedLong");
         }
-        return nBlocked;
+        return (int)nBlocked;
+    }
+    
+    public final long getNumBlockedLong() {
+        return tiles.countBlocked();
+    }
+    
+    /**
+     * Bit i of the result is set iff tile (64*wordIndex + i, y) is blocked.
+     * Tiles outside the grid are considered blocked, as in isBlocked.
+     */
+    private final long blockedRowWord(int y, int wordIndex) {
+        if (y < 0 || y >= sizeY || wordIndex < 0) return -1L;
+        int xStart = wordIndex << 6;
+        if (xStart >= sizeX) return -1L;
+        long word = tiles.rowWord(y, wordIndex);
+        if (sizeX - xStart < 64) word |= -1L << (sizeX - xStart);
+        return word;
+    }
+    
+    /**
+     * Word-at-a-time version of isOuterCorner.
+     * Bit i of the result is set iff isOuterCorner(64*wordIndex + i, y).
+     * Only bits referring to valid coordinates (x <= sizeX) can be set.
+     */
+    public final long outerCornerWord(int y, int wordIndex) {
+        long upper = blockedRowWord(y-1, wordIndex);
+        long lower = blockedRowWord(y, wordIndex);
+        long upperLeft = (upper << 1) | (blockedRowWord(y-1, wordIndex-1) >>> 63);
+        long lowerLeft = (lower << 1) | (blockedRowWord(y, wordIndex-1) >>> 63);
+        
+        // a = upperLeft, b = upper, c = lower, d = lowerLeft. See isOuterCorner.
+        long corners = ((~upperLeft & ~lower) | (~lowerLeft & ~upper)) & (upperLeft | upper | lower | lowerLeft);
+        
+        int nValid = sizeXplusOne - (wordIndex << 6);
+        if (nValid < 64) corners &= ~(-1L << nValid);
+        return corners;
+    }
+    
+    /**
+     * @return the number of words needed to hold one row of outerCornerWord results.
+     */
+    public final int outerCornerWordsPerRow() {
+        return (sizeXplusOne + 63) >>> 6;
     }
 
     public final boolean isOuterCorner(int x, int y) {
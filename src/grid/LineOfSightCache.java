@@ -0,0 +1,233 @@
+package grid;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A bounded cache of line-of-sight results between pairs of vertices of a GridGraph.
+ * Keys are the ordered pair of long vertex indices (GridGraph.toLongIndex), so any grid size is supported.
+ * <br>
+ * The table is split into sets of WAYS slots. A pair can only be stored in the set its key hashes to.
+ * When that set is full, the eviction policy picks what to discard.
+ * <br>
+ * A cache is bound to one grid at a time (see bind), and clears itself when a tile of the grid has been changed
+ * since the last lookup. Once unbound, it only keeps a weak reference to the grid, so that idle caches do not
+ * keep grids alive, but it keeps its entries in case it is bound to the same grid again.
+ * <br>
+ * Not thread-safe. Searches which have not been given one (see PathFindingAlgorithm.useLineOfSightCache)
+ * take one from the pool with acquire for the length of the search.
+ */
+public final class LineOfSightCache {
+
+    public enum EvictionPolicy {
+        /** Discard the least recently used entry of the set. */
+        LEAST_RECENTLY_USED,
+        /** Discard the oldest entry of the set, regardless of hits. */
+        FIRST_IN_FIRST_OUT,
+        /** Clear the whole cache when a set is full. */
+        CLEAR_WHEN_FULL,
+    }
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int WAYS = 4;
+    private static final long EMPTY = -1L;
+
+    private static final ConcurrentLinkedQueue<LineOfSightCache> pool = new ConcurrentLinkedQueue<>();
+
+    private GridGraph graph; // null while unbound
+    private WeakReference<GridGraph> lastGraph = new WeakReference<>(null); // the grid the entries are for
+    private final EvictionPolicy policy;
+    private final int setMask;
+
+    private final long[] keys; // keys[2i], keys[2i+1]: the two vertices in slot i
+    private final boolean[] results;
+    private final int[] stamps; // last use (LRU) or insertion (FIFO)
+    private int clock;
+    private long gridVersion;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * An unbound cache. capacity is rounded up to a power of two, and is at least WAYS.
+     */
+    public LineOfSightCache(int capacity, EvictionPolicy policy) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        int size = WAYS;
+        while (size < capacity) size <<= 1;
+
+        this.policy = policy;
+        this.setMask = size/WAYS - 1;
+        this.keys = new long[2*size];
+        this.results = new boolean[size];
+        this.stamps = new int[size];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public LineOfSightCache() {
+        this(DEFAULT_CAPACITY, EvictionPolicy.LEAST_RECENTLY_USED);
+    }
+
+    /**
+     * A cache bound to the grid.
+     */
+    public LineOfSightCache(GridGraph graph, int capacity, EvictionPolicy policy) {
+        this(capacity, policy);
+        bind(graph);
+    }
+
+    public LineOfSightCache(GridGraph graph) {
+        this(graph, DEFAULT_CAPACITY, EvictionPolicy.LEAST_RECENTLY_USED);
+    }
+
+    /**
+     * @return a cache with the default capacity and eviction policy from the pool, or a new one if the pool is empty.
+     *         It is unbound. Give it back with release.
+     */
+    public static final LineOfSightCache acquire() {
+        LineOfSightCache cache = pool.poll();
+        return cache != null ? cache : new LineOfSightCache();
+    }
+
+    /**
+     * Unbinds the cache and returns it to the pool. It must not be used afterwards.
+     */
+    public static final void release(LineOfSightCache cache) {
+        cache.unbind();
+        pool.offer(cache);
+    }
+
+    /**
+     * Empties the pool, e.g. to free its memory after a batch of searches.
+     */
+    public static void clearMemory() {
+        pool.clear();
+    }
+
+    /**
+     * Makes lineOfSight answer for the grid. The entries are kept if they were for the same grid.
+     */
+    public final void bind(GridGraph graph) {
+        if (lastGraph.get() != graph) {
+            clear();
+            lastGraph = new WeakReference<>(graph);
+            gridVersion = graph.version();
+        }
+        this.graph = graph;
+    }
+
+    /**
+     * Drops the reference to the grid. The cache must be bound again before the next lookup.
+     */
+    public final void unbind() {
+        graph = null;
+    }
+
+    /**
+     * @return the grid the cache is bound to, or null.
+     */
+    public final GridGraph graph() {
+        return graph;
+    }
+
+    /**
+     * @return graph.lineOfSight(x1, y1, x2, y2) on the grid the cache is bound to, computed at most once while
+     *         the pair stays in the cache.
+     */
+    public final boolean lineOfSight(int x1, int y1, int x2, int y2) {
+        if (gridVersion != graph.version()) {
+            clear();
+            gridVersion = graph.version();
+        }
+        long from = graph.toLongIndex(x1, y1);
+        long to = graph.toLongIndex(x2, y2);
+        int base = (hash(from, to) & setMask) * WAYS;
+
+        int free = -1;
+        for (int i=base; i<base+WAYS; ++i) {
+            if (keys[2*i] == from && keys[2*i+1] == to) {
+                hits++;
+                if (policy == EvictionPolicy.LEAST_RECENTLY_USED) stamps[i] = ++clock;
+                return results[i];
+            }
+            if (free == -1 && keys[2*i] == EMPTY) free = i;
+        }
+
+        misses++;
+        boolean result = graph.lineOfSight(x1, y1, x2, y2);
+        if (free == -1) {
+            evictions++;
+            if (policy == EvictionPolicy.CLEAR_WHEN_FULL) {
+                Arrays.fill(keys, EMPTY);
+                free = base;
+            } else {
+                free = base;
+                for (int i=base+1; i<base+WAYS; ++i) {
+                    if (stamps[i] - stamps[free] < 0) free = i;
+                }
+            }
+        }
+        keys[2*free] = from;
+        keys[2*free+1] = to;
+        results[free] = result;
+        stamps[free] = ++clock;
+        return result;
+    }
+
+    private static final int hash(long from, long to) {
+        long key = (from * 0x9E3779B97F4A7C15L + to) * 0xC2B2AE3D27D4EB4FL;
+        return (int)(key ^ (key >>> 32));
+    }
+
+    /**
+     * Discards all cached results. Statistics are kept.
+     */
+    public final void clear() {
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public final void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public final long hits() {
+        return hits;
+    }
+
+    /**
+     * Every miss is one call to GridGraph.lineOfSight.
+     */
+    public final long misses() {
+        return misses;
+    }
+
+    /**
+     * The number of entries discarded to make space. For CLEAR_WHEN_FULL, the number of times the cache was cleared.
+     */
+    public final long evictions() {
+        return evictions;
+    }
+
+    public final double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double)hits / lookups;
+    }
+
+    public final int capacity() {
+        return results.length;
+    }
+
+    public final EvictionPolicy policy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return "LineOfSightCache[" + policy + ", capacity=" + results.length + "] hits=" + hits + " misses=" + misses
+                + " evictions=" + evictions + " hitRate=" + String.format("%.3f", hitRate());
+    }
+}
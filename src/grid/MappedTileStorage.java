@@ -0,0 +1,153 @@
+package grid;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bitpacked tile storage that lives in a memory-mapped file instead of on the Java heap.
+ * Opening a map only maps the file, so it takes the same time for any map size, and the pages are
+ * shared by every process (and every JVM run) that maps the same file.
+ * <br>
+ * File format, all little-endian:
+ * the long MAGIC, then the ints sizeX and sizeY, then the words of each row in turn, wordsPerRow words per row.
+ * Bit i of word w of row y is set iff tile (64*w + i, y) is blocked. Bits beyond sizeX are 0.
+ * <br>
+ * Writes to a writable storage go straight to the file.
+ * A storage opened read-only cannot be written through, but it is not immutable: writes through another mapping
+ * of the same file, in this process or another, show up in it at once, without the grid noticing.
+ * The caches built from the grid, such as line of sight caches, then serve stale results, and searches race
+ * with the writer. So the file must not be written while it is mapped for searching, or the searches must run
+ * on a GridGraph.snapshot(), which copies the tiles.
+ */
+public final class MappedTileStorage extends PackedTileStorage {
+
+    public static final long MAGIC = 0x3144495247504141L; // "AAPGRID1"
+    private static final int HEADER_BYTES = 16;
+    // Files larger than 2GB are mapped in several regions. Each region holds 2^27 words (1GB).
+    private static final int REGION_WORDS_LOG2 = 27;
+    private static final int REGION_WORDS = 1 << REGION_WORDS_LOG2;
+
+    private final LongBuffer[] regions;
+    private final boolean readOnly;
+
+    private MappedTileStorage(int sizeX, int sizeY, LongBuffer[] regions, boolean readOnly) {
+        super(sizeX, sizeY);
+        this.regions = regions;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Writes the tiles to a file which can be opened with open().
+     */
+    public static void writeFile(TileStorage tiles, String filepath) {
+        int wordsPerRow = (tiles.sizeX + 63) >>> 6;
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(MAGIC);
+            buffer.putInt(tiles.sizeX);
+            buffer.putInt(tiles.sizeY);
+            for (int y=0; y<tiles.sizeY; ++y) {
+                for (int w=0; w<wordsPerRow; ++w) {
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) channel.write(buffer);
+                        buffer.clear();
+                    }
+                    buffer.putLong(tiles.rowWord(y, w));
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps a file written by writeFile.
+     * @param writable if false, the storage is read-only. If true, set() modifies the file.
+     */
+    public static MappedTileStorage open(String filepath, boolean writable) {
+        Path path = Paths.get(filepath);
+        StandardOpenOption[] options = writable
+                ? new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[] {StandardOpenOption.READ};
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+
+        // The mappings stay valid after the channel is closed.
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) break;
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getLong() != MAGIC) {
+                throw new IllegalArgumentException(filepath + " is not a mapped grid file.");
+            }
+            int sizeX = header.getInt();
+            int sizeY = header.getInt();
+            long nWords = (long)((sizeX + 63) >>> 6) * sizeY;
+            if (channel.size() < HEADER_BYTES + nWords*8) {
+                throw new IllegalArgumentException(filepath + " is truncated.");
+            }
+
+            int nRegions = (int)((nWords + REGION_WORDS - 1) >>> REGION_WORDS_LOG2);
+            LongBuffer[] regions = new LongBuffer[nRegions];
+            for (int i=0; i<nRegions; ++i) {
+                long firstWord = (long)i << REGION_WORDS_LOG2;
+                long regionWords = Math.min(REGION_WORDS, nWords - firstWord);
+                regions[i] = channel.map(mode, HEADER_BYTES + firstWord*8, regionWords*8)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+            return new MappedTileStorage(sizeX, sizeY, regions, !writable);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    protected final long word(int y, int wordIndex) {
+        long index = (long)y*wordsPerRow + wordIndex;
+        return regions[(int)(index >>> REGION_WORDS_LOG2)].get((int)index & (REGION_WORDS-1));
+    }
+
+    @Override
+    public final void set(int x, int y, boolean value) {
+        if (readOnly) throw new UnsupportedOperationException("Tile storage is mapped read-only.");
+        long index = (long)y*wordsPerRow + (x >>> 6);
+        LongBuffer region = regions[(int)(index >>> REGION_WORDS_LOG2)];
+        int offset = (int)index & (REGION_WORDS-1);
+        if (value) {
+            region.put(offset, region.get(offset) | (1L << x));
+        } else {
+            region.put(offset, region.get(offset) & ~(1L << x));
+        }
+    }
+
+    /**
+     * @return a heap copy of the tiles, backed by a BitpackedTileStorage.
+     */
+    @Override
+    public final TileStorage copy() {
+        BitpackedTileStorage copy = new BitpackedTileStorage(sizeX, sizeY);
+        for (int y=0; y<sizeY; ++y) {
+            for (int x=0; x<sizeX; ++x) {
+                if (get(x, y)) copy.set(x, y, true);
+            }
+        }
+        return copy;
+    }
+
+    @Override
+    public final boolean isReadOnly() {
+        return readOnly;
+    }
+}
@@ -0,0 +1,90 @@
+package grid;
+
+/**
+ * A tile storage that packs one tile per bit into 64-bit words, row by row.
+ * Row scans and counts are done a word at a time (popcount / trailing-zero scans).
+ * Subclasses decide where the words live.
+ */
+public abstract class PackedTileStorage extends TileStorage {
+
+    protected final int wordsPerRow;
+
+    protected PackedTileStorage(int sizeX, int sizeY) {
+        super(sizeX, sizeY);
+        this.wordsPerRow = (sizeX + 63) >>> 6;
+    }
+
+    /**
+     * Same as rowWord. Called only with 0 <= wordIndex < wordsPerRow.
+     */
+    protected abstract long word(int y, int wordIndex);
+
+    @Override
+    public final long rowWord(int y, int wordIndex) {
+        return word(y, wordIndex);
+    }
+
+    @Override
+    public boolean get(int x, int y) {
+        return ((word(y, x >>> 6) >>> x) & 1L) != 0;
+    }
+
+    @Override
+    public long countBlocked() {
+        long nBlocked = 0;
+        for (int y=0; y<sizeY; ++y) {
+            for (int w=0; w<wordsPerRow; ++w) {
+                nBlocked += Long.bitCount(word(y, w));
+            }
+        }
+        return nBlocked;
+    }
+
+    @Override
+    public final int findBlockedInRows(int yA, int yB, int xFrom, int xTo) {
+        if (xFrom <= xTo) {
+            int wEnd = xTo >>> 6;
+            int w = xFrom >>> 6;
+            long bits = (word(yA, w) & word(yB, w)) & (-1L << xFrom);
+            while (true) {
+                if (w == wEnd) bits &= -1L >>> (63 - (xTo & 63));
+                if (bits != 0) return (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (w == wEnd) return -1;
+                ++w;
+                bits = word(yA, w) & word(yB, w);
+            }
+        } else {
+            int wEnd = xTo >>> 6;
+            int w = xFrom >>> 6;
+            long bits = (word(yA, w) & word(yB, w)) & (-1L >>> (63 - (xFrom & 63)));
+            while (true) {
+                if (w == wEnd) bits &= -1L << xTo;
+                if (bits != 0) return (w << 6) + 63 - Long.numberOfLeadingZeros(bits);
+                if (w == wEnd) return -1;
+                --w;
+                bits = word(yA, w) & word(yB, w);
+            }
+        }
+    }
+
+    @Override
+    public final int findBlockedInColumns(int xA, int xB, int yFrom, int yTo) {
+        // Both columns are read from the same row word(s), so each row costs at most two word reads.
+        int wA = xA >>> 6;
+        int wB = xB >>> 6;
+        long maskA = 1L << xA;
+        long maskB = 1L << xB;
+        int step = yFrom <= yTo ? 1 : -1;
+        if (wA == wB) {
+            long mask = maskA | maskB;
+            for (int y=yFrom; y!=yTo+step; y+=step) {
+                if ((word(y, wA) & mask) == mask) return y;
+            }
+        } else {
+            for (int y=yFrom; y!=yTo+step; y+=step) {
+                if ((word(y, wA) & maskA) != 0 && (word(y, wB) & maskB) != 0) return y;
+            }
+        }
+        return -1;
+    }
+}
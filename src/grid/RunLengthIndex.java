@@ -0,0 +1,200 @@
+package grid;
+
+/**
+ * Precomputed run lengths over a GridGraph, stored in flat arrays indexed by vertex (y*sizeXplusOne + x).
+ * Obtain it through GridGraph.runLengthIndex(). It is discarded as soon as a tile of the grid is changed.
+ * <br>
+ * Jump runs: for each vertex and each of the 8 directions, the number of steps to the first vertex which is a
+ * jump point (as in Jump Point Search), or to the first step which is blocked.
+ * A positive value k means the vertex k steps away is a jump point. A negative value -k means step k is blocked.
+ * <br>
+ * Max squares: for each vertex (x,y), the largest s such that all tiles in [x-s, x+s-1] x [y-s, y+s-1] are unblocked.
+ * <br>
+ * Each of the two tables is only built the first time it is used.
+ */
+public final class RunLengthIndex {
+    private final GridGraph graph;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeXplusOne;
+
+    // Computed on first use. Volatile so that searches in other threads see the filled arrays.
+    private volatile int[][] jumpRuns; // indexed by direction (dy+1)*3 + (dx+1)
+    private volatile int[] maxSquares;
+
+    RunLengthIndex(GridGraph graph) {
+        this.graph = graph;
+        this.sizeX = graph.sizeX;
+        this.sizeY = graph.sizeY;
+        this.sizeXplusOne = graph.sizeXplusOne;
+    }
+
+    /**
+     * dx and dy are each one of -1, 0, 1, and not both 0.
+     * @return the number of steps from (x,y) in direction (dx,dy) to the next jump point (positive),
+     *         or to the first blocked step (negative).
+     */
+    public final int jumpRun(int x, int y, int dx, int dy) {
+        if (jumpRuns == null) jumpRuns = computeJumpRuns();
+        return jumpRuns[(dy+1)*3 + (dx+1)][y*sizeXplusOne + x];
+    }
+
+    /**
+     * @return the largest s such that the 2s by 2s square of tiles centred on vertex (x,y) is unblocked.
+     */
+    public final int maxSquare(int x, int y) {
+        if (maxSquares == null) maxSquares = computeMaxSquares();
+        return maxSquares[y*sizeXplusOne + x];
+    }
+
+    private final int[][] computeJumpRuns() {
+        int[][] runs = new int[9][];
+        int[] left = runs[3] = new int[(sizeY+1)*sizeXplusOne];
+        int[] right = runs[5] = new int[(sizeY+1)*sizeXplusOne];
+        int[] down = runs[1] = new int[(sizeY+1)*sizeXplusOne];
+        int[] up = runs[7] = new int[(sizeY+1)*sizeXplusOne];
+        int[] downLeft = runs[0] = new int[(sizeY+1)*sizeXplusOne];
+        int[] downRight = runs[2] = new int[(sizeY+1)*sizeXplusOne];
+        int[] upLeft = runs[6] = new int[(sizeY+1)*sizeXplusOne];
+        int[] upRight = runs[8] = new int[(sizeY+1)*sizeXplusOne];
+
+        // The stopping conditions on arriving at a vertex u follow JumpPointSearch.jumpL, jumpR, jumpD and jumpU.
+        for (int y=0; y<=sizeY; ++y) {
+            int row = y*sizeXplusOne;
+            for (int x=0; x<=sizeX; ++x) {
+                int u = x-1;
+                boolean top = graph.isBlocked(u, y);
+                boolean bottom = graph.isBlocked(u, y-1);
+                if (top && bottom) {
+                    left[row+x] = -1;
+                } else if ((top && !graph.isBlocked(u-1, y)) || (bottom && !graph.isBlocked(u-1, y-1))) {
+                    left[row+x] = 1;
+                } else {
+                    left[row+x] = extend(left[row+x-1]);
+                }
+            }
+            for (int x=sizeX; x>=0; --x) {
+                int u = x+1;
+                boolean top = graph.isBlocked(u-1, y);
+                boolean bottom = graph.isBlocked(u-1, y-1);
+                if (top && bottom) {
+                    right[row+x] = -1;
+                } else if ((top && !graph.isBlocked(u, y)) || (bottom && !graph.isBlocked(u, y-1))) {
+                    right[row+x] = 1;
+                } else {
+                    right[row+x] = extend(right[row+x+1]);
+                }
+            }
+        }
+
+        for (int y=0; y<=sizeY; ++y) {
+            int row = y*sizeXplusOne;
+            int u = y-1;
+            for (int x=0; x<=sizeX; ++x) {
+                boolean rightSide = graph.isBlocked(x, u);
+                boolean leftSide = graph.isBlocked(x-1, u);
+                if (rightSide && leftSide) {
+                    down[row+x] = -1;
+                } else if ((rightSide && !graph.isBlocked(x, u-1)) || (leftSide && !graph.isBlocked(x-1, u-1))) {
+                    down[row+x] = 1;
+                } else {
+                    down[row+x] = extend(down[row-sizeXplusOne+x]);
+                }
+            }
+        }
+        for (int y=sizeY; y>=0; --y) {
+            int row = y*sizeXplusOne;
+            int u = y+1;
+            for (int x=0; x<=sizeX; ++x) {
+                boolean rightSide = graph.isBlocked(x, u-1);
+                boolean leftSide = graph.isBlocked(x-1, u-1);
+                if (rightSide && leftSide) {
+                    up[row+x] = -1;
+                } else if ((rightSide && !graph.isBlocked(x, u)) || (leftSide && !graph.isBlocked(x-1, u))) {
+                    up[row+x] = 1;
+                } else {
+                    up[row+x] = extend(up[row+sizeXplusOne+x]);
+                }
+            }
+        }
+
+        // Diagonal moves stop at vertices from which a straight jump finds a jump point. See JumpPointSearch.jumpDL.
+        for (int y=0; y<=sizeY; ++y) {
+            int row = y*sizeXplusOne;
+            for (int x=0; x<=sizeX; ++x) {
+                if (graph.isBlocked(x-1, y-1)) {
+                    downLeft[row+x] = -1;
+                } else {
+                    int u = row-sizeXplusOne+x-1;
+                    downLeft[row+x] = (left[u] > 0 || down[u] > 0) ? 1 : extend(downLeft[u]);
+                }
+                if (graph.isBlocked(x, y-1)) {
+                    downRight[row+x] = -1;
+                } else {
+                    int u = row-sizeXplusOne+x+1;
+                    downRight[row+x] = (down[u] > 0 || right[u] > 0) ? 1 : extend(downRight[u]);
+                }
+            }
+        }
+        for (int y=sizeY; y>=0; --y) {
+            int row = y*sizeXplusOne;
+            for (int x=0; x<=sizeX; ++x) {
+                if (graph.isBlocked(x-1, y)) {
+                    upLeft[row+x] = -1;
+                } else {
+                    int u = row+sizeXplusOne+x-1;
+                    upLeft[row+x] = (left[u] > 0 || up[u] > 0) ? 1 : extend(upLeft[u]);
+                }
+                if (graph.isBlocked(x, y)) {
+                    upRight[row+x] = -1;
+                } else {
+                    int u = row+sizeXplusOne+x+1;
+                    upRight[row+x] = (up[u] > 0 || right[u] > 0) ? 1 : extend(upRight[u]);
+                }
+            }
+        }
+        return runs;
+    }
+
+    // The run of a vertex one step further along the same direction.
+    private static final int extend(int run) {
+        return run > 0 ? run+1 : run-1;
+    }
+
+    private final int[] computeMaxSquares() {
+        // squares[y*sizeX + x]: side of the largest unblocked square of tiles with bottom-left tile (x,y).
+        int[] squares = new int[sizeX*sizeY];
+        for (int y=sizeY-1; y>=0; --y) {
+            for (int x=sizeX-1; x>=0; --x) {
+                if (graph.isBlockedRaw(x, y)) continue;
+                if (x == sizeX-1 || y == sizeY-1) {
+                    squares[y*sizeX + x] = 1;
+                    continue;
+                }
+                int min = Math.min(squares[y*sizeX + x+1], squares[(y+1)*sizeX + x]);
+                min = Math.min(min, squares[(y+1)*sizeX + x+1]);
+                squares[y*sizeX + x] = min + 1;
+            }
+        }
+
+        // Along a diagonal, the max square of adjacent vertices differs by at most one.
+        int[] result = new int[(sizeY+1)*sizeXplusOne];
+        for (int d=-sizeY; d<=sizeX; ++d) {
+            int x = Math.max(d, 0);
+            int y = x - d;
+            int s = 0;
+            for (; x<=sizeX && y<=sizeY; ++x, ++y) {
+                ++s;
+                while (s > 0 && !isUnblockedSquare(squares, x-s, y-s, 2*s)) --s;
+                result[y*sizeXplusOne + x] = s;
+            }
+        }
+        return result;
+    }
+
+    private final boolean isUnblockedSquare(int[] squares, int x, int y, int size) {
+        if (x < 0 || y < 0) return false;
+        if (x+size > sizeX || y+size > sizeY) return false;
+        return squares[y*sizeX + x] >= size;
+    }
+}
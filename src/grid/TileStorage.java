@@ -0,0 +1,91 @@
+package grid;
+
+/**
+ * Backing store for the blocked/unblocked tiles of a GridGraph.
+ * All coordinates passed to a TileStorage refer to valid tiles,
+ * i.e. 0 <= x < sizeX and 0 <= y < sizeY. Bounds handling is done by GridGraph.
+ */
+public abstract class TileStorage {
+
+    public final int sizeX;
+    public final int sizeY;
+
+    protected TileStorage(int sizeX, int sizeY) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+    }
+
+    public abstract boolean get(int x, int y);
+
+    public abstract void set(int x, int y, boolean value);
+
+    /**
+     * @return a deep copy of this storage.
+     */
+    public abstract TileStorage copy();
+
+    /**
+     * @return true iff set() is not supported.
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * @return true iff the tiles can never change, so that the storage can be shared as a snapshot.
+     */
+    public boolean isImmutable() {
+        return false;
+    }
+
+    /**
+     * Bit i of the result is set iff tile (64*wordIndex + i, y) is blocked.
+     * Bits referring to tiles with x >= sizeX are always 0.
+     */
+    public long rowWord(int y, int wordIndex) {
+        int xStart = wordIndex << 6;
+        int xEnd = Math.min(xStart + 64, sizeX);
+        long word = 0;
+        for (int x=xStart; x<xEnd; ++x) {
+            if (get(x, y)) word |= 1L << (x - xStart);
+        }
+        return word;
+    }
+
+    /**
+     * @return the number of blocked tiles.
+     */
+    public long countBlocked() {
+        long nBlocked = 0;
+        for (int y=0; y<sizeY; ++y) {
+            for (int x=0; x<sizeX; ++x) {
+                if (get(x, y)) nBlocked++;
+            }
+        }
+        return nBlocked;
+    }
+
+    /**
+     * Scans x from xFrom to xTo (inclusive, in either direction).
+     * @return the first x such that tiles (x,yA) and (x,yB) are both blocked, or -1 if there is none.
+     */
+    public int findBlockedInRows(int yA, int yB, int xFrom, int xTo) {
+        int step = xFrom <= xTo ? 1 : -1;
+        for (int x=xFrom; x!=xTo+step; x+=step) {
+            if (get(x, yA) && get(x, yB)) return x;
+        }
+        return -1;
+    }
+
+    /**
+     * Scans y from yFrom to yTo (inclusive, in either direction).
+     * @return the first y such that tiles (xA,y) and (xB,y) are both blocked, or -1 if there is none.
+     */
+    public int findBlockedInColumns(int xA, int xB, int yFrom, int yTo) {
+        int step = yFrom <= yTo ? 1 : -1;
+        for (int y=yFrom; y!=yTo+step; y+=step) {
+            if (get(xA, y) && get(xB, y)) return y;
+        }
+        return -1;
+    }
+}
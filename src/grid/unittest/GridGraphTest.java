@@ -1,9 +1,30 @@
 package grid.unittest;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import algorithms.AStarStaticMemory;
+import algorithms.BasicThetaStar;
+import grid.BlockedIntervalIndex;
+import grid.ChunkedTileStorage;
+import grid.CornerIndex;
+import grid.GridChangeJournal;
 import grid.GridGraph;
+import grid.LineOfSightCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import main.PathQueryEngine;
 import main.graphgeneration.DefaultGenerator;
+import main.utility.Utility;
 
 import org.junit.Test;
 
@@ -82,4 +103,308 @@ public class GridGraphTest {
         System.out.println((d2-d1) + " _ " + (d3-d2));
     }
 
+    @Test
+    public void testBitpackedStorage() {
+        int sizeX = 150;
+        int sizeY = 70;
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(5123,sizeX,sizeY,4);
+        GridGraph packed = graph.bitpackedCopy();
+
+        assertEquals(graph.getNumBlocked(), packed.getNumBlocked());
+        for (int y=-1; y<=sizeY+1; ++y) {
+            for (int x=-1; x<=sizeX+1; ++x) {
+                assertEquals(graph.isBlocked(x,y), packed.isBlocked(x,y));
+                if (graph.isValidCoordinate(x, y)) {
+                    long cornerWord = packed.outerCornerWord(y, x >>> 6);
+                    assertEquals(graph.isOuterCorner(x,y), ((cornerWord >>> x) & 1L) != 0);
+                }
+            }
+        }
+
+        for (int y=0; y<=sizeY; ++y) {
+            for (int x1=0; x1<=sizeX; ++x1) {
+                for (int x2=0; x2<=sizeX; x2+=7) {
+                    assertEquals(graph.lineOfSight(x1,y,x2,y), packed.lineOfSight(x1,y,x2,y));
+                    assertEquals(graph.lineOfSight(x2%(sizeY+1),x1%(sizeY+1),x2%(sizeY+1),y),
+                            packed.lineOfSight(x2%(sizeY+1),x1%(sizeY+1),x2%(sizeY+1),y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCopyOnWriteSnapshots() {
+        int sizeX = 200;
+        int sizeY = 130;
+        GridGraph original = DefaultGenerator.generateSeededGraphOnly(77,sizeX,sizeY,6);
+        GridGraph editable = original.editableCopy();
+        GridGraph snapshot1 = editable.snapshot();
+
+        editable.setBlocked(3, 4, !original.isBlocked(3, 4));
+        editable.setBlocked(150, 100, !original.isBlocked(150, 100));
+        GridGraph snapshot2 = editable.snapshot();
+        editable.setBlocked(150, 100, original.isBlocked(150, 100));
+
+        assertTrue(snapshot1.isReadOnly());
+        assertTrue(!editable.isReadOnly());
+        for (int y=-1; y<=sizeY; ++y) {
+            for (int x=-1; x<=sizeX; ++x) {
+                assertEquals(original.isBlocked(x,y), snapshot1.isBlocked(x,y));
+                boolean edited2 = (x == 3 && y == 4) || (x == 150 && y == 100);
+                assertEquals(original.isBlocked(x,y) != edited2, snapshot2.isBlocked(x,y));
+                boolean edited = (x == 3 && y == 4);
+                assertEquals(original.isBlocked(x,y) != edited, editable.isBlocked(x,y));
+            }
+        }
+
+        try {
+            snapshot1.setBlocked(0, 0, true);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    @Test
+    public void testRunLengthIndex() {
+        GridGraph graph = new GridGraph(8, 6);
+        graph.setBlocked(5, 2, true);
+
+        // Moving right along y=2, the forced neighbour appears at x=6, just past the blocked tile.
+        assertEquals(5, graph.runLengthIndex().jumpRun(1, 2, 1, 0));
+        // Moving up along x=5, the blocked tile is to the right of the first step.
+        assertEquals(1, graph.runLengthIndex().jumpRun(5, 2, 0, 1));
+        // Moving left along y=0, the boundary is reached after 3 steps.
+        assertEquals(-4, graph.runLengthIndex().jumpRun(3, 0, -1, 0));
+        assertEquals(2, graph.runLengthIndex().maxSquare(3, 3));
+
+        graph.setBlocked(3, 3, true);
+        assertEquals(0, graph.runLengthIndex().maxSquare(3, 3));
+        assertEquals(1, graph.runLengthIndex().maxSquare(2, 2));
+    }
+
+    @Test
+    public void testLineOfSightCache() {
+        GridGraph graph = new GridGraph(10, 10);
+        LineOfSightCache cache = new LineOfSightCache(graph, 16, LineOfSightCache.EvictionPolicy.LEAST_RECENTLY_USED);
+
+        assertTrue(cache.lineOfSight(0, 0, 9, 7));
+        assertTrue(cache.lineOfSight(0, 0, 9, 7));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        // The cached result is discarded once the grid changes.
+        graph.setBlocked(4, 3, true);
+        assertEquals(graph.lineOfSight(0, 0, 9, 7), cache.lineOfSight(0, 0, 9, 7));
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testLineOfSightCachePool() {
+        GridGraph graph = new GridGraph(10, 10);
+        LineOfSightCache cache = LineOfSightCache.acquire();
+        LineOfSightCache other = LineOfSightCache.acquire();
+        assertTrue(cache != other);
+        cache.bind(graph);
+        LineOfSightCache.release(cache);
+        LineOfSightCache.release(other);
+        assertNull(cache.graph());
+
+        // Bound to the same grid again, a cache keeps its entries.
+        cache = new LineOfSightCache(16, LineOfSightCache.EvictionPolicy.LEAST_RECENTLY_USED);
+        cache.bind(graph);
+        cache.lineOfSight(0, 0, 9, 7);
+        cache.unbind();
+        cache.bind(graph);
+        assertTrue(cache.lineOfSight(0, 0, 9, 7));
+        assertEquals(1, cache.hits());
+        cache.bind(new GridGraph(10, 10));
+        cache.lineOfSight(0, 0, 9, 7);
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testReleasedLineOfSightCacheDoesNotKeepTheGrid() {
+        GridGraph graph = new GridGraph(10, 10);
+        WeakReference<GridGraph> reference = new WeakReference<>(graph);
+        BasicThetaStar algo = BasicThetaStar.cachedLineOfSight(graph, 0, 0, 9, 7);
+        algo.computePath();
+        algo = null;
+        graph = null;
+        for (int i=0; i<50 && reference.get() != null; ++i) {
+            System.gc();
+        }
+        assertNull(reference.get());
+    }
+
+    @Test
+    public void testLineOfSightCacheInParallel() throws Exception {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(2741, 80, 60, 7);
+
+        // Searches using the caches in parallel find the same paths as without them.
+        Random random = new Random(5);
+        int[][] queries = new int[2000][];
+        for (int i=0; i<queries.length; ++i) {
+            queries[i] = new int[]{random.nextInt(81), random.nextInt(61), random.nextInt(81), random.nextInt(61)};
+        }
+        try (PathQueryEngine engine = PathQueryEngine.withFixedPool(graph, BasicThetaStar::cachedLineOfSight, 8)) {
+            List<CompletableFuture<PathQueryEngine.Result>> results = engine.submitAll(queries);
+            for (int i=0; i<queries.length; ++i) {
+                int[] q = queries[i];
+                BasicThetaStar algo = new BasicThetaStar(graph, q[0], q[1], q[2], q[3]);
+                algo.computePath();
+                assertEquals(Utility.computePathLength(graph, algo.getPath()), results.get(i).get().pathLength, 0.0001);
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedStorage() {
+        GridGraph graph = GridGraph.chunked(50000, 50000);
+        ChunkedTileStorage tiles = graph.getChunkedTiles();
+        assertTrue(!graph.hasIntIndices());
+
+        // Aligned to the 256x256 chunks, so no chunk is allocated.
+        graph.fillBlocked(10240, 10240, 30719, 20479, true);
+        assertEquals(0, tiles.allocatedChunks());
+        assertEquals(20480L*10240, graph.getNumBlockedLong());
+        assertTrue(graph.isBlocked(10240, 20479));
+        assertTrue(!graph.isBlocked(10239, 20479));
+        assertTrue(!graph.lineOfSight(0, 0, 49999, 49999));
+        assertTrue(graph.lineOfSight(0, 0, 49999, 100));
+
+        graph.setBlocked(40000, 40000, true);
+        assertEquals(1, tiles.allocatedChunks());
+        graph.setBlocked(40000, 40000, false);
+        assertEquals(1, tiles.compact());
+        assertEquals(0, tiles.allocatedChunks());
+
+        // More blocked tiles than fit in an int.
+        graph.fillBlocked(0, 0, 49999, 49999, true);
+        assertEquals(50000L*50000, graph.getNumBlockedLong());
+        try {
+            graph.getNumBlocked();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+
+        long index = graph.toLongIndex(49999, 49998);
+        assertEquals(49999, graph.longIndexToX(index));
+        assertEquals(49998, graph.longIndexToY(index));
+    }
+
+    @Test
+    public void testSearchRejectsGridWithoutIntIndices() {
+        GridGraph graph = GridGraph.chunked(50000, 50000);
+        try {
+            new AStarStaticMemory(graph, 0, 0, 100, 100);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // The largest grids with int indices are still accepted.
+        new AStarStaticMemory(GridGraph.chunked(46339, 46339), 0, 0, 100, 100);
+    }
+
+    @Test
+    public void testMappedStorage() throws IOException {
+        GridGraph original = DefaultGenerator.generateSeededGraphOnly(5, 70, 45, 12);
+        File file = File.createTempFile("grid", ".bin");
+        file.deleteOnExit();
+        original.writeMappedFile(file.getPath());
+
+        GridGraph mapped = GridGraph.mapped(file.getPath(), false);
+        assertTrue(mapped.isReadOnly());
+        assertEquals(original.getNumBlocked(), mapped.getNumBlocked());
+        for (int y=0; y<original.sizeY; ++y) {
+            for (int x=0; x<original.sizeX; ++x) {
+                assertEquals(original.isBlocked(x,y), mapped.isBlocked(x,y));
+            }
+        }
+
+        // A read-only mapping sees writes through other mappings. Its snapshots do not.
+        GridGraph snapshot = mapped.snapshot();
+        assertTrue(snapshot != mapped && snapshot.isReadOnly());
+        GridGraph writable = GridGraph.mapped(file.getPath(), true);
+        writable.setBlocked(3, 4, !original.isBlocked(3, 4));
+        assertEquals(!original.isBlocked(3, 4), mapped.isBlocked(3, 4));
+        assertEquals(original.isBlocked(3, 4), snapshot.isBlocked(3, 4));
+    }
+
+    @Test
+    public void testBlockedIntervalIndex() {
+        GridGraph graph = new GridGraph(100, 10);
+        for (int x=40; x<45; ++x) graph.setBlocked(x, 3, true);
+        graph.setBlocked(70, 3, true);
+
+        BlockedIntervalIndex index = graph.blockedIntervalIndex();
+        assertEquals(40, index.firstBlockedInRow(3, 0, 99));
+        assertEquals(44, index.firstBlockedInRow(3, 60, 0));
+        assertEquals(70, index.firstBlockedInRow(3, 45, 80));
+        assertEquals(BlockedIntervalIndex.NONE_BLOCKED, index.firstBlockedInRow(3, 45, 69));
+        assertEquals(100, index.firstBlockedInRow(2, 50, 120));
+        assertEquals(3, index.firstBlockedInColumn(42, 0, 9));
+
+        GridGraph reference = DefaultGenerator.generateSeededGraphOnly(17, 120, 30, 6);
+        GridGraph indexed = reference.bitpackedCopy();
+        indexed.setIntervalRayCasting(true);
+        for (int y1=0; y1<=30; y1+=3) {
+            for (int y2=0; y2<=30; ++y2) {
+                assertEquals(reference.lineOfSight(0, y1, 120, y2), indexed.lineOfSight(0, y1, 120, y2));
+                assertEquals(reference.lineOfSight(120, y1, 7, y2), indexed.lineOfSight(120, y1, 7, y2));
+            }
+        }
+    }
+
+    @Test
+    public void testCornerIndex() {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(23, 90, 70, 4);
+        CornerIndex corners = graph.cornerIndex();
+        int[] nodeIndex = corners.toFlatNodeIndex();
+
+        int count = 0;
+        for (int y=0; y<=graph.sizeY; ++y) {
+            for (int x=0; x<=graph.sizeX; ++x) {
+                if (graph.isOuterCorner(x, y)) {
+                    assertEquals(x, corners.getX(count));
+                    assertEquals(y, corners.getY(count));
+                    assertEquals(count, corners.indexOf(x, y));
+                    assertEquals(count, nodeIndex[graph.toOneDimIndex(x, y)]);
+                    count++;
+                } else {
+                    assertEquals(-1, corners.indexOf(x, y));
+                }
+            }
+        }
+        assertEquals(count, corners.nCorners());
+    }
+
+    @Test
+    public void testChangeJournal() {
+        GridGraph graph = new GridGraph(40, 30);
+        GridChangeJournal journal = graph.changeJournal();
+        long start = graph.version();
+        graph.setBlocked(5, 7, false); // unchanged
+        assertEquals(start, graph.version());
+
+        for (int x=5; x<15; ++x) graph.setBlocked(x, 7, true);
+        graph.setBlocked(20, 25, true);
+        assertEquals(start + 11, graph.version());
+        assertTrue(journal.covers(start));
+
+        int[] count = new int[1];
+        journal.forEachSince(start, (minX, minY, maxX, maxY) -> count[0]++);
+        assertEquals(2, count[0]);
+        assertArrayEquals(new int[] {5, 7, 20, 25}, journal.boundsSince(start));
+        assertArrayEquals(new int[] {20, 25, 20, 25}, journal.boundsSince(start + 10));
+        assertNull(journal.boundsSince(graph.version()));
+
+        // Scattered changes cannot be merged, and overflow the journal.
+        long middle = graph.version();
+        for (int i=0; i<GridChangeJournal.CAPACITY-1; ++i) {
+            graph.setBlocked((i % 20) * 2, (i / 20) % 15 * 2, i / 300 % 2 == 0);
+        }
+        assertTrue(journal.covers(middle));
+        assertFalse(journal.covers(start));
+        assertTrue(journal.covers(graph.version()));
+    }
 }
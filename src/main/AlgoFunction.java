@@ -2,7 +2,31 @@ package main;
 
 import grid.GridGraph;
 import algorithms.PathFindingAlgorithm;
+import algorithms.priorityqueue.OpenListType;
+import algorithms.priorityqueue.TieBreaking;
 
 public interface AlgoFunction {
     public abstract PathFindingAlgorithm getAlgo(GridGraph gridGraph, int sx, int sy, int ex, int ey);
+
+    /**
+     * @return an AlgoFunction for the same algorithm, using open lists of the given type.
+     */
+    public default AlgoFunction withOpenList(OpenListType openListType) {
+        return (gridGraph, sx, sy, ex, ey) -> {
+            PathFindingAlgorithm algo = getAlgo(gridGraph, sx, sy, ex, ey);
+            algo.useOpenListType(openListType);
+            return algo;
+        };
+    }
+
+    /**
+     * @return an AlgoFunction for the same algorithm, breaking ties between equal f-values as given.
+     */
+    public default AlgoFunction withTieBreaking(TieBreaking tieBreaking) {
+        return (gridGraph, sx, sy, ex, ey) -> {
+            PathFindingAlgorithm algo = getAlgo(gridGraph, sx, sy, ex, ey);
+            algo.useTieBreaking(tieBreaking);
+            return algo;
+        };
+    }
 }
\ No newline at end of file
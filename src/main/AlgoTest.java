@@ -16,6 +16,8 @@ import algorithms.PathFindingAlgorithm;
 import algorithms.RecursiveThetaStar;
 import algorithms.VisibilityGraphAlgorithm;
 import algorithms.datatypes.Point;
+import algorithms.priorityqueue.OpenListType;
+import algorithms.priorityqueue.TieBreaking;
 import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithm;
 import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap;
 import algorithms.sparsevgs.SparseVisibilityGraphAlgorithm;
@@ -99,7 +101,18 @@ public class AlgoTest {
         testSequence(algo, algoName, mapSetName, testType);
     }
 
+    /**
+     * @param algoName an algorithm name, optionally followed by @ and an OpenListType, and by # and a TieBreaking,
+     *        e.g. "JumpPointSearch@RADIX_HEAP" or "AStarSLD#LARGER_G".
+     */
     public static AlgoFunction getAlgo(String algoName) {
+        int separator = Math.max(algoName.lastIndexOf('@'), algoName.lastIndexOf('#'));
+        if (separator != -1) {
+            AlgoFunction algo = getAlgo(algoName.substring(0, separator));
+            String option = algoName.substring(separator+1);
+            if (algoName.charAt(separator) == '@') return algo.withOpenList(OpenListType.valueOf(option));
+            return algo.withTieBreaking(TieBreaking.valueOf(option));
+        }
 
         switch (algoName) {
             case "AStar": return AStar::new;
@@ -113,6 +126,8 @@ public class AlgoTest {
             case "LazyThetaStar": return LazyThetaStar::new;
             case "BasicThetaStar": return BasicThetaStar::new;
             case "BasicThetaStar_PS": return BasicThetaStar::postSmooth;
+            case "BasicThetaStar_LOSCache": return BasicThetaStar::cachedLineOfSight;
+            case "LazyThetaStar_LOSCache": return LazyThetaStar::cachedLineOfSight;
             case "Dijkstra": return AStar::dijkstra;
             case "AcceleratedAStar": return AcceleratedAStar::new;
             case "Anya": return Anya::new;
@@ -128,6 +143,9 @@ public class AlgoTest {
             case "RecStrictThetaStarPS": return RecursiveStrictThetaStar::postSmooth;
             case "RecStrictThetaStar_2": return (a, b, c, d, e) -> RecursiveStrictThetaStar.depthLimit(a, b, c, d, e, 2);
             case "RecursiveThetaStar": return RecursiveThetaStar::new;
+            case "StrictThetaStar_LOSCache": return StrictThetaStar::cachedLineOfSight;
+            case "RecStrictThetaStar_LOSCache": return RecursiveStrictThetaStar::cachedLineOfSight;
+            case "RecursiveThetaStar_LOSCache": return RecursiveThetaStar::cachedLineOfSight;
 
             case "SparseVisibilityGraphs": return SparseVisibilityGraphAlgorithm::graphReuse;
             case "SparseVisibilityGraphsFibHeap": return SparseVisibilityGraphAlgorithmFibHeap::graphReuse;
@@ -177,6 +195,11 @@ public class AlgoTest {
                 testFunction_slow = testInitialisationTime;
                 testFunction_fast = testInitialisationTime;
                 break;
+            case "expansions":
+                testFunction_single = testExpansions;
+                testFunction_slow = testExpansions;
+                testFunction_fast = testExpansions;
+                break;
             case "testing":
                 testFunction_single = (a,b,c,d) -> {};
                 testFunction_slow = (a,b,c,d) -> {};
@@ -315,6 +338,14 @@ public class AlgoTest {
             break;
         }
 
+        case "benchmarksroom": {
+            testOnBenchmarkMapSet("room8", algo, testFunction_single);
+            testOnBenchmarkMapSet("room16", algo, testFunction_single);
+            testOnBenchmarkMapSet("room32", algo, testFunction_single);
+            testOnBenchmarkMapSet("room64", algo, testFunction_single);
+            break;
+        }
+
         case "benchmarksrandom": {
             testOnBenchmarkMapSet("random10", algo, testFunction_single);
             testOnBenchmarkMapSet("random20", algo, testFunction_single);
@@ -568,6 +599,23 @@ public class AlgoTest {
         println("Percentage Optimal: " + (totalOptimalPaths / (float) nResults));
     };
 
+    /**
+     * For comparing tie-breaking rules: the nodes expanded and the path lengths, on average.
+     */
+    private static final TestFunctionData testExpansions = (mazeName, gridGraph, problems, algoFunction) -> {
+        long totalExpanded = 0;
+        double totalPathLength = 0;
+        for (StartEndPointData problem : problems) {
+            PathFindingAlgorithm algo = algoFunction.getAlgo(gridGraph, problem.start.x, problem.start.y, problem.end.x, problem.end.y);
+            algo.computePath();
+            totalExpanded += algo.expandedNodes();
+            totalPathLength += Utility.computePathLength(gridGraph, algo.getPath()) / problem.shortestPath;
+        }
+        int nResults = problems.size();
+        println("Average Expanded Nodes: " + (totalExpanded / (double) nResults));
+        println("Average Path Length: " + (totalPathLength / nResults));
+    };
+
     private static final TestFunctionData analyseIndividualPaths = (mazeName, gridGraph, problems, algoFunction) -> {
         println("|||||mazeName,start,end,optimalLength,actualLength,isTaut,isOptimal");
         for (StartEndPointData problem : problems) {
@@ -0,0 +1,245 @@
+package main;
+
+import grid.GridGraph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, thread-safe cache of the paths found between pairs of points of one GridGraph.
+ * <br>
+ * The pair is unordered: a path cached for (a, b) is returned reversed for a query (b, a). For the optimal
+ * algorithms, it has the same length as the path the algorithm would find, but not necessarily the same points.
+ * <br>
+ * Paths are stored as one int array of interleaved coordinates, instead of one array per point.
+ * The cache is split into lock-striped segments. Each evicts its least recently used path when full,
+ * and discards all its paths when it sees that the grid has changed. A path computed while the grid changed
+ * is not cached.
+ */
+public final class PathCache {
+    private static final int SEGMENTS = 16;
+    private static final int[][] NO_PATH = new int[0][];
+
+    private static final class Key {
+        final long from;
+        final long to;
+
+        Key(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key)o;
+            return from == other.from && to == other.to;
+        }
+
+        @Override
+        public int hashCode() {
+            long key = (from * 0x9E3779B97F4A7C15L + to) * 0xC2B2AE3D27D4EB4FL;
+            return (int)(key ^ (key >>> 32));
+        }
+    }
+
+    // Wraps rather than extends LinkedHashMap, which is Serializable.
+    private final class Segment {
+        private final LinkedHashMap<Key, int[]> paths = new LinkedHashMap<>(16, 0.75f, true); // in access order
+        private final int capacity;
+        private long gridVersion;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.gridVersion = graph.version();
+        }
+
+        // The methods below must hold the segment's lock.
+
+        int[] get(Key key) {
+            checkVersion();
+            return paths.get(key);
+        }
+
+        /**
+         * Drops the path if it was computed on another version of the grid.
+         */
+        void put(Key key, int[] encoded, long version) {
+            checkVersion();
+            if (version != gridVersion) return;
+            paths.put(key, encoded);
+            if (paths.size() > capacity) {
+                Iterator<Key> leastRecentlyUsed = paths.keySet().iterator();
+                leastRecentlyUsed.next();
+                leastRecentlyUsed.remove();
+                evictions.increment();
+            }
+        }
+
+        void checkVersion() {
+            if (gridVersion != graph.version()) {
+                paths.clear();
+                gridVersion = graph.version();
+            }
+        }
+    }
+
+    private final GridGraph graph;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity the maximum number of paths kept, rounded up to a multiple of the number of segments.
+     */
+    public PathCache(GridGraph graph, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.graph = graph;
+        int segmentCapacity = (capacity + SEGMENTS - 1) / SEGMENTS;
+        for (int i=0; i<SEGMENTS; ++i) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * @return the cached path from (sx, sy) to (ex, ey), an empty array if it is cached that there is none,
+     *         or null if the pair is not cached.
+     */
+    public final int[][] get(int sx, int sy, int ex, int ey) {
+        long from = graph.toLongIndex(sx, sy);
+        long to = graph.toLongIndex(ex, ey);
+        boolean isReversed = from > to;
+        Key key = isReversed ? new Key(to, from) : new Key(from, to);
+
+        int[] encoded;
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            encoded = segment.get(key);
+        }
+        if (encoded == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return decode(encoded, isReversed);
+    }
+
+    /**
+     * Caches the path from (sx, sy) to (ex, ey). An empty path means there is none.
+     * @param gridVersion the graph's version() read before the path was computed. If the grid has changed since,
+     *        the path may be stale and is not cached.
+     */
+    public final void put(int sx, int sy, int ex, int ey, int[][] path, long gridVersion) {
+        long from = graph.toLongIndex(sx, sy);
+        long to = graph.toLongIndex(ex, ey);
+        boolean isReversed = from > to;
+        Key key = isReversed ? new Key(to, from) : new Key(from, to);
+        int[] encoded = encode(path, isReversed);
+
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, encoded, gridVersion);
+        }
+    }
+
+    /**
+     * Returns the cached path, or computes and caches it on a miss. The computation runs without holding a lock,
+     * so two threads missing on the same pair both compute it.
+     */
+    public final int[][] computeIfAbsent(int sx, int sy, int ex, int ey, Supplier<int[][]> computePath) {
+        int[][] path = get(sx, sy, ex, ey);
+        if (path == null) {
+            long gridVersion = graph.version();
+            path = computePath.get();
+            put(sx, sy, ex, ey, path, gridVersion);
+        }
+        return path;
+    }
+
+    private final Segment segmentOf(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS-1)];
+    }
+
+    private static final int[] encode(int[][] path, boolean isReversed) {
+        int n = path.length;
+        int[] encoded = new int[2*n];
+        for (int i=0; i<n; ++i) {
+            int[] point = path[isReversed ? n-1-i : i];
+            encoded[2*i] = point[0];
+            encoded[2*i+1] = point[1];
+        }
+        return encoded;
+    }
+
+    private static final int[][] decode(int[] encoded, boolean isReversed) {
+        int n = encoded.length/2;
+        if (n == 0) return NO_PATH;
+        int[][] path = new int[n][];
+        for (int i=0; i<n; ++i) {
+            path[isReversed ? n-1-i : i] = new int[]{encoded[2*i], encoded[2*i+1]};
+        }
+        return path;
+    }
+
+    /**
+     * Discards all cached paths. Statistics are kept.
+     */
+    public final void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.paths.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of paths cached, including those computed before the grid last changed.
+     */
+    public final int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.paths.size();
+            }
+        }
+        return size;
+    }
+
+    public final void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    public final long hits() {
+        return hits.sum();
+    }
+
+    public final long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of paths discarded to make space. Paths discarded because the grid changed are not counted.
+     */
+    public final long evictions() {
+        return evictions.sum();
+    }
+
+    public final double hitRate() {
+        long hits = this.hits.sum();
+        long lookups = hits + misses.sum();
+        return lookups == 0 ? 0 : (double)hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "PathCache[" + size() + " paths] hits=" + hits() + " misses=" + misses() + " evictions=" + evictions()
+                + " hitRate=" + String.format("%.3f", hitRate());
+    }
+}
@@ -0,0 +1,86 @@
+package main;
+
+import static org.junit.Assert.*;
+import grid.GridGraph;
+
+import org.junit.Test;
+
+public class PathCacheTest {
+
+    @Test
+    public void reversedQueryGetsTheReversedPath() {
+        GridGraph graph = new GridGraph(10, 10);
+        PathCache cache = new PathCache(graph, 16);
+        int[][] path = {{0, 0}, {1, 1}, {3, 1}};
+        cache.put(0, 0, 3, 1, path, graph.version());
+
+        assertArrayEquals(path, cache.get(0, 0, 3, 1));
+        assertArrayEquals(new int[][]{{3, 1}, {1, 1}, {0, 0}}, cache.get(3, 1, 0, 0));
+        assertNull(cache.get(0, 0, 1, 3));
+
+        // Cached in the other direction: stored reversed, returned as given.
+        int[][] backwards = {{5, 5}, {4, 4}, {2, 4}};
+        cache.put(5, 5, 2, 4, backwards, graph.version());
+        assertArrayEquals(backwards, cache.get(5, 5, 2, 4));
+        assertArrayEquals(new int[][]{{2, 4}, {4, 4}, {5, 5}}, cache.get(2, 4, 5, 5));
+
+        cache.put(6, 6, 7, 7, new int[0][], graph.version());
+        assertEquals(0, cache.get(7, 7, 6, 6).length);
+
+        assertEquals(3, cache.size());
+        assertEquals(5, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedPath() {
+        GridGraph graph = new GridGraph(40, 40);
+        PathCache cache = new PathCache(graph, 32); // 2 paths in each segment
+        int[][] kept = {{0, 0}, {1, 0}};
+        cache.put(0, 0, 1, 0, kept, graph.version());
+
+        int nPaths = 1;
+        for (int x=2; x<=40; ++x) {
+            for (int y=0; y<=40; y += 5) {
+                cache.put(0, 0, x, y, new int[][]{{0, 0}, {x, y}}, graph.version());
+                ++nPaths;
+                // Used after every put, so it is never the least recently used path of its segment.
+                assertArrayEquals(kept, cache.get(0, 0, 1, 0));
+            }
+        }
+        assertEquals(32, cache.size());
+        assertEquals(nPaths - 32, cache.evictions());
+        assertArrayEquals(new int[][]{{0, 0}, {40, 40}}, cache.get(0, 0, 40, 40));
+        assertNull(cache.get(0, 0, 2, 0));
+    }
+
+    @Test
+    public void pathsOfAnotherGridVersionAreDropped() {
+        GridGraph graph = new GridGraph(10, 10);
+        PathCache cache = new PathCache(graph, 16);
+        int[][] path = {{0, 0}, {2, 2}};
+        cache.put(0, 0, 2, 2, path, graph.version());
+        assertArrayEquals(path, cache.get(0, 0, 2, 2));
+
+        graph.setBlocked(5, 5, true);
+        assertNull(cache.get(0, 0, 2, 2));
+        assertEquals(0, cache.evictions());
+
+        // Computed before the change, and cached after it.
+        long staleVersion = graph.version();
+        graph.setBlocked(6, 6, true);
+        cache.put(0, 0, 2, 2, path, staleVersion);
+        assertNull(cache.get(0, 0, 2, 2));
+        assertEquals(0, cache.size());
+
+        int[][] computed = cache.computeIfAbsent(0, 0, 2, 2, () -> {
+            graph.setBlocked(7, 7, true);
+            return path;
+        });
+        assertArrayEquals(path, computed);
+        assertNull(cache.get(0, 0, 2, 2));
+
+        computed = cache.computeIfAbsent(0, 0, 2, 2, () -> path);
+        assertArrayEquals(path, cache.get(0, 0, 2, 2));
+    }
+}
@@ -0,0 +1,328 @@
+package main;
+
+import grid.GridGraph;
+import grid.LineOfSightCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import algorithms.PathFindingAlgorithm;
+import algorithms.datatypes.SearchMemory;
+import algorithms.priorityqueue.OpenList;
+import algorithms.priorityqueue.OpenListType;
+import main.utility.Utility;
+
+/**
+ * Runs batches of path queries on one grid in parallel.
+ * <br>
+ * Each query constructs a new algorithm with the AlgoFunction and runs it on a worker of the executor.
+ * The search memory, open list and line of sight cache of finished queries are kept and handed to the next ones,
+ * so the number of O(grid) arrays allocated is bounded by the number of queries running at once, whatever the executor.
+ * <br>
+ * The algorithm must be safe to run in several threads at once on the same grid. This holds for the searches
+ * which only keep state in SearchMemory and their open list (A*, JPS, the Theta* family), including the Theta*
+ * variants with a line of sight cache, as each query has its own. It does not hold for the ones that keep
+ * a preprocessed graph or a shared grid cache in static fields.
+ * The grid must not be modified while queries are running.
+ */
+public final class PathQueryEngine implements AutoCloseable {
+
+    /**
+     * The outcome of one query.
+     */
+    public static final class Result {
+        public final int sx;
+        public final int sy;
+        public final int ex;
+        public final int ey;
+        /** The path as a list of {x, y} points. Empty if there is no path, or if the search failed. */
+        public final int[][] path;
+        public final double pathLength;
+        /** Time from submission to completion, including the time spent waiting for a worker. */
+        public final long latencyNanos;
+        /** Time spent in computePath and getPath, or in looking up the path cache. */
+        public final long computeNanos;
+        /** null if the search completed normally. Any Throwable, including Errors such as StackOverflowError. */
+        public final Throwable error;
+
+        private Result(int sx, int sy, int ex, int ey, int[][] path, double pathLength,
+                long latencyNanos, long computeNanos, Throwable error) {
+            this.sx = sx;
+            this.sy = sy;
+            this.ex = ex;
+            this.ey = ey;
+            this.path = path;
+            this.pathLength = pathLength;
+            this.latencyNanos = latencyNanos;
+            this.computeNanos = computeNanos;
+            this.error = error;
+        }
+
+        public final boolean hasPath() {
+            return path.length > 0;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + sx + ", " + sy + ") -> (" + ex + ", " + ey + "): "
+                    + (error != null ? error : hasPath() ? pathLength : "no path");
+        }
+    }
+
+    // Search state handed from one query to the next.
+    private static final class WorkerState {
+        final SearchMemory memory = new SearchMemory();
+        final OpenList[] openLists = new OpenList[OpenListType.values().length];
+        LineOfSightCache lineOfSightCache; // created for the first query which caches line of sight
+
+        final OpenList openList(OpenListType type) {
+            OpenList openList = openLists[type.ordinal()];
+            if (openList == null) {
+                openList = type.newOpenList();
+                openLists[type.ordinal()] = openList;
+            }
+            return openList;
+        }
+
+        final LineOfSightCache lineOfSightCache() {
+            if (lineOfSightCache == null) lineOfSightCache = new LineOfSightCache();
+            return lineOfSightCache;
+        }
+    }
+
+    private static final int[][] NO_PATH = new int[0][];
+    private static final int LATENCY_BUCKETS = 64; // bucket i: latencies in [2^i, 2^(i+1)) nanoseconds
+
+    private final GridGraph graph;
+    private final AlgoFunction algoFunction;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final ConcurrentLinkedQueue<WorkerState> idleStates = new ConcurrentLinkedQueue<>();
+    private volatile PathCache pathCache;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLongArray latencyCounts = new AtomicLongArray(LATENCY_BUCKETS);
+    private volatile long statisticsStartNanos = System.nanoTime();
+
+    /**
+     * Runs the queries on the given executor. close() does not shut it down.
+     */
+    public PathQueryEngine(GridGraph graph, AlgoFunction algoFunction, ExecutorService executor) {
+        this(graph, algoFunction, executor, false);
+    }
+
+    private PathQueryEngine(GridGraph graph, AlgoFunction algoFunction, ExecutorService executor, boolean ownsExecutor) {
+        this.graph = graph;
+        this.algoFunction = algoFunction;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Runs the queries on a fixed pool of nThreads threads, which close() shuts down.
+     */
+    public static PathQueryEngine withFixedPool(GridGraph graph, AlgoFunction algoFunction, int nThreads) {
+        return new PathQueryEngine(graph, algoFunction, Executors.newFixedThreadPool(nThreads), true);
+    }
+
+    /**
+     * Runs each query in its own virtual thread. Requires Java 21 or later.
+     * @throws UnsupportedOperationException on older Java versions.
+     */
+    public static PathQueryEngine withVirtualThreads(GridGraph graph, AlgoFunction algoFunction) {
+        ExecutorService executor;
+        try {
+            // Looked up at runtime so that the project still builds on older JDKs.
+            executor = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later.", e);
+        }
+        return new PathQueryEngine(graph, algoFunction, executor, true);
+    }
+
+    /**
+     * Answers queries from the cache when it has them, and caches the paths found. null to stop using a cache.
+     * The cache must be for the same grid.
+     */
+    public final void usePathCache(PathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    public final CompletableFuture<Result> submit(int sx, int sy, int ex, int ey) {
+        long submitted = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> run(sx, sy, ex, ey, submitted), executor);
+    }
+
+    /**
+     * @param queries each query is {sx, sy, ex, ey}.
+     * @return the futures of the results, in the same order as the queries.
+     */
+    public final List<CompletableFuture<Result>> submitAll(int[][] queries) {
+        List<CompletableFuture<Result>> futures = new ArrayList<>(queries.length);
+        for (int[] query : queries) {
+            futures.add(submit(query[0], query[1], query[2], query[3]));
+        }
+        return futures;
+    }
+
+    /**
+     * Submits the queries, each {sx, sy, ex, ey}.
+     * @return the results in the order in which they complete. The stream blocks until the next one is available.
+     */
+    public final Stream<Result> completions(int[][] queries) {
+        BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        for (int[] query : queries) {
+            int sx = query[0], sy = query[1], ex = query[2], ey = query[3];
+            long submitted = System.nanoTime();
+            submit(sx, sy, ex, ey).whenComplete((result, error) -> {
+                // run catches everything a search throws, but a result must be queued whatever happens.
+                if (result == null) result = failure(sx, sy, ex, ey, submitted, error);
+                results.add(result);
+            });
+        }
+        return Stream.generate(() -> {
+            try {
+                return results.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for path results.", e);
+            }
+        }).limit(queries.length);
+    }
+
+    private final Result run(int sx, int sy, int ex, int ey, long submitted) {
+        long start = System.nanoTime();
+        PathCache pathCache = this.pathCache;
+        int[][] path = pathCache == null ? null : pathCache.get(sx, sy, ex, ey);
+        double pathLength = 0;
+        Throwable error = null;
+        try {
+            if (path == null) {
+                long gridVersion = graph.version();
+                path = computePath(sx, sy, ex, ey);
+                if (pathCache != null) pathCache.put(sx, sy, ex, ey, path, gridVersion);
+            }
+            pathLength = Utility.computePathLength(graph, path);
+        } catch (Throwable e) {
+            // Errors too: a StackOverflowError from a recursive search must not leave the future without a result.
+            error = e;
+            path = NO_PATH;
+        }
+        long end = System.nanoTime();
+
+        recordLatency(end - submitted, error != null);
+        return new Result(sx, sy, ex, ey, path, pathLength, end - submitted, end - start, error);
+    }
+
+    private final Result failure(int sx, int sy, int ex, int ey, long submitted, Throwable error) {
+        long latency = System.nanoTime() - submitted;
+        recordLatency(latency, true);
+        return new Result(sx, sy, ex, ey, NO_PATH, 0, latency, 0, error);
+    }
+
+    private final int[][] computePath(int sx, int sy, int ex, int ey) {
+        WorkerState state = idleStates.poll();
+        if (state == null) state = new WorkerState();
+        try {
+            PathFindingAlgorithm algo = algoFunction.getAlgo(graph, sx, sy, ex, ey);
+            algo.useMemory(state.memory);
+            algo.useOpenList(state.openList(algo.openListType()));
+            if (algo.cachesLineOfSight()) algo.useLineOfSightCache(state.lineOfSightCache());
+            algo.computePath();
+            return algo.getPath();
+        } finally {
+            idleStates.offer(state);
+        }
+    }
+
+    private final void recordLatency(long latencyNanos, boolean isFailure) {
+        completed.increment();
+        if (isFailure) failed.increment();
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        latencyCounts.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(latencyNanos, 1)));
+    }
+
+    /**
+     * @return the number of queries completed since the last resetStatistics, including failed ones.
+     */
+    public final long completed() {
+        return completed.sum();
+    }
+
+    public final long failed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return completed queries per second since the last resetStatistics.
+     */
+    public final double throughput() {
+        double seconds = (System.nanoTime() - statisticsStartNanos) / 1e9;
+        return seconds <= 0 ? 0 : completed.sum() / seconds;
+    }
+
+    public final double meanLatencyMillis() {
+        long n = completed.sum();
+        return n == 0 ? 0 : totalLatencyNanos.sum() / 1e6 / n;
+    }
+
+    public final double maxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    /**
+     * Latencies are counted in power-of-two buckets, so this is an upper bound within a factor of 2.
+     * @param fraction e.g. 0.99 for the 99th percentile.
+     */
+    public final double latencyPercentileMillis(double fraction) {
+        long n = completed.sum();
+        if (n == 0) return 0;
+        long rank = (long)Math.ceil(fraction * n);
+        long count = 0;
+        for (int i=0; i<LATENCY_BUCKETS; ++i) {
+            count += latencyCounts.get(i);
+            if (count >= rank) return Math.min((double)(2L << i), maxLatencyNanos.get()) / 1e6;
+        }
+        return maxLatencyMillis();
+    }
+
+    public final void resetStatistics() {
+        completed.reset();
+        failed.reset();
+        totalLatencyNanos.reset();
+        maxLatencyNanos.set(0);
+        for (int i=0; i<LATENCY_BUCKETS; ++i) {
+            latencyCounts.set(i, 0);
+        }
+        statisticsStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PathQueryEngine: %d queries (%d failed), %.1f queries/s, latency mean %.3fms p50 %.3fms p99 %.3fms max %.3fms",
+                completed(), failed(), throughput(), meanLatencyMillis(),
+                latencyPercentileMillis(0.5), latencyPercentileMillis(0.99), maxLatencyMillis());
+    }
+
+    /**
+     * Shuts down the executor if the engine created it. Queries already submitted still complete.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) executor.shutdown();
+    }
+}
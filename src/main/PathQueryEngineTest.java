@@ -0,0 +1,106 @@
+package main;
+
+import static org.junit.Assert.*;
+import grid.GridGraph;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import main.graphgeneration.DefaultGenerator;
+import main.utility.Utility;
+
+import org.junit.Test;
+
+import algorithms.AStarStaticMemory;
+import algorithms.PathFindingAlgorithm;
+
+public class PathQueryEngineTest {
+
+    private static final GridGraph graph = DefaultGenerator.generateSeededGraphOnly(3301, 70, 50, 8);
+
+    @Test
+    public void fixedPoolFindsTheSamePathsAsOneThread() throws Exception {
+        int[][] queries = randomQueries(new Random(1), 300);
+        try (PathQueryEngine engine = PathQueryEngine.withFixedPool(graph, AStarStaticMemory::new, 4)) {
+            List<CompletableFuture<PathQueryEngine.Result>> results = engine.submitAll(queries);
+            for (int i=0; i<queries.length; ++i) {
+                PathQueryEngine.Result result = results.get(i).get(30, TimeUnit.SECONDS);
+                assertNull(result.error);
+                assertEquals(sequentialPathLength(queries[i]), result.pathLength, 0.0001);
+            }
+            assertEquals(queries.length, engine.completed());
+            assertEquals(0, engine.failed());
+        }
+    }
+
+    @Test
+    public void completionsYieldsEveryQuery() throws Exception {
+        int[][] queries = randomQueries(new Random(2), 200);
+        try (PathQueryEngine engine = PathQueryEngine.withFixedPool(graph, AStarStaticMemory::new, 4)) {
+            List<PathQueryEngine.Result> results = collectCompletions(engine, queries);
+            assertEquals(queries.length, results.size());
+
+            HashMap<String, Integer> remaining = new HashMap<>();
+            for (int[] q : queries) {
+                remaining.merge(q[0] + "," + q[1] + "," + q[2] + "," + q[3], 1, Integer::sum);
+            }
+            for (PathQueryEngine.Result result : results) {
+                String key = result.sx + "," + result.sy + "," + result.ex + "," + result.ey;
+                assertTrue(remaining.merge(key, -1, Integer::sum) >= 0);
+                assertEquals(sequentialPathLength(new int[]{result.sx, result.sy, result.ex, result.ey}), result.pathLength, 0.0001);
+            }
+        }
+    }
+
+    @Test
+    public void throwingSearchIsReportedAsFailed() throws Exception {
+        // Errors, such as the StackOverflowError of a recursive search on a large map, as well as exceptions.
+        AlgoFunction sometimesThrows = (gridGraph, sx, sy, ex, ey) -> {
+            if (sx % 3 == 0) throw new StackOverflowError();
+            if (sx % 3 == 1) throw new IllegalStateException();
+            return new AStarStaticMemory(gridGraph, sx, sy, ex, ey);
+        };
+        int[][] queries = randomQueries(new Random(3), 90);
+        int nThrowing = 0;
+        for (int[] q : queries) {
+            if (q[0] % 3 != 2) ++nThrowing;
+        }
+        try (PathQueryEngine engine = PathQueryEngine.withFixedPool(graph, sometimesThrows, 4)) {
+            List<PathQueryEngine.Result> results = collectCompletions(engine, queries);
+            assertEquals(queries.length, results.size());
+            for (PathQueryEngine.Result result : results) {
+                if (result.sx % 3 == 0) assertTrue(result.error instanceof StackOverflowError);
+                else if (result.sx % 3 == 1) assertTrue(result.error instanceof IllegalStateException);
+                else assertNull(result.error);
+                if (result.error != null) assertFalse(result.hasPath());
+            }
+            assertEquals(queries.length, engine.completed());
+            assertEquals(nThrowing, engine.failed());
+        }
+    }
+
+    // Fails the test instead of blocking it if a result is never queued.
+    private static List<PathQueryEngine.Result> collectCompletions(PathQueryEngine engine, int[][] queries) throws Exception {
+        return CompletableFuture.supplyAsync(() -> engine.completions(queries).collect(Collectors.toList()))
+                .get(30, TimeUnit.SECONDS);
+    }
+
+    private static double sequentialPathLength(int[] query) {
+        PathFindingAlgorithm algo = new AStarStaticMemory(graph, query[0], query[1], query[2], query[3]);
+        algo.computePath();
+        return Utility.computePathLength(graph, algo.getPath());
+    }
+
+    private static int[][] randomQueries(Random random, int n) {
+        int[][] queries = new int[n][];
+        for (int i=0; i<n; ++i) {
+            queries[i] = new int[]{random.nextInt(graph.sizeX+1), random.nextInt(graph.sizeY+1),
+                    random.nextInt(graph.sizeX+1), random.nextInt(graph.sizeY+1)};
+        }
+        return queries;
+    }
+}
@@ -8,6 +8,7 @@ import grid.BlockedIslandSearch;
 import grid.GridGraph;
 import grid.ReachableNodes;
 import grid.ReachableNodesFast;
+import grid.RunLengthIndex;
 
 public class MazeAnalysis {
     
@@ -173,12 +174,12 @@ public class MazeAnalysis {
         long total = 0;
         long count = 0;
         
-        int[][] maxRanges = gridGraph.computeMaxDownLeftRanges();
+        RunLengthIndex runLengths = gridGraph.runLengthIndex();
         for (int y=0; y<gridGraph.sizeY; ++y) {
             for (int x=0; x<gridGraph.sizeX; ++x) {
                 if (gridGraph.isUnblockedCoordinate(x, y)) {
                     count += 1;
-                    int maxSquare = detectMaxSquare(maxRanges, gridGraph.sizeY, x, y);
+                    int maxSquare = runLengths.maxSquare(x, y);
                     total += maxSquare;
                 }
             }
@@ -213,59 +214,6 @@ public class MazeAnalysis {
         return (float)totalIslandSizes / nIslands;
     }
 
-    /**
-     * <pre>
-     * returns the size of the max square at (x,y). can possibly return 0.
-     * Method copied from AcceleratedAStar.
-     * 1: XX
-     *    XX
-     * 
-     * 2: XXX
-     *    XXX
-     *    XXX
-     * </pre>
-     */
-    private static int detectMaxSquare(int[][] maxRanges, int sizeY, int x, int y) {
-        // This is the newer, O(n) method.
-        int lower = 0;
-        int upper = Integer.MAX_VALUE;
-        int newUpper;
-        int i = x-y+sizeY;
-        int j = Math.min(x, y);
-        if (upper <= lower) return 0;
-
-        while (true) {
-            newUpper = checkUpperBoundNew(maxRanges, i,j,lower);
-            if (newUpper < upper) upper = newUpper;
-            if (upper <= lower) break;
-
-            newUpper = checkUpperBoundNew(maxRanges, i,j,-1-lower);
-            if (newUpper < upper) upper = newUpper;
-            if (upper <= lower) break;
-            
-            lower++;
-            if (upper <= lower) break;
-        }
-        return lower;
-    }
-
-    /**
-     * <pre>
-     *          _______  This function returns the upper bound detected by
-     *         |   |k=1| the a leftward and downward search.
-     *         |___|___| k is the number of steps moved in the up-right direction.
-     *         |k=0|   | k = 0 the the square directly top-right of grid point (x,y).
-     *  _______.___|___|
-     * |   |-1 |(x,y)    
-     * |___|___|  point of concern
-     * |-2 |   |
-     * |___|___|
-     * </pre>
-     */
-    private static int checkUpperBoundNew(int[][] maxRange, int i, int j, int k) {
-        return maxRange[i][j + k] - k;
-    }
-    
     public void addParameter(StringBuilder sb, String name, Object value){
         sb.append(name + ": " + value.toString()).append("\n");
     }
@@ -6,19 +6,19 @@ import java.util.Arrays;
 import algorithms.Anya;
 import algorithms.anya16.Anya16;
 import algorithms.PathFindingAlgorithm;
-import algorithms.datatypes.Memory;
 import algorithms.datatypes.Point;
+import algorithms.datatypes.SearchMemory;
 import algorithms.datatypes.SnapshotItem;
+import algorithms.priorityqueue.OpenListType;
 import algorithms.priorityqueue.ReusableIndirectHeap;
 import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraph;
 import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithm;
-import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap;
 import algorithms.sparsevgs.LineOfSightScanner;
 import algorithms.sparsevgs.SparseVisibilityGraph;
-import algorithms.sparsevgs.SparseVisibilityGraphAlgorithmFibHeap;
 import algorithms.sparsevgs.VisibilityGraphOptimised;
 import algorithms.visibilitygraph.VisibilityGraph;
 import grid.GridGraph;
+import grid.LineOfSightCache;
 import main.AlgoFunction;
 import main.analysis.MazeAnalysis;
 import main.graphgeneration.AutomataGenerator;
@@ -152,12 +152,12 @@ public class Utility {
         Anya16.clearMemory();
         VisibilityGraph.clearMemory();
         SparseVisibilityGraph.clearMemory();
-        SparseVisibilityGraphAlgorithmFibHeap.clearMemory();
-        Memory.clearMemory();
+        SearchMemory.clearMemory();
         ReusableIndirectHeap.clearMemory();
+        OpenListType.clearMemory();
         LineOfSightScanner.clearMemory();
+        LineOfSightCache.clearMemory();
         EdgeNLevelSparseVisibilityGraph.clearMemory();
-        EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap.clearMemory();
         VisibilityGraphOptimised.clearMemory();
         SnapshotItem.clearCached();
         //IVGAlgorithm.clearCached();